@@ -0,0 +1,574 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import footleg.cavesurvey.converter.CaveConverter.CmdlineSplaysOpt;
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataOutputFormats;
+import footleg.cavesurvey.tools.ParseCache;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Converts many survey data files in one run, so a whole archive can be converted without
+ * starting a new application for every file.
+ *
+ * Input files are given as file names or glob patterns (e.g. <code>archive/**&#47;*.svx</code>),
+ * directly on the command line or listed in a manifest file, one per line. The format of each
+ * input file is determined from its file name extension. Files are converted in parallel on a
+ * fixed size pool of worker threads. Each output file is written to the output folder, in the same
+ * sub-folder relative to the output folder as the input file was relative to the folder the glob
+ * pattern started from. Each file is converted with its own logger, and its log is written next
+ * to its output file, so messages from files converted at the same time are not mixed together.
+ * A summary report listing any files which failed to convert is written to the output folder.
+ *
+ * Command line usage:
+ * <pre>
+ * batch &lt;output folder&gt; &lt;output format code&gt; [options] &lt;input files or patterns&gt;
+ * </pre>
+ * The options are those for a single file conversion (nosplays, splays, anonsplays, lrud, xsect, debug,
+ * charset &lt;name&gt;, cache &lt;folder&gt;), plus <code>threads &lt;count&gt;</code> to set the
+ * number of worker threads and <code>manifest &lt;file&gt;</code> to read input files or
+ * patterns from a file.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class BatchConverter {
+	/** Name of the summary report written to the output folder */
+	public static final String SUMMARY_FILENAME = "CaveConverterBatch.log";
+	/** Extension added to output file names for the log of each conversion */
+	public static final String FILE_LOG_EXTN = ".log";
+	/** Exit status when one or more files failed to convert */
+	public static final int EXIT_FAILURES = 1;
+	/** Exit status when the command line arguments were not valid */
+	public static final int EXIT_USAGE = 2;
+
+	/**
+	 * An input file found from a file name or pattern
+	 */
+	public static class InputFile {
+		private final File file;
+		private final File baseFolder;
+
+		/**
+		 * @param file       The input file
+		 * @param baseFolder Folder which the output file location is made relative to
+		 */
+		public InputFile(File file, File baseFolder) {
+			this.file = file;
+			this.baseFolder = baseFolder;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public File getBaseFolder() {
+			return baseFolder;
+		}
+	}
+
+	/**
+	 * Outcome of converting one input file
+	 */
+	public static class Result {
+		private final File inputFile;
+		private final File outputFile;
+		private final boolean success;
+		private final String failureReason;
+		private final long elapsedMillis;
+
+		Result(File inputFile, File outputFile, boolean success, String failureReason, long elapsedMillis) {
+			this.inputFile = inputFile;
+			this.outputFile = outputFile;
+			this.success = success;
+			this.failureReason = failureReason;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		public File getInputFile() {
+			return inputFile;
+		}
+
+		public File getOutputFile() {
+			return outputFile;
+		}
+
+		public boolean isSuccess() {
+			return success;
+		}
+
+		public String getFailureReason() {
+			return failureReason;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+	}
+
+	private final File outputFolder;
+	private final SurveyDataOutputFormats outputFormat;
+	private final ConversionOptions options;
+	private final int threadCount;
+	private final Logger logger;
+
+	/**
+	 * Class constructor
+	 *
+	 * @param outputFolder    Folder to write the output files to
+	 * @param outputFormat    Format of files to be generated
+	 * @param options         Options for converting each file. The log level option sets the
+	 *                        minimum level of messages written to the log for each file.
+	 * @param threadCount     Number of files to convert at the same time
+	 * @param logger          Logging class to output progress of the batch to
+	 */
+	public BatchConverter(File outputFolder, SurveyDataOutputFormats outputFormat, ConversionOptions options,
+			int threadCount, Logger logger) {
+		super();
+		this.outputFolder = outputFolder;
+		this.outputFormat = outputFormat;
+		this.options = options;
+		this.threadCount = Math.max(1, threadCount);
+		this.logger = logger;
+	}
+
+	/**
+	 * Runs a batch conversion from command line arguments, the first of which is the batch command.
+	 *
+	 * @param args   Command line arguments
+	 * @param logger Logging class to output progress of the batch to
+	 * @return Exit status for the application, zero if every file was converted
+	 */
+	public static int runFromCommandLine(String[] args, Logger logger) {
+		if (args.length < 4) {
+			logger.logError("Batch conversion requires an output folder, output format code and input files. Usage: "
+					+ "batch <output folder> <output format code> [options] <input files or patterns>");
+			return EXIT_USAGE;
+		}
+		File outputFolder = new File(args[1]);
+		SurveyDataOutputFormats outputFormat;
+		try {
+			if (args[2].length() != 1) {
+				throw new ParseException("Output format code must be a single character. Argument was '"
+						+ args[2] + "'.", 1);
+			}
+			outputFormat = UtilityFunctions.outputDataFormatFromLetterCode(args[2].charAt(0));
+		} catch (ParseException e) {
+			logger.logError(e.getMessage());
+			return EXIT_USAGE;
+		}
+
+		CmdlineSplaysOpt splaysOpt = CmdlineSplaysOpt.Default;
+		boolean anonSplaysOpt = false;
+		ConversionOptions.Builder options = ConversionOptions.builder();
+		String charSetEncoding = "UTF8";
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> patterns = new ArrayList<String>();
+		List<InputFile> inputs = new ArrayList<InputFile>();
+		try {
+			for (int i = 3; i < args.length; i++) {
+				String arg = args[i];
+				boolean hasValue = i + 1 < args.length;
+				if (arg.compareToIgnoreCase("nosplays") == 0) {
+					splaysOpt = CmdlineSplaysOpt.None;
+				} else if (arg.compareToIgnoreCase("splays") == 0) {
+					splaysOpt = CmdlineSplaysOpt.Named;
+				} else if (arg.compareToIgnoreCase("anonsplays") == 0) {
+					anonSplaysOpt = true;
+				} else if (arg.compareToIgnoreCase("lrud") == 0) {
+					options.generateLRUD(true);
+				} else if (arg.compareToIgnoreCase("xsect") == 0) {
+					options.crossSectionsFromSplays(true);
+				} else if (arg.compareToIgnoreCase("debug") == 0) {
+					options.logLevel(Logger.Level.DEBUG);
+				} else if (arg.compareToIgnoreCase("charset") == 0 && hasValue) {
+					charSetEncoding = args[++i];
+				} else if (arg.compareToIgnoreCase("cache") == 0 && hasValue) {
+					CaveConverter.setParseCache(new ParseCache(new File(args[++i]),
+							CaveConverter.DEFAULT_PARSE_CACHE_BYTES, new Logger()));
+				} else if (arg.compareToIgnoreCase("threads") == 0 && hasValue) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (arg.compareToIgnoreCase("manifest") == 0 && hasValue) {
+					File manifest = new File(args[++i]);
+					for (String pattern : readManifest(manifest)) {
+						inputs.addAll(findInputFiles(resolvePattern(pattern, manifest.getParentFile())));
+					}
+				} else {
+					patterns.add(arg);
+				}
+			}
+			for (String pattern : patterns) {
+				inputs.addAll(findInputFiles(pattern));
+			}
+		} catch (IOException e) {
+			logger.logError("Failed to find input files: " + e.getMessage());
+			return EXIT_USAGE;
+		} catch (NumberFormatException e) {
+			logger.logError("Thread count must be a number: " + e.getMessage());
+			return EXIT_USAGE;
+		}
+		if (inputs.isEmpty()) {
+			logger.logError("No input files found for batch conversion.");
+			return EXIT_USAGE;
+		}
+		// Set splays to anonymous if option was set and splays are being output
+		if ((splaysOpt != CmdlineSplaysOpt.None) && (anonSplaysOpt == true)) {
+			splaysOpt = CmdlineSplaysOpt.Anon;
+		}
+
+		options.splays(splaysOpt).charSetEncoding(charSetEncoding);
+		BatchConverter batch = new BatchConverter(outputFolder, outputFormat, options.build(), threads, logger);
+		long start = System.nanoTime();
+		List<Result> results = batch.convertAll(inputs);
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+		List<String> summary = batch.generateSummary(results, elapsedMillis);
+		for (String line : summary) {
+			logger.logMessage(line);
+		}
+		outputFolder.mkdirs();
+		File summaryFile = new File(outputFolder, SUMMARY_FILENAME);
+		String error = UtilityFunctions.writeTextFile(summary, summaryFile.getPath(), charSetEncoding);
+		if (error.length() > 0) {
+			logger.logError(error);
+		}
+		return countFailures(results) > 0 ? EXIT_FAILURES : 0;
+	}
+
+	/**
+	 * Reads the file names or patterns listed in a manifest file. Blank lines and lines starting
+	 * with # are ignored.
+	 *
+	 * @param manifest File listing input files or patterns, one per line
+	 * @return The file names or patterns
+	 * @throws IOException If the manifest could not be read
+	 */
+	public static List<String> readManifest(File manifest) throws IOException {
+		List<String> patterns = new ArrayList<String>();
+		for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if (line.length() > 0 && line.startsWith("#") == false) {
+				patterns.add(line);
+			}
+		}
+		return patterns;
+	}
+
+	private static String resolvePattern(String pattern, File folder) {
+		if (folder == null || new File(pattern).isAbsolute()) {
+			return pattern;
+		}
+		return new File(folder, pattern).getPath();
+	}
+
+	/**
+	 * Finds the input files matching a file name or glob pattern. The output location of each
+	 * file found by a pattern is relative to the folder at the start of the pattern before the
+	 * first wildcard.
+	 *
+	 * @param pattern A file name, or a glob pattern such as <code>survey/**&#47;*.svx</code>
+	 * @return The files found, in name order
+	 * @throws IOException If the folders could not be searched
+	 */
+	public static List<InputFile> findInputFiles(String pattern) throws IOException {
+		List<InputFile> found = new ArrayList<InputFile>();
+		String normalised = pattern.replace(File.separatorChar, '/');
+		if (isGlob(normalised) == false) {
+			File file = new File(pattern);
+			if (file.isFile()) {
+				File parent = file.getAbsoluteFile().getParentFile();
+				found.add(new InputFile(file, parent));
+			}
+			return found;
+		}
+
+		// Split pattern into a literal base folder and the wildcard part matched below it
+		String[] parts = normalised.split("/", -1);
+		StringBuilder base = new StringBuilder();
+		int first = 0;
+		while (first < parts.length - 1 && isGlob(parts[first]) == false) {
+			base.append(parts[first]).append('/');
+			first++;
+		}
+		StringBuilder glob = new StringBuilder();
+		for (int i = first; i < parts.length; i++) {
+			glob.append(i > first ? "/" : "").append(parts[i]);
+		}
+		final Path baseFolder = new File(base.length() > 0 ? base.toString() : ".").toPath();
+		if (Files.isDirectory(baseFolder) == false) {
+			return found;
+		}
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		// A leading **/ should also match files directly in the base folder
+		final PathMatcher topMatcher = glob.toString().startsWith("**/")
+				? FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(3))
+				: matcher;
+		List<Path> paths;
+		Stream<Path> walk = Files.walk(baseFolder);
+		try {
+			paths = walk.filter(path -> Files.isRegularFile(path)).filter(path -> {
+				Path relative = baseFolder.relativize(path);
+				return matcher.matches(relative) || topMatcher.matches(relative);
+			}).sorted().collect(Collectors.toList());
+		} finally {
+			walk.close();
+		}
+		for (Path path : paths) {
+			found.add(new InputFile(path.toFile(), baseFolder.toFile()));
+		}
+		return found;
+	}
+
+	private static boolean isGlob(String pattern) {
+		for (int i = 0; i < pattern.length(); i++) {
+			if ("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Works out the output file for an input file, in the output folder at the same location
+	 * relative to it as the input file was to its base folder, with the extension of the output
+	 * format.
+	 *
+	 * @param input The input file
+	 * @return The output file
+	 */
+	public File outputFileFor(InputFile input) {
+		Path relative;
+		try {
+			relative = input.getBaseFolder().getCanonicalFile().toPath()
+					.relativize(input.getFile().getCanonicalFile().toPath());
+		} catch (IOException e) {
+			relative = new File(input.getFile().getName()).toPath();
+		}
+		String name = relative.toString();
+		int dot = name.lastIndexOf('.');
+		if (dot > name.lastIndexOf(File.separatorChar)) {
+			name = name.substring(0, dot);
+		}
+		return new File(outputFolder, name + "." + CaveConverter.getFileExtension(outputFormat));
+	}
+
+	/**
+	 * Converts all the input files on the worker threads, and waits for them to complete.
+	 * Progress is logged as each file completes.
+	 *
+	 * @param inputs The files to convert. A file listed more than once is converted once. Files
+	 *               which would be written to the same output file (e.g. cave.svx and cave.txt in
+	 *               the same folder) are not converted, and are reported as failures instead.
+	 * @return Outcome of each conversion, in the same order as the inputs
+	 */
+	public List<Result> convertAll(List<InputFile> inputs) {
+		// Remove duplicates found by more than one pattern
+		Map<File, InputFile> unique = new LinkedHashMap<File, InputFile>();
+		for (InputFile input : inputs) {
+			File key = input.getFile().getAbsoluteFile();
+			if (unique.containsKey(key) == false) {
+				unique.put(key, input);
+			}
+		}
+		List<InputFile> toConvert = new ArrayList<InputFile>(unique.values());
+		Result[] results = new Result[toConvert.size()];
+
+		// Files converted at the same time to the same output file would overwrite each other
+		Map<File, List<Integer>> outputs = new LinkedHashMap<File, List<Integer>>();
+		for (int i = 0; i < toConvert.size(); i++) {
+			File outputFile = outputFileFor(toConvert.get(i)).getAbsoluteFile();
+			if (outputs.containsKey(outputFile) == false) {
+				outputs.put(outputFile, new ArrayList<Integer>());
+			}
+			outputs.get(outputFile).add(i);
+		}
+		int clashCount = 0;
+		for (Map.Entry<File, List<Integer>> output : outputs.entrySet()) {
+			List<Integer> clashing = output.getValue();
+			if (clashing.size() > 1) {
+				for (int index : clashing) {
+					File inputFile = toConvert.get(index).getFile();
+					String reason = "Output file " + output.getKey().getPath() + " would also be written by "
+							+ (clashing.size() - 1) + " other input file(s)";
+					results[index] = new Result(inputFile, null, false, reason, 0);
+					logger.logError("FAILED " + inputFile.getPath() + ": " + reason);
+					clashCount++;
+				}
+			}
+		}
+
+		int convertCount = toConvert.size() - clashCount;
+		if (convertCount == 0) {
+			return Arrays.asList(results);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threadCount, convertCount));
+		try {
+			ExecutorCompletionService<Integer> completion = new ExecutorCompletionService<Integer>(pool);
+			for (int i = 0; i < toConvert.size(); i++) {
+				if (results[i] != null) {
+					continue;
+				}
+				final int index = i;
+				completion.submit(() -> {
+					try {
+						results[index] = convert(toConvert.get(index));
+					} catch (Error e) {
+						// Record as a failure of this file, so the rest of the batch still completes
+						results[index] = new Result(toConvert.get(index).getFile(), null, false,
+								e.getClass().getSimpleName() + ": " + e.getMessage(), 0);
+					}
+					return index;
+				});
+			}
+			// Log on this thread as conversions complete, as the logger is not shared with workers
+			for (int done = 1; done <= convertCount; done++) {
+				Result result = results[completion.take().get()];
+				logger.logMessage("[" + done + "/" + convertCount + "] "
+						+ (result.isSuccess() ? "Converted " : "FAILED ") + result.getInputFile().getPath()
+						+ (result.isSuccess() ? "" : ": " + result.getFailureReason()));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// Conversions catch their own exceptions, so this is not expected
+			logger.logError("Batch conversion failed: " + e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		List<Result> list = new ArrayList<Result>();
+		for (int i = 0; i < results.length; i++) {
+			list.add(results[i] != null ? results[i]
+					: new Result(toConvert.get(i).getFile(), null, false, "Not converted", 0));
+		}
+		return list;
+	}
+
+	/**
+	 * Converts one file, with its own logger, and writes the log for the file next to its output
+	 */
+	private Result convert(InputFile input) {
+		long start = System.nanoTime();
+		File inputFile = input.getFile();
+		File outputFile = outputFileFor(input);
+		CmdLineLogger fileLogger = new CmdLineLogger(false, CmdLineLogger.DEFAULT_CAPACITY);
+		fileLogger.setMinimumLevel(options.getLogLevel());
+		boolean success = false;
+		String reason = null;
+
+		String name = inputFile.getName();
+		SurveyDataInputFormats inputFormat = null;
+		if (name.lastIndexOf('.') >= 0) {
+			inputFormat = CaveConverter.inputFormatFromFileExtn(name.substring(name.lastIndexOf('.') + 1));
+		}
+		if (inputFormat == null) {
+			reason = "Input format not recognised from file name extension";
+			fileLogger.logError(reason + ": " + inputFile.getPath());
+		} else {
+			try {
+				File outputParent = outputFile.getParentFile();
+				if (outputParent != null && outputParent.exists() == false && outputParent.mkdirs() == false
+						&& outputParent.isDirectory() == false) {
+					throw new IOException("Failed to create output folder " + outputParent.getPath());
+				}
+				success = CaveConverter.convertFile(inputFile.getPath(), outputFile, inputFormat, outputFormat,
+						options, fileLogger);
+				if (success == false) {
+					reason = "No output was written";
+				}
+			} catch (ParseException | IOException | RuntimeException | Error e) {
+				// Errors such as running out of memory are recorded against the file too
+				reason = e.getClass().getSimpleName() + ": " + e.getMessage();
+				fileLogger.logError("Conversion failed with " + reason);
+			}
+		}
+
+		File logFile = new File(outputFile.getPath() + FILE_LOG_EXTN);
+		if (logFile.getParentFile() == null || logFile.getParentFile().isDirectory()) {
+			fileLogger.writeLogToFile(logFile.getPath(), options.getCharSetEncoding());
+		}
+		return new Result(inputFile, success ? outputFile : null, success, reason,
+				(System.nanoTime() - start) / 1000000);
+	}
+
+	private static int countFailures(List<Result> results) {
+		int failures = 0;
+		for (Result result : results) {
+			if (result.isSuccess() == false) {
+				failures++;
+			}
+		}
+		return failures;
+	}
+
+	/**
+	 * Generates a summary report of a batch conversion
+	 *
+	 * @param results       Outcome of each conversion
+	 * @param elapsedMillis Total time taken for the batch
+	 * @return Lines of the report
+	 */
+	public List<String> generateSummary(List<Result> results, long elapsedMillis) {
+		int failures = countFailures(results);
+		long busyMillis = 0;
+		for (Result result : results) {
+			busyMillis += result.getElapsedMillis();
+		}
+		List<String> summary = new ArrayList<String>();
+		summary.add("Batch conversion to " + CaveConverter.getFormatName(outputFormat) + " format in "
+				+ outputFolder.getPath());
+		summary.add("Files converted: " + (results.size() - failures) + " of " + results.size());
+		summary.add("Files failed: " + failures);
+		summary.add("Time taken: " + String.format(Locale.UK, "%.1f", elapsedMillis / 1000.0) + "s using "
+				+ threadCount + " threads (total conversion time "
+				+ String.format(Locale.UK, "%.1f", busyMillis / 1000.0) + "s)");
+		if (failures > 0) {
+			summary.add("Failed files:");
+			for (Result result : results) {
+				if (result.isSuccess() == false) {
+					summary.add("  " + result.getInputFile().getPath() + ": " + result.getFailureReason());
+				}
+			}
+		}
+		return summary;
+	}
+
+}
@@ -18,7 +18,18 @@
  */
 package footleg.cavesurvey.converter;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.ParseException;
@@ -34,27 +45,34 @@ import footleg.cavesurvey.data.reader.CompassParser;
 import footleg.cavesurvey.data.reader.DxfParser;
 import footleg.cavesurvey.data.reader.PocketTopoParser;
 import footleg.cavesurvey.data.reader.SurvexParser;
+import footleg.cavesurvey.data.reader.TherionParser;
+import footleg.cavesurvey.data.writer.CompassWriter;
+import footleg.cavesurvey.data.writer.Survex3dWriter;
 import footleg.cavesurvey.data.writer.SurvexWriter;
+import footleg.cavesurvey.data.writer.TherionWriter;
 import footleg.cavesurvey.data.writer.TopoRobotWriter;
+import footleg.cavesurvey.tools.ParseCache;
 import footleg.cavesurvey.tools.UtilityFunctions;
 
 /**
  * Command line application for converting cave survey data from one file format
  * to another.
- * Currently it can read some survex files, text export files from PocketTopo
- * and DXF format
- * data. It can write toporobot and survex files.
+ * Currently it can read some survex files, therion files, text export files from
+ * PocketTopo and DXF format
+ * data. It can write toporobot, survex, survex 3d, compass and therion files.
+ * Applications embedding the converter can convert data in memory using the
+ * convert methods, which return diagnostics rather than writing a log file.
  * 
  * @author Footleg
  * @version 2024.09.24 (ISO 8601 YYYY.MM.DD)
  * @since 1.8 (The Java version used)
- * 
- * @to.do
- *        TODO Write Therion reader and writer
  */
 public class CaveConverter {
 	private static final String filePath = "./";
 	private static Date today;
+	private static ParseCache parseCache;
+	/** Default size limit for the parse cache set from the command line, in bytes */
+	public static final long DEFAULT_PARSE_CACHE_BYTES = 256L * 1024 * 1024;
 
 	public static String newline = System.getProperty("line.separator");
 
@@ -90,7 +108,8 @@ public class CaveConverter {
 		Compass,
 		DXF,
 		PocketTopo,
-		Survex
+		Survex,
+		Therion
 	}
 
 	/**
@@ -99,11 +118,17 @@ public class CaveConverter {
 	 */
 	public static enum SurveyDataOutputFormats {
 		Survex,
-		Toporobot
+		Toporobot,
+		Survex3d,
+		Compass,
+		Therion
 	}
 
 	private static String dataFormats[][] = { { "Compass", "dat" }, { "DXF", "dxf" }, { "PocketTopo", "txt" },
-			{ "Survex", "svx" }, { "Toporobot", "text" } };
+			{ "Survex", "svx" }, { "Toporobot", "text" }, { "Survex 3d", "3d" },
+			{ "Therion", "th" } };
+	// Therion projects are usually read from a configuration file, which sources the data files
+	private static final String THERION_CONFIG_EXTN = "thconfig";
 
 	/**
 	 * Units for length measurements
@@ -154,6 +179,9 @@ public class CaveConverter {
 			case Survex:
 				formatName = dataFormats[3][0];
 				break;
+			case Therion:
+				formatName = dataFormats[6][0];
+				break;
 		}
 		return formatName;
 	}
@@ -173,10 +201,47 @@ public class CaveConverter {
 			case Toporobot:
 				formatName = dataFormats[4][0];
 				break;
+			case Survex3d:
+				formatName = dataFormats[5][0];
+				break;
+			case Compass:
+				formatName = dataFormats[0][0];
+				break;
+			case Therion:
+				formatName = dataFormats[6][0];
+				break;
 		}
 		return formatName;
 	}
 
+	/**
+	 * Supplies the file name extension for survey data output formats
+	 * 
+	 * @param format The data format enum value
+	 * @return File name extension (without the dot) for this data format
+	 */
+	public static String getFileExtension(SurveyDataOutputFormats format) {
+		String extn = "";
+		switch (format) {
+			case Survex:
+				extn = dataFormats[3][1];
+				break;
+			case Toporobot:
+				extn = dataFormats[4][1];
+				break;
+			case Survex3d:
+				extn = dataFormats[5][1];
+				break;
+			case Compass:
+				extn = dataFormats[0][1];
+				break;
+			case Therion:
+				extn = dataFormats[6][1];
+				break;
+		}
+		return extn;
+	}
+
 	/**
 	 * Returns the file format for a specified file name extension
 	 * 
@@ -195,6 +260,8 @@ public class CaveConverter {
 			format = SurveyDataInputFormats.PocketTopo;
 		} else if (fileExtn.equalsIgnoreCase(dataFormats[3][1])) {
 			format = SurveyDataInputFormats.Survex;
+		} else if (fileExtn.equalsIgnoreCase(dataFormats[6][1]) || fileExtn.equalsIgnoreCase(THERION_CONFIG_EXTN)) {
+			format = SurveyDataInputFormats.Therion;
 		}
 
 		return format;
@@ -217,6 +284,42 @@ public class CaveConverter {
 			Calendar cal = Calendar.getInstance(TimeZone.getDefault());
 			today = cal.getTime();
 		}
+		// Convert many files in one run if the batch command was given
+		if (args.length > 0 && args[0].compareToIgnoreCase("batch") == 0) {
+			int exitStatus = BatchConverter.runFromCommandLine(args, logger);
+			logger.flush();
+			if (exitStatus != 0) {
+				System.exit(exitStatus);
+			}
+			return;
+		}
+		// List the stations near to a station or position if the nearby command was given
+		if (args.length > 0 && args[0].compareToIgnoreCase("nearby") == 0) {
+			int exitStatus = NearbyStations.runFromCommandLine(args, logger);
+			logger.flush();
+			if (exitStatus != 0) {
+				System.exit(exitStatus);
+			}
+			return;
+		}
+		// Report series which pass close to each other if the nearmiss command was given
+		if (args.length > 0 && args[0].compareToIgnoreCase("nearmiss") == 0) {
+			int exitStatus = NearMissReport.runFromCommandLine(args, logger);
+			logger.flush();
+			if (exitStatus != 0) {
+				System.exit(exitStatus);
+			}
+			return;
+		}
+		// Report lengths, extent and depth of the survey if the stats command was given
+		if (args.length > 0 && args[0].compareToIgnoreCase("stats") == 0) {
+			int exitStatus = SurveyStatisticsReport.runFromCommandLine(args, logger);
+			logger.flush();
+			if (exitStatus != 0) {
+				System.exit(exitStatus);
+			}
+			return;
+		}
 		// Check for arguments
 		if (args.length > 0) {
 			// Set input filename from 1st argument
@@ -237,7 +340,7 @@ public class CaveConverter {
 							// Set options flags from 5th argument onwards
 							CmdlineSplaysOpt splaysOpt = CmdlineSplaysOpt.Default;
 							boolean anonSplaysOpt = false;
-							CmdlineOpt genLRUDOpt = CmdlineOpt.F;
+							ConversionOptions.Builder options = ConversionOptions.builder();
 							String charSetEncoding = "UTF8";
 							for (int iOpts = 4; iOpts < args.length; iOpts++) {
 								if (args[iOpts].compareToIgnoreCase("nosplays") == 0) {
@@ -249,29 +352,52 @@ public class CaveConverter {
 									anonSplaysOpt = true;
 								}
 								if (args[iOpts].compareToIgnoreCase("lrud") == 0) {
-									genLRUDOpt = CmdlineOpt.T;
+									options.generateLRUD(true);
+								}
+								if (args[iOpts].compareToIgnoreCase("xsect") == 0) {
+									options.crossSectionsFromSplays(true);
+								}
+								if (args[iOpts].compareToIgnoreCase("debug") == 0) {
+									logger.setMinimumLevel(Logger.Level.DEBUG);
+									options.logLevel(Logger.Level.DEBUG);
 								}
 								if (args[iOpts].compareToIgnoreCase("charset") == 0) {
 									if (iOpts + 1 < args.length) {
 										charSetEncoding = args[iOpts + 1];
 									}
 								}
+								if (args[iOpts].compareToIgnoreCase("threads") == 0) {
+									if (iOpts + 1 < args.length) {
+										options.threads(Integer.parseInt(args[iOpts + 1]));
+									}
+								}
+								if (args[iOpts].compareToIgnoreCase("cache") == 0) {
+									if (iOpts + 1 < args.length) {
+										setParseCache(new ParseCache(new File(args[iOpts + 1]),
+												DEFAULT_PARSE_CACHE_BYTES, logger));
+									}
+								}
 							}
 
 							// Set splays to anonymous if option was set and splays are being output
 							if ((splaysOpt != CmdlineSplaysOpt.None) && (anonSplaysOpt == true)) {
 								splaysOpt = CmdlineSplaysOpt.Anon;
 							}
+							options.splays(splaysOpt).charSetEncoding(charSetEncoding);
 							// Call file convert method
-							convertFile(inputFilename, outputFilename, inputFormat, outputFormat, splaysOpt,
-									genLRUDOpt, charSetEncoding, logger);
+							convertFile(inputFilename, new File(filePath + outputFilename), inputFormat, outputFormat,
+									options.build(), logger);
 
 							// Write log file
 							logger.writeLogToFile(filePath + "CaveConverter.log", charSetEncoding);
 						}
-					} catch (ParseException e) {
-						// Log error
+					} catch (ParseException | NumberFormatException e) {
+						// Log error after any messages still being written to the console
+						logger.flush();
 						e.printStackTrace();
+					} finally {
+						// Output any messages still queued, including when the conversion failed
+						logger.flush();
 					}
 				}
 			}
@@ -282,6 +408,16 @@ public class CaveConverter {
 		CaveConverter.today = date;
 	}
 
+	/**
+	 * Sets a cache to reuse parsed survey data from, when converting files which have not changed
+	 * since they were last parsed.
+	 *
+	 * @param cache The parse cache to use, or null to always parse input files
+	 */
+	public static void setParseCache(ParseCache cache) {
+		CaveConverter.parseCache = cache;
+	}
+
 	/**
 	 * Parses a string argument into a single character.
 	 *
@@ -321,16 +457,77 @@ public class CaveConverter {
 	 *                        writing files
 	 * @param logger          Logging class to output information, warning and error
 	 *                        messages to
+	 * @return True if the output file was written
+	 * @throws ParseException Exception raised when information in a survey data
+	 *                        file is not supported or valid for the format
+	 */
+	public static boolean convertFile(String inputFilename, String outputFilename, SurveyDataInputFormats inputFormat,
+			SurveyDataOutputFormats outputFormat, CmdlineSplaysOpt splaysOpt, CmdlineOpt generateLRUDOpt,
+			String charSetEncoding, Logger logger) throws ParseException {
+		return convertFile(inputFilename, new File(filePath + outputFilename), inputFormat, outputFormat, splaysOpt,
+				generateLRUDOpt, charSetEncoding, logger);
+	}
+
+	/**
+	 * Reads in a survey data file and converts it to another format which is
+	 * written out to a file.
+	 *
+	 * @param inputFilename   Name and location of file to be converted
+	 * @param outputFile      File to be output, used as given rather than
+	 *                        relative to the working folder
+	 * @param inputFormat     Format of input file
+	 * @param outputFormat    Format of file to be generated
+	 * @param splaysOpt       Indicates if a splays output option was set to True,
+	 *                        False or to use default for writer (T,F,D)
+	 * @param generateLRUDOpt Indicates whether to generate LRUD data from splays
+	 *                        before writing out data
+	 * @param charSetEncoding Character set encoding to be used when reading and
+	 *                        writing files
+	 * @param logger          Logging class to output information, warning and error
+	 *                        messages to
+	 * @return True if the output file was written
 	 * @throws ParseException Exception raised when information in a survey data
 	 *                        file is not supported or valid for the format
 	 */
-	public static void convertFile(String inputFilename, String outputFilename, SurveyDataInputFormats inputFormat,
+	public static boolean convertFile(String inputFilename, File outputFile, SurveyDataInputFormats inputFormat,
 			SurveyDataOutputFormats outputFormat, CmdlineSplaysOpt splaysOpt, CmdlineOpt generateLRUDOpt,
 			String charSetEncoding, Logger logger) throws ParseException {
+		return convertFile(inputFilename, outputFile, inputFormat, outputFormat,
+				toOptions(splaysOpt, generateLRUDOpt, charSetEncoding), logger);
+	}
+
+	/**
+	 * Creates conversion options from the command line style option arguments
+	 */
+	private static ConversionOptions toOptions(CmdlineSplaysOpt splaysOpt, CmdlineOpt generateLRUDOpt,
+			String charSetEncoding) {
+		return ConversionOptions.builder().splays(splaysOpt).generateLRUD(generateLRUDOpt == CmdlineOpt.T)
+				.charSetEncoding(charSetEncoding).build();
+	}
+
+	/**
+	 * Reads in a survey data file and converts it to another format which is
+	 * written out to a file.
+	 *
+	 * @param inputFilename Name and location of file to be converted
+	 * @param outputFile    File to be output, used as given rather than relative to
+	 *                      the working folder
+	 * @param inputFormat   Format of input file
+	 * @param outputFormat  Format of file to be generated
+	 * @param options       Options for the conversion. The log level option is not
+	 *                      applied to the logger passed in.
+	 * @param logger        Logging class to output information, warning and error
+	 *                      messages to
+	 * @return True if the output file was written
+	 * @throws ParseException Exception raised when information in a survey data
+	 *                        file is not supported or valid for the format
+	 */
+	public static boolean convertFile(String inputFilename, File outputFile, SurveyDataInputFormats inputFormat,
+			SurveyDataOutputFormats outputFormat, ConversionOptions options, Logger logger) throws ParseException {
+		CmdlineSplaysOpt splaysOpt = options.getSplays();
+		String charSetEncoding = options.getCharSetEncoding();
 		// Declare structure to hold survey data
 		CaveSurvey surveyData = null;
-		List<String> multiFileRefs = null;
-		boolean multifile = false;
 
 		// Prepare log message
 		String msg = "Reading data file '" + inputFilename + "' with format " + getFormatName(inputFormat)
@@ -349,20 +546,294 @@ public class CaveConverter {
 				msg += "Named to Stations";
 				break;
 		}
-		if (inputFormat == SurveyDataInputFormats.Survex) {
-			multifile = true;
+		logger.logMessage(msg);
+		surveyData = readSurveyData(new File(inputFilename), inputFormat, charSetEncoding, logger);
+
+		// Generate LRUD data if required
+		if (options.isGenerateLRUD() && surveyData != null) {
+			logger.logMessage("Generating LRUD data from splays...");
+			surveyData.generateLRUDfromSplays(new ProgressMonitor(), options.getThreads());
+		}
+
+		// Convert data to output format
+		List<String> outputData = null;
+		byte[] binaryOutputData = null;
+		StreamedText streamedData = null;
+		if (surveyData != null) {
+			OutputData output = generateOutputData(surveyData, outputFormat, options, logger);
+			outputData = output.lines;
+			binaryOutputData = output.bytes;
+			streamedData = output.streamed;
+		}
+
+		// Write output file
+		boolean written = false;
+		if (outputData != null && outputData.size() > 0) {
+			String outputFilePath = outputFile.getPath();
+			logger.logMessage("Writing output file: " + outputFilePath);
+			String error = UtilityFunctions.writeTextFile(outputData, outputFilePath, charSetEncoding);
+			if (error.length() > 0) {
+				logger.logMessage(error);
+			} else {
+				written = true;
+			}
+		} else if (binaryOutputData != null) {
+			String outputFilePath = outputFile.getPath();
+			logger.logMessage("Writing output file: " + outputFilePath);
+			String error = UtilityFunctions.writeBinaryFile(binaryOutputData, outputFilePath);
+			if (error.length() > 0) {
+				logger.logMessage(error);
+			} else {
+				written = true;
+			}
+		} else if (streamedData != null) {
+			String outputFilePath = outputFile.getPath();
+			logger.logMessage("Writing output file: " + outputFilePath);
+			String error = writeStreamedFile(streamedData, outputFilePath, charSetEncoding);
+			if (error.length() > 0) {
+				logger.logMessage(error);
+			} else {
+				written = true;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Writes text data to a file as it is generated
+	 *
+	 * @return Error message if the write failed, or empty string if successful
+	 */
+	private static String writeStreamedFile(StreamedText data, String fileName, String charSetEncoding) {
+		String error = "";
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(fileName), charSetEncoding))) {
+			data.writeTo(writer);
+		} catch (IOException ex) {
+			error = "Error writing file: " + ex.getLocalizedMessage();
+		}
+		return error;
+	}
+
+	/**
+	 * Indicates whether an output format is binary data rather than text
+	 *
+	 * @param format The data format enum value
+	 * @return True if data in this format is generated as bytes rather than lines of text
+	 */
+	public static boolean isBinaryFormat(SurveyDataOutputFormats format) {
+		return format == SurveyDataOutputFormats.Survex3d;
+	}
+
+	/**
+	 * Converts survey data from one format to another in memory, without reading or writing any
+	 * files. Survex include and Therion input statements can not be followed, so are skipped with
+	 * an error diagnostic. The reader and writer are not closed.
+	 *
+	 * @param input        Survey data to be converted
+	 * @param inputFormat  Format of the survey data
+	 * @param output       Writer to write the converted data to
+	 * @param outputFormat Format of data to be generated, which must be a text format
+	 * @param options      Options for the conversion. The character set encoding is not used.
+	 * @return Result holding whether the output was written, and diagnostics for the conversion
+	 */
+	public static ConversionResult convert(Reader input, SurveyDataInputFormats inputFormat, Writer output,
+			SurveyDataOutputFormats outputFormat, ConversionOptions options) {
+		ConversionResult.Collector logger = new ConversionResult.Collector(options.getLogLevel());
+		boolean written = false;
+		if (isBinaryFormat(outputFormat)) {
+			logger.logError(getFormatName(outputFormat) + " is a binary format, so can not be written to a "
+					+ "Writer. Use an OutputStream instead.");
+		} else {
+			try {
+				OutputData outputData = convertData(input, inputFormat, outputFormat, options, logger);
+				if (outputData.lines != null) {
+					writeLines(outputData.lines, output);
+					written = true;
+				} else if (outputData.streamed != null) {
+					writeStreamed(outputData.streamed, output);
+					written = true;
+				}
+			} catch (ParseException | IOException | RuntimeException e) {
+				logger.logError("Conversion failed with " + e.getClass().getSimpleName() + ": " + e.getMessage());
+			}
+		}
+		return logger.result(written);
+	}
+
+	/**
+	 * Converts survey data from one format to another in memory, without reading or writing any
+	 * files. Text is decoded and encoded using the character set encoding option. Survex include
+	 * and Therion input statements can not be followed, so are skipped with an error diagnostic.
+	 * The streams are not closed.
+	 *
+	 * @param input        Survey data to be converted
+	 * @param inputFormat  Format of the survey data
+	 * @param output       Stream to write the converted data to
+	 * @param outputFormat Format of data to be generated
+	 * @param options      Options for the conversion
+	 * @return Result holding whether the output was written, and diagnostics for the conversion
+	 */
+	public static ConversionResult convert(InputStream input, SurveyDataInputFormats inputFormat,
+			OutputStream output, SurveyDataOutputFormats outputFormat, ConversionOptions options) {
+		ConversionResult.Collector logger = new ConversionResult.Collector(options.getLogLevel());
+		boolean written = false;
+		try {
+			Charset charset = Charset.forName(options.getCharSetEncoding());
+			OutputData outputData = convertData(new InputStreamReader(input, charset), inputFormat, outputFormat,
+					options, logger);
+			if (outputData.lines != null) {
+				Writer writer = new OutputStreamWriter(output, charset);
+				writeLines(outputData.lines, writer);
+				written = true;
+			} else if (outputData.streamed != null) {
+				writeStreamed(outputData.streamed, new OutputStreamWriter(output, charset));
+				written = true;
+			} else if (outputData.bytes != null) {
+				output.write(outputData.bytes);
+				output.flush();
+				written = true;
+			}
+		} catch (ParseException | IOException | RuntimeException e) {
+			logger.logError("Conversion failed with " + e.getClass().getSimpleName() + ": " + e.getMessage());
+		}
+		return logger.result(written);
+	}
+
+	/**
+	 * Reads survey data and generates it in the output format, for in-memory conversions
+	 */
+	private static OutputData convertData(Reader input, SurveyDataInputFormats inputFormat,
+			SurveyDataOutputFormats outputFormat, ConversionOptions options, Logger logger)
+			throws IOException, ParseException {
+		logger.logMessage("Reading data with format " + getFormatName(inputFormat) + ".");
+		List<String> fileData = new ArrayList<String>();
+		UtilityFunctions.IncludeSyntax includeSyntax = includeSyntax(inputFormat);
+		BufferedReader reader = new BufferedReader(input);
+		String line;
+		int lineNo = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNo++;
+			if (includeSyntax != null && includeSyntax.includedPath(line) != null) {
+				logger.logError(UtilityFunctions.formatFileParserMsg(
+						"Include statement skipped, as included files can not be read when converting in memory",
+						lineNo));
+			} else {
+				fileData.add(line);
+			}
+		}
+
+		CaveSurvey surveyData = parseSurveyData(fileData, null, inputFormat, logger);
+		if (surveyData == null) {
+			throw new ParseException("Survey data could not be read", 0);
+		}
+		if (options.isGenerateLRUD()) {
+			logger.logMessage("Generating LRUD data from splays...");
+			surveyData.generateLRUDfromSplays(new ProgressMonitor(), options.getThreads());
+		}
+		OutputData outputData = generateOutputData(surveyData, outputFormat, options, logger);
+		if (outputData.lines == null && outputData.bytes == null && outputData.streamed == null) {
+			throw new ParseException("No output was generated", 0);
+		}
+		return outputData;
+	}
+
+	/**
+	 * Writes lines of text with line separators between them, in the same way as output files
+	 */
+	private static void writeLines(List<String> lines, Writer output) throws IOException {
+		BufferedWriter writer = new BufferedWriter(output);
+		for (int i = 0; i < lines.size(); i++) {
+			if (i > 0) {
+				writer.write(System.getProperty("line.separator"));
+			}
+			writer.write(lines.get(i));
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Writes text data as it is generated, through a buffer
+	 */
+	private static void writeStreamed(StreamedText data, Writer output) throws IOException {
+		BufferedWriter writer = new BufferedWriter(output);
+		data.writeTo(writer);
+		writer.flush();
+	}
+
+	/**
+	 * Reads a survey data file into a cave survey model, using the parse cache if one is set.
+	 * Survex and Therion files are read with any files they include, and Therion files are parsed
+	 * one line at a time as they are read.
+	 *
+	 * @param inputFile       Survey data file to read
+	 * @param inputFormat     Format of the survey data
+	 * @param charSetEncoding Character set encoding of the file
+	 * @param logger          Logging class to output information, warning and error messages to
+	 * @return The cave survey model, or null if the file could not be read or the input format is
+	 *         not supported
+	 * @throws ParseException Exception raised when information in the survey data is not
+	 *                        supported or valid for the format
+	 */
+	static CaveSurvey readSurveyData(File inputFile, SurveyDataInputFormats inputFormat, String charSetEncoding,
+			Logger logger) throws ParseException {
+		CaveSurvey surveyData = null;
+		UtilityFunctions.IncludeSyntax includeSyntax = includeSyntax(inputFormat);
+		List<String> multiFileRefs = null;
+		if (includeSyntax != null) {
 			multiFileRefs = new ArrayList<String>();
 		}
-		// Read input data file
-		logger.logMessage(msg);
-		List<String> fileData = UtilityFunctions.readTextFile(new File(inputFilename), charSetEncoding,
-				multifile, multiFileRefs, logger);
+		String parseKey = inputFormat + "|" + charSetEncoding;
+		if (parseCache != null) {
+			surveyData = parseCache.lookup(inputFile, parseKey);
+		}
 
-		// Parse file data
+		// Read input data file if no unchanged parsed data was found in the cache
+		List<String> fileData = null;
+		List<File> filesRead = new ArrayList<File>();
+		boolean parsed = false;
+		if (surveyData == null && inputFormat == SurveyDataInputFormats.Therion) {
+			// Parse each line as it is read, so the lines of the whole project are not held in memory
+			TherionParser parser = new TherionParser(logger);
+			UtilityFunctions.readTextFile(inputFile, charSetEncoding, includeSyntax, parser::parseLine, filesRead,
+					logger);
+			surveyData = parser.finish();
+			parsed = true;
+		} else if (surveyData == null) {
+			fileData = UtilityFunctions.readTextFile(inputFile, charSetEncoding, includeSyntax, multiFileRefs,
+					filesRead, logger);
+		}
+
+		// Parse file data, unless already loaded from cache
+		if (fileData != null) {
+			surveyData = parseSurveyData(fileData, multiFileRefs, inputFormat, logger);
+			parsed = true;
+		}
+		if (parsed && surveyData != null && parseCache != null) {
+			parseCache.store(inputFile, parseKey, filesRead, surveyData);
+		}
+		return surveyData;
+	}
+
+	/**
+	 * Parses lines of survey data into a cave survey model
+	 *
+	 * @param fileData    Lines of survey data
+	 * @param lineRefs    File and line reference for each line of multi-file Survex or Therion data, or
+	 *                    null to refer to lines by number
+	 * @param inputFormat Format of the survey data
+	 * @param logger      Logging class to output information, warning and error messages to
+	 * @return The cave survey model, or null if the input format is not supported
+	 * @throws ParseException Exception raised when information in the survey data is not
+	 *                        supported or valid for the format
+	 */
+	static CaveSurvey parseSurveyData(List<String> fileData, List<String> lineRefs,
+			SurveyDataInputFormats inputFormat, Logger logger) throws ParseException {
+		CaveSurvey surveyData = null;
 		if (inputFormat == SurveyDataInputFormats.Survex) {
 			// Parse Survex data
 			SurvexParser parser = new SurvexParser(logger);
-			surveyData = parser.parseFile(fileData, multiFileRefs);
+			surveyData = parser.parseFile(fileData, lineRefs);
 		} else if (inputFormat == SurveyDataInputFormats.PocketTopo) {
 			// Parse PocketTopo data
 			PocketTopoParser parser = new PocketTopoParser(logger);
@@ -375,68 +846,131 @@ public class CaveConverter {
 			// Parse Compass data file
 			CompassParser parser = new CompassParser(logger);
 			surveyData = parser.parseFile(fileData);
+		} else if (inputFormat == SurveyDataInputFormats.Therion) {
+			// Parse Therion data
+			TherionParser parser = new TherionParser(logger);
+			surveyData = parser.parseFile(fileData, lineRefs);
 		} else {
 			// Unsupported input format argument
 			logger.logMessage("Unsupported input format argument: " + inputFormat + " is not a valid input format.");
 		}
+		return surveyData;
+	}
 
-		// Set options flag for generating LRUD data
-		boolean generateLRUD = false;
-		if (generateLRUDOpt == CmdlineOpt.T) {
-			generateLRUD = true;
+	/**
+	 * Gets the include commands followed when reading files in a survey data format
+	 *
+	 * @param inputFormat Format of the survey data
+	 * @return The include syntax for the format, or null if files in the format are read on their
+	 *         own
+	 */
+	private static UtilityFunctions.IncludeSyntax includeSyntax(SurveyDataInputFormats inputFormat) {
+		if (inputFormat == SurveyDataInputFormats.Survex) {
+			return UtilityFunctions.IncludeSyntax.Survex;
+		} else if (inputFormat == SurveyDataInputFormats.Therion) {
+			return UtilityFunctions.IncludeSyntax.Therion;
 		}
+		return null;
+	}
 
-		// Generate LRUD data if required
-		if (generateLRUD && surveyData != null) {
-			logger.logMessage("Generating LRUD data from splays...");
-			surveyData.generateLRUDfromSplays();
+	/**
+	 * Text survey data which is written out as it is generated, rather than being generated as
+	 * lines first
+	 */
+	interface StreamedText {
+		void writeTo(Writer writer) throws IOException;
+	}
+
+	/**
+	 * Survey data generated in an output format. Text formats are generated as lines or streamed
+	 * straight to the output, and binary formats are generated as bytes.
+	 */
+	static class OutputData {
+		final List<String> lines;
+		final byte[] bytes;
+		final StreamedText streamed;
+
+		OutputData(List<String> lines, byte[] bytes) {
+			this(lines, bytes, null);
 		}
 
-		// Convert data to output format
-		List<String> outputData = null;
-		if (surveyData != null) {
-			if (outputFormat == SurveyDataOutputFormats.Survex) {
-				// Set options flag for splays (default to true)
-				SurvexWriter.SplayFormats outputSplays = SurvexWriter.SplayFormats.Flagged;
-				if (splaysOpt == CmdlineSplaysOpt.None) {
-					outputSplays = SurvexWriter.SplayFormats.None;
-				} else if (splaysOpt == CmdlineSplaysOpt.Anon) {
-					outputSplays = SurvexWriter.SplayFormats.Anonymous;
-				}
-				// Generate Survex format data
-				SurvexWriter writer = new SurvexWriter(logger);
-				outputData = writer.generateSurvexData(surveyData, outputSplays);
-			} else if (outputFormat == SurveyDataOutputFormats.Toporobot) {
-				// Set options flag for splays (default to false)
-				boolean outputSplays = false;
-				if ((splaysOpt == CmdlineSplaysOpt.Named) || (splaysOpt == CmdlineSplaysOpt.Anon)) {
-					outputSplays = true;
-				}
-				// Generate Toporobot format data
-				TopoRobotWriter writer = new TopoRobotWriter(logger);
-				outputData = writer.generateToporobotData(surveyData, today, outputSplays);
-			}
-			// else if ( outputFormat == SurveyDataOutputFormats.Compass ) {
-			// //Generate Compass format data
-			// CompassWriter writer = new CompassWriter();
-			// outputData = writer.generateCompassData( surveyData );
-			// }
-			else {
-				// Unsupported output format argument
-				logger.logMessage(
-						"Unsupported output format argument: " + outputFormat + " is not a valid output format.");
-			}
+		OutputData(List<String> lines, byte[] bytes, StreamedText streamed) {
+			this.lines = lines;
+			this.bytes = bytes;
+			this.streamed = streamed;
 		}
+	}
 
-		// Write output file
-		if (outputData != null && outputData.size() > 0) {
-			String outputFilePath = filePath + outputFilename;
-			logger.logMessage("Writing output file: " + outputFilePath);
-			String error = UtilityFunctions.writeTextFile(outputData, outputFilePath, charSetEncoding);
-			if (error.length() > 0) {
-				logger.logMessage(error);
+	/**
+	 * Generates survey data in an output format from a cave survey model
+	 *
+	 * @param surveyData   The cave survey model
+	 * @param outputFormat Format of data to be generated
+	 * @param options      Options for the conversion. The splays, output date,
+	 *                     threads and cross-sections options are used.
+	 * @param logger       Logging class to output information, warning and error
+	 *                     messages to
+	 * @return The generated data, with neither lines nor bytes set if the output
+	 *         format is not supported
+	 */
+	static OutputData generateOutputData(CaveSurvey surveyData, SurveyDataOutputFormats outputFormat,
+			ConversionOptions options, Logger logger) {
+		CmdlineSplaysOpt splaysOpt = options.getSplays();
+		List<String> outputData = null;
+		byte[] binaryOutputData = null;
+		StreamedText streamedData = null;
+		// Date written into output files, which is the current time if not set
+		Date outputDate = options.getOutputDate();
+		if (outputDate == null) {
+			outputDate = (today != null) ? today : new Date();
+		}
+		if (outputFormat == SurveyDataOutputFormats.Survex) {
+			// Set options flag for splays (default to true)
+			SurvexWriter.SplayFormats outputSplays = SurvexWriter.SplayFormats.Flagged;
+			if (splaysOpt == CmdlineSplaysOpt.None) {
+				outputSplays = SurvexWriter.SplayFormats.None;
+			} else if (splaysOpt == CmdlineSplaysOpt.Anon) {
+				outputSplays = SurvexWriter.SplayFormats.Anonymous;
+			}
+			// Generate Survex format data
+			SurvexWriter writer = new SurvexWriter(logger);
+			writer.setParallelism(options.getThreads());
+			outputData = writer.generateSurvexData(surveyData, outputSplays);
+		} else if (outputFormat == SurveyDataOutputFormats.Toporobot) {
+			// Set options flag for splays (default to false)
+			boolean outputSplays = false;
+			if ((splaysOpt == CmdlineSplaysOpt.Named) || (splaysOpt == CmdlineSplaysOpt.Anon)) {
+				outputSplays = true;
 			}
+			// Generate Toporobot format data
+			TopoRobotWriter writer = new TopoRobotWriter(logger);
+			outputData = writer.generateToporobotData(surveyData, outputDate, outputSplays);
+		} else if (outputFormat == SurveyDataOutputFormats.Survex3d) {
+			// Set options flag for splays (default to true)
+			boolean outputSplays = (splaysOpt != CmdlineSplaysOpt.None);
+			// Generate Survex 3d binary data
+			Survex3dWriter writer = new Survex3dWriter(logger);
+			writer.setCrossSectionsFromSplays(options.isCrossSectionsFromSplays());
+			binaryOutputData = writer.generateSurvex3dData(surveyData, outputDate, outputSplays);
+		} else if (outputFormat == SurveyDataOutputFormats.Compass) {
+			// Set options flag for splays (default to true)
+			boolean outputSplays = (splaysOpt != CmdlineSplaysOpt.None);
+			// Compass data is written straight to the output as it is generated
+			CompassWriter writer = new CompassWriter(logger);
+			Date compassDate = outputDate;
+			streamedData = out -> writer.writeCompassData(surveyData, compassDate, outputSplays, out);
+		} else if (outputFormat == SurveyDataOutputFormats.Therion) {
+			// Set options flag for splays (default to true)
+			boolean outputSplays = (splaysOpt != CmdlineSplaysOpt.None);
+			// Therion data is written straight to the output as it is generated
+			TherionWriter writer = new TherionWriter(logger);
+			streamedData = out -> writer.writeTherionData(surveyData, outputSplays, out);
+		} else {
+			// Unsupported output format argument
+			logger.logMessage(
+					"Unsupported output format argument: " + outputFormat + " is not a valid output format.");
 		}
+		return new OutputData(outputData, binaryOutputData, streamedData);
 	}
 
 	public static String padNumber(int num, int padWidth) {
@@ -456,15 +990,51 @@ public class CaveConverter {
 	 * @return Formatted string representation of number
 	 */
 	public static String padNumber(double num, int decPlaces, int padWidth) {
-		String formatStr = "0.";
-		for (int i = 0; i < decPlaces; i++) {
-			formatStr += '0';
+		return padString(decimalFormatter(decPlaces).format(num), padWidth);
+	}
+
+	/**
+	 * Number formatters for each number of decimal places, for the locale they were created for.
+	 * Formatters are not thread safe, so each thread has its own.
+	 */
+	private static final class DecimalFormatters {
+		private static final int CACHED_DEC_PLACES = 8;
+		final Locale locale;
+		final DecimalFormat[] formatters = new DecimalFormat[CACHED_DEC_PLACES];
+
+		DecimalFormatters(Locale locale) {
+			this.locale = locale;
 		}
-		DecimalFormatSymbols decimalSymbols = DecimalFormatSymbols.getInstance();
-		decimalSymbols.setDecimalSeparator('.');
-		DecimalFormat formatter = new DecimalFormat(formatStr, decimalSymbols);
+	}
 
-		return padString(formatter.format(num), padWidth);
+	private static final ThreadLocal<DecimalFormatters> decimalFormatters = new ThreadLocal<DecimalFormatters>();
+
+	/**
+	 * Returns a formatter for numbers with a number of decimal places using the English decimal
+	 * separator (.), reusing formatters already created on this thread for the current locale
+	 */
+	private static DecimalFormat decimalFormatter(int decPlaces) {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		DecimalFormatters cache = decimalFormatters.get();
+		if (cache == null || cache.locale.equals(locale) == false) {
+			cache = new DecimalFormatters(locale);
+			decimalFormatters.set(cache);
+		}
+		boolean cached = decPlaces < DecimalFormatters.CACHED_DEC_PLACES;
+		DecimalFormat formatter = cached ? cache.formatters[decPlaces] : null;
+		if (formatter == null) {
+			String formatStr = "0.";
+			for (int i = 0; i < decPlaces; i++) {
+				formatStr += '0';
+			}
+			DecimalFormatSymbols decimalSymbols = DecimalFormatSymbols.getInstance();
+			decimalSymbols.setDecimalSeparator('.');
+			formatter = new DecimalFormat(formatStr, decimalSymbols);
+			if (cached) {
+				cache.formatters[decPlaces] = formatter;
+			}
+		}
+		return formatter;
 	}
 
 	/**
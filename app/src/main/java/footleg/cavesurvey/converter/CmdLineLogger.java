@@ -20,58 +20,245 @@ package footleg.cavesurvey.converter;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
-import java.util.TimeZone;
 
 import footleg.cavesurvey.tools.UtilityFunctions;
 
 /**
  * Logging class for command line application.
+ * 
+ * Each logger keeps its own log, so conversions running at the same time each log separately.
+ * Messages are held in a fixed size ring buffer, so the memory used by a logger is bounded however
+ * much is logged. When more messages are logged than the buffer holds, the oldest are dropped
+ * from the log file. Messages are echoed to the console by a writer thread which drains the
+ * buffer, so logging does not wait for console output or format timestamps on the calling
+ * thread. The writer thread stops when the logger has been idle for a while, and is started
+ * again when needed. Messages below the minimum level set for the logger are discarded.
  *  
  * @author      Footleg
- * @version     2017.01.09                                (ISO 8601 YYYY.MM.DD)
+ * @version     2026.10.18                                (ISO 8601 YYYY.MM.DD)
  * @since       1.6                                       (The Java version used)
  * 
  */
 public class CmdLineLogger extends Logger {
-	private static List<String> log = new ArrayList<String>();
+	/** Default number of messages kept by a logger */
+	public static final int DEFAULT_CAPACITY = 10000;
+	// Time the console writer thread waits for new messages before stopping
+	private static final long WRITER_IDLE_MILLIS = 1000;
+
+	private final boolean echoToConsole;
+	private final int capacity;
+	// Ring buffer of messages, indexed by message sequence number modulo the capacity
+	private final long[] times;
+	private final String[] messages;
+	// Sequence number of the next message to be logged, and of the next message to print
+	private long logged = 0;
+	private long printed = 0;
+	private boolean writerRunning = false;
+	private volatile Level minimumLevel = Level.INFO;
+
+	/**
+	 * Formats message timestamps, reusing the formatted time for messages logged in the same
+	 * second. Not thread safe, so each thread formatting messages uses its own.
+	 */
+	private static class TimestampFormatter {
+		private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		private long cachedSecond = Long.MIN_VALUE;
+		private String cachedTime;
+
+		String format(long time, String message) {
+			long second = time / 1000;
+			if (second != cachedSecond) {
+				cachedSecond = second;
+				cachedTime = dateFormat.format(new Date(time));
+			}
+			return cachedTime + ": " + message;
+		}
+	}
+
+	/**
+	 * Class constructor for a logger which echoes messages to the console
+	 */
+	public CmdLineLogger() {
+		this(true, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Class constructor
+	 * @param echoToConsole Set to false for a logger which only keeps messages to write to a file
+	 * @param capacity Maximum number of messages kept for writing to the log file
+	 */
+	public CmdLineLogger(boolean echoToConsole, int capacity) {
+		super();
+		this.echoToConsole = echoToConsole;
+		this.capacity = Math.max(1, capacity);
+		times = new long[this.capacity];
+		messages = new String[this.capacity];
+	}
+
+	/**
+	 * Sets the minimum level of messages to log. Messages below this level are discarded.
+	 * @param level The minimum level to log
+	 */
+	public void setMinimumLevel(Level level) {
+		minimumLevel = level;
+	}
+
+	public Level getMinimumLevel() {
+		return minimumLevel;
+	}
 
 	/**
-	 * Logs as message
+	 * Logs an error message
 	 * @param message The message to append to the log
 	 */
 	@Override
 	public void logError(String message) {
-		logMessage(message);
+		append(Level.ERROR, message);
 	}
 
 	/**
-	 * Formats message with date time stamp, then outputs to console and log
+	 * Logs an information message, which is timestamped and output to the console and log
 	 * @param message The message to append to the log
 	 */
 	@Override
 	public void logMessage(String message) {
-		String logLine;
+		append(Level.INFO, message);
+	}
 
-		Calendar cal = Calendar.getInstance(TimeZone.getDefault());
-		String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
-		SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);	
-		sdf.setTimeZone(TimeZone.getDefault());          
+	@Override
+	public boolean isLevelEnabled(Level level) {
+		return level.compareTo(minimumLevel) >= 0;
+	}
 
-		logLine = sdf.format(cal.getTime()) + ": " + message;
-		log.add( logLine );
-		System.out.println(logLine);
+	/**
+	 * Logs a message at a level, if that level is enabled
+	 * @param level The message level
+	 * @param message The message to append to the log
+	 */
+	@Override
+	public void log(Level level, String message) {
+		append(level, message);
+	}
 
-	}	
+	private void append(Level level, String message) {
+		if (level.compareTo(minimumLevel) < 0) {
+			return;
+		}
+		long time = System.currentTimeMillis();
+		synchronized (this) {
+			// Wait for the console writer rather than overwrite messages it has not printed yet
+			while (echoToConsole && logged - printed >= capacity) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			int slot = (int) (logged % capacity);
+			times[slot] = time;
+			messages[slot] = message;
+			logged++;
+			if (echoToConsole == false) {
+				printed = logged;
+			} else if (writerRunning) {
+				notifyAll();
+			} else {
+				writerRunning = true;
+				Thread writer = new Thread(this::writeToConsole, "Log writer");
+				writer.setDaemon(true);
+				writer.start();
+			}
+		}
+	}
+
+	/**
+	 * Writer thread loop, which prints logged messages to the console until the logger is idle
+	 */
+	private void writeToConsole() {
+		TimestampFormatter formatter = new TimestampFormatter();
+		StringBuilder output = new StringBuilder();
+		String newline = System.getProperty("line.separator");
+		while (true) {
+			long from;
+			long to;
+			synchronized (this) {
+				long idleSince = System.currentTimeMillis();
+				while (printed == logged) {
+					long waitMillis = WRITER_IDLE_MILLIS - (System.currentTimeMillis() - idleSince);
+					if (waitMillis <= 0) {
+						writerRunning = false;
+						return;
+					}
+					try {
+						wait(waitMillis);
+					} catch (InterruptedException e) {
+						writerRunning = false;
+						notifyAll();
+						return;
+					}
+				}
+				from = printed;
+				to = logged;
+			}
+			// Messages not yet printed are not overwritten, so can be read without holding the lock
+			output.setLength(0);
+			for (long seq = from; seq < to; seq++) {
+				int slot = (int) (seq % capacity);
+				output.append(formatter.format(times[slot], messages[slot])).append(newline);
+			}
+			System.out.print(output);
+			synchronized (this) {
+				printed = to;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits until all logged messages have been output to the console
+	 */
+	public synchronized void flush() {
+		while (printed < logged && writerRunning) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The messages in the log, with their timestamps. If more messages were logged than
+	 *         the logger holds, the first line notes how many earlier messages were dropped.
+	 */
+	public List<String> getLogLines() {
+		List<String> lines = new ArrayList<String>();
+		TimestampFormatter formatter = new TimestampFormatter();
+		synchronized (this) {
+			long first = Math.max(0, logged - capacity);
+			if (first > 0) {
+				lines.add("(" + first + " earlier messages were dropped from this log)");
+			}
+			for (long seq = first; seq < logged; seq++) {
+				int slot = (int) (seq % capacity);
+				lines.add(formatter.format(times[slot], messages[slot]));
+			}
+		}
+		return lines;
+	}
 
 	/**
-	 * Writes the contents of the log to a file
+	 * Writes the contents of the log to a file, once all messages have been output to the console
 	 * @param fileName Full path to the file to write
 	 * @param characterSetEncoding Characterset encoding to use in writing the file
 	 */
 	public void writeLogToFile(String fileName, String characterSetEncoding) {
-		UtilityFunctions.writeTextFile( log, fileName, characterSetEncoding );
+		flush();
+		UtilityFunctions.writeTextFile( getLogLines(), fileName, characterSetEncoding );
 	}
 	
 }
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import java.util.Date;
+
+import footleg.cavesurvey.converter.CaveConverter.CmdlineSplaysOpt;
+
+/**
+ * Options for converting survey data from one format to another. Options are immutable, and are
+ * created with a builder, e.g.
+ * <pre>
+ * ConversionOptions options = ConversionOptions.builder().splays(CmdlineSplaysOpt.None)
+ * 		.generateLRUD(true).build();
+ * </pre>
+ * Options which are not set keep their defaults: the default splays output for the output format,
+ * no LRUD generation, UTF8 character set encoding, information level logging, the current time
+ * as the date written into output files, LRUD and output data generated on the calling thread and
+ * Survex .3d cross-sections written from the LRUD data.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public final class ConversionOptions {
+	private final CmdlineSplaysOpt splays;
+	private final boolean generateLRUD;
+	private final String charSetEncoding;
+	private final Logger.Level logLevel;
+	private final Date outputDate;
+	private final int threads;
+	private final boolean crossSectionsFromSplays;
+
+	/**
+	 * Builder for conversion options
+	 */
+	public static final class Builder {
+		private CmdlineSplaysOpt splays = CmdlineSplaysOpt.Default;
+		private boolean generateLRUD = false;
+		private String charSetEncoding = "UTF8";
+		private Logger.Level logLevel = Logger.Level.INFO;
+		private Date outputDate = null;
+		private int threads = 1;
+		private boolean crossSectionsFromSplays = false;
+
+		private Builder() {
+			super();
+		}
+
+		/**
+		 * @param splays Splays output option (named, anonymous, none or the default for the output
+		 *               format)
+		 * @return This builder
+		 */
+		public Builder splays(CmdlineSplaysOpt splays) {
+			this.splays = splays;
+			return this;
+		}
+
+		/**
+		 * @param generateLRUD True to generate LRUD data from splays before writing the output
+		 * @return This builder
+		 */
+		public Builder generateLRUD(boolean generateLRUD) {
+			this.generateLRUD = generateLRUD;
+			return this;
+		}
+
+		/**
+		 * @param charSetEncoding Character set encoding used to read and write survey data as bytes
+		 * @return This builder
+		 */
+		public Builder charSetEncoding(String charSetEncoding) {
+			this.charSetEncoding = charSetEncoding;
+			return this;
+		}
+
+		/**
+		 * @param logLevel Minimum level of messages to log
+		 * @return This builder
+		 */
+		public Builder logLevel(Logger.Level logLevel) {
+			this.logLevel = logLevel;
+			return this;
+		}
+
+		/**
+		 * @param outputDate Date written into output files, or null for the time of the conversion.
+		 *                   The date is copied, so later changes to it do not affect the options.
+		 * @return This builder
+		 */
+		public Builder outputDate(Date outputDate) {
+			this.outputDate = (outputDate == null) ? null : new Date(outputDate.getTime());
+			return this;
+		}
+
+		/**
+		 * @param threads Number of threads used to generate LRUD data and output data for separate
+		 *                survey series at the same time, or 1 to generate it on the calling thread
+		 * @return This builder
+		 */
+		public Builder threads(int threads) {
+			this.threads = Math.max(1, threads);
+			return this;
+		}
+
+		/**
+		 * @param crossSectionsFromSplays True to write the passage cross-sections in Survex .3d output
+		 *                                from the outline of all the splays at each station, where a
+		 *                                station has enough splays, instead of from the LRUD data
+		 * @return This builder
+		 */
+		public Builder crossSectionsFromSplays(boolean crossSectionsFromSplays) {
+			this.crossSectionsFromSplays = crossSectionsFromSplays;
+			return this;
+		}
+
+		/**
+		 * @return Options with the values set on this builder
+		 */
+		public ConversionOptions build() {
+			return new ConversionOptions(this);
+		}
+	}
+
+	private ConversionOptions(Builder builder) {
+		splays = builder.splays;
+		generateLRUD = builder.generateLRUD;
+		charSetEncoding = builder.charSetEncoding;
+		logLevel = builder.logLevel;
+		outputDate = builder.outputDate;
+		threads = builder.threads;
+		crossSectionsFromSplays = builder.crossSectionsFromSplays;
+	}
+
+	/**
+	 * @return A builder for conversion options, initialised with the defaults
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return Options with all the defaults
+	 */
+	public static ConversionOptions defaults() {
+		return new Builder().build();
+	}
+
+	/**
+	 * @return A builder initialised with these options, to create modified options from
+	 */
+	public Builder toBuilder() {
+		return new Builder().splays(splays).generateLRUD(generateLRUD).charSetEncoding(charSetEncoding)
+				.logLevel(logLevel).outputDate(outputDate).threads(threads)
+				.crossSectionsFromSplays(crossSectionsFromSplays);
+	}
+
+	public CmdlineSplaysOpt getSplays() {
+		return splays;
+	}
+
+	public boolean isGenerateLRUD() {
+		return generateLRUD;
+	}
+
+	public String getCharSetEncoding() {
+		return charSetEncoding;
+	}
+
+	public Logger.Level getLogLevel() {
+		return logLevel;
+	}
+
+	/**
+	 * @return Copy of the date written into output files, or null to use the time of the conversion
+	 */
+	public Date getOutputDate() {
+		return (outputDate == null) ? null : new Date(outputDate.getTime());
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public boolean isCrossSectionsFromSplays() {
+		return crossSectionsFromSplays;
+	}
+
+}
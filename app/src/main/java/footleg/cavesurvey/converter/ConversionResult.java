@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of an in-memory conversion. Holds whether output was written, and the messages logged
+ * during the conversion as diagnostics with a level, so callers can inspect errors without
+ * parsing a log file.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public final class ConversionResult {
+	/**
+	 * Maximum number of diagnostics kept for a conversion. Later messages other than errors are
+	 * counted but not kept.
+	 */
+	public static final int MAX_DIAGNOSTICS = CmdLineLogger.DEFAULT_CAPACITY;
+
+	private final boolean success;
+	private final List<Diagnostic> diagnostics;
+	private final int droppedCount;
+
+	/**
+	 * A message logged during a conversion
+	 */
+	public static final class Diagnostic {
+		private final Logger.Level level;
+		private final String message;
+
+		/**
+		 * Class constructor
+		 *
+		 * @param level   Level the message was logged at
+		 * @param message The message text
+		 */
+		public Diagnostic(Logger.Level level, String message) {
+			super();
+			this.level = level;
+			this.message = message;
+		}
+
+		public Logger.Level getLevel() {
+			return level;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return level + ": " + message;
+		}
+	}
+
+	/**
+	 * Logger which records each message it is passed as a diagnostic, for the result of a conversion.
+	 * Messages may be logged from several threads.
+	 */
+	static class Collector extends Logger {
+		private final Logger.Level minimumLevel;
+		private final List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+		private int droppedCount = 0;
+
+		Collector(Logger.Level minimumLevel) {
+			super();
+			this.minimumLevel = minimumLevel;
+		}
+
+		@Override
+		public boolean isLevelEnabled(Level level) {
+			return level.compareTo(minimumLevel) >= 0;
+		}
+
+		@Override
+		public synchronized void log(Level level, String message) {
+			if (isLevelEnabled(level)) {
+				// Errors are always kept, so the reason a conversion failed is never dropped
+				if (diagnostics.size() < MAX_DIAGNOSTICS || level == Level.ERROR) {
+					diagnostics.add(new Diagnostic(level, message));
+				} else {
+					droppedCount++;
+				}
+			}
+		}
+
+		@Override
+		public void logMessage(String message) {
+			log(Level.INFO, message);
+		}
+
+		@Override
+		public void logError(String message) {
+			log(Level.ERROR, message);
+		}
+
+		/**
+		 * @param success True if the output was written
+		 * @return Result holding the diagnostics recorded so far
+		 */
+		synchronized ConversionResult result(boolean success) {
+			return new ConversionResult(success, diagnostics, droppedCount);
+		}
+	}
+
+	private ConversionResult(boolean success, List<Diagnostic> diagnostics, int droppedCount) {
+		this.success = success;
+		this.diagnostics = Collections.unmodifiableList(new ArrayList<Diagnostic>(diagnostics));
+		this.droppedCount = droppedCount;
+	}
+
+	/**
+	 * @return True if the converted data was written to the output
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * @return All diagnostics kept for the conversion, in the order they were logged
+	 */
+	public List<Diagnostic> getDiagnostics() {
+		return diagnostics;
+	}
+
+	/**
+	 * @param level The level of diagnostics to return
+	 * @return Diagnostics logged at the level, in the order they were logged
+	 */
+	public List<Diagnostic> getDiagnostics(Logger.Level level) {
+		List<Diagnostic> matches = new ArrayList<Diagnostic>();
+		for (Diagnostic diagnostic : diagnostics) {
+			if (diagnostic.getLevel() == level) {
+				matches.add(diagnostic);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * @return True if any errors were logged during the conversion
+	 */
+	public boolean hasErrors() {
+		for (Diagnostic diagnostic : diagnostics) {
+			if (diagnostic.getLevel() == Logger.Level.ERROR) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Message of the last error logged, which for a failed conversion is the reason it
+	 *         failed, or null if no errors were logged
+	 */
+	public String getErrorMessage() {
+		for (int i = diagnostics.size() - 1; i >= 0; i--) {
+			if (diagnostics.get(i).getLevel() == Logger.Level.ERROR) {
+				return diagnostics.get(i).getMessage();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return Number of diagnostics which were not kept because the limit was reached
+	 */
+	public int getDroppedCount() {
+		return droppedCount;
+	}
+
+}
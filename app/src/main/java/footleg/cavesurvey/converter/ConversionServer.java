@@ -0,0 +1,551 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import footleg.cavesurvey.converter.CaveConverter.CmdlineSplaysOpt;
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataOutputFormats;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Resident conversion server, which converts survey data sent to it without starting a new
+ * application for each conversion, and without reading or writing files.
+ *
+ * Requests and responses are JSON objects, one per line. The server reads requests from standard
+ * input and writes responses to standard output, or accepts connections on a local socket port
+ * where each connection uses the same protocol. Requests are converted on a fixed size pool of
+ * worker threads, with a bounded queue of waiting requests. When the queue is full the server
+ * stops reading requests until a worker is free. Responses are written as each conversion
+ * completes, so may be in a different order to the requests, and are matched to requests by id.
+ *
+ * Request fields:
+ * <ul>
+ * <li>id - Any string or number, returned in the response (other values are rejected)</li>
+ * <li>inputFormat, outputFormat - Format letter code (as on the command line) or format name</li>
+ * <li>splays - default, none, named or anon (optional)</li>
+ * <li>lrud - true to generate LRUD data from splays (optional)</li>
+ * <li>payload - The survey data</li>
+ * <li>payloadEncoding - text (default) or base64 for survey data encoded in a character set</li>
+ * <li>charset - Character set used to read and write the survey data as bytes (optional, defaults
+ * to UTF8). Text payloads are encoded in this character set before they are read, and text output
+ * is decoded from it.</li>
+ * </ul>
+ * Response fields: id, success, output (text, or base64 for binary formats as given by
+ * outputEncoding), error (for failed requests) and log (array of log messages).
+ *
+ * Command line usage: <code>ConversionServer [port &lt;n&gt;] [threads &lt;n&gt;] [queue &lt;n&gt;]</code>
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class ConversionServer {
+	/** Default maximum number of requests waiting for a worker */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+	// Maximum number of log messages returned for a request
+	private static final int LOG_CAPACITY = 1000;
+
+	private final ExecutorService workers;
+	// Permits for requests running or waiting, so a client is not read from when the queue is full
+	private final Semaphore requestSlots;
+
+	/**
+	 * Class constructor
+	 *
+	 * @param workerCount   Number of requests converted at the same time
+	 * @param queueCapacity Maximum number of requests waiting for a worker
+	 */
+	public ConversionServer(int workerCount, int queueCapacity) {
+		super();
+		int threads = Math.max(1, workerCount);
+		workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), r -> {
+					Thread thread = new Thread(r, "Conversion worker");
+					thread.setDaemon(true);
+					return thread;
+				});
+		requestSlots = new Semaphore(threads + Math.max(0, queueCapacity));
+	}
+
+	/**
+	 * Serves requests from a client until the end of its input, and returns once responses to
+	 * all its requests have been written.
+	 *
+	 * @param in  Reader to read request lines from
+	 * @param out Writer to write response lines to
+	 * @throws IOException If reading requests fails
+	 */
+	public void serve(Reader in, final Writer out) throws IOException {
+		BufferedReader reader = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+		// Tracks this client's requests in progress, with the client itself as one party
+		final Phaser inProgress = new Phaser(1);
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().length() == 0) {
+					continue;
+				}
+				try {
+					requestSlots.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				final String request = line;
+				inProgress.register();
+				workers.execute(() -> {
+					try {
+						String response = handleRequest(request);
+						synchronized (out) {
+							out.write(response);
+							out.write('\n');
+							out.flush();
+						}
+					} catch (IOException e) {
+						// Client has gone, so there is nobody to report this to
+					} finally {
+						requestSlots.release();
+						inProgress.arriveAndDeregister();
+					}
+				});
+			}
+		} finally {
+			inProgress.arriveAndAwaitAdvance();
+		}
+	}
+
+	/**
+	 * Accepts connections on a local port, serving each on its own thread, until the thread
+	 * calling this is interrupted or the socket fails.
+	 *
+	 * @param port Port number to listen on, on the loopback address only
+	 * @throws IOException If the port could not be opened
+	 */
+	public void listen(int port) throws IOException {
+		ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		try {
+			while (Thread.currentThread().isInterrupted() == false) {
+				final Socket client = serverSocket.accept();
+				Thread session = new Thread(() -> {
+					try {
+						serve(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8),
+								new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8));
+					} catch (IOException e) {
+						// Connection dropped by client
+					} finally {
+						try {
+							client.close();
+						} catch (IOException e) {
+							// Already closed
+						}
+					}
+				}, "Conversion client " + client.getPort());
+				session.setDaemon(true);
+				session.start();
+			}
+		} finally {
+			serverSocket.close();
+		}
+	}
+
+	/**
+	 * Stops the worker threads once requests already accepted have been converted
+	 */
+	public void shutdown() {
+		workers.shutdown();
+	}
+
+	/**
+	 * Converts the survey data in a request
+	 *
+	 * @param requestLine The request, as a JSON object
+	 * @return The response, as a JSON object on a single line
+	 */
+	public String handleRequest(String requestLine) {
+		Object id = null;
+		List<String> log = new ArrayList<String>();
+		StringBuilder response = new StringBuilder();
+		try {
+			Map<String, Object> request = parseJsonObject(requestLine);
+			Object requestId = request.get("id");
+			if (requestId != null && requestId instanceof String == false && requestId instanceof Number == false) {
+				throw new ParseException("Request field 'id' must be a string or number", 0);
+			}
+			id = requestId;
+			SurveyDataInputFormats inputFormat = parseInputFormat(requiredString(request, "inputFormat"));
+			SurveyDataOutputFormats outputFormat = parseOutputFormat(requiredString(request, "outputFormat"));
+			ConversionOptions.Builder options = ConversionOptions.builder()
+					.splays(parseSplaysOption((String) request.get("splays")))
+					.generateLRUD(Boolean.TRUE.equals(request.get("lrud")));
+			if (request.get("charset") instanceof String) {
+				options.charSetEncoding((String) request.get("charset"));
+			}
+			ConversionOptions conversionOptions = options.build();
+			Charset charset = Charset.forName(conversionOptions.getCharSetEncoding());
+
+			String payload = requiredString(request, "payload");
+			byte[] payloadBytes;
+			if ("base64".equals(request.get("payloadEncoding"))) {
+				payloadBytes = Base64.getDecoder().decode(payload);
+			} else {
+				payloadBytes = payload.getBytes(charset);
+			}
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			ConversionResult result = CaveConverter.convert(new ByteArrayInputStream(payloadBytes), inputFormat,
+					output, outputFormat, conversionOptions);
+			for (ConversionResult.Diagnostic diagnostic : result.getDiagnostics()) {
+				if (log.size() < LOG_CAPACITY) {
+					log.add(diagnostic.toString());
+				}
+			}
+			if (result.isSuccess() == false) {
+				throw new ParseException(result.getErrorMessage(), 0);
+			}
+
+			startResponse(response, id, true);
+			if (CaveConverter.isBinaryFormat(outputFormat)) {
+				response.append(",\"outputEncoding\":\"base64\",\"output\":");
+				appendJsonString(response, Base64.getEncoder().encodeToString(output.toByteArray()));
+			} else {
+				response.append(",\"outputEncoding\":\"text\",\"output\":");
+				appendJsonString(response, new String(output.toByteArray(), charset));
+			}
+		} catch (ParseException | RuntimeException e) {
+			response.setLength(0);
+			startResponse(response, id, false);
+			response.append(",\"error\":");
+			appendJsonString(response, e.getClass().getSimpleName() + ": " + e.getMessage());
+		}
+		response.append(",\"log\":[");
+		for (int i = 0; i < log.size(); i++) {
+			if (i > 0) {
+				response.append(',');
+			}
+			appendJsonString(response, log.get(i));
+		}
+		response.append("]}");
+		return response.toString();
+	}
+
+	private static void startResponse(StringBuilder response, Object id, boolean success) {
+		response.append("{\"id\":");
+		if (id instanceof String) {
+			appendJsonString(response, (String) id);
+		} else {
+			response.append(id);
+		}
+		response.append(",\"success\":").append(success);
+	}
+
+	private static String requiredString(Map<String, Object> request, String field) throws ParseException {
+		Object value = request.get(field);
+		if (value instanceof String == false) {
+			throw new ParseException("Request field '" + field + "' is missing or not a string", 0);
+		}
+		return (String) value;
+	}
+
+	private static SurveyDataInputFormats parseInputFormat(String format) throws ParseException {
+		if (format.length() == 1) {
+			return UtilityFunctions.inputDataFormatFromLetterCode(format.charAt(0));
+		}
+		for (SurveyDataInputFormats value : SurveyDataInputFormats.values()) {
+			if (value.name().equalsIgnoreCase(format)) {
+				return value;
+			}
+		}
+		throw new ParseException("Unknown input format: " + format, 0);
+	}
+
+	private static SurveyDataOutputFormats parseOutputFormat(String format) throws ParseException {
+		if (format.length() == 1) {
+			return UtilityFunctions.outputDataFormatFromLetterCode(format.charAt(0));
+		}
+		for (SurveyDataOutputFormats value : SurveyDataOutputFormats.values()) {
+			if (value.name().equalsIgnoreCase(format)) {
+				return value;
+			}
+		}
+		throw new ParseException("Unknown output format: " + format, 0);
+	}
+
+	private static CmdlineSplaysOpt parseSplaysOption(String option) throws ParseException {
+		if (option == null || option.equalsIgnoreCase("default")) {
+			return CmdlineSplaysOpt.Default;
+		} else if (option.equalsIgnoreCase("none")) {
+			return CmdlineSplaysOpt.None;
+		} else if (option.equalsIgnoreCase("named")) {
+			return CmdlineSplaysOpt.Named;
+		} else if (option.equalsIgnoreCase("anon")) {
+			return CmdlineSplaysOpt.Anon;
+		}
+		throw new ParseException("Unknown splays option: " + option, 0);
+	}
+
+	/**
+	 * Parses a JSON object whose values are strings, numbers, booleans, null or arrays of these.
+	 * Strings are returned as String, numbers as BigDecimal, booleans as Boolean and arrays as
+	 * List.
+	 *
+	 * @param json The JSON text
+	 * @return Map of field names to values
+	 * @throws ParseException If the text is not a JSON object of this form
+	 */
+	static Map<String, Object> parseJsonObject(String json) throws ParseException {
+		Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		int[] pos = { skipWhitespace(json, 0) };
+		expect(json, pos, '{');
+		if (peek(json, pos) == '}') {
+			pos[0]++;
+		} else {
+			while (true) {
+				String name = readJsonString(json, pos);
+				expect(json, pos, ':');
+				fields.put(name, readJsonValue(json, pos));
+				char next = peek(json, pos);
+				pos[0]++;
+				if (next == '}') {
+					break;
+				} else if (next != ',') {
+					throw new ParseException("Expected , or } in JSON at position " + (pos[0] - 1), pos[0] - 1);
+				}
+			}
+		}
+		if (skipWhitespace(json, pos[0]) < json.length()) {
+			throw new ParseException("Unexpected text after JSON object at position " + pos[0], pos[0]);
+		}
+		return fields;
+	}
+
+	private static Object readJsonValue(String json, int[] pos) throws ParseException {
+		char c = peek(json, pos);
+		if (c == '"') {
+			return readJsonString(json, pos);
+		} else if (c == '[') {
+			pos[0]++;
+			List<Object> values = new ArrayList<Object>();
+			if (peek(json, pos) == ']') {
+				pos[0]++;
+				return values;
+			}
+			while (true) {
+				values.add(readJsonValue(json, pos));
+				char next = peek(json, pos);
+				pos[0]++;
+				if (next == ']') {
+					return values;
+				} else if (next != ',') {
+					throw new ParseException("Expected , or ] in JSON at position " + (pos[0] - 1), pos[0] - 1);
+				}
+			}
+		}
+		int start = pos[0];
+		while (pos[0] < json.length() && ",]} \t\r\n".indexOf(json.charAt(pos[0])) < 0) {
+			pos[0]++;
+		}
+		String literal = json.substring(start, pos[0]);
+		if (literal.equals("true")) {
+			return Boolean.TRUE;
+		} else if (literal.equals("false")) {
+			return Boolean.FALSE;
+		} else if (literal.equals("null")) {
+			return null;
+		}
+		try {
+			return new BigDecimal(literal);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Unsupported JSON value at position " + start, start);
+		}
+	}
+
+	private static String readJsonString(String json, int[] pos) throws ParseException {
+		expect(json, pos, '"');
+		StringBuilder value = new StringBuilder();
+		while (pos[0] < json.length()) {
+			char c = json.charAt(pos[0]++);
+			if (c == '"') {
+				return value.toString();
+			} else if (c == '\\' && pos[0] < json.length()) {
+				char escaped = json.charAt(pos[0]++);
+				switch (escaped) {
+					case 'n':
+						value.append('\n');
+						break;
+					case 'r':
+						value.append('\r');
+						break;
+					case 't':
+						value.append('\t');
+						break;
+					case 'b':
+						value.append('\b');
+						break;
+					case 'f':
+						value.append('\f');
+						break;
+					case 'u':
+						if (pos[0] + 4 > json.length()) {
+							throw new ParseException("Incomplete unicode escape in JSON", pos[0]);
+						}
+						try {
+							value.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+						} catch (NumberFormatException e) {
+							throw new ParseException("Invalid unicode escape in JSON", pos[0]);
+						}
+						pos[0] += 4;
+						break;
+					default:
+						value.append(escaped);
+				}
+			} else {
+				value.append(c);
+			}
+		}
+		throw new ParseException("Unterminated string in JSON", pos[0]);
+	}
+
+	private static void expect(String json, int[] pos, char expected) throws ParseException {
+		if (peek(json, pos) != expected) {
+			throw new ParseException("Expected " + expected + " in JSON at position " + pos[0], pos[0]);
+		}
+		pos[0]++;
+	}
+
+	private static char peek(String json, int[] pos) throws ParseException {
+		pos[0] = skipWhitespace(json, pos[0]);
+		if (pos[0] >= json.length()) {
+			throw new ParseException("Unexpected end of JSON", pos[0]);
+		}
+		return json.charAt(pos[0]);
+	}
+
+	private static int skipWhitespace(String json, int pos) {
+		while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Appends a string to a JSON document as a quoted and escaped JSON string
+	 */
+	static void appendJsonString(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					json.append("\\\"");
+					break;
+				case '\\':
+					json.append("\\\\");
+					break;
+				case '\n':
+					json.append("\\n");
+					break;
+				case '\r':
+					json.append("\\r");
+					break;
+				case '\t':
+					json.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						json.append(String.format("\\u%04x", (int) c));
+					} else {
+						json.append(c);
+					}
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * @param args Command line arguments: [port n] [threads n] [queue n]
+	 */
+	public static void main(String[] args) {
+		int port = -1;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int queue = DEFAULT_QUEUE_CAPACITY;
+		try {
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				int value = Integer.parseInt(args[i + 1]);
+				if (args[i].compareToIgnoreCase("port") == 0) {
+					port = value;
+				} else if (args[i].compareToIgnoreCase("threads") == 0) {
+					threads = value;
+				} else if (args[i].compareToIgnoreCase("queue") == 0) {
+					queue = value;
+				} else {
+					throw new IllegalArgumentException("Unknown option: " + args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid arguments (" + e.getMessage()
+					+ "). Usage: ConversionServer [port <n>] [threads <n>] [queue <n>]");
+			System.exit(BatchConverter.EXIT_USAGE);
+		}
+
+		ConversionServer server = new ConversionServer(threads, queue);
+		try {
+			if (port >= 0) {
+				System.err.println("Conversion server listening on port " + port);
+				server.listen(port);
+			} else {
+				// Standard output carries the responses, so status messages go to standard error
+				server.serve(new InputStreamReader(System.in, StandardCharsets.UTF_8),
+						new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+			}
+		} catch (IOException e) {
+			System.err.println("Conversion server failed: " + e.getMessage());
+			System.exit(1);
+		} finally {
+			server.shutdown();
+		}
+	}
+
+}
@@ -20,6 +20,7 @@ package footleg.cavesurvey.converter;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 /**
  * Logging class for Swing GUI application. Displays error messages in dialog boxes.
@@ -46,8 +47,14 @@ public class DialogMsgLogger extends Logger {
 	 * @param message The message to append to the log
 	 */
 	@Override
-	public void logError(String message) {
-		JOptionPane.showMessageDialog(parent, message, "Error", JOptionPane.ERROR_MESSAGE);
+	public void logError(final String message) {
+		//Errors may be logged by parsers running in a background task, so show dialog on the event thread
+		if ( SwingUtilities.isEventDispatchThread() ) {
+			JOptionPane.showMessageDialog(parent, message, "Error", JOptionPane.ERROR_MESSAGE);
+		}
+		else {
+			SwingUtilities.invokeLater( () -> JOptionPane.showMessageDialog(parent, message, "Error", JOptionPane.ERROR_MESSAGE) );
+		}
 	}
 	
 	@Override
@@ -18,9 +18,15 @@
  */
 package footleg.cavesurvey.converter;
 
+import java.util.function.Supplier;
+
 /**
  * Interface for logging classes. Enables different logging to be used to output message
  * when using tool as command line application or GUI application.
+ * 
+ * Messages have a level. Debug messages are not logged unless a logger enables them. Messages
+ * which are expensive to build can be passed as a Supplier, which is only called if the level of
+ * the message is enabled, so detailed messages cost nothing when they are not logged.
  *  
  * @author      Footleg
  * @version     2017.01.09                                (ISO 8601 YYYY.MM.DD)
@@ -28,6 +34,103 @@ package footleg.cavesurvey.converter;
  * 
  */
 public class Logger {
+	/**
+	 * Importance of a logged message, so loggers can filter out less important messages
+	 */
+	public static enum Level {
+		DEBUG, INFO, ERROR
+	}
+
 	public void logMessage(String message){};
 	public void logError(String message){};
+
+	/**
+	 * @param level The message level to check
+	 * @return True if messages at this level are logged. By default all but debug messages are.
+	 */
+	public boolean isLevelEnabled(Level level) {
+		return level != Level.DEBUG;
+	}
+
+	/**
+	 * Logs a message at a level, if that level is enabled. Errors are passed to logError, and 
+	 * other levels to logMessage.
+	 * @param level The message level
+	 * @param message The message to log
+	 */
+	public void log(Level level, String message) {
+		if ( isLevelEnabled(level) ) {
+			if ( level == Level.ERROR ) {
+				logError(message);
+			}
+			else {
+				logMessage(message);
+			}
+		}
+	}
+
+	/**
+	 * Logs a message at a level, only building the message if that level is enabled
+	 * @param level The message level
+	 * @param message Supplies the message to log
+	 */
+	public void log(Level level, Supplier<String> message) {
+		if ( isLevelEnabled(level) ) {
+			log(level, message.get());
+		}
+	}
+
+	/**
+	 * Logs an information message, only building the message if information messages are logged
+	 * @param message Supplies the message to log
+	 */
+	public void logMessage(Supplier<String> message) {
+		log(Level.INFO, message);
+	}
+
+	/**
+	 * Logs a debug message, only building the message if debug messages are logged
+	 * @param message Supplies the message to log
+	 */
+	public void logDebug(Supplier<String> message) {
+		log(Level.DEBUG, message);
+	}
+
+	/**
+	 * Returns a logger which passes messages to another logger one at a time, so a logger which
+	 * is not thread safe can be used by tasks running on several threads
+	 * @param logger The logger to pass messages to
+	 * @return Logger which synchronizes on the logger passed in
+	 */
+	public static Logger synchronizedLogger(final Logger logger) {
+		return new Logger() {
+			@Override
+			public boolean isLevelEnabled(Level level) {
+				synchronized (logger) {
+					return logger.isLevelEnabled(level);
+				}
+			}
+
+			@Override
+			public void log(Level level, String message) {
+				synchronized (logger) {
+					logger.log(level, message);
+				}
+			}
+
+			@Override
+			public void logMessage(String message) {
+				synchronized (logger) {
+					logger.logMessage(message);
+				}
+			}
+
+			@Override
+			public void logError(String message) {
+				synchronized (logger) {
+					logger.logError(message);
+				}
+			}
+		};
+	}
 }
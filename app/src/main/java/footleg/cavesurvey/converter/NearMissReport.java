@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import java.io.File;
+import java.text.ParseException;
+import java.util.List;
+
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.tools.NearMisses;
+import footleg.cavesurvey.tools.NetworkAdjustment;
+import footleg.cavesurvey.tools.SurveyNetwork;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Reports the places in a survey where a series passes close to a station in another series
+ * without being connected to it, found using {@link NearMisses}. Optionally writes Survex equate
+ * commands for the stations which are close enough to each other that they should probably have
+ * been equated.
+ *
+ * Command line usage:
+ * <pre>
+ * nearmiss &lt;input file&gt; &lt;input format code&gt; [tolerance] [equates &lt;output file&gt;]
+ * </pre>
+ * The tolerance is in metres, and defaults to {@link NearMisses#DEFAULT_TOLERANCE}.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class NearMissReport {
+	/** Exit status when the command line arguments were not valid */
+	public static final int EXIT_USAGE = 2;
+	/** Exit status when the survey could not be read or the equates could not be written */
+	public static final int EXIT_FAILED = 1;
+
+	/**
+	 * Finds the near misses in a survey and logs a report of them
+	 *
+	 * @param survey    The cave survey to check
+	 * @param tolerance Maximum distance in metres between a station and a leg in another series
+	 * @param logger    Logging class to output the report to
+	 * @return The near misses found
+	 */
+	public static NearMisses report(CaveSurvey survey, double tolerance, Logger logger) {
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		new NetworkAdjustment(logger).adjust(network);
+		NearMisses nearMisses = NearMisses.find(network, tolerance);
+
+		logger.logMessage("Found " + nearMisses.getCount() + " places where a series passes within "
+				+ CaveConverter.padNumber(tolerance, 2, 0) + "m of a station in another series.");
+		for (int i = 0; i < nearMisses.getCount(); i++) {
+			int leg = nearMisses.getLeg(i);
+			String msg = network.getStationName(nearMisses.getStation(i)) + " is "
+					+ CaveConverter.padNumber(nearMisses.getLegDistance(i), 2, 0) + "m from leg "
+					+ network.getStationName(network.getLegFrom(leg)) + " to "
+					+ network.getStationName(network.getLegTo(leg)) + ", and "
+					+ CaveConverter.padNumber(nearMisses.getStationDistance(i), 2, 0) + "m from station "
+					+ network.getStationName(nearMisses.getOtherStation(i));
+			if (nearMisses.isEquateSuggested(i)) {
+				msg += " (equate suggested)";
+			}
+			logger.logMessage(msg);
+		}
+		return nearMisses;
+	}
+
+	/**
+	 * Runs a near miss report from command line arguments, the first of which is the nearmiss
+	 * command.
+	 *
+	 * @param args   Command line arguments
+	 * @param logger Logging class to output the report to
+	 * @return Exit status for the application, zero if the report was run
+	 */
+	public static int runFromCommandLine(String[] args, Logger logger) {
+		if (args.length < 3) {
+			logger.logError("Finding near misses requires an input file and input format code. Usage: "
+					+ "nearmiss <input file> <input format code> [tolerance] [equates <output file>]");
+			return EXIT_USAGE;
+		}
+		SurveyDataInputFormats inputFormat;
+		double tolerance = NearMisses.DEFAULT_TOLERANCE;
+		String equatesFilename = null;
+		try {
+			if (args[2].length() != 1) {
+				throw new ParseException("Input format code must be a single character. Argument was '" + args[2]
+						+ "'.", 1);
+			}
+			inputFormat = UtilityFunctions.inputDataFormatFromLetterCode(args[2].charAt(0));
+			for (int i = 3; i < args.length; i++) {
+				if (args[i].compareToIgnoreCase("equates") == 0 && i + 1 < args.length) {
+					equatesFilename = args[++i];
+				} else {
+					tolerance = Double.parseDouble(args[i]);
+				}
+			}
+		} catch (ParseException | NumberFormatException e) {
+			logger.logError(e.getMessage());
+			return EXIT_USAGE;
+		}
+
+		CaveSurvey survey;
+		try {
+			survey = CaveConverter.readSurveyData(new File(args[1]), inputFormat, "UTF8", logger);
+		} catch (ParseException e) {
+			logger.logError("Failed to read survey data: " + e.getMessage());
+			return EXIT_FAILED;
+		}
+		if (survey == null || survey.isEmpty()) {
+			logger.logError("No survey data read from file " + args[1]);
+			return EXIT_FAILED;
+		}
+		NearMisses nearMisses = report(survey, tolerance, logger);
+
+		if (equatesFilename != null) {
+			List<String> equates = nearMisses.getEquateSuggestions();
+			logger.logMessage("Writing " + equates.size() + " suggested equates to file: " + equatesFilename);
+			String error = UtilityFunctions.writeTextFile(equates, equatesFilename, "UTF8");
+			if (error.length() > 0) {
+				logger.logError(error);
+				return EXIT_FAILED;
+			}
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import java.io.File;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.tools.NetworkAdjustment;
+import footleg.cavesurvey.tools.SpatialIndex;
+import footleg.cavesurvey.tools.SurveyNetwork;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Finds the stations in a survey which are near to a station or to a position, once the station
+ * coordinates have been calculated. Stations are found using a spatial index, so the search is
+ * fast even in a very large survey.
+ *
+ * Command line usage:
+ * <pre>
+ * nearby &lt;input file&gt; &lt;input format code&gt; &lt;station name&gt; [radius]
+ * nearby &lt;input file&gt; &lt;input format code&gt; &lt;easting&gt; &lt;northing&gt; &lt;altitude&gt; [radius]
+ * </pre>
+ * Station names are full names including the names of the series the station is in (e.g.
+ * <code>cave.entrance.1</code>). The radius is in metres, and defaults to
+ * {@link #DEFAULT_RADIUS}. The stations found are listed in order of distance.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class NearbyStations {
+	/** Search radius in metres when none is given */
+	public static final double DEFAULT_RADIUS = 10.0;
+	/** Exit status when the command line arguments were not valid */
+	public static final int EXIT_USAGE = 2;
+	/** Exit status when the survey could not be read or the station was not found */
+	public static final int EXIT_FAILED = 1;
+
+	private final SurveyNetwork network;
+	private final SpatialIndex stations;
+
+	/**
+	 * Builds the survey network for a survey, calculates the station coordinates and indexes the
+	 * stations
+	 *
+	 * @param survey The cave survey to search
+	 * @param logger Logging class to output messages from calculating the station coordinates to
+	 */
+	public NearbyStations(CaveSurvey survey, Logger logger) {
+		super();
+		network = SurveyNetwork.build(survey);
+		new NetworkAdjustment(logger).adjust(network);
+		stations = SpatialIndex.forStations(network);
+	}
+
+	/**
+	 * @return The survey network, with calculated station coordinates
+	 */
+	public SurveyNetwork getNetwork() {
+		return network;
+	}
+
+	/**
+	 * Finds the stations within a distance of a position
+	 *
+	 * @param x      Easting of the position
+	 * @param y      Northing of the position
+	 * @param z      Altitude of the position
+	 * @param radius Maximum distance of the stations from the position
+	 * @return Indices of the stations in the survey network, in order of distance
+	 */
+	public List<Integer> findNear(double x, double y, double z, double radius) {
+		int[] found = stations.findWithinDistance(x, y, z, radius);
+		// Sort by distance, packing the distance and station into longs so the sort is on
+		// primitives. Distances are not negative so the order of their bits matches their order.
+		long[] keys = new long[found.length];
+		for (int i = 0; i < found.length; i++) {
+			float distance = (float) stations.distance(found[i], x, y, z);
+			keys[i] = ((long) Float.floatToIntBits(distance) << 32) | found[i];
+		}
+		Arrays.sort(keys);
+		List<Integer> nearby = new ArrayList<Integer>(found.length);
+		for (long key : keys) {
+			nearby.add((int) key);
+		}
+		return nearby;
+	}
+
+	/**
+	 * Finds the stations within a distance of a station, not including the station itself
+	 *
+	 * @param stn    Index of the station in the survey network
+	 * @param radius Maximum distance of the stations from the station
+	 * @return Indices of the stations in the survey network, in order of distance
+	 */
+	public List<Integer> findNear(int stn, double radius) {
+		List<Integer> nearby = findNear(network.getX(stn), network.getY(stn), network.getZ(stn), radius);
+		nearby.remove(Integer.valueOf(stn));
+		return nearby;
+	}
+
+	/**
+	 * Runs a search for nearby stations from command line arguments, the first of which is the
+	 * nearby command.
+	 *
+	 * @param args   Command line arguments
+	 * @param logger Logging class to output the stations found to
+	 * @return Exit status for the application, zero if the search was run
+	 */
+	public static int runFromCommandLine(String[] args, Logger logger) {
+		if (args.length < 4 || args.length > 7) {
+			logger.logError("Finding nearby stations requires an input file, input format code and a station name "
+					+ "or position. Usage: nearby <input file> <input format code> <station name> [radius] or "
+					+ "nearby <input file> <input format code> <easting> <northing> <altitude> [radius]");
+			return EXIT_USAGE;
+		}
+		SurveyDataInputFormats inputFormat;
+		double[] position = null;
+		double radius = DEFAULT_RADIUS;
+		try {
+			if (args[2].length() != 1) {
+				throw new ParseException("Input format code must be a single character. Argument was '" + args[2]
+						+ "'.", 1);
+			}
+			inputFormat = UtilityFunctions.inputDataFormatFromLetterCode(args[2].charAt(0));
+			if (args.length >= 6) {
+				position = new double[] { Double.parseDouble(args[3]), Double.parseDouble(args[4]),
+						Double.parseDouble(args[5]) };
+			}
+			if (args.length == 5 || args.length == 7) {
+				radius = Double.parseDouble(args[args.length - 1]);
+			}
+		} catch (ParseException | NumberFormatException e) {
+			logger.logError(e.getMessage());
+			return EXIT_USAGE;
+		}
+
+		CaveSurvey survey;
+		try {
+			survey = CaveConverter.readSurveyData(new File(args[1]), inputFormat, "UTF8", logger);
+		} catch (ParseException e) {
+			logger.logError("Failed to read survey data: " + e.getMessage());
+			return EXIT_FAILED;
+		}
+		if (survey == null || survey.isEmpty()) {
+			logger.logError("No survey data read from file " + args[1]);
+			return EXIT_FAILED;
+		}
+		NearbyStations search = new NearbyStations(survey, logger);
+		SurveyNetwork network = search.getNetwork();
+
+		List<Integer> nearby;
+		if (position == null) {
+			int stn = network.findStation(args[3]);
+			if (stn < 0) {
+				logger.logError("Station " + args[3] + " was not found in the survey.");
+				return EXIT_FAILED;
+			}
+			position = new double[] { network.getX(stn), network.getY(stn), network.getZ(stn) };
+			nearby = search.findNear(stn, radius);
+			logger.logMessage("Stations within " + CaveConverter.padNumber(radius, 2, 0) + "m of " + args[3] + ":");
+		} else {
+			nearby = search.findNear(position[0], position[1], position[2], radius);
+			logger.logMessage("Stations within " + CaveConverter.padNumber(radius, 2, 0) + "m of "
+					+ CaveConverter.padNumber(position[0], 2, 0) + " " + CaveConverter.padNumber(position[1], 2, 0)
+					+ " " + CaveConverter.padNumber(position[2], 2, 0) + ":");
+		}
+		for (int stn : nearby) {
+			double dx = network.getX(stn) - position[0];
+			double dy = network.getY(stn) - position[1];
+			double dz = network.getZ(stn) - position[2];
+			logger.logMessage(network.getStationName(stn) + " " + CaveConverter.padNumber(network.getX(stn), 2, 0)
+					+ " " + CaveConverter.padNumber(network.getY(stn), 2, 0) + " "
+					+ CaveConverter.padNumber(network.getZ(stn), 2, 0) + " distance "
+					+ CaveConverter.padNumber(Math.sqrt(dx * dx + dy * dy + dz * dz), 2, 0) + "m");
+		}
+		if (nearby.size() == 0) {
+			logger.logMessage("No stations found.");
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Receives progress reports from parsers, writers and processing tasks, and tells them when
+ * the task has been cancelled. This base class ignores progress and is never cancelled, so it
+ * is used where nothing is monitoring a task (e.g. the command line application). The GUI
+ * application overrides it to update a progress bar and cancel long running tasks.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class ProgressMonitor {
+
+	/**
+	 * Reports progress through the current phase of a task. This may be called very often,
+	 * so implementations should be cheap.
+	 *
+	 * @param phase Description of the work being done (e.g. "Parsing lines")
+	 * @param done  Number of items processed so far in this phase
+	 * @param total Total number of items in this phase, or -1 if not known
+	 */
+	public void reportProgress(String phase, int done, int total) {
+	}
+
+	/**
+	 * @return True if the task has been cancelled and should stop
+	 */
+	public boolean isCancelled() {
+		return false;
+	}
+
+	/**
+	 * Reports progress and stops the task if it has been cancelled
+	 *
+	 * @param phase Description of the work being done
+	 * @param done  Number of items processed so far in this phase
+	 * @param total Total number of items in this phase, or -1 if not known
+	 * @throws CancellationException If the task has been cancelled
+	 */
+	public void checkProgress(String phase, int done, int total) {
+		reportProgress(phase, done, total);
+		if (isCancelled()) {
+			throw new CancellationException("Task cancelled during " + phase.toLowerCase() + ".");
+		}
+	}
+
+}
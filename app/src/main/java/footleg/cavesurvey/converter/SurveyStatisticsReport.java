@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.tools.SurveyStatistics;
+import footleg.cavesurvey.tools.SurveyStatistics.Totals;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Reports the statistics for a survey from {@link CaveSurvey#getStatistics()}: the lengths, leg
+ * counts, extent and depth range of the whole survey, of each series and of the series surveyed
+ * on each date. The descriptions of the totals are also used by the GUI.
+ *
+ * Command line usage:
+ * <pre>
+ * stats &lt;input file&gt; &lt;input format code&gt;
+ * </pre>
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SurveyStatisticsReport {
+	/** Exit status when the command line arguments were not valid */
+	public static final int EXIT_USAGE = 2;
+	/** Exit status when the survey could not be read */
+	public static final int EXIT_FAILED = 1;
+
+	/**
+	 * Describes the totals for a survey, series or survey date
+	 *
+	 * @param totals The totals to describe
+	 * @return Lines of text describing the totals
+	 */
+	public static List<String> describe(Totals totals) {
+		List<String> lines = new ArrayList<String>();
+		lines.add("Length: " + metres(totals.getLength()) + " (horizontal " + metres(totals.getHorizontalLength())
+				+ ", vertical " + metres(totals.getVerticalLength()) + ")");
+		String legs = "Legs: " + totals.getLegCount();
+		if (totals.getDuplicateCount() > 0) {
+			legs += ", duplicate: " + totals.getDuplicateCount() + " (" + metres(totals.getDuplicateLength()) + ")";
+		}
+		if (totals.getSurfaceCount() > 0) {
+			legs += ", surface: " + totals.getSurfaceCount() + " (" + metres(totals.getSurfaceLength()) + ")";
+		}
+		legs += ", splays: " + totals.getSplayCount();
+		lines.add(legs);
+		if (totals.hasExtent()) {
+			double[] min = totals.getMin();
+			double[] max = totals.getMax();
+			lines.add("Extent: E " + metres(min[0]) + " to " + metres(max[0]) + ", N " + metres(min[1]) + " to "
+					+ metres(max[1]) + ", Alt " + metres(min[2]) + " to " + metres(max[2]));
+			lines.add("Depth range: " + metres(totals.getDepthRange()));
+		}
+		return lines;
+	}
+
+	/**
+	 * Generates a full statistics report for a survey, with the totals for the whole survey,
+	 * for each series and for each survey date
+	 *
+	 * @param survey The cave survey to report on
+	 * @return Lines of the report
+	 */
+	public static List<String> generateReport(CaveSurvey survey) {
+		SurveyStatistics stats = survey.getStatistics();
+		List<String> lines = new ArrayList<String>();
+		lines.add("Survey contains " + stats.getStationCount() + " stations in " + stats.getSeriesCount() + " series.");
+		lines.addAll(describe(stats.getSurveyTotals()));
+
+		for (int i = 0; i < survey.size(); i++) {
+			addSeriesReport(survey.get(i), "", stats, lines);
+		}
+
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		for (Map.Entry<Date, Totals> entry : stats.getDateTotals().entrySet()) {
+			lines.add("");
+			lines.add("Surveyed on " + dateFormat.format(entry.getKey()));
+			lines.addAll(describe(entry.getValue()));
+		}
+		if (stats.getUndatedTotals().getLegCount() + stats.getUndatedTotals().getSplayCount() > 0) {
+			lines.add("");
+			lines.add("No survey date");
+			lines.addAll(describe(stats.getUndatedTotals()));
+		}
+		return lines;
+	}
+
+	private static void addSeriesReport(SurveySeries series, String parentPath, SurveyStatistics stats,
+			List<String> lines) {
+		String path = (parentPath.length() == 0) ? series.getSeriesName() : parentPath + "." + series.getSeriesName();
+		lines.add("");
+		lines.add("Series: " + path);
+		lines.addAll(describe(stats.getSeriesTotals(series)));
+		for (int i = 0; i < series.innerSeriesCount(); i++) {
+			addSeriesReport(series.getInnerSeries(i), path, stats, lines);
+		}
+	}
+
+	private static String metres(double value) {
+		return CaveConverter.padNumber(value, 2, 0) + "m";
+	}
+
+	/**
+	 * Runs a statistics report from command line arguments, the first of which is the stats
+	 * command.
+	 *
+	 * @param args   Command line arguments
+	 * @param logger Logging class to output the report to
+	 * @return Exit status for the application, zero if the report was run
+	 */
+	public static int runFromCommandLine(String[] args, Logger logger) {
+		if (args.length != 3) {
+			logger.logError("Reporting survey statistics requires an input file and input format code. Usage: "
+					+ "stats <input file> <input format code>");
+			return EXIT_USAGE;
+		}
+		SurveyDataInputFormats inputFormat;
+		try {
+			if (args[2].length() != 1) {
+				throw new ParseException("Input format code must be a single character. Argument was '" + args[2]
+						+ "'.", 1);
+			}
+			inputFormat = UtilityFunctions.inputDataFormatFromLetterCode(args[2].charAt(0));
+		} catch (ParseException e) {
+			logger.logError(e.getMessage());
+			return EXIT_USAGE;
+		}
+
+		CaveSurvey survey;
+		try {
+			survey = CaveConverter.readSurveyData(new File(args[1]), inputFormat, "UTF8", logger);
+		} catch (ParseException e) {
+			logger.logError("Failed to read survey data: " + e.getMessage());
+			return EXIT_FAILED;
+		}
+		if (survey == null || survey.isEmpty()) {
+			logger.logError("No survey data read from file " + args[1]);
+			return EXIT_FAILED;
+		}
+		for (String line : generateReport(survey)) {
+			logger.logMessage(line);
+		}
+		return 0;
+	}
+
+}
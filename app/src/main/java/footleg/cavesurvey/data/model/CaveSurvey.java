@@ -19,10 +19,14 @@
 package footleg.cavesurvey.data.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EventListener;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.event.EventListenerList;
 import javax.swing.event.TreeModelEvent;
@@ -31,11 +35,23 @@ import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
+import footleg.cavesurvey.tools.SurveyStatistics;
 
 /**
  * Class representing a complete cave survey data model. This can consist of
  * one or more cave surveys.
  * 
+ * The model is also the tree model for the GUI tree view. Series show their inner series
+ * followed by their legs, with the legs grouped into pages of {@link LegPage#PAGE_SIZE} legs
+ * for very large series. Child index lookups use an index of the positions of the children held
+ * by each parent node, which the node discards when it is changed, so each lookup takes constant
+ * time however many nodes the tree view queries.
+ * 
+ * Survey statistics are calculated when first requested and held until the model is changed.
+ * Changes made through the model's own methods discard the statistics, but code which changes
+ * the legs or inner series of a series directly must call {@link #invalidateStatistics()}.
+ * 
  * @author Footleg
  * @version 2024.09.24 (ISO 8601 YYYY.MM.DD)
  * @since 1.8 (The Java version used)
@@ -45,6 +61,11 @@ public class CaveSurvey implements TreeModel {
 	private List<SurveySeries> survey;
 	private EventListenerList listenerList = new EventListenerList();
 	private Logger logger;
+	private int batchUpdateDepth = 0;
+	private boolean structureChangePending = false;
+	private SurveyStatistics statistics;
+	// Positions of the top level series, for tree model child index lookups
+	private ChildIndex seriesIndex = new ChildIndex();
 
 	/**
 	 * Class constructor
@@ -84,16 +105,45 @@ public class CaveSurvey implements TreeModel {
 	}
 
 	public boolean add(SurveySeries e) {
+		invalidateStatistics();
 		boolean result = survey.add(e);
+		seriesIndex.invalidate();
 		fireTreeStructureChanged(this);
 		return result;
 	}
 
+	/**
+	 * Starts a batch of changes to the model, during which tree structure change events are
+	 * held back. A single event is fired when the outermost batch ends, so a parser adding
+	 * many series does not cause a tree view to rebuild after each one.
+	 */
+	public void beginBatchUpdate() {
+		batchUpdateDepth++;
+	}
+
+	/**
+	 * Ends a batch of changes started by {@link #beginBatchUpdate()}, firing a tree structure
+	 * change event if the structure changed during the batch.
+	 */
+	public void endBatchUpdate() {
+		if (batchUpdateDepth > 0) {
+			batchUpdateDepth--;
+			if (batchUpdateDepth == 0 && structureChangePending) {
+				structureChangePending = false;
+				fireTreeStructureChanged(this);
+			}
+		}
+	}
+
 	public boolean remove(SurveySeries o) {
+		invalidateStatistics();
+		seriesIndex.invalidate();
 		return survey.remove(o);
 	}
 
 	public void clear() {
+		invalidateStatistics();
+		seriesIndex.invalidate();
 		survey.clear();
 	}
 
@@ -102,17 +152,81 @@ public class CaveSurvey implements TreeModel {
 	}
 
 	public SurveySeries set(int index, SurveySeries element) {
+		invalidateStatistics();
+		seriesIndex.invalidate();
 		return survey.set(index, element);
 	}
 
 	public void add(int index, SurveySeries element) {
+		invalidateStatistics();
+		seriesIndex.invalidate();
 		survey.add(index, element);
 	}
 
 	public SurveySeries remove(int index) {
+		invalidateStatistics();
+		seriesIndex.invalidate();
 		return survey.remove(index);
 	}
 
+	/**
+	 * Gets the statistics for the survey, calculating them if the survey has changed since they
+	 * were last calculated.
+	 * 
+	 * @return Statistics for the survey
+	 */
+	public synchronized SurveyStatistics getStatistics() {
+		if (statistics == null) {
+			statistics = SurveyStatistics.calculate(this);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Gets the statistics for the survey if they have already been calculated, without
+	 * calculating them. Lets the GUI show the statistics without calculating them on the event
+	 * dispatch thread.
+	 * 
+	 * @return Statistics for the survey, or null if they have not been calculated since the
+	 *         survey was last changed
+	 */
+	public synchronized SurveyStatistics getCalculatedStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Discards the survey statistics, so they are calculated again when next requested. This
+	 * must be called after changing the legs or inner series of a series in the survey directly.
+	 */
+	public synchronized void invalidateStatistics() {
+		statistics = null;
+	}
+
+	/**
+	 * Replaces a series in the model with another, notifying tree model listeners that just
+	 * this node has changed.
+	 * 
+	 * @param parentPath  Path from the root of the tree to the parent of the series being
+	 *                    replaced (the cave survey itself for a top level series)
+	 * @param index       Index of the series in its parent's inner series
+	 * @param replacement The series to put in place of the existing one
+	 * @return The series which was replaced
+	 */
+	public SurveySeries replaceSeries(Object[] parentPath, int index, SurveySeries replacement) {
+		Object parent = parentPath[parentPath.length - 1];
+		SurveySeries replaced;
+		if (parent instanceof CaveSurvey) {
+			replaced = survey.set(index, replacement);
+			seriesIndex.invalidate();
+		} else {
+			replaced = ((SurveySeries) parent).getInnerSeriesList().set(index, replacement);
+			((SurveySeries) parent).invalidateChildPositions();
+		}
+		invalidateStatistics();
+		fireTreeNodesReplaced(parentPath, index, replaced, replacement);
+		return replaced;
+	}
+
 	public ListIterator<SurveySeries> listIterator() {
 		return survey.listIterator();
 	}
@@ -125,13 +239,56 @@ public class CaveSurvey implements TreeModel {
 	 * Generates LRUD data from splays for all legs in all series
 	 */
 	public void generateLRUDfromSplays() {
-		// Loop through all series
-		ListIterator<SurveySeries> seriesIterator = survey.listIterator();
-		while (seriesIterator.hasNext()) {
-			SurveySeries series = seriesIterator.next();
+		generateLRUDfromSplays(new ProgressMonitor());
+	}
 
-			// Process series and then recursively call inner series
-			processLRUDfromSplays(series);
+	/**
+	 * Generates LRUD data from splays for all legs in all series, reporting the number of
+	 * series processed
+	 * 
+	 * @param progress Progress monitor to report to and check for cancellation
+	 */
+	public void generateLRUDfromSplays(ProgressMonitor progress) {
+		generateLRUDfromSplays(progress, 1);
+	}
+
+	/**
+	 * Generates LRUD data from splays for all legs in all series, reporting the number of
+	 * series processed. LRUD data for each series only depends on the legs in that series, so
+	 * series can be processed on several threads at the same time, giving the same LRUD data as
+	 * processing them one at a time. Messages are passed to the logger one at a time, and progress
+	 * is reported one series at a time.
+	 * 
+	 * @param progress    Progress monitor to report to and check for cancellation
+	 * @param parallelism Number of threads to use, or 1 to process all series on the calling thread
+	 */
+	public void generateLRUDfromSplays(ProgressMonitor progress, int parallelism) {
+		AtomicInteger seriesDone = new AtomicInteger();
+		if (parallelism > 1) {
+			// Process each series as a task on a pool of threads
+			Logger taskLogger = Logger.synchronizedLogger(logger);
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pool.invoke(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						invokeAll(lrudTasks(survey, taskLogger, progress, seriesDone));
+					}
+				});
+			} finally {
+				pool.shutdown();
+			}
+		} else {
+			// Loop through all series
+			ListIterator<SurveySeries> seriesIterator = survey.listIterator();
+			while (seriesIterator.hasNext()) {
+				SurveySeries series = seriesIterator.next();
+
+				// Process series and then recursively call inner series
+				processLRUDfromSplays(series, progress, seriesDone);
+			}
 		}
 	}
 
@@ -139,11 +296,14 @@ public class CaveSurvey implements TreeModel {
 	 * Process the legs in this series to generate LRUD data from splays,
 	 * then loop through all inner series recursively to process them too.
 	 * 
-	 * @param series The survey series to process
+	 * @param series     The survey series to process
+	 * @param progress   Progress monitor to report to and check for cancellation
+	 * @param seriesDone Count of series processed so far, updated by this method
 	 */
-	private void processLRUDfromSplays(SurveySeries series) {
+	private void processLRUDfromSplays(SurveySeries series, ProgressMonitor progress, AtomicInteger seriesDone) {
 		// Process series and then recursively call inner series
 		series.generateLRUDFromSplays(logger);
+		progress.checkProgress("Generating LRUD", seriesDone.incrementAndGet(), -1);
 
 		// TODO Fix the way the option to remove splays used for LRUD is triggered, and
 		// don't do it by default.
@@ -153,8 +313,46 @@ public class CaveSurvey implements TreeModel {
 		ListIterator<SurveySeries> seriesIterator = series.getInnerSeriesList().listIterator();
 		while (seriesIterator.hasNext()) {
 			SurveySeries innerSeries = seriesIterator.next();
-			processLRUDfromSplays(innerSeries);
+			processLRUDfromSplays(innerSeries, progress, seriesDone);
+		}
+	}
+
+	/**
+	 * Creates tasks to generate LRUD data from splays for a list of series. Each task processes
+	 * its series while the tasks for the inner series of that series run.
+	 * 
+	 * @param seriesList The survey series to process
+	 * @param taskLogger Logger which is safe to call from several threads
+	 * @param progress   Progress monitor to report to and check for cancellation
+	 * @param seriesDone Count of series processed so far, updated by the tasks
+	 * @return A task for each series in the list
+	 */
+	private List<RecursiveAction> lrudTasks(List<SurveySeries> seriesList, Logger taskLogger,
+			ProgressMonitor progress, AtomicInteger seriesDone) {
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(seriesList.size());
+		for (SurveySeries series : seriesList) {
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					List<RecursiveAction> innerTasks = lrudTasks(series.getInnerSeriesList(), taskLogger, progress,
+							seriesDone);
+					for (RecursiveAction task : innerTasks) {
+						task.fork();
+					}
+					series.generateLRUDFromSplays(taskLogger);
+					int done = seriesDone.incrementAndGet();
+					synchronized (progress) {
+						progress.checkProgress("Generating LRUD", done, -1);
+					}
+					for (RecursiveAction task : innerTasks) {
+						task.join();
+					}
+				}
+			});
 		}
+		return tasks;
 	}
 
 	/*
@@ -183,11 +381,17 @@ public class CaveSurvey implements TreeModel {
 			if (index < series.innerSeriesCount()) {
 				// Return an inner series
 				return series.getInnerSeries(index);
+			} else if (LegPage.isPaged(series.legCount())) {
+				// Return a page of legs
+				int firstLeg = (index - series.innerSeriesCount()) * LegPage.PAGE_SIZE;
+				return new LegPage(series, firstLeg, Math.min(LegPage.PAGE_SIZE, series.legCount() - firstLeg));
 			} else {
 				// Return a survey leg
 				int legIdx = index - series.innerSeriesCount();
 				return series.getLegRaw(legIdx);
 			}
+		} else if (parent instanceof LegPage) {
+			return ((LegPage) parent).getLeg(index);
 		} else {
 			return null;
 		}
@@ -200,7 +404,13 @@ public class CaveSurvey implements TreeModel {
 			return size();
 		} else if (parent instanceof SurveySeries) {
 			SurveySeries series = (SurveySeries) parent;
-			return series.getInnerSeriesList().size() + series.legCount();
+			int legNodes = series.legCount();
+			if (LegPage.isPaged(legNodes)) {
+				legNodes = LegPage.pageCount(legNodes);
+			}
+			return series.getInnerSeriesList().size() + legNodes;
+		} else if (parent instanceof LegPage) {
+			return ((LegPage) parent).getLegCount();
 		} else {
 			return 0;
 		}
@@ -245,12 +455,41 @@ public class CaveSurvey implements TreeModel {
 	@Override
 	public int getIndexOfChild(Object parent, Object child) {
 		// Look up index of the specified child class instance in the specified parent
-		// instance
-		if (parent instanceof SurveySeries) {
-			return ((SurveySeries) parent).getIndexOfChild(child);
-		} else {
+		// instance, using the index of child positions held by the parent
+		if (parent == null || child == null) {
 			return -1;
 		}
+		if (parent instanceof CaveSurvey) {
+			return seriesIndex.indexOf(child, survey, Collections.emptyList());
+		} else if (parent instanceof SurveySeries) {
+			SurveySeries series = (SurveySeries) parent;
+			if (child instanceof LegPage) {
+				// Pages are created on demand, so look up an equal page by its position
+				LegPage page = (LegPage) child;
+				if (page.getSeries() == series && page.getFirstLeg() % LegPage.PAGE_SIZE == 0) {
+					int pageIdx = series.innerSeriesCount() + page.getFirstLeg() / LegPage.PAGE_SIZE;
+					if (pageIdx < getChildCount(series) && page.equals(getChild(series, pageIdx))) {
+						return pageIdx;
+					}
+				}
+				return -1;
+			}
+			int position = series.getChildPosition(child);
+			if (position >= series.innerSeriesCount() && LegPage.isPaged(series.legCount())) {
+				// Legs are children of their page rather than of the series
+				return -1;
+			}
+			return position;
+		} else if (parent instanceof LegPage) {
+			LegPage page = (LegPage) parent;
+			int position = page.getSeries().getChildPosition(child);
+			int legIdx = position - page.getSeries().innerSeriesCount();
+			if (position < 0 || legIdx < page.getFirstLeg() || legIdx >= page.getFirstLeg() + page.getLegCount()) {
+				return -1;
+			}
+			return legIdx - page.getFirstLeg();
+		}
+		return -1;
 	}
 
 	@Override
@@ -264,12 +503,29 @@ public class CaveSurvey implements TreeModel {
 	}
 
 	protected void fireTreeStructureChanged(Object oldRoot) {
+		seriesIndex.invalidate();
+		invalidateStatistics();
+		if (batchUpdateDepth > 0) {
+			structureChangePending = true;
+			return;
+		}
 		TreeModelEvent event = new TreeModelEvent(this, new Object[] { oldRoot });
 		EventListener[] listeners = listenerList.getListeners(TreeModelListener.class);
 		for (int i = 0; i < listeners.length; i++)
 			((TreeModelListener) listeners[i]).treeStructureChanged(event);
 	}
 
+	protected void fireTreeNodesReplaced(Object[] parentPath, int index, Object oldChild, Object newChild) {
+		int[] indices = new int[] { index };
+		TreeModelEvent removed = new TreeModelEvent(this, parentPath, indices, new Object[] { oldChild });
+		TreeModelEvent inserted = new TreeModelEvent(this, parentPath, indices, new Object[] { newChild });
+		EventListener[] listeners = listenerList.getListeners(TreeModelListener.class);
+		for (int i = 0; i < listeners.length; i++) {
+			((TreeModelListener) listeners[i]).treeNodesRemoved(removed);
+			((TreeModelListener) listeners[i]).treeNodesInserted(inserted);
+		}
+	}
+
 	/**
 	 * Provides a string representation of a cave survey to display in a tree view
 	 * of the data model
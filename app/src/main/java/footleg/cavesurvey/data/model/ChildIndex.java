@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.model;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the positions of the child nodes of a tree model node, kept by the node itself so
+ * looking up each child takes constant time however many nodes the tree has. The children are
+ * the items of one list followed by the items of a second list, and are found by identity.
+ *
+ * The owner of the lists discards the index when it changes them. Changes made to the lists
+ * directly are detected when a child is looked up, by the number of children changing or by a
+ * child no longer being at its indexed position, and the index is then built again.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+class ChildIndex {
+	private Map<Object, Integer> positions;
+
+	/**
+	 * Discards the index, so it is built again when a child is next looked up
+	 */
+	void invalidate() {
+		positions = null;
+	}
+
+	/**
+	 * Looks up the position of a child in the items of two lists
+	 *
+	 * @param child  The child to find
+	 * @param first  The first list of children
+	 * @param second The list of children which follow the first list
+	 * @return The position of the child, counting the items in the first list before those in
+	 *         the second list, or -1 if it is in neither list
+	 */
+	int indexOf(Object child, List<?> first, List<?> second) {
+		Map<Object, Integer> index = positions;
+		if (index == null || index.size() != first.size() + second.size()) {
+			index = build(first, second);
+		}
+		Integer position = index.get(child);
+		if (position != null && itemAt(position, first, second) != child) {
+			// The lists were changed directly, so the index is out of date
+			index = build(first, second);
+			position = index.get(child);
+		}
+		return (position == null) ? -1 : position;
+	}
+
+	private Map<Object, Integer> build(List<?> first, List<?> second) {
+		Map<Object, Integer> index = new IdentityHashMap<Object, Integer>(first.size() + second.size());
+		for (int i = 0; i < first.size(); i++) {
+			index.put(first.get(i), i);
+		}
+		for (int i = 0; i < second.size(); i++) {
+			index.put(second.get(i), first.size() + i);
+		}
+		positions = index;
+		return index;
+	}
+
+	private static Object itemAt(int position, List<?> first, List<?> second) {
+		if (position < first.size()) {
+			return first.get(position);
+		} else if (position - first.size() < second.size()) {
+			return second.get(position - first.size());
+		}
+		return null;
+	}
+}
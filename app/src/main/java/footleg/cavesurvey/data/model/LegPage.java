@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.model;
+
+/**
+ * Tree node grouping a range of the legs in a survey series, so series with very many legs are
+ * shown in a tree view as pages of legs rather than as one huge list. Pages are created on demand
+ * by the tree model, and two pages for the same range of legs in the same series are equal, so a
+ * tree view keeps track of expanded pages when the page objects are created again.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class LegPage {
+	/**
+	 * Number of legs in each page. Series with no more legs than this show their legs directly.
+	 */
+	public static final int PAGE_SIZE = 1000;
+
+	private final SurveySeries series;
+	private final int firstLeg;
+	private final int legCount;
+
+	/**
+	 * Class constructor
+	 *
+	 * @param series   The series holding the legs
+	 * @param firstLeg Index of the first leg in the page
+	 * @param legCount Number of legs in the page
+	 */
+	public LegPage(SurveySeries series, int firstLeg, int legCount) {
+		super();
+		this.series = series;
+		this.firstLeg = firstLeg;
+		this.legCount = legCount;
+	}
+
+	public SurveySeries getSeries() {
+		return series;
+	}
+
+	public int getFirstLeg() {
+		return firstLeg;
+	}
+
+	public int getLegCount() {
+		return legCount;
+	}
+
+	/**
+	 * @param index Index of a leg within this page
+	 * @return The leg from the series
+	 */
+	public SurveyLeg getLeg(int index) {
+		return series.getLegRaw(firstLeg + index);
+	}
+
+	/**
+	 * @param legCount Number of legs in a series
+	 * @return True if the legs of a series with this many legs are shown in pages
+	 */
+	public static boolean isPaged(int legCount) {
+		return legCount > PAGE_SIZE;
+	}
+
+	/**
+	 * @param legCount Number of legs in a series
+	 * @return Number of pages needed to show all the legs of a series
+	 */
+	public static int pageCount(int legCount) {
+		return (legCount + PAGE_SIZE - 1) / PAGE_SIZE;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof LegPage) {
+			LegPage other = (LegPage) obj;
+			return other.series == series && other.firstLeg == firstLeg && other.legCount == legCount;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(series) * 31 + firstLeg;
+	}
+
+	/**
+	 * Provides a string representation of the page to display in a tree view of the data model
+	 *
+	 * @return String representation of the page
+	 */
+	@Override
+	public String toString() {
+		return "Legs " + (firstLeg + 1) + "-" + (firstLeg + legCount);
+	}
+
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.model;
+
+import java.util.List;
+
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+
+/**
+ * The splay shots measured from a station, held as arrays of numbers so that LRUD generation can
+ * classify all the shots without calling the getters and unit conversions of each splay leg
+ * repeatedly. The horizontal direction of each shot is held as a unit vector, so the horizontal
+ * extent of every shot along a direction is found with a dot product.
+ *
+ * @author      Footleg
+ * @version     2026.10.18                                (ISO 8601 YYYY.MM.DD)
+ * @since       1.8                                       (The Java version used)
+ */
+final class StationSplays {
+	final List<SurveyLeg> legs;
+	final int count;
+	final double[] compass;
+	final double[] clino;
+	final double[] length;
+	final double[] horizontalLength;
+	final double[] verticalLength;
+	private final double[] east;
+	private final double[] north;
+
+	/**
+	 * @param splays Splay legs measured from the same station
+	 */
+	StationSplays( List<SurveyLeg> splays ) {
+		legs = splays;
+		count = splays.size();
+		compass = new double[count];
+		clino = new double[count];
+		length = new double[count];
+		horizontalLength = new double[count];
+		verticalLength = new double[count];
+		east = new double[count];
+		north = new double[count];
+		for ( int i = 0; i < count; i++ ) {
+			SurveyLeg splay = splays.get(i);
+			compass[i] = splay.getCompass(BearingUnit.Degrees);
+			clino[i] = splay.getClino(GradientUnit.Degrees);
+			length[i] = splay.getLength(LengthUnit.Metres);
+			horizontalLength[i] = splay.getHorizontalLength();
+			verticalLength[i] = splay.getVerticalLength();
+			double bearing = Math.toRadians( compass[i] );
+			east[i] = Math.sin( bearing );
+			north[i] = Math.cos( bearing );
+		}
+	}
+
+	/**
+	 * Calculates the horizontal distance every shot extends along a bearing. Shots which point
+	 * away from the bearing have a negative extent.
+	 * @param bearing The direction to measure the extents along, in degrees
+	 * @param extents Array to hold the extent of each shot, with at least one element per shot
+	 */
+	void extentsAlong( double bearing, double[] extents ) {
+		double radians = Math.toRadians( bearing );
+		double axisEast = Math.sin( radians );
+		double axisNorth = Math.cos( radians );
+		for ( int i = 0; i < count; i++ ) {
+			extents[i] = horizontalLength[i] * ( east[i] * axisEast + north[i] * axisNorth );
+		}
+	}
+}
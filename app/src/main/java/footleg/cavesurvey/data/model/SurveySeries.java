@@ -129,6 +129,8 @@ public class SurveySeries {
 	private GradientUnit gradientUnit = GradientUnit.Degrees;
 	private List<String> dataOrder;
 	private List<String> dataOrder2;
+	//Positions of the inner series and legs, for tree model child index lookups
+	private ChildIndex childIndex = new ChildIndex();
 
 	/**
 	 * Create a Survey Series with the name given
@@ -184,11 +186,13 @@ public class SurveySeries {
 	public void addLeg(SurveyLeg leg) {
 		//Create duplicate of leg to break reference
 		this.legs.add(leg.clone());
+		childIndex.invalidate();
 	}
 
 	public void addLeg(SurveyLeg leg, int position) {
 		//Create duplicate of leg to break reference
 		this.legs.add( position, leg.clone() );
+		childIndex.invalidate();
 	}
 	
 	public int legCount() {
@@ -293,7 +297,14 @@ public class SurveySeries {
 			return "" + stn;
 		}
 	}
-	
+
+	/**
+	 * @return The number of station names which have been mapped to negative numbers in this series
+	 */
+	public int getMappedStnNameCount() {
+		return stnRenameCache.size();
+	}
+
 	//Apply instrument calibration corrections to all measurements in returned leg
 	public SurveyLeg getLegCorrected(int index) {
 		SurveyLeg originalLeg = legs.get(index);
@@ -307,12 +318,16 @@ public class SurveySeries {
 			compass -= (compassCalibration + declination);
 		}
 		correctedLeg.setCompass( compass, BearingUnit.Degrees );
-		double clino = originalLeg.getClino(GradientUnit.Degrees);
-		if ( clino >= -90 && clino <= 180 ) {
-			//Apply calibration only to valid clino
-			clino = (clino - clinoCalibration) * clinoCalScaleFactor;
+		//Diving legs have depths instead of a clino reading, and setting the clino would make the
+		//corrected leg a normal leg
+		if ( originalLeg.isDiving() == false ) {
+			double clino = originalLeg.getClino(GradientUnit.Degrees);
+			if ( clino >= -90 && clino <= 180 ) {
+				//Apply calibration only to valid clino
+				clino = (clino - clinoCalibration) * clinoCalScaleFactor;
+			}
+			correctedLeg.setClino( clino, GradientUnit.Degrees );
 		}
-		correctedLeg.setClino( clino, GradientUnit.Degrees );
 		
 		//Don't correct LRUD using tape calibration as these are assumed to be estimated by eye
 		return correctedLeg;
@@ -324,6 +339,7 @@ public class SurveySeries {
 	
 	public void addSeries(SurveySeries series) {
 		this.innerSeries.add(series);
+		childIndex.invalidate();
 	}
 	
 	public int innerSeriesCount() {
@@ -375,6 +391,24 @@ public class SurveySeries {
 		return matchIndex;
 	}
 
+	/**
+	 * Look up the position of an inner series or leg in this series, counting the inner series
+	 * before the legs. Used by the tree model, which shows the children of a series in this order.
+	 * @param child The inner series or leg to get the position of
+	 * @return The position of the child in this series, or -1 if it is not in this series
+	 */
+	int getChildPosition( Object child ) {
+		return childIndex.indexOf( child, innerSeries, legs );
+	}
+
+	/**
+	 * Discards the positions of the inner series and legs held for the tree model. Must be called
+	 * when an inner series or leg is replaced in the lists directly.
+	 */
+	void invalidateChildPositions() {
+		childIndex.invalidate();
+	}
+
 	public void addLink(String series1Path, SurveyStation stn1, String series2Path, SurveyStation stn2 ) {
 		//Add link to array
 		SeriesLink link = new SeriesLink(series1Path, stn1, series2Path, stn2 );
@@ -534,6 +568,7 @@ public class SurveySeries {
 	}
 	
 	public SurveyLeg removeLeg(int index){
+		childIndex.invalidate();
 		return legs.remove(index);
 	}
 	
@@ -643,6 +678,8 @@ public class SurveySeries {
 		while ( spGroupsIter.hasNext() ) {
 			List<SurveyLeg> splaysGroup = spGroupsIter.next();
 			String stnName = splaysGroup.get(0).getFromStn().getName();
+			//Read the splays once for all the legs from this station
+			StationSplays splays = new StationSplays( splaysGroup );
 			
 			ListIterator<SurveyLeg> legsIter = caveLegs.listIterator();
 			int caveLegIdx = -1;
@@ -651,7 +688,7 @@ public class SurveySeries {
 				caveLegIdx++;
 				if ( leg.getFromStn().getName().compareTo(stnName) == 0 ) {
 					//Generate LRUD data for leg, using the splays starting from that leg from station
-					generateLRUDForLeg( leg, splaysGroup, previousLegGroups.get(caveLegIdx), logger );
+					generateLRUDForLeg( leg, splays, previousLegGroups.get(caveLegIdx), logger );
 					//Store station name of splays group that was used
 					stnsUsed.add(stnName);
 					//Remove leg from list now it has been processed
@@ -732,7 +769,7 @@ public class SurveySeries {
 						}
 					}
 					//Generate LRUD data for leg, using the splays starting from that leg from station
-					generateLRUDForLeg( tempLrudLeg, splaysGroup, otherLegs, logger );
+					generateLRUDForLeg( tempLrudLeg, new StationSplays( splaysGroup ), otherLegs, logger );
 					//Create an LRUD object to hold the LRUD data and copy data into it
 					ToStnLRUD newLrud = new ToStnLRUD();
 					newLrud.setFromStn( tempLrudLeg.getFromStn() );
@@ -754,24 +791,22 @@ public class SurveySeries {
 
 	/**
 	 * Generates a Left, Right, Up and Down dimension at the from station for a survey leg
-	 * using the splays recorded at that station, and stores them in the leg.
+	 * using the splays recorded at that station, and stores them in the leg. All the splays are
+	 * classified in a single pass, keeping the best shot for each dimension as they are found.
 	 * @param leg The survey leg to generate LRUD data for (at the From station)
-	 * @param splaysGroup A list of splay legs measured from the From station of the leg
+	 * @param splays The splay legs measured from the From station of the leg
 	 * @param otherLegs A list of survey legs arriving at the same station as the From station of the leg
 	 */
-	private void generateLRUDForLeg( SurveyLeg masterLeg, List<SurveyLeg> splayShots, List<SurveyLeg> otherLegs, Logger logger ) {
+	private void generateLRUDForLeg( SurveyLeg masterLeg, StationSplays splays, List<SurveyLeg> otherLegs, Logger logger ) {
 		int bearingTolerance = 3;
-		List<SurveyLeg> leftShots = new ArrayList<SurveyLeg>();
-		List<SurveyLeg> rightShots = new ArrayList<SurveyLeg>();
-		List<SurveyLeg> upShots = new ArrayList<SurveyLeg>();
-		List<SurveyLeg> downShots = new ArrayList<SurveyLeg>();
+		double masterBearing = masterLeg.getCompass(BearingUnit.Degrees);
 		
 		//Determine best previous leg (use leg with closest bearing to onward leg)
 		double bestPrevBearing = 360.0;
 		int bestPrevLegIdx = -1;
 		for ( int i = 0; i < otherLegs.size(); i++ ) {
 			//Looking for bearing closest to master leg bearing
-			double testBearing = UtilityFunctions.bearingDifferenceDegrees( otherLegs.get(i).getCompass(BearingUnit.Degrees), masterLeg.getCompass(BearingUnit.Degrees) );
+			double testBearing = UtilityFunctions.bearingDifferenceDegrees( otherLegs.get(i).getCompass(BearingUnit.Degrees), masterBearing );
 			if ( testBearing < bestPrevBearing ) {
 				//Found better match, so store value and index
 				bestPrevBearing = testBearing;
@@ -780,90 +815,117 @@ public class SurveySeries {
 		}
 
 		//If a previous leg was found then calculate average bearing between previous and onward legs
-		double bearing = masterLeg.getCompass(BearingUnit.Degrees);
+		double bearing = masterBearing;
+		double prevLegBackBearingCorrected = 0.0;
 		if ( bestPrevLegIdx >= 0 ) {
 			double[] bearings = new double[2];
 
-			bearings[0] = masterLeg.getCompass(BearingUnit.Degrees);
+			bearings[0] = masterBearing;
 			bearings[1] = otherLegs.get(bestPrevLegIdx).getCompass(BearingUnit.Degrees);
 
 			bearing = UtilityFunctions.averageCompassBearings(bearings);
+			
+			//Convert previous leg bearing to bearing from the station for the splay adjusted with respect to onward leg bearing
+			prevLegBackBearingCorrected = UtilityFunctions.adjustBearingWithinDegreesRange( 
+					180 + bearings[1] - masterBearing, 0, 360 ); 
 		}
 		
-		//Loop through all the splays and categorise each shot into groups of L,R,U,D
-		for ( int i = 0; i < splayShots.size(); i++ ) {
-			SurveyLeg splayLeg = splayShots.get(i);
+		//Shots along the legs from this station: the main leg, then the other legs reversed
+		//(as we need bearing from this station, not to it)
+		int legShots = otherLegs.size() + 1;
+		double[] legCompass = new double[legShots];
+		double[] legClino = new double[legShots];
+		double[] legLength = new double[legShots];
+		for ( int olegsIdx = -1; olegsIdx < otherLegs.size(); olegsIdx++ ) {
+			SurveyLeg testLeg = masterLeg;
+			if (olegsIdx > -1) {
+				testLeg = otherLegs.get(olegsIdx).clone();
+				testLeg.reverseDirection();
+			}
+			legCompass[olegsIdx + 1] = testLeg.getCompass(BearingUnit.Degrees);
+			legClino[olegsIdx + 1] = testLeg.getClino(GradientUnit.Degrees);
+			legLength[olegsIdx + 1] = testLeg.getLength( LengthUnit.Metres );
+		}
+		
+		//Horizontal extent of every splay along the left dimension vector, which is
+		//orthogonal to the passage direction. Extents to the right are the negative of these.
+		double leftOrthoganal = bearing - 90;
+		if ( leftOrthoganal < 0 ) {
+			leftOrthoganal += 360;
+		}
+		double[] leftExtents = new double[splays.count];
+		splays.extentsAlong( leftOrthoganal, leftExtents );
+		
+		//Loop through all the splays and categorise each shot as L,R,U,D, keeping the best
+		//shot in each category
+		int upCount = 0, downCount = 0, leftCount = 0, rightCount = 0;
+		int bestUpIdx = -1, bestDownIdx = -1, bestLeftIdx = -1, bestRightIdx = -1;
+		double bestUp = 0.0, bestDown = 0.0, bestLeft = 0.0, bestRight = 0.0;
+		for ( int i = 0; i < splays.count; i++ ) {
+			final SurveyLeg splayLeg = splays.legs.get(i);
+			final double splayCompass = splays.compass[i];
+			final double splayClino = splays.clino[i];
 
 			//Ignore any splays which are along the path of any legs to/from this station
 			//This will remove backshots and splays fired up side passages which were then surveyed
 			//as side passage splays are not going to represent passage dimensions.
 			boolean backShot = false;
-			for ( int olegsIdx = -1; olegsIdx < otherLegs.size(); olegsIdx++ ) {
-				//First check against main leg
-				SurveyLeg testLeg = masterLeg;
-				if (olegsIdx > -1) {
-					//Then loop through other legs reversed (as we need bearing from this station, not to it)
-					testLeg = otherLegs.get(olegsIdx).clone();
-					testLeg.reverseDirection();
-				}
+			for ( int legIdx = 0; legIdx < legShots; legIdx++ ) {
 				//Check if splay is equivalent to leg shot
-				double bearingDiff = UtilityFunctions.bearingDifferenceDegrees( testLeg.getCompass(BearingUnit.Degrees), splayLeg.getCompass(BearingUnit.Degrees) );
+				double bearingDiff = UtilityFunctions.bearingDifferenceDegrees( legCompass[legIdx], splayCompass );
 				if ( bearingDiff < bearingTolerance ) {
 					//Within 3 degrees of leg, so check clino
-					double clinoDiff = UtilityFunctions.bearingDifferenceDegrees( testLeg.getClino(GradientUnit.Degrees), splayLeg.getClino(GradientUnit.Degrees) );
+					double clinoDiff = UtilityFunctions.bearingDifferenceDegrees( legClino[legIdx], splayClino );
 					if ( clinoDiff < bearingTolerance ) {
 						//Within 3 degrees of leg, so check length
-						double lengthDiff = Math.abs( testLeg.getLength( LengthUnit.Metres ) - splayLeg.getLength( LengthUnit.Metres ) );
+						double lengthDiff = Math.abs( legLength[legIdx] - splays.length[i] );
 						if ( lengthDiff < 0.2 ) {
 							//Under 20cm difference in length, assume a back shot for a leg
 							backShot = true;
-							logger.logMessage("Ignoring splay from " + getSeriesName() + "." + splayLeg.getFromStn().getName() + 
-									" with length of " + splayLeg.getLength( LengthUnit.Metres ) + " as splay too closely matching a leg and so assumed to be a back-shot.");
+							final double splayLength = splays.length[i];
+							logger.logMessage( () -> "Ignoring splay from " + getSeriesName() + "." + splayLeg.getFromStn().getName() + 
+									" with length of " + splayLength + " as splay too closely matching a leg and so assumed to be a back-shot." );
 						}
 					}
 				}
 			}
 
 			if ( backShot == false ) {
-				double splayClino = splayLeg.getClino(GradientUnit.Degrees);
 				if ( splayClino > 20 ) {
-					//Up shot
-					upShots.add(splayLeg);
+					//Up shot, looking for highest clino reading
+					upCount++;
+					if ( splayClino > bestUp ) {
+						bestUp = splayClino;
+						bestUpIdx = i;
+					}
 				}
 				else if ( splayClino < -20 ) {
-					//Down shot
-					downShots.add(splayLeg);
+					//Down shot, looking for lowest clino reading
+					downCount++;
+					if ( splayClino < bestDown ) {
+						bestDown = splayClino;
+						bestDownIdx = i;
+					}
 				}
 				//As well as up or down, some splays may also be the best Left or Right
 				if ( ( splayClino < 70 ) && ( splayClino > -70 ) ) {
 					//Left or right shots (not steeper than 70 deg.)
-					//Determine whether left or right shot
-					double masterBearing = masterLeg.getCompass(BearingUnit.Degrees);
 					//Normalise bearings to reference of zero degrees for onward leg
-					double splayCorrected = splayLeg.getCompass(BearingUnit.Degrees) - masterBearing;
+					double splayCorrected = splayCompass - masterBearing;
 					if ( splayCorrected < 0 ) {
 						splayCorrected += 360;
 					}
+					boolean left = false;
+					boolean right = false;
 					if ( bestPrevLegIdx >= 0 ) {
-						//Two legs to consider
-						double prevLegBearing = otherLegs.get(bestPrevLegIdx).getCompass(BearingUnit.Degrees);
-						//Convert previous leg bearing to bearing from the station for the splay adjusted with respect to onward leg bearing
-						double prevLegBackBearingCorrected = UtilityFunctions.adjustBearingWithinDegreesRange( 
-								180 + prevLegBearing - masterBearing, 0, 360 ); 
 						/* We now have three bearings. The onward leg is adjusted to zero deg. 
 						 * The back bearing for the previous leg is adjusted relative to the zero bearing of the onward leg.
 						 * The splay is also adjusted relative to the zero bearing of the onward leg.
 						 * Splays which are aligned with any leg from the station should already have been discarded.
 						 * So now we just need to determine if this splay as a left or right splay.
 						 */
-						if ( splayCorrected < prevLegBackBearingCorrected ) {
-							//Right
-							rightShots.add(splayLeg);
-						}
-						else {
-							//Left
-							leftShots.add(splayLeg);
-						}
+						right = ( splayCorrected < prevLegBackBearingCorrected );
+						left = ( right == false );
 					}
 					else {
 						//Only the one leg to consider as first or last leg of chain of legs in series
@@ -871,178 +933,89 @@ public class SurveySeries {
 						//Angle between splay and leg bearings is now in the range 0-360 deg.
 						if ( ( splayCorrected > bearingTolerance ) || ( splayCorrected > (360 - bearingTolerance) ) ) {
 							if ( splayCorrected < ( 180 - bearingTolerance) ) {
-								//Right
-								rightShots.add(splayLeg);
+								right = true;
 							}
 							else if ( splayCorrected > ( 180 + bearingTolerance) ) {
-								//Left
-								leftShots.add(splayLeg);
+								left = true;
 							}
 							else {
 								//Splay is within tolerance of back bearing for leg, so too shallow an angle to use for LRUD calc.
-								logger.logMessage("Ignoring splay from " + getSeriesName() + "." + splayLeg.getFromStn().getName() + 
-										" with bearing of " + splayLeg.getCompass(BearingUnit.Degrees) + " as bearing is < " + bearingTolerance + " degrees off back bearing of leg.");
+								logger.logMessage( () -> "Ignoring splay from " + getSeriesName() + "." + splayLeg.getFromStn().getName() + 
+										" with bearing of " + splayCompass + " as bearing is < " + bearingTolerance + " degrees off back bearing of leg." );
 							}
 						}
 						else {
 							//Splay is within tolerance of bearing for leg, so too shallow an angle to use for LRUD calc.
-							logger.logMessage("Ignoring splay from " + getSeriesName() + "." + splayLeg.getFromStn().getName() + 
-									" with bearing of " + splayLeg.getCompass(BearingUnit.Degrees) + " as bearing is < " + bearingTolerance + " degrees off bearing of leg.");
+							logger.logMessage( () -> "Ignoring splay from " + getSeriesName() + "." + splayLeg.getFromStn().getName() + 
+									" with bearing of " + splayCompass + " as bearing is < " + bearingTolerance + " degrees off bearing of leg." );
+						}
+					}
+					
+					//Best shots have the greatest horizontal extent along the vector orthogonal to the passage
+					if ( left ) {
+						leftCount++;
+						if ( leftExtents[i] > bestLeft ) {
+							bestLeft = leftExtents[i];
+							bestLeftIdx = i;
+						}
+					}
+					else if ( right ) {
+						rightCount++;
+						if ( -leftExtents[i] > bestRight ) {
+							bestRight = -leftExtents[i];
+							bestRightIdx = i;
 						}
 					}
-
 				}
 			}
 		}
 		
 		//Set flag for this station to say whether all splays should be output
 		boolean keepAllSplays = false;
-		if (( upShots.size() > 1 )
-		|| ( downShots.size() > 1 ) 
-		|| ( leftShots.size() > 1 )
-		|| ( rightShots.size() > 1 )) {
+		if (( upCount > 1 )
+		|| ( downCount > 1 ) 
+		|| ( leftCount > 1 )
+		|| ( rightCount > 1 )) {
 			keepAllSplays = true;
 		}
 		
-		//Find best up shot
-		double bestValue = 0.0;
-		int bestIdx = -1;
-		for ( int i = 0; i < upShots.size(); i++ ) {
-			//Looking for highest clino reading
-			if ( upShots.get(i).getClino(GradientUnit.Degrees) > bestValue ) {
-				//Found better match, so store value and index
-				bestValue = upShots.get(i).getClino(GradientUnit.Degrees);
-				bestIdx = i;
-			}
-		}
-		//Add up shot if found
-		if ( bestIdx >= 0  ) {
-			//Found best up shot
-			masterLeg.setUp( upShots.get(bestIdx).getVerticalLength(), LengthUnit.Metres );
+		//Add best up shot if found
+		if ( bestUpIdx >= 0  ) {
+			masterLeg.setUp( splays.verticalLength[bestUpIdx], LengthUnit.Metres );
 			//Flag splay as used for Up
 			if ( keepAllSplays == false ) {
-				upShots.get(bestIdx).setDown( LRUD_SPECIAL_FLAG, LengthUnit.Metres );
+				splays.legs.get(bestUpIdx).setDown( LRUD_SPECIAL_FLAG, LengthUnit.Metres );
 			}
 		}
 
-		//Find best down shot
-		bestValue = 0.0;
-		bestIdx = -1;
-		for ( int i = 0; i < downShots.size(); i++ ) {
-			//Looking for lowest clino reading
-			if ( downShots.get(i).getClino(GradientUnit.Degrees) < bestValue ) {
-				//Found better match, so store value and index
-				bestValue = downShots.get(i).getClino(GradientUnit.Degrees);
-				bestIdx = i;
-			}
-		}
-		//Add down shot if found
-		if ( bestIdx >= 0  ) {
-			//Found best down shot
-			masterLeg.setDown( downShots.get(bestIdx).getVerticalLength(), LengthUnit.Metres );
+		//Add best down shot if found
+		if ( bestDownIdx >= 0  ) {
+			masterLeg.setDown( splays.verticalLength[bestDownIdx], LengthUnit.Metres );
 			//Flag splay as used for Down
 			if ( keepAllSplays == false ) {
-				downShots.get(bestIdx).setDown( LRUD_SPECIAL_FLAG, LengthUnit.Metres );
+				splays.legs.get(bestDownIdx).setDown( LRUD_SPECIAL_FLAG, LengthUnit.Metres );
 			}
 		}
 
-		//Find best left shot
-		bestIdx = findBestSplayForHorizontalDimension(leftShots, bearing, true);
-		
-		//Add left shot if found
-		if ( bestIdx >= 0  ) {
-			//Found best left shot
-			double horizontalLength = leftShots.get(bestIdx).getHorizontalLength();
-			double leftOrthoganal = bearing - 90;
-			if ( leftOrthoganal < 0 ) {
-				leftOrthoganal += 360;
-			}
-			masterLeg.setLeft( extentAlongBearing( leftOrthoganal,
-					horizontalLength, leftShots.get(bestIdx).getCompass(BearingUnit.Degrees) ), LengthUnit.Metres );
+		//Add best left shot if found
+		if ( bestLeftIdx >= 0  ) {
+			masterLeg.setLeft( bestLeft, LengthUnit.Metres );
 			//Flag splay as used for Left
 			if ( keepAllSplays == false ) {
-				leftShots.get(bestIdx).setDown( LRUD_SPECIAL_FLAG, LengthUnit.Metres );
+				splays.legs.get(bestLeftIdx).setDown( LRUD_SPECIAL_FLAG, LengthUnit.Metres );
 			}
 		}
 
-		//Find best right shot
-		bestIdx = findBestSplayForHorizontalDimension(rightShots, bearing, false);
-		
-		//Add right shot if found
-		if ( bestIdx >= 0  ) {
-			//Found best right shot
-			double horizontalLength = rightShots.get(bestIdx).getHorizontalLength();
-			double rightOrthoganal = bearing + 90;
-			if ( rightOrthoganal >= 360 ) {
-				rightOrthoganal -= 360;
-			}
-			masterLeg.setRight( extentAlongBearing( rightOrthoganal, 
-					horizontalLength, rightShots.get(bestIdx).getCompass(BearingUnit.Degrees) ), LengthUnit.Metres );
+		//Add best right shot if found
+		if ( bestRightIdx >= 0  ) {
+			masterLeg.setRight( bestRight, LengthUnit.Metres );
 			//Flag splay as used for Right
 			if ( keepAllSplays == false ) {
-				rightShots.get(bestIdx).setDown( LRUD_SPECIAL_FLAG, LengthUnit.Metres );
+				splays.legs.get(bestRightIdx).setDown( LRUD_SPECIAL_FLAG, LengthUnit.Metres );
 			}
 		}
 	}
 
-	/**
-	 * Determines which of the splays is the best one to use to calculate the horizontal dimension for the
-	 * cave passage at this station
-	 * 
-	 * @param splays Array of splay shots to pick the best shot from
-	 * @param forwardBearing Bearing from the station to represent the passage direction
-	 * @param left Flag to indicate if we want to find the best left shot or best right shot
-	 * @return Index of the best matching splay shot from the input array of splays
-	 */
-	private int findBestSplayForHorizontalDimension(List<SurveyLeg> splays, double forwardBearing, boolean left) {
-		//Find best shot (greatest horizontal extent along vector orthogonal to leg bearing)
-		double bestValue = 0.0;
-		int bestIdx = -1;
-		for ( int i = 0; i < splays.size(); i++ ) {
-			//Calculate corrected compass bearing for splay, normalised to a passage trending due North (zero degrees)
-			double shotCorrected = splays.get(i).getCompass(BearingUnit.Degrees) - forwardBearing;
-			if ( shotCorrected < 0 ) {
-				shotCorrected += 360;
-			}
-			//Calculate horizontal extent of leg in direction orthogonal to corrected bearing (left or right)
-			double orthogonal;
-			if ( left ) {
-				orthogonal = 270.0;
-			}
-			else {
-				orthogonal = 90.0;
-			}
-			double horizontalLength = splays.get(i).getHorizontalLength();
-			double orthogonalExtent = extentAlongBearing( orthogonal, 
-					horizontalLength, shotCorrected);
-
-			if ( orthogonalExtent > bestValue ) {
-				//Found better match, so store value and index
-				bestValue = orthogonalExtent;
-				bestIdx = i;
-			}
-		}
-		
-		return bestIdx;
-	}
-	
-	/**
-	 * Calculates the distance a vector extends along a bearing. Used to work out the distance of the cave wall
-	 * for a left or right passage dimension in a given direction from a station for a horizontal length measured
-	 * along another bearing
-	 * @param bearing The direction we need the distance to the wall for
-	 * @param vectorLength The length of the horizontal measurement we have
-	 * @param vectorBearing The direction of the horizontal measurement we have
-	 * @return The calculated distance to the wall from the station in the direction of the bearing
-	 */
-	private double extentAlongBearing( double bearing, double vectorLength, 
-			double vectorBearing) {
-		double bearingDifference = UtilityFunctions.bearingDifferenceDegrees(bearing, vectorBearing);
-		double distance = vectorLength * Math.cos(Math.PI * bearingDifference / 180);
-		
-		return distance;
-	}
-	
 	/**
 	 * Reverses the order of all legs in the series, so in a linear chain of stations the last
 	 * station is placed first, and the first station is placed last.
@@ -27,6 +27,7 @@ import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
 import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.data.model.CaveSurvey;
 import footleg.cavesurvey.data.model.Equate;
 import footleg.cavesurvey.data.model.SurveyLeg;
@@ -43,6 +44,7 @@ import footleg.cavesurvey.tools.UtilityFunctions;
  */
 public class CompassParser {
 	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
 	private static double nullReading = -999.0;
 
 	/**
@@ -55,6 +57,15 @@ public class CompassParser {
 		this.logger = logger;
 	}
 
+	/**
+	 * Sets the monitor to report parsing progress to, and to check for cancellation
+	 * 
+	 * @param progress Progress monitor for the task running this parser
+	 */
+	public void setProgressMonitor(ProgressMonitor progress) {
+		this.progress = progress;
+	}
+
 	/**
 	 * Parse Compass format data into the cave data model
 	 * 
@@ -80,6 +91,8 @@ public class CompassParser {
 
 		// Create cave survey object to hold data
 		CaveSurvey allSeries = new CaveSurvey(logger);
+		// Hold back tree events until all the series have been added
+		allSeries.beginBatchUpdate();
 
 		// Create a series instance to use as a pointer to the active series data is
 		// being read from
@@ -95,6 +108,7 @@ public class CompassParser {
 		// Loop through all data lines
 		for (int i = 0; i < surveyFileData.size(); i++) {
 			int lineNo = i + 1;
+			progress.checkProgress("Parsing lines", i, surveyFileData.size());
 			String dataLine = surveyFileData.get(i);
 
 			// Trim whitespace off line ends (unless a single form feed character)
@@ -618,6 +632,7 @@ public class CompassParser {
 		UtilityFunctions.logSurveyDebugData(allSeries, logger);
 
 		// Completed file parsing
+		allSeries.endBatchUpdate();
 		return allSeries;
 	}
 
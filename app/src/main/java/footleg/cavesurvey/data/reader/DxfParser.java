@@ -23,6 +23,7 @@ import java.util.Date;
 import java.util.List;
 
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
 import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
@@ -31,6 +32,7 @@ import footleg.cavesurvey.data.model.SurveyLeg;
 import footleg.cavesurvey.data.model.SurveySeries;
 import footleg.cavesurvey.data.model.SurveyStation;
 import footleg.cavesurvey.data.model.SurveyStation.FixType;
+import footleg.cavesurvey.tools.SpatialIndex;
 import footleg.cavesurvey.tools.UtilityFunctions;
 
 /**
@@ -43,6 +45,13 @@ import footleg.cavesurvey.tools.UtilityFunctions;
 public class DxfParser {
 	private Date seriesDate;
 	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
+	// Index of the label points found so far, rebuilt when more labels have been found
+	private SpatialIndex labelIndex;
+	private int labelIndexSize;
+
+	// Tolerance for linking the points of unlabelled polylines to each other
+	private static final double LINK_TOLERANCE = 0.02;
 
 	/**
 	 * Class constructor
@@ -54,6 +63,15 @@ public class DxfParser {
 		this.logger = logger;
 	}
 
+	/**
+	 * Sets the monitor to report parsing progress to, and to check for cancellation
+	 * 
+	 * @param progress Progress monitor for the task running this parser
+	 */
+	public void setProgressMonitor(ProgressMonitor progress) {
+		this.progress = progress;
+	}
+
 	/**
 	 * Parse Autocad DXF file into the cave data model.
 	 * 
@@ -85,6 +103,7 @@ public class DxfParser {
 		List<double[]> arLabelPoints = new ArrayList<double[]>();
 		List<String> arLabels = new ArrayList<String>();
 		boolean mappedLabelsFound = false;
+		labelIndex = null;
 
 		// Define read state values
 		final int stateParsingHeader = 0;
@@ -125,6 +144,7 @@ public class DxfParser {
 		// Loop through all data lines
 		for (int i = 0; i < surveyFileData.size(); i++) {
 			String dataLine = surveyFileData.get(i);
+			progress.checkProgress("Parsing lines", i, surveyFileData.size());
 
 			// Proceed based on state
 			switch (state) {
@@ -805,6 +825,25 @@ public class DxfParser {
 			// Replace original with rebuilt series set
 			outerSeries = rebuiltOuterSeries;
 		} else {
+			// Index the points of all chains, numbered in order of chain and then of point
+			// in the chain, so matching points are found without comparing every pair
+			int[] chainStart = new int[allChains.size() + 1];
+			for (int chainIdx = 0; chainIdx < allChains.size(); chainIdx++) {
+				chainStart[chainIdx + 1] = chainStart[chainIdx] + allChains.get(chainIdx).size();
+			}
+			double[] coords = new double[chainStart[allChains.size()] * 3];
+			int[] pointChain = new int[chainStart[allChains.size()]];
+			for (int chainIdx = 0; chainIdx < allChains.size(); chainIdx++) {
+				List<double[]> chain = allChains.get(chainIdx);
+				for (int pointIdx = 0; pointIdx < chain.size(); pointIdx++) {
+					System.arraycopy(chain.get(pointIdx), 0, coords, (chainStart[chainIdx] + pointIdx) * 3, 3);
+					pointChain[chainStart[chainIdx] + pointIdx] = chainIdx;
+				}
+			}
+			SpatialIndex chainPointIndex = SpatialIndex.forPoints(coords, pointChain.length);
+			double[] min = new double[3];
+			double[] max = new double[3];
+
 			// Search for connected stations for any station in each polyline
 			for (int seriesIdx = 0; seriesIdx < outerSeries.innerSeriesCount(); seriesIdx++) {
 				// Get chain corresponding to this series
@@ -815,56 +854,53 @@ public class DxfParser {
 					double fixX = srcChain.get(point1Idx)[0];
 					double fixY = srcChain.get(point1Idx)[1];
 					double fixZ = srcChain.get(point1Idx)[2];
-					// Check all chains from self onwards for a matching point
-					// Only check self for links between different points in chain
-					// Do not check chains earlier than self to avoid adding links twice (forwards
-					// and backwards between same 2 points)
-					for (int chainIdx = seriesIdx; chainIdx < allChains.size(); chainIdx++) {
+					// Find points near to this one, in a box a little larger than the tolerance
+					// so the exact separation test below decides which points match
+					for (int axis = 0; axis < 3; axis++) {
+						min[axis] = srcChain.get(point1Idx)[axis] - 2 * LINK_TOLERANCE;
+						max[axis] = srcChain.get(point1Idx)[axis] + 2 * LINK_TOLERANCE;
+					}
+					for (int matchIdx : chainPointIndex.findInBox(min, max)) {
+						// Only check chains from self onwards for a matching point, and only
+						// points after this one in its own chain, to avoid adding links twice
+						// (forwards and backwards between same 2 points) or equating stations onto
+						// themselves
+						if (matchIdx <= chainStart[seriesIdx] + point1Idx) {
+							continue;
+						}
+						int chainIdx = pointChain[matchIdx];
+						int pointIdx = matchIdx - chainStart[chainIdx];
 						List<double[]> chain = allChains.get(chainIdx);
 						String[] chainLabels = allChainLabels.get(chainIdx);
-						for (int pointIdx = 0; pointIdx < chain.size(); pointIdx++) {
-							double sepX = Math.abs(fixX - chain.get(pointIdx)[0]);
-							double sepY = Math.abs(fixY - chain.get(pointIdx)[1]);
-							double sepZ = Math.abs(fixZ - chain.get(pointIdx)[2]);
-							if ((sepX < 0.02) && (sepY < 0.02) && (sepZ < 0.02)) {
-								// Found matching point
-								boolean addEquate = true;
-								if (chainIdx == seriesIdx) {
-									// Matching point is in same series, so only add equate
-									// when matching station occurs after test station to avoid adding
-									// equate twice or equating stations onto themselves
-									if (pointIdx <= point1Idx) {
-										addEquate = false;
-									}
+						double sepX = Math.abs(fixX - chain.get(pointIdx)[0]);
+						double sepY = Math.abs(fixY - chain.get(pointIdx)[1]);
+						double sepZ = Math.abs(fixZ - chain.get(pointIdx)[2]);
+						if ((sepX < LINK_TOLERANCE) && (sepY < LINK_TOLERANCE) && (sepZ < LINK_TOLERANCE)) {
+							// Found matching point, so replace fixed point in leg with equate
+							SurveyStation linkStn1 = new SurveyStation(point1Idx);
+							if (srcChainLabels[point1Idx] != null) {
+								linkStn1.setName(srcChainLabels[point1Idx]);
+							}
+							SurveyStation linkStn2 = new SurveyStation(pointIdx);
+							if (chainLabels[pointIdx] != null) {
+								linkStn2.setName(chainLabels[pointIdx]);
+							}
+							outerSeries.addLink(outerSeries.getInnerSeries(seriesIdx).getSeriesName(), linkStn1,
+									outerSeries.getInnerSeries(chainIdx).getSeriesName(), linkStn2);
+							// Clear fixed point from first stn in either series in this link apart from
+							// first one in first series
+							if (linkStn1.getId() == 0) {
+								if (seriesIdx > 0) {
+									SurveyStation stn = outerSeries.getInnerSeries(seriesIdx).getLegRaw(0)
+											.getFromStn();
+									stn.clearFixedStn();
 								}
-								if (addEquate == true) {
-									// Replace fixed point in leg with equate
-									SurveyStation linkStn1 = new SurveyStation(point1Idx);
-									if (srcChainLabels[point1Idx] != null) {
-										linkStn1.setName(srcChainLabels[point1Idx]);
-									}
-									SurveyStation linkStn2 = new SurveyStation(pointIdx);
-									if (chainLabels[pointIdx] != null) {
-										linkStn2.setName(chainLabels[pointIdx]);
-									}
-									outerSeries.addLink(outerSeries.getInnerSeries(seriesIdx).getSeriesName(), linkStn1,
-											outerSeries.getInnerSeries(chainIdx).getSeriesName(), linkStn2);
-									// Clear fixed point from first stn in either series in this link apart from
-									// first one in first series
-									if (linkStn1.getId() == 0) {
-										if (seriesIdx > 0) {
-											SurveyStation stn = outerSeries.getInnerSeries(seriesIdx).getLegRaw(0)
-													.getFromStn();
-											stn.clearFixedStn();
-										}
-									}
-									if (linkStn2.getId() == 0) {
-										if (chainIdx > 0) {
-											SurveyStation stn = outerSeries.getInnerSeries(chainIdx).getLegRaw(0)
-													.getFromStn();
-											stn.clearFixedStn();
-										}
-									}
+							}
+							if (linkStn2.getId() == 0) {
+								if (chainIdx > 0) {
+									SurveyStation stn = outerSeries.getInnerSeries(chainIdx).getLegRaw(0)
+											.getFromStn();
+									stn.clearFixedStn();
 								}
 							}
 						}
@@ -946,15 +982,10 @@ public class DxfParser {
 		// Create an array of labels and set them to the matching points
 		String[] labels = new String[arSurveyChain.size()];
 		for (int i = 0; i < arSurveyChain.size(); i++) {
-			double[] chainPoint = arSurveyChain.get(i);
-			for (int j = 0; j < arLabelPoints.size(); j++) {
-				// Check if point matches chain point
-				if ((chainPoint[0] == arLabelPoints.get(j)[0])
-						&& (chainPoint[1] == arLabelPoints.get(j)[1])
-						&& (chainPoint[2] == arLabelPoints.get(j)[2])) {
-					labels[i] = stnLabels.get(j);
-					break;
-				}
+			// Use the first label at the same position as the chain point
+			List<Integer> matches = getListOfMatchingPoints(arSurveyChain.get(i), arLabelPoints);
+			if (matches.size() > 0) {
+				labels[i] = stnLabels.get(matches.get(0));
 			}
 		}
 
@@ -1187,14 +1218,18 @@ public class DxfParser {
 	 */
 	private List<Integer> getListOfMatchingPoints(double[] matchingPoint, List<double[]> labelPoints) {
 		List<Integer> matchingPoints = new ArrayList<Integer>();
-		for (int allPointsIdx = 0; allPointsIdx < labelPoints.size(); allPointsIdx++) {
-			double[] testPoint = labelPoints.get(allPointsIdx);
-			if ((matchingPoint[0] == testPoint[0])
-					&& (matchingPoint[1] == testPoint[1])
-					&& (matchingPoint[2] == testPoint[2])) {
-				// Add index of matching point to matches array
-				matchingPoints.add(allPointsIdx);
+		if (labelIndex == null || labelIndexSize != labelPoints.size()) {
+			// Index the label points found so far
+			double[] coords = new double[labelPoints.size() * 3];
+			for (int i = 0; i < labelPoints.size(); i++) {
+				System.arraycopy(labelPoints.get(i), 0, coords, i * 3, 3);
 			}
+			labelIndex = SpatialIndex.forPoints(coords, labelPoints.size());
+			labelIndexSize = labelPoints.size();
+		}
+		for (int allPointsIdx : labelIndex.findInBox(matchingPoint, matchingPoint)) {
+			// Add index of matching point to matches array
+			matchingPoints.add(allPointsIdx);
 		}
 		return matchingPoints;
 	}
@@ -0,0 +1,419 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.reader;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.Equate;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.reader.SurvexParser.BlockRecord;
+
+/**
+ * Parser for Survex data being edited, which reparses only the begin/end block containing an
+ * edit and splices the new series into the existing cave model.
+ *
+ * After a full parse the parser state at the start of every named block is kept, so the
+ * innermost block enclosing an edited line range can be parsed again on its own. If the edit
+ * changes anything which carries on past the end of the block (currently the active data order),
+ * the enclosing block is reparsed instead. A full parse is done when no block encloses the edit,
+ * when the block structure around the edit has changed, or when the begin and end lines of the
+ * block no longer hold the text they held when it was last parsed (such as when the data is not
+ * an edit of the data last parsed at all).
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class IncrementalSurvexParser {
+	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
+	private Executor modelUpdater = Runnable::run;
+	private CaveSurvey model;
+	private List<BlockRecord> blocks;
+	private List<Integer> equateLines;
+	private List<Equate> equates;
+	// Copy of the data lines last parsed, to check block begin and end lines are unchanged
+	private List<String> lines;
+	private int lineCount;
+	private int lastReparsedLines;
+
+	/**
+	 * Class constructor
+	 *
+	 * @param logger Logging class to output information, warning and error messages
+	 *               to
+	 */
+	public IncrementalSurvexParser(Logger logger) {
+		super();
+		this.logger = logger;
+	}
+
+	/**
+	 * Sets the monitor to report parsing progress to, and to check for cancellation
+	 *
+	 * @param progress Progress monitor for the task running this parser
+	 */
+	public void setProgressMonitor(ProgressMonitor progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Sets how reparsed series are swapped into the existing model. By default this is done
+	 * directly, but when parsing in a background thread the GUI runs it on the event dispatch
+	 * thread, as swapping a series notifies the tree displaying the model.
+	 *
+	 * @param modelUpdater Executor to run each update of the existing model
+	 */
+	public void setModelUpdater(Executor modelUpdater) {
+		this.modelUpdater = modelUpdater;
+	}
+
+	/**
+	 * @return The cave model from the last parse, or null if no data has been parsed
+	 */
+	public CaveSurvey getModel() {
+		return model;
+	}
+
+	/**
+	 * @return Number of data lines which were parsed by the last parse or reparse
+	 */
+	public int getLastReparsedLineCount() {
+		return lastReparsedLines;
+	}
+
+	/**
+	 * Parses all the data into a new cave model, recording the block structure for later
+	 * incremental reparses
+	 *
+	 * @param surveyFileData Lines of Survex data
+	 * @return The new cave model
+	 * @throws ParseException Exception raised when information in the data is not supported or
+	 *                        valid for the format
+	 */
+	public CaveSurvey parseAll(List<String> surveyFileData) throws ParseException {
+		model = null;
+		blocks = null;
+		SurvexParser parser = new SurvexParser(logger);
+		parser.setProgressMonitor(progress);
+		parser.recordBlocks();
+		CaveSurvey survey = parser.parseFile(surveyFileData, null);
+		model = survey;
+		blocks = parser.getBlockRecords();
+		equateLines = parser.getEquateLines();
+		equates = parser.getParsedEquates();
+		lines = new ArrayList<String>(surveyFileData);
+		lineCount = surveyFileData.size();
+		lastReparsedLines = lineCount;
+		return survey;
+	}
+
+	/**
+	 * Updates the cave model from edited data, reparsing only the innermost named block which
+	 * encloses all the edited lines where possible. Replaced series are swapped into the existing
+	 * model, which notifies its tree model listeners of just the replaced nodes.
+	 *
+	 * @param surveyFileData Lines of Survex data after the edits
+	 * @param firstEdited    Index of the first line changed by the edits
+	 * @param lastEdited     Index of the last line changed by the edits (in the edited data)
+	 * @return The updated cave model. This is the same model object as before if the update was
+	 *         incremental, or a new model if the whole data had to be parsed again.
+	 * @throws ParseException Exception raised when information in the data is not supported or
+	 *                        valid for the format
+	 */
+	public CaveSurvey reparse(List<String> surveyFileData, int firstEdited, int lastEdited) throws ParseException {
+		if (model == null || blocks == null) {
+			return parseAll(surveyFileData);
+		}
+		int delta = surveyFileData.size() - lineCount;
+
+		// Find innermost block enclosing the edits, with its begin and end lines unchanged
+		int blockIdx = -1;
+		for (int i = 0; i < blocks.size(); i++) {
+			BlockRecord block = blocks.get(i);
+			if (block.beginLine < firstEdited && block.endLine + delta > lastEdited) {
+				blockIdx = i;
+			}
+		}
+		if (blockIdx >= 0 && blockLinesUnchanged(blocks.get(blockIdx), surveyFileData, delta) == false) {
+			logger.logMessage("Data around the edits does not match the data last parsed, so reparsing all data.");
+			return parseAll(surveyFileData);
+		}
+
+		while (blockIdx >= 0) {
+			BlockRecord block = blocks.get(blockIdx);
+			if (reparseBlock(surveyFileData, blockIdx, delta)) {
+				logger.logMessage("Reparsed series " + seriesPathName(block.seriesPath) + " (" + lastReparsedLines
+						+ " lines).");
+				return model;
+			}
+			blockIdx = block.parent;
+		}
+
+		logger.logMessage("Edits were not contained in a single series, so reparsing all data.");
+		return parseAll(surveyFileData);
+	}
+
+	/**
+	 * Attempts to reparse one block on its own and splice it into the model
+	 *
+	 * @return True if the block was reparsed and replaced, false if a larger part of the data
+	 *         needs to be reparsed
+	 */
+	private boolean reparseBlock(List<String> surveyFileData, int blockIdx, int delta) throws ParseException {
+		BlockRecord block = blocks.get(blockIdx);
+		int newEndLine = block.endLine + delta;
+		if (blockLinesUnchanged(block, surveyFileData, delta) == false) {
+			return false;
+		}
+
+		// The block series must still be in the model where it was placed by the last parse
+		Object[] parentPath = parentPath(block);
+		List<SurveySeries> siblings;
+		if (block.parent < 0) {
+			siblings = new ArrayList<SurveySeries>();
+			for (int i = 0; i < model.size(); i++) {
+				siblings.add(model.get(i));
+			}
+		} else {
+			siblings = blocks.get(block.parent).series.getInnerSeriesList();
+		}
+		int seriesIdx = -1;
+		for (int i = 0; i < siblings.size(); i++) {
+			if (siblings.get(i) == block.series) {
+				seriesIdx = i;
+			}
+		}
+		if (seriesIdx < 0 || parentPath == null) {
+			return false;
+		}
+
+		// Equates declared outside this block which link stations inside it add links to series
+		// inside the block, so they need applying to the new series too
+		List<Equate> equatesBefore = new ArrayList<Equate>();
+		List<Equate> equatesAfter = new ArrayList<Equate>();
+		String blockPath = seriesPathName(block.seriesPath);
+		for (int i = 0; i < equates.size(); i++) {
+			int line = equateLines.get(i);
+			Equate equate = equates.get(i);
+			if (isInPath(equate.getSeries1(), blockPath) && isInPath(equate.getSeries2(), blockPath)) {
+				if (line < block.beginLine) {
+					equatesBefore.add(equate);
+				} else if (line > block.endLine) {
+					equatesAfter.add(equate);
+				}
+			}
+		}
+
+		List<String> blockData = new ArrayList<String>(surveyFileData.subList(block.beginLine, newEndLine + 1));
+		List<String> lineRefs = new ArrayList<String>();
+		for (int i = block.beginLine; i <= newEndLine; i++) {
+			lineRefs.add("" + (i + 1));
+		}
+
+		SurvexParser parser = new SurvexParser(logger);
+		parser.setProgressMonitor(progress);
+		parser.recordBlocks();
+		CaveSurvey parsed;
+		try {
+			parsed = parser.parseBlock(blockData, lineRefs, block, equatesBefore, equatesAfter);
+		} catch (CancellationException e) {
+			throw e;
+		} catch (ParseException | RuntimeException e) {
+			// Block structure may have been changed by the edits, so try a larger part of the data
+			return false;
+		}
+
+		// The edited lines must still form exactly one block ending on the last line
+		List<BlockRecord> newBlocks = parser.getBlockRecords();
+		if (newBlocks.isEmpty() || newBlocks.get(0).endLine != blockData.size() - 1
+				|| newBlocks.get(0).series == null) {
+			return false;
+		}
+		for (int i = 1; i < newBlocks.size(); i++) {
+			if (newBlocks.get(i).parent < 0) {
+				return false;
+			}
+		}
+		// Edits which change the data order carried past the end of the block affect the lines
+		// after it in the parent block
+		if (newBlocks.get(0).endDataOrder.equals(block.endDataOrder) == false) {
+			return false;
+		}
+		SurveySeries newSeries = newBlocks.get(0).series;
+		if (block.parent < 0) {
+			if (parsed.size() != 1 || parsed.get(0) != newSeries) {
+				return false;
+			}
+		}
+
+		final int replaceIdx = seriesIdx;
+		modelUpdater.execute(() -> model.replaceSeries(parentPath, replaceIdx, newSeries));
+		updateRecords(blockIdx, newBlocks, parser.getEquateLines(), parser.getParsedEquates(), delta);
+		lines = new ArrayList<String>(surveyFileData);
+		lineCount = surveyFileData.size();
+		lastReparsedLines = blockData.size();
+		return true;
+	}
+
+	/**
+	 * Checks the begin and end lines of a block still hold the same text as when the block was
+	 * last parsed, once moved by the change in the number of lines
+	 */
+	private boolean blockLinesUnchanged(BlockRecord block, List<String> surveyFileData, int delta) {
+		int newEndLine = block.endLine + delta;
+		if (block.beginLine >= surveyFileData.size() || newEndLine <= block.beginLine
+				|| newEndLine >= surveyFileData.size()) {
+			return false;
+		}
+		return surveyFileData.get(block.beginLine).equals(lines.get(block.beginLine))
+				&& surveyFileData.get(newEndLine).equals(lines.get(block.endLine));
+	}
+
+	/**
+	 * Replaces the records for a reparsed block and the blocks inside it, and moves the line
+	 * numbers of everything after it.
+	 */
+	private void updateRecords(int blockIdx, List<BlockRecord> newBlocks, List<Integer> newEquateLines,
+			List<Equate> newEquates, int delta) {
+		BlockRecord block = blocks.get(blockIdx);
+		int oldBegin = block.beginLine;
+		int oldEnd = block.endLine;
+
+		// Blocks inside the old block follow it directly in begin order
+		int afterIdx = blockIdx + 1;
+		while (afterIdx < blocks.size() && blocks.get(afterIdx).beginLine < oldEnd) {
+			afterIdx++;
+		}
+		int shift = newBlocks.size() - (afterIdx - blockIdx);
+
+		List<BlockRecord> updated = new ArrayList<BlockRecord>(blocks.size() + shift);
+		for (int i = 0; i < blockIdx; i++) {
+			BlockRecord record = blocks.get(i);
+			if (record.endLine > oldEnd) {
+				// Parent of the reparsed block
+				record.endLine += delta;
+			}
+			updated.add(record);
+		}
+		for (int i = 0; i < newBlocks.size(); i++) {
+			BlockRecord record = newBlocks.get(i);
+			record.beginLine += oldBegin;
+			record.endLine += oldBegin;
+			record.parent = (i == 0) ? block.parent : record.parent + blockIdx;
+			updated.add(record);
+		}
+		for (int i = afterIdx; i < blocks.size(); i++) {
+			BlockRecord record = blocks.get(i);
+			record.beginLine += delta;
+			record.endLine += delta;
+			if (record.parent >= afterIdx) {
+				record.parent += shift;
+			}
+			updated.add(record);
+		}
+		blocks = updated;
+
+		List<Integer> updatedLines = new ArrayList<Integer>();
+		List<Equate> updatedEquates = new ArrayList<Equate>();
+		for (int i = 0; i < equates.size(); i++) {
+			int line = equateLines.get(i);
+			if (line < oldBegin) {
+				updatedLines.add(line);
+				updatedEquates.add(equates.get(i));
+			}
+		}
+		for (int i = 0; i < newEquates.size(); i++) {
+			updatedLines.add(newEquateLines.get(i) + oldBegin);
+			updatedEquates.add(newEquates.get(i));
+		}
+		for (int i = 0; i < equates.size(); i++) {
+			int line = equateLines.get(i);
+			if (line > oldEnd) {
+				updatedLines.add(line + delta);
+				updatedEquates.add(equates.get(i));
+			}
+		}
+		equateLines = updatedLines;
+		equates = updatedEquates;
+	}
+
+	/**
+	 * Builds the tree path to the parent of the series for a block, or returns null if the
+	 * series of the parent blocks are no longer in the model
+	 */
+	private Object[] parentPath(BlockRecord block) {
+		List<Object> path = new ArrayList<Object>();
+		int parent = block.parent;
+		while (parent >= 0) {
+			path.add(0, blocks.get(parent).series);
+			parent = blocks.get(parent).parent;
+		}
+		path.add(0, model);
+		// Check each series is still a child of the previous node in the path. This checks the
+		// series lists directly, as the tree model index lookups are for the event thread only.
+		for (int i = 1; i < path.size(); i++) {
+			if (isChildSeries(path.get(i - 1), path.get(i)) == false) {
+				return null;
+			}
+		}
+		return path.toArray();
+	}
+
+	private boolean isChildSeries(Object parent, Object child) {
+		if (parent == model) {
+			for (int i = 0; i < model.size(); i++) {
+				if (model.get(i) == child) {
+					return true;
+				}
+			}
+		} else if (parent instanceof SurveySeries) {
+			for (SurveySeries series : ((SurveySeries) parent).getInnerSeriesList()) {
+				if (series == child) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static String seriesPathName(List<String> seriesPath) {
+		StringBuilder name = new StringBuilder();
+		for (String part : seriesPath) {
+			if (name.length() > 0) {
+				name.append('.');
+			}
+			name.append(part);
+		}
+		return name.toString();
+	}
+
+	private static boolean isInPath(String seriesName, String blockPath) {
+		return seriesName.equalsIgnoreCase(blockPath)
+				|| seriesName.toLowerCase().startsWith(blockPath.toLowerCase() + ".");
+	}
+
+}
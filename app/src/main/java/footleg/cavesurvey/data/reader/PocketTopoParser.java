@@ -24,6 +24,7 @@ import java.util.Date;
 import java.util.List;
 
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
 import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
@@ -43,6 +44,7 @@ import footleg.cavesurvey.tools.UtilityFunctions;
  */
 public class PocketTopoParser {
 	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
 
 	// Constants used to indicate what type of data is encoded on a data line in the
 	// file being parsed
@@ -62,6 +64,15 @@ public class PocketTopoParser {
 		this.logger = logger;
 	}
 
+	/**
+	 * Sets the monitor to report parsing progress to, and to check for cancellation
+	 * 
+	 * @param progress Progress monitor for the task running this parser
+	 */
+	public void setProgressMonitor(ProgressMonitor progress) {
+		this.progress = progress;
+	}
+
 	/**
 	 * Class to hold data parsed from a line in a PocketTopo exported text data file
 	 */
@@ -153,6 +164,8 @@ public class PocketTopoParser {
 
 		// Create new list of survey series to hold data
 		CaveSurvey surveyData = new CaveSurvey(logger);
+		// Hold back tree events until all the series have been added
+		surveyData.beginBatchUpdate();
 		SurveySeries outerSeries = null;
 
 		String caveName = "";
@@ -183,6 +196,7 @@ public class PocketTopoParser {
 
 		// Loop through all data lines
 		for (int lineIdx = 0; lineIdx <= surveyFileData.size(); lineIdx++) {
+			progress.checkProgress("Parsing lines", lineIdx, surveyFileData.size());
 			int lineNo = lineIdx + 1;
 
 			// Need to allow final pass through loop after all lines processed
@@ -527,6 +541,7 @@ public class PocketTopoParser {
 		// Completed file parsing
 		// logger.logMessage("Processed " + legCount + " survey legs in " +
 		// surveyData.size() + " series.");
+		surveyData.endBatchUpdate();
 		return surveyData;
 	}
 
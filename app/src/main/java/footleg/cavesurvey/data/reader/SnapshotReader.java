@@ -0,0 +1,346 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+import footleg.cavesurvey.data.model.SurveyStation.FixType;
+import footleg.cavesurvey.data.writer.SnapshotWriter;
+
+/**
+ * Reader for binary snapshot files written by {@link SnapshotWriter}. Files are read into memory in
+ * one go and the data model is rebuilt in a single pass through the buffer. Files are not memory
+ * mapped, as a mapping keeps the file locked on some platforms until it is garbage collected.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SnapshotReader {
+	private Logger logger;
+	private String[] strings;
+	private List<SurveyStation> stations;
+
+	/**
+	 * Class constructor
+	 *
+	 * @param logger Logging class to output information, warning and error messages
+	 *               to
+	 */
+	public SnapshotReader(Logger logger) {
+		super();
+		this.logger = logger;
+	}
+
+	/**
+	 * Checks whether a file starts with the snapshot file magic bytes
+	 *
+	 * @param data Buffer positioned at the start of the file data
+	 * @return True if the data looks like a snapshot file
+	 */
+	public static boolean isSnapshotData(ByteBuffer data) {
+		if (data.remaining() < SnapshotWriter.SNAPSHOT_MAGIC.length) {
+			return false;
+		}
+		for (int i = 0; i < SnapshotWriter.SNAPSHOT_MAGIC.length; i++) {
+			if (data.get(data.position() + i) != SnapshotWriter.SNAPSHOT_MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Loads a cave survey model from a snapshot file
+	 *
+	 * @param snapshotFile The snapshot file to load
+	 * @return Cave Survey object
+	 * @throws IOException If the file cannot be read or is not a valid snapshot
+	 */
+	public CaveSurvey parseFile(File snapshotFile) throws IOException {
+		return parseData(ByteBuffer.wrap(Files.readAllBytes(snapshotFile.toPath())));
+	}
+
+	/**
+	 * Loads a cave survey model from snapshot data held in a buffer
+	 *
+	 * @param data Buffer positioned at the start of the snapshot data
+	 * @return Cave Survey object
+	 * @throws IOException If the data is not a valid snapshot
+	 */
+	public CaveSurvey parseData(ByteBuffer data) throws IOException {
+		if (isSnapshotData(data) == false) {
+			throw new IOException("Data is not a cave converter snapshot.");
+		}
+		data.position(data.position() + SnapshotWriter.SNAPSHOT_MAGIC.length);
+
+		try {
+			int version = readVarint(data);
+			if (version != SnapshotWriter.SNAPSHOT_VERSION) {
+				throw new IOException("Unsupported snapshot version " + version + ", expected version "
+						+ SnapshotWriter.SNAPSHOT_VERSION + ".");
+			}
+
+			strings = new String[readCount(data)];
+			for (int i = 0; i < strings.length; i++) {
+				int length = readCount(data);
+				if (data.hasArray()) {
+					strings[i] = new String(data.array(), data.arrayOffset() + data.position(), length,
+							StandardCharsets.UTF_8);
+					data.position(data.position() + length);
+				} else {
+					byte[] utf8 = new byte[length];
+					data.get(utf8);
+					strings[i] = new String(utf8, StandardCharsets.UTF_8);
+				}
+			}
+			stations = new ArrayList<SurveyStation>();
+
+			CaveSurvey surveyData = new CaveSurvey(logger);
+			// Hold back tree events until all the series have been added
+			surveyData.beginBatchUpdate();
+			surveyData.setSurveyName(readString(data));
+			int seriesCount = readCount(data);
+			for (int i = 0; i < seriesCount; i++) {
+				surveyData.add(readSeries(data));
+			}
+
+			logger.logMessage("Loaded snapshot containing " + seriesCount + " series and " + stations.size()
+					+ " stations.");
+			surveyData.endBatchUpdate();
+			return surveyData;
+		} catch (RuntimeException | StackOverflowError e) {
+			// Corrupt data can fail anywhere while decoding, so report it in the same way as other bad data
+			throw new IOException("Snapshot data is truncated or corrupt.", e);
+		} finally {
+			strings = null;
+			stations = null;
+		}
+	}
+
+	private SurveySeries readSeries(ByteBuffer data) throws IOException {
+		SurveySeries series = new SurveySeries(readRequiredString(data));
+		series.setComment(readComment(data));
+		if (data.get() != 0) {
+			series.setSurveyDate(new Date(data.getLong()));
+		}
+		series.setLengthUnit(LengthUnit.values()[data.get()]);
+		series.setDepthUnit(LengthUnit.values()[data.get()]);
+		series.setBearingUnit(BearingUnit.values()[data.get()]);
+		series.setGradientUnit(GradientUnit.values()[data.get()]);
+		series.setDeclination(data.getDouble());
+		series.setTapeCalibration(data.getDouble(), LengthUnit.Metres);
+		series.setCompassCalibration(data.getDouble(), BearingUnit.Degrees);
+		double clinoCalibration = data.getDouble();
+		series.setClinoCalibration(clinoCalibration, GradientUnit.Degrees, data.getDouble());
+		List<String> dataOrder = readStringList(data);
+		if (dataOrder.size() > 0) {
+			series.setDataOrder(dataOrder);
+		}
+		dataOrder = readStringList(data);
+		if (dataOrder.size() > 0) {
+			series.setDataOrder2(dataOrder);
+		}
+
+		// Replaying the names in order rebuilds the same name to number mappings
+		int mappedNames = readCount(data);
+		for (int i = 0; i < mappedNames; i++) {
+			series.getNumberToRepresentStnName(readRequiredString(data));
+		}
+
+		int legCount = readCount(data);
+		SurveyLeg[] legs = new SurveyLeg[legCount];
+		int[] legFlags = new int[legCount];
+		for (int i = 0; i < legCount; i++) {
+			SurveyLeg leg = new SurveyLeg();
+			leg.setFromStn(readStation(data));
+			leg.setToStn(readStation(data));
+			legFlags[i] = data.get();
+			leg.setComment(readComment(data));
+			legs[i] = leg;
+		}
+		for (int i = 0; i < legCount; i++) {
+			SurveyLeg leg = legs[i];
+			int flags = legFlags[i];
+			leg.setLength(data.getDouble(), LengthUnit.Metres);
+			leg.setCompass(data.getDouble(), BearingUnit.Degrees);
+			double clino = data.getDouble();
+			double fromDepth = data.getDouble();
+			double toDepth = data.getDouble();
+			// Setting a clino clears the diving flag and setting depths sets it, so order matters
+			if ((flags & SnapshotWriter.LEG_DIVING) != 0) {
+				leg.setClino(clino, GradientUnit.Degrees);
+				leg.setDepths(fromDepth, toDepth, LengthUnit.Metres);
+			} else {
+				leg.setDepths(fromDepth, toDepth, LengthUnit.Metres);
+				leg.setClino(clino, GradientUnit.Degrees);
+			}
+			leg.setLeft(data.getDouble(), LengthUnit.Metres);
+			leg.setRight(data.getDouble(), LengthUnit.Metres);
+			leg.setUp(data.getDouble(), LengthUnit.Metres);
+			leg.setDown(data.getDouble(), LengthUnit.Metres);
+			leg.setDuplicate((flags & SnapshotWriter.LEG_DUPLICATE) != 0);
+			leg.setSurface((flags & SnapshotWriter.LEG_SURFACE) != 0);
+			leg.setSplay((flags & SnapshotWriter.LEG_SPLAY) != 0);
+			leg.setNosurvey((flags & SnapshotWriter.LEG_NOSURVEY) != 0);
+			series.addLeg(leg);
+		}
+
+		int lrudCount = readCount(data);
+		List<SurveySeries.ToStnLRUD> lruds = series.getToStnLRUDs();
+		for (int i = 0; i < lrudCount; i++) {
+			SurveySeries.ToStnLRUD lrud = series.new ToStnLRUD();
+			lrud.setFromStn(readStation(data));
+			lruds.add(lrud);
+		}
+		for (int i = 0; i < lrudCount; i++) {
+			SurveySeries.ToStnLRUD lrud = lruds.get(lruds.size() - lrudCount + i);
+			lrud.setLeft(data.getDouble());
+			lrud.setRight(data.getDouble());
+			lrud.setUp(data.getDouble());
+			lrud.setDown(data.getDouble());
+		}
+
+		int linkCount = readCount(data);
+		for (int i = 0; i < linkCount; i++) {
+			String series1 = readString(data);
+			SurveyStation stn1 = readStation(data);
+			String series2 = readString(data);
+			SurveyStation stn2 = readStation(data);
+			series.addLink(series1, stn1, series2, stn2);
+		}
+
+		int innerCount = readCount(data);
+		for (int i = 0; i < innerCount; i++) {
+			series.addSeries(readSeries(data));
+		}
+		return series;
+	}
+
+	private SurveyStation readStation(ByteBuffer data) throws IOException {
+		int ref = readVarint(data);
+		if (ref == 0) {
+			return null;
+		}
+		if (ref <= stations.size()) {
+			return stations.get(ref - 1);
+		}
+		if (ref != stations.size() + 1) {
+			throw new IOException("Snapshot station reference " + ref + " is out of sequence.");
+		}
+
+		int zigzag = readVarint(data);
+		SurveyStation stn = new SurveyStation((zigzag >>> 1) ^ -(zigzag & 1));
+		stations.add(stn);
+		String name = readString(data);
+		if (name != null) {
+			stn.setName(name);
+		}
+		stn.setComment(readComment(data));
+		int flags = data.get();
+		stn.setEntrance((flags & SnapshotWriter.STN_ENTRANCE) != 0);
+		FixType fixType = FixType.values()[flags >> SnapshotWriter.STN_FIX_SHIFT];
+		if (fixType != FixType.NONE) {
+			stn.setFixed(fixType, data.getDouble(), data.getDouble(), data.getDouble());
+		}
+		return stn;
+	}
+
+	private List<String> readStringList(ByteBuffer data) throws IOException {
+		int count = readCount(data);
+		List<String> list = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			list.add(readRequiredString(data));
+		}
+		return list;
+	}
+
+	private String readString(ByteBuffer data) throws IOException {
+		int ref = readVarint(data);
+		if (ref == 0) {
+			return null;
+		}
+		if (ref < 0 || ref > strings.length) {
+			throw new IOException("Snapshot string reference " + ref + " is out of range.");
+		}
+		return strings[ref - 1];
+	}
+
+	/**
+	 * Reads a comment, which the model holds as an empty string rather than null
+	 */
+	private String readComment(ByteBuffer data) throws IOException {
+		String text = readString(data);
+		return text == null ? "" : text;
+	}
+
+	/**
+	 * Reads a string which the writer never leaves empty, such as a series name
+	 */
+	private String readRequiredString(ByteBuffer data) throws IOException {
+		String text = readString(data);
+		if (text == null) {
+			throw new IOException("Snapshot data is missing a required string.");
+		}
+		return text;
+	}
+
+	/**
+	 * Reads an item count or byte length. Every item takes at least one byte, so a count larger
+	 * than the data left must be corrupt, and is rejected before anything is allocated for it.
+	 */
+	private static int readCount(ByteBuffer data) throws IOException {
+		int count = readVarint(data);
+		if (count < 0 || count > data.remaining()) {
+			throw new IOException("Snapshot count " + count + " is larger than the remaining data.");
+		}
+		return count;
+	}
+
+	private static int readVarint(ByteBuffer data) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			if (shift > 28) {
+				throw new IOException("Snapshot number is too long.");
+			}
+			b = data.get();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+}
@@ -26,6 +26,7 @@ import java.util.List;
 
 import footleg.cavesurvey.converter.CaveConverter;
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
 import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
@@ -51,6 +52,7 @@ import footleg.cavesurvey.tools.UtilityFunctions;
  */
 public class SurvexParser {
 	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
 
 	/**
 	 * Class constructor
@@ -62,6 +64,42 @@ public class SurvexParser {
 		this.logger = logger;
 	}
 
+	/**
+	 * Sets the monitor to report parsing progress to, and to check for cancellation
+	 * 
+	 * @param progress Progress monitor for the task running this parser
+	 */
+	public void setProgressMonitor(ProgressMonitor progress) {
+		this.progress = progress;
+	}
+
+	// Optional recording of the parser state at each named block, used for incremental reparsing
+	private List<BlockRecord> blockRecords;
+	private List<Integer> equateLines;
+	private List<Equate> parsedEquates;
+
+	/**
+	 * Parser state recorded for a named begin/end block, holding everything inherited from the
+	 * data before the block so it can be parsed again on its own.
+	 */
+	static class BlockRecord {
+		int beginLine;
+		int endLine;
+		int parent = -1;
+		List<String> seriesPath;
+		List<String> startDataOrder;
+		double tapeCalibration;
+		double compassCalibration;
+		double clinoCalibration;
+		double declination;
+		boolean duplicateFlag;
+		boolean splayFlag;
+		boolean surfaceFlag;
+		boolean noSurvey;
+		List<String> endDataOrder;
+		SurveySeries series;
+	}
+
 	private class DataBlockProperties {
 
 		public DataBlockProperties(boolean duplicateFlag, boolean splayFlag, boolean surfaceFlag, boolean noSurvey) {
@@ -103,6 +141,53 @@ public class SurvexParser {
 	 *                        file is not supported or valid for the format
 	 */
 	public CaveSurvey parseFile(List<String> surveyFileData, List<String> multifileRefs) throws ParseException {
+		return parseLines(surveyFileData, multifileRefs, null, null, null);
+	}
+
+	/**
+	 * Turns on recording of the state at each named block and the line of each equate during
+	 * parsing, for incremental reparsing of parts of the file
+	 */
+	void recordBlocks() {
+		blockRecords = new ArrayList<BlockRecord>();
+		equateLines = new ArrayList<Integer>();
+		parsedEquates = new ArrayList<Equate>();
+	}
+
+	List<BlockRecord> getBlockRecords() {
+		return blockRecords;
+	}
+
+	List<Integer> getEquateLines() {
+		return equateLines;
+	}
+
+	List<Equate> getParsedEquates() {
+		return parsedEquates;
+	}
+
+	/**
+	 * Parses the lines of a single named block on its own, starting from the parser state
+	 * recorded for the block when the whole file was parsed.
+	 * 
+	 * @param blockData     Data lines from the begin line to the end line of the block
+	 * @param multifileRefs Line references for the block data lines
+	 * @param context       Parser state recorded at the start of the block
+	 * @param equatesBefore Equates from before the block which link stations inside it
+	 * @param equatesAfter  Equates from after the block which link stations inside it
+	 * @return The parsed series for the block, held inside a chain of placeholder parent series
+	 *         matching the block's parents. The block series is the only inner series of the
+	 *         innermost placeholder, or the only series in the survey for a top level block.
+	 * @throws ParseException Exception raised when information in the block is not supported or
+	 *                        valid for the format
+	 */
+	CaveSurvey parseBlock(List<String> blockData, List<String> multifileRefs, BlockRecord context,
+			List<Equate> equatesBefore, List<Equate> equatesAfter) throws ParseException {
+		return parseLines(blockData, multifileRefs, context, equatesBefore, equatesAfter);
+	}
+
+	private CaveSurvey parseLines(List<String> surveyFileData, List<String> multifileRefs, BlockRecord context,
+			List<Equate> equatesBefore, List<Equate> equatesAfter) throws ParseException {
 		/**
 		 * Read state codes:
 		 * 0=starting new file
@@ -114,6 +199,8 @@ public class SurvexParser {
 
 		// Create cave survey object to hold data
 		CaveSurvey allSeries = new CaveSurvey(logger);
+		// Hold back tree events until all the series have been added
+		allSeries.beginBatchUpdate();
 
 		// Create stack to hold open series while processing data lines
 		List<SurveySeries> seriesStack = new ArrayList<SurveySeries>();
@@ -121,8 +208,11 @@ public class SurvexParser {
 		// Create stack to hold open series names while processing data lines
 		List<String> nameStack = new ArrayList<String>();
 
-		// Create list for equates
+		// Create list for equates, starting with any from before a block being parsed on its own
 		List<Equate> equates = new ArrayList<Equate>();
+		if (equatesBefore != null) {
+			equates.addAll(equatesBefore);
+		}
 
 		// Create a series instance to use as a pointer to the active series data is
 		// being read from
@@ -134,8 +224,43 @@ public class SurvexParser {
 		// Variable to hold values for parent block when inside an anonymous block
 		DataBlockProperties blockProps = new DataBlockProperties(false, false, false, false);
 
+		// Stack of records for open named blocks, when recording
+		List<Integer> recordStack = new ArrayList<Integer>();
+
+		// Restore state from before the block when parsing a single block
+		SurveySeries contextRoot = null;
+		if (context != null) {
+			blockProps = new DataBlockProperties(context.duplicateFlag, context.splayFlag, context.surfaceFlag,
+					context.noSurvey);
+			dataOrder = new ArrayList<String>(context.startDataOrder);
+			int parentDepth = context.seriesPath.size() - 1;
+			if (parentDepth > 0) {
+				// Build placeholder parent series, with the innermost holding the inherited calibrations
+				SurveySeries parentSeries = null;
+				for (int i = 0; i < parentDepth; i++) {
+					SurveySeries placeholder = new SurveySeries(context.seriesPath.get(i));
+					if (parentSeries == null) {
+						contextRoot = placeholder;
+					} else {
+						parentSeries.addSeries(placeholder);
+					}
+					parentSeries = placeholder;
+					nameStack.add(context.seriesPath.get(i));
+				}
+				parentSeries.setTapeCalibration(context.tapeCalibration, LengthUnit.Metres);
+				parentSeries.setCompassCalibration(context.compassCalibration, BearingUnit.Degrees);
+				parentSeries.setClinoCalibration(context.clinoCalibration, GradientUnit.Degrees);
+				parentSeries.setDeclination(context.declination);
+				parentSeries.setDataOrder(context.startDataOrder);
+				seriesStack.add(parentSeries);
+				liveSeries = parentSeries;
+				state = 1;
+			}
+		}
+
 		// Loop through all data lines
 		for (int fileDataIdx = 0; fileDataIdx < surveyFileData.size(); fileDataIdx++) {
+			progress.checkProgress("Parsing lines", fileDataIdx, surveyFileData.size());
 			// Get data line, file line number and line reference for the next data line
 			// from the survey data array list
 			int lineNo = fileDataIdx + 1;
@@ -199,6 +324,25 @@ public class SurvexParser {
 							DataBlockProperties newBlock = new DataBlockProperties(blockProps);
 							// Make new properties block the current one
 							blockProps = newBlock;
+							if (blockRecords != null) {
+								BlockRecord record = new BlockRecord();
+								record.beginLine = fileDataIdx;
+								record.seriesPath = new ArrayList<String>(nameStack);
+								record.startDataOrder = liveSeries.getDataOrder();
+								record.tapeCalibration = tapeCal;
+								record.compassCalibration = compassCal;
+								record.clinoCalibration = clinoCal;
+								record.declination = declinationCal;
+								record.duplicateFlag = blockProps.duplicateFlag;
+								record.splayFlag = blockProps.splayFlag;
+								record.surfaceFlag = blockProps.surfaceFlag;
+								record.noSurvey = blockProps.noSurvey;
+								if (recordStack.size() > 0) {
+									record.parent = recordStack.get(recordStack.size() - 1);
+								}
+								recordStack.add(blockRecords.size());
+								blockRecords.add(record);
+							}
 						} else if (data.length < 2) {
 							// Anonymous block begin. Put properties from last block into new block as
 							// parent
@@ -229,6 +373,12 @@ public class SurvexParser {
 								// Remove live series from stack, as it is closed
 								SurveySeries endedSeries = seriesStack.remove(seriesStack.size() - 1);
 								nameStack.remove(nameStack.size() - 1);
+								if (blockRecords != null && recordStack.size() > 0) {
+									BlockRecord record = blockRecords.get(recordStack.remove(recordStack.size() - 1));
+									record.endLine = fileDataIdx;
+									record.endDataOrder = new ArrayList<String>(dataOrder);
+									record.series = endedSeries;
+								}
 								// Restore block properties from parent series block
 								blockProps = blockProps.parentBlock;
 								if (seriesStack.size() > 0) {
@@ -260,6 +410,10 @@ public class SurvexParser {
 						Equate equate = new Equate(fullSeriesPrefix, data[1], fullSeriesPrefix, data[2]);
 						// Add to cache
 						equates.add(equate);
+						if (equateLines != null) {
+							equateLines.add(fileDataIdx);
+							parsedEquates.add(equate);
+						}
 					} else if (liveSeries != null && cmd.compareToIgnoreCase("DATA") == 0) {
 						// Reset nosurvey flag
 						blockProps.noSurvey = false;
@@ -766,6 +920,14 @@ public class SurvexParser {
 			}
 		}
 
+		// Put the block being parsed on its own into a survey via its placeholder parents
+		if (contextRoot != null) {
+			allSeries.add(contextRoot);
+		}
+		if (equatesAfter != null) {
+			equates.addAll(equatesAfter);
+		}
+
 		// Process equates
 		UtilityFunctions.processEquates(equates, allSeries);
 
@@ -773,6 +935,7 @@ public class SurvexParser {
 		UtilityFunctions.logSurveyDebugData(allSeries, logger);
 
 		// Completed file parsing
+		allSeries.endBatchUpdate();
 		return allSeries;
 	}
 
@@ -0,0 +1,881 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.reader;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import footleg.cavesurvey.converter.CaveConverter;
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.Equate;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+import footleg.cavesurvey.data.model.SurveyStation.FixType;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Parser for the centreline data in Therion .th and .thconfig files.
+ *
+ * Each survey becomes a series, with nested surveys as inner series, and the legs from all the
+ * centreline blocks in a survey are added to its series. The data, units, calibrate,
+ * declination, date, flags, fix and equate commands are read, along with the normal, diving
+ * and nosurvey data styles. Maps, scraps and the other drawing and configuration blocks are
+ * skipped. Input and source commands are followed by reading the files with
+ * {@link UtilityFunctions#readTextFile(java.io.File, String, UtilityFunctions.IncludeSyntax,
+ * UtilityFunctions.TextLineHandler, List, Logger)} and passing each line to
+ * {@link #parseLine(String, String)} as it is read, so the lines of a large multi-file project
+ * are never held in memory together.
+ *
+ * The series holds the calibrations and date of the first centreline in the survey. Readings in
+ * later centrelines with different calibrations are corrected to the calibrations of the
+ * series as they are read. Passage dimensions are taken as measured at the from station of
+ * each leg, as in the data model.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class TherionParser {
+	// Keys for readings in Therion data commands which the data model holds
+	private static final String KEY_LEFT = "LEFT";
+	private static final String KEY_RIGHT = "RIGHT";
+	private static final String KEY_UP = "UP";
+	private static final String KEY_DOWN = "DOWN";
+	private static final String KEY_IGNORE = "IGNORE";
+
+	// Blocks which hold drawings or configuration rather than centreline data
+	private static final List<String> SKIPPED_BLOCKS = Arrays.asList("scrap", "map", "surface", "lookup", "layout",
+			"source");
+
+	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
+
+	private CaveSurvey allSeries;
+	private List<SurveySeries> seriesStack = new ArrayList<SurveySeries>();
+	private List<String> nameStack = new ArrayList<String>();
+	private List<Equate> equates = new ArrayList<Equate>();
+	private CentrelineSettings settings;
+	private List<CentrelineSettings> groupStack = new ArrayList<CentrelineSettings>();
+	private List<String[]> fixes = new ArrayList<String[]>();
+	private String skipBlockEnd;
+	private String continuedLine = "";
+	private int lineCount = 0;
+	private int totalLines = -1;
+
+	/**
+	 * Settings which apply to the data in a centreline block
+	 */
+	private static class CentrelineSettings implements Cloneable {
+		String style = "normal";
+		List<String> dataOrder = new ArrayList<String>(Arrays.asList(CaveConverter.DATA_ORDER_CAT_FROMSTN,
+				CaveConverter.DATA_ORDER_CAT_TOSTN, CaveConverter.DATA_ORDER_CAT_LENGTH,
+				CaveConverter.DATA_ORDER_CAT_BEARING, CaveConverter.DATA_ORDER_CAT_CLINO));
+		// Size of a unit of each reading in metres or degrees
+		double lengthUnit = 1.0;
+		double depthUnit = 1.0;
+		double dimensionUnit = 1.0;
+		double compassUnit = 1.0;
+		double clinoUnit = 1.0;
+		boolean clinoPercent = false;
+		// Calibrations in metres and degrees, with the sign used in the data model
+		double tapeCalibration = 0.0;
+		double compassCalibration = 0.0;
+		double clinoCalibration = 0.0;
+		double clinoScale = 1.0;
+		double declination = 0.0;
+		Date date;
+		boolean duplicate = false;
+		boolean splay = false;
+		boolean surface = false;
+		// Set once the legs read with these settings have been matched to the series calibrations
+		boolean calibrationsMatched = false;
+		// Set once the data order has been recorded on the series the legs are added to
+		boolean dataOrderRecorded = false;
+		double tapeCorrection = 0.0;
+		double compassCorrection = 0.0;
+
+		@Override
+		protected CentrelineSettings clone() {
+			try {
+				CentrelineSettings copy = (CentrelineSettings) super.clone();
+				copy.dataOrder = new ArrayList<String>(dataOrder);
+				return copy;
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Class constructor
+	 *
+	 * @param logger Logging class to output information, warning and error messages
+	 */
+	public TherionParser(Logger logger) {
+		super();
+		this.logger = logger;
+		allSeries = new CaveSurvey(logger);
+		// Hold back tree events until all the series have been added
+		allSeries.beginBatchUpdate();
+	}
+
+	/**
+	 * Sets the monitor to report parsing progress to, and to check for cancellation
+	 *
+	 * @param progress Progress monitor for the task running this parser
+	 */
+	public void setProgressMonitor(ProgressMonitor progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Parse Therion format data into the cave data model. Input commands can not be followed,
+	 * so the lines of any files they refer to need to be in the data already.
+	 *
+	 * @param surveyFileData ListArray of data lines from a Therion file
+	 * @param lineRefs       File and line number for each data line, or null to refer to lines
+	 *                       by number
+	 * @return Cave Survey object
+	 * @throws ParseException Exception raised when information in a survey data file is not
+	 *                        supported or valid for the format
+	 */
+	public CaveSurvey parseFile(List<String> surveyFileData, List<String> lineRefs) throws ParseException {
+		totalLines = surveyFileData.size();
+		for (int idx = 0; idx < surveyFileData.size(); idx++) {
+			String lineRef = (lineRefs != null) ? lineRefs.get(idx) : "" + (idx + 1);
+			parseLine(surveyFileData.get(idx), lineRef);
+		}
+		return finish();
+	}
+
+	/**
+	 * Parses the next line of Therion data. Lines from included files are passed in where the
+	 * input command for the file was.
+	 *
+	 * @param dataLine Line of Therion data
+	 * @param lineRef  File and line number of the line, for error messages
+	 * @throws ParseException Exception raised when information in the line is not supported or
+	 *                        valid for the format
+	 */
+	public void parseLine(String dataLine, String lineRef) throws ParseException {
+		lineCount++;
+		progress.checkProgress("Parsing lines", lineCount, totalLines);
+		String line = continuedLine + stripComment(dataLine);
+		// A backslash at the end of a line continues the command on the next line
+		if (line.endsWith("\\")) {
+			continuedLine = line.substring(0, line.length() - 1) + " ";
+			return;
+		}
+		continuedLine = "";
+		String[] data = splitLine(line);
+		if (data.length == 0) {
+			return;
+		}
+		String cmd = data[0].toLowerCase();
+
+		if (skipBlockEnd != null) {
+			// Skip lines until the end of a block which does not hold centreline data
+			if (cmd.equals(skipBlockEnd)) {
+				skipBlockEnd = null;
+			}
+		} else if (settings != null) {
+			parseCentrelineLine(data, cmd, lineRef);
+		} else if (cmd.equals("survey")) {
+			if (data.length < 2) {
+				throw new ParseException(
+						UtilityFunctions.formatFileParserMsg("Survey command without a survey name.", lineRef),
+						lineCount);
+			}
+			SurveySeries series = new SurveySeries(data[1]);
+			seriesStack.add(series);
+			nameStack.add(data[1]);
+		} else if (cmd.equals("endsurvey")) {
+			if (seriesStack.isEmpty()) {
+				throw new ParseException(
+						UtilityFunctions.formatFileParserMsg("Endsurvey found outside of any survey.", lineRef),
+						lineCount);
+			}
+			String currentName = nameStack.get(nameStack.size() - 1);
+			if (data.length > 1 && data[1].equals(currentName) == false) {
+				throw new ParseException(UtilityFunctions.formatFileParserMsg(
+						"Names of survey and endsurvey do not match. Survey=" + currentName + " Endsurvey=" + data[1]
+								+ ".", lineRef),
+						lineCount);
+			}
+			endSurvey();
+		} else if (cmd.equals("centreline") || cmd.equals("centerline")) {
+			if (seriesStack.isEmpty()) {
+				throw new ParseException(
+						UtilityFunctions.formatFileParserMsg("Centreline found outside of any survey.", lineRef),
+						lineCount);
+			}
+			settings = new CentrelineSettings();
+			groupStack.clear();
+		} else if (cmd.equals("equate")) {
+			addEquates(data, lineRef);
+		} else if (cmd.equals("input") || (cmd.equals("source") && data.length > 1)) {
+			logger.logError(UtilityFunctions.formatFileParserMsg(
+					"Input command skipped, as the file it refers to has not been read", lineRef));
+		} else if (SKIPPED_BLOCKS.contains(cmd)) {
+			skipBlockEnd = "end" + cmd;
+		} else {
+			// Other survey and configuration commands do not affect the centreline
+			logger.log(Logger.Level.DEBUG, "Therion command ignored: " + cmd);
+		}
+	}
+
+	/**
+	 * Completes the survey after the last line has been parsed
+	 *
+	 * @return Cave Survey object
+	 * @throws ParseException Exception raised when the survey data is not complete
+	 */
+	public CaveSurvey finish() throws ParseException {
+		if (settings != null) {
+			throw new ParseException("Therion data ended inside a centreline block.", lineCount);
+		}
+		if (seriesStack.isEmpty() == false) {
+			throw new ParseException("Therion data ended inside survey " + nameStack.get(nameStack.size() - 1) + ".",
+					lineCount);
+		}
+
+		// Process equates
+		UtilityFunctions.processEquates(equates, allSeries);
+
+		// Debug dump
+		UtilityFunctions.logSurveyDebugData(allSeries, logger);
+
+		// Completed file parsing
+		allSeries.endBatchUpdate();
+		return allSeries;
+	}
+
+	private void endSurvey() {
+		SurveySeries endedSeries = seriesStack.remove(seriesStack.size() - 1);
+		nameStack.remove(nameStack.size() - 1);
+		if (seriesStack.size() > 0) {
+			seriesStack.get(seriesStack.size() - 1).addSeries(endedSeries);
+		} else {
+			allSeries.add(endedSeries);
+		}
+	}
+
+	/**
+	 * Parses a line inside a centreline block
+	 */
+	private void parseCentrelineLine(String[] data, String cmd, String lineRef) throws ParseException {
+		SurveySeries liveSeries = seriesStack.get(seriesStack.size() - 1);
+		if (cmd.equals("endcentreline") || cmd.equals("endcenterline")) {
+			applyFixes(liveSeries, lineRef);
+			settings = null;
+		} else if (cmd.equals("data")) {
+			parseDataCommand(data, lineRef);
+		} else if (cmd.equals("units")) {
+			parseUnitsCommand(data, lineRef);
+		} else if (cmd.equals("calibrate")) {
+			parseCalibrateCommand(data, lineRef);
+		} else if (cmd.equals("declination")) {
+			if (data.length > 1 && data[1].equals("-") == false) {
+				double unit = (data.length > 2) ? angleUnit(data[2], lineRef) : 1.0;
+				// Therion gives the magnetic declination, which is added to bearings
+				settings.declination = -parseNumber(data[1], lineRef) * unit;
+			} else {
+				settings.declination = 0.0;
+			}
+			settings.calibrationsMatched = false;
+		} else if (cmd.equals("date")) {
+			if (data.length > 1 && data[1].equals("-") == false) {
+				settings.date = parseDate(data[1], lineRef);
+			}
+		} else if (cmd.equals("flags")) {
+			boolean notPrefixed = false;
+			for (int i = 1; i < data.length; i++) {
+				String flag = data[i].toLowerCase();
+				if (flag.equals("not")) {
+					notPrefixed = true;
+				} else {
+					if (flag.equals("duplicate")) {
+						settings.duplicate = (notPrefixed == false);
+					} else if (flag.equals("splay")) {
+						settings.splay = (notPrefixed == false);
+					} else if (flag.equals("surface")) {
+						settings.surface = (notPrefixed == false);
+					}
+					notPrefixed = false;
+				}
+			}
+		} else if (cmd.equals("fix")) {
+			if (data.length < 5) {
+				throw new ParseException(UtilityFunctions.formatFileParserMsg(
+						"Fix command did not contain a station and three coordinates.", lineRef), lineCount);
+			}
+			String[] fix = { data[1], "" + parseNumber(data[2], lineRef) * settings.lengthUnit,
+					"" + parseNumber(data[3], lineRef) * settings.lengthUnit,
+					"" + parseNumber(data[4], lineRef) * settings.lengthUnit };
+			fixes.add(fix);
+		} else if (cmd.equals("equate")) {
+			addEquates(data, lineRef);
+		} else if (cmd.equals("group")) {
+			groupStack.add(settings.clone());
+		} else if (cmd.equals("endgroup")) {
+			if (groupStack.isEmpty()) {
+				throw new ParseException(
+						UtilityFunctions.formatFileParserMsg("Endgroup found without a group.", lineRef), lineCount);
+			}
+			settings = groupStack.remove(groupStack.size() - 1);
+		} else if (isCentrelineCommand(cmd)) {
+			logger.log(Logger.Level.DEBUG, "Therion centreline command ignored: " + cmd);
+		} else if (settings.style.equals("normal") || settings.style.equals("diving")
+				|| settings.style.equals("nosurvey")) {
+			parseLegLine(liveSeries, data, lineRef);
+		}
+		// Data lines in other styles are only passage dimensions, and are skipped
+	}
+
+	/**
+	 * Determines whether a word is one of the Therion commands allowed in a centreline which do not
+	 * affect the legs, rather than the first reading of a data line
+	 */
+	private boolean isCentrelineCommand(String cmd) {
+		return cmd.equals("team") || cmd.equals("explo-date") || cmd.equals("explo-team")
+				|| cmd.equals("instrument") || cmd.equals("infer") || cmd.equals("sd") || cmd.equals("grade")
+				|| cmd.equals("station") || cmd.equals("extend") || cmd.equals("mark") || cmd.equals("cs")
+				|| cmd.equals("station-names") || cmd.equals("walls") || cmd.equals("vthreshold")
+				|| cmd.equals("copyright") || cmd.equals("author") || cmd.equals("break");
+	}
+
+	private void parseDataCommand(String[] data, String lineRef) throws ParseException {
+		if (data.length < 2) {
+			throw new ParseException(UtilityFunctions.formatFileParserMsg("Data command without a style.", lineRef),
+					lineCount);
+		}
+		String style = data[1].toLowerCase();
+		if (style.equals("normal") || style.equals("diving") || style.equals("nosurvey")) {
+			List<String> dataOrder = new ArrayList<String>();
+			for (int i = 2; i < data.length; i++) {
+				String item = data[i].toLowerCase();
+				String key;
+				if (item.equals("from")) {
+					key = CaveConverter.DATA_ORDER_CAT_FROMSTN;
+				} else if (item.equals("to")) {
+					key = CaveConverter.DATA_ORDER_CAT_TOSTN;
+				} else if (item.equals("length") || item.equals("tape")) {
+					key = CaveConverter.DATA_ORDER_CAT_LENGTH;
+				} else if (item.equals("compass") || item.equals("bearing")) {
+					key = CaveConverter.DATA_ORDER_CAT_BEARING;
+				} else if (item.equals("clino") || item.equals("gradient")) {
+					key = CaveConverter.DATA_ORDER_CAT_CLINO;
+				} else if (item.equals("fromdepth")) {
+					key = CaveConverter.DATA_ORDER_CAT_FROMDEPTH;
+				} else if (item.equals("todepth")) {
+					key = CaveConverter.DATA_ORDER_CAT_TODEPTH;
+				} else if (item.equals("depthchange")) {
+					key = CaveConverter.DATA_ORDER_CAT_DEPTHCHANGE;
+				} else if (item.equals("left")) {
+					key = KEY_LEFT;
+				} else if (item.equals("right")) {
+					key = KEY_RIGHT;
+				} else if (item.equals("up") || item.equals("ceiling")) {
+					key = KEY_UP;
+				} else if (item.equals("down") || item.equals("floor")) {
+					key = KEY_DOWN;
+				} else if (item.equals("ignoreall")) {
+					key = CaveConverter.DATA_ORDER_CAT_IGNOREALL;
+				} else if (item.equals("ignore") || item.equals("backlength") || item.equals("backtape")
+						|| item.equals("backcompass") || item.equals("backbearing") || item.equals("backclino")
+						|| item.equals("backgradient")) {
+					// Back sights are not held in the data model
+					key = KEY_IGNORE;
+				} else {
+					throw new ParseException(UtilityFunctions.formatFileParserMsg(
+							"Unsupported Therion " + style + " data order. Term '" + item + "' is not supported.",
+							lineRef), lineCount);
+				}
+				dataOrder.add(key);
+			}
+			boolean hasStations = dataOrder.contains(CaveConverter.DATA_ORDER_CAT_FROMSTN)
+					&& dataOrder.contains(CaveConverter.DATA_ORDER_CAT_TOSTN);
+			boolean hasReadings = style.equals("nosurvey") || (dataOrder.contains(CaveConverter.DATA_ORDER_CAT_LENGTH)
+					&& dataOrder.contains(CaveConverter.DATA_ORDER_CAT_BEARING) && (style.equals("normal")
+							? dataOrder.contains(CaveConverter.DATA_ORDER_CAT_CLINO)
+							: (dataOrder.contains(CaveConverter.DATA_ORDER_CAT_DEPTHCHANGE)
+									|| (dataOrder.contains(CaveConverter.DATA_ORDER_CAT_FROMDEPTH)
+											&& dataOrder.contains(CaveConverter.DATA_ORDER_CAT_TODEPTH)))));
+			if (hasStations == false || hasReadings == false) {
+				throw new ParseException(UtilityFunctions.formatFileParserMsg(
+						"Therion " + style + " data order did not contain enough items for a survey leg.", lineRef),
+						lineCount);
+			}
+			settings.style = style;
+			settings.dataOrder = dataOrder;
+			settings.dataOrderRecorded = false;
+		} else if (style.equals("dimensions")) {
+			logger.logMessage(UtilityFunctions.formatFileParserMsg(
+					"Therion dimensions data is not held in the data model, so is skipped", lineRef));
+			settings.style = style;
+		} else {
+			throw new ParseException(
+					UtilityFunctions.formatFileParserMsg("Unsupported Therion data style: " + data[1], lineRef),
+					lineCount);
+		}
+	}
+
+	/**
+	 * Parses a units command, which is a list of quantities followed by an optional factor and
+	 * the units
+	 */
+	private void parseUnitsCommand(String[] data, String lineRef) throws ParseException {
+		if (data.length < 3) {
+			throw new ParseException(UtilityFunctions.formatFileParserMsg(
+					"UNITS command did not contain a category of measurement plus value.", lineRef), lineCount);
+		}
+		String units = data[data.length - 1].toLowerCase();
+		int lastQuantity = data.length - 2;
+		double factor = 1.0;
+		if (isNumber(data[lastQuantity])) {
+			factor = parseNumber(data[lastQuantity], lineRef);
+			lastQuantity--;
+		}
+		for (int i = 1; i <= lastQuantity; i++) {
+			String quantity = data[i].toLowerCase();
+			if (quantity.equals("length") || quantity.equals("tape") || quantity.equals("backlength")
+					|| quantity.equals("backtape") || quantity.equals("x") || quantity.equals("y")
+					|| quantity.equals("z") || quantity.equals("easting") || quantity.equals("northing")
+					|| quantity.equals("altitude")) {
+				settings.lengthUnit = factor * lengthUnit(units, lineRef);
+			} else if (quantity.equals("depth") || quantity.equals("fromdepth") || quantity.equals("todepth")
+					|| quantity.equals("depthchange")) {
+				settings.depthUnit = factor * lengthUnit(units, lineRef);
+			} else if (quantity.equals("left") || quantity.equals("right") || quantity.equals("up")
+					|| quantity.equals("down") || quantity.equals("ceiling") || quantity.equals("floor")) {
+				settings.dimensionUnit = factor * lengthUnit(units, lineRef);
+			} else if (quantity.equals("compass") || quantity.equals("bearing") || quantity.equals("backcompass")
+					|| quantity.equals("backbearing")) {
+				settings.compassUnit = factor * angleUnit(units, lineRef);
+			} else if (quantity.equals("clino") || quantity.equals("gradient") || quantity.equals("backclino")
+					|| quantity.equals("backgradient")) {
+				settings.clinoPercent = units.startsWith("percent");
+				settings.clinoUnit = factor * (settings.clinoPercent ? 1.0 : angleUnit(units, lineRef));
+			} else {
+				throw new ParseException(UtilityFunctions.formatFileParserMsg(
+						"Unsupported unit type '" + data[i] + "'.", lineRef), lineCount);
+			}
+		}
+	}
+
+	/**
+	 * Parses a calibrate command, which is a list of quantities followed by the zero error and an
+	 * optional scale
+	 */
+	private void parseCalibrateCommand(String[] data, String lineRef) throws ParseException {
+		int valueIdx = 1;
+		while (valueIdx < data.length && isNumber(data[valueIdx]) == false) {
+			valueIdx++;
+		}
+		if (valueIdx == 1 || valueIdx == data.length) {
+			throw new ParseException(UtilityFunctions.formatFileParserMsg(
+					"CALIBRATE command did not contain an instrument type plus value.", lineRef), lineCount);
+		}
+		double zeroError = parseNumber(data[valueIdx], lineRef);
+		double scale = (valueIdx + 1 < data.length && isNumber(data[valueIdx + 1]))
+				? parseNumber(data[valueIdx + 1], lineRef)
+				: 1.0;
+		for (int i = 1; i < valueIdx; i++) {
+			String quantity = data[i].toLowerCase();
+			if (quantity.equals("length") || quantity.equals("tape")) {
+				settings.tapeCalibration = zeroError * settings.lengthUnit;
+			} else if (quantity.equals("compass") || quantity.equals("bearing")) {
+				settings.compassCalibration = zeroError * settings.compassUnit;
+			} else if (quantity.equals("clino") || quantity.equals("gradient")) {
+				settings.clinoCalibration = zeroError * settings.clinoUnit;
+				settings.clinoScale = scale;
+				continue;
+			} else {
+				logger.logMessage(UtilityFunctions.formatFileParserMsg(
+						"Calibration of " + data[i] + " is not held in the data model, so is skipped", lineRef));
+				continue;
+			}
+			if (scale != 1.0) {
+				logger.logMessage(UtilityFunctions.formatFileParserMsg(
+						"Calibration scale for " + data[i] + " is not held in the data model, so is skipped",
+						lineRef));
+			}
+		}
+		settings.calibrationsMatched = false;
+	}
+
+	/**
+	 * Parses a data line into a survey leg and adds it to the series
+	 */
+	private void parseLegLine(SurveySeries liveSeries, String[] data, String lineRef) throws ParseException {
+		matchCalibrations(liveSeries);
+		recordDataOrder(liveSeries);
+		SurveyLeg leg = new SurveyLeg();
+		double fromDepth = 0;
+		List<String> dataOrder = settings.dataOrder;
+		for (int index = 0; index < dataOrder.size(); index++) {
+			String key = dataOrder.get(index);
+			if (key.equals(CaveConverter.DATA_ORDER_CAT_IGNOREALL)) {
+				break;
+			}
+			if (index >= data.length) {
+				throw new ParseException(UtilityFunctions.formatFileParserMsg(
+						"Data line did not contain a reading for each item in the data order.", lineRef), lineCount);
+			}
+			String item = data[index];
+			if (key.equals(CaveConverter.DATA_ORDER_CAT_FROMSTN)) {
+				leg.setFromStn(createStation(item, liveSeries));
+			} else if (key.equals(CaveConverter.DATA_ORDER_CAT_TOSTN)) {
+				leg.setToStn(createStation(item, liveSeries));
+			} else if (key.equals(CaveConverter.DATA_ORDER_CAT_LENGTH)) {
+				double length = parseNumber(item, lineRef) * settings.lengthUnit;
+				if (length < 0) {
+					logger.logMessage("Warning: Negative leg length (" + item + ") read from Therion file at line "
+							+ lineRef + ".");
+				}
+				leg.setLength(length - settings.tapeCorrection, LengthUnit.Metres);
+			} else if (key.equals(CaveConverter.DATA_ORDER_CAT_BEARING)) {
+				if (item.equals("-")) {
+					leg.setCompass(0, BearingUnit.Degrees);
+				} else {
+					double compass = parseNumber(item, lineRef) * settings.compassUnit - settings.compassCorrection;
+					leg.setCompass((compass % 360 + 360) % 360, BearingUnit.Degrees);
+				}
+			} else if (key.equals(CaveConverter.DATA_ORDER_CAT_CLINO)) {
+				leg.setClino(parseClino(item, liveSeries, lineRef), GradientUnit.Degrees);
+			} else if (key.equals(CaveConverter.DATA_ORDER_CAT_FROMDEPTH)) {
+				// Store fromDepth, it will be added to leg when toDepth is read
+				fromDepth = parseNumber(item, lineRef) * settings.depthUnit;
+			} else if (key.equals(CaveConverter.DATA_ORDER_CAT_TODEPTH)) {
+				leg.setDepths(fromDepth, parseNumber(item, lineRef) * settings.depthUnit, LengthUnit.Metres);
+			} else if (key.equals(CaveConverter.DATA_ORDER_CAT_DEPTHCHANGE)) {
+				leg.setDepthChange(parseNumber(item, lineRef) * settings.depthUnit, LengthUnit.Metres);
+			} else if (key.equals(KEY_IGNORE) || item.equals("-")) {
+				// Reading not used, or passage dimension not measured
+			} else if (key.equals(KEY_LEFT)) {
+				leg.setLeft(parseNumber(item, lineRef) * settings.dimensionUnit, LengthUnit.Metres);
+			} else if (key.equals(KEY_RIGHT)) {
+				leg.setRight(parseNumber(item, lineRef) * settings.dimensionUnit, LengthUnit.Metres);
+			} else if (key.equals(KEY_UP)) {
+				leg.setUp(parseNumber(item, lineRef) * settings.dimensionUnit, LengthUnit.Metres);
+			} else if (key.equals(KEY_DOWN)) {
+				leg.setDown(parseNumber(item, lineRef) * settings.dimensionUnit, LengthUnit.Metres);
+			}
+		}
+
+		// Set flags for leg
+		leg.setNosurvey(settings.style.equals("nosurvey"));
+		leg.setDuplicate(settings.duplicate);
+		// Legs to anonymous stations are always treated as splays
+		leg.setSplay(settings.splay || leg.getToStn().getName().equals("-"));
+		leg.setSurface(settings.surface);
+		liveSeries.addLeg(leg);
+	}
+
+	/**
+	 * Gives the series the calibrations and date of the first centreline with legs in it, and
+	 * works out the corrections to convert readings in later centrelines with different
+	 * calibrations to the calibrations of the series
+	 */
+	private void matchCalibrations(SurveySeries liveSeries) {
+		if (settings.calibrationsMatched) {
+			return;
+		}
+		if (liveSeries.legCount() == 0) {
+			liveSeries.setTapeCalibration(settings.tapeCalibration, LengthUnit.Metres);
+			liveSeries.setCompassCalibration(settings.compassCalibration, BearingUnit.Degrees);
+			liveSeries.setClinoCalibration(settings.clinoCalibration, GradientUnit.Degrees, settings.clinoScale);
+			liveSeries.setDeclination(settings.declination);
+		}
+		if (liveSeries.getSurveyDate() == null) {
+			liveSeries.setSurveyDate(settings.date);
+		}
+		settings.tapeCorrection = settings.tapeCalibration - liveSeries.getTapeCalibration(LengthUnit.Metres);
+		settings.compassCorrection = (settings.compassCalibration + settings.declination)
+				- (liveSeries.getCompassCalibration(BearingUnit.Degrees) + liveSeries.getDeclination());
+		settings.calibrationsMatched = true;
+	}
+
+	/**
+	 * Records the order of the readings held in the data model for the current data style on the
+	 * series. As for Survex data, the order is set as the primary order of the series unless that
+	 * already holds the order for the other style, in which case it is set as the secondary order.
+	 */
+	private void recordDataOrder(SurveySeries liveSeries) {
+		if (settings.dataOrderRecorded) {
+			return;
+		}
+		settings.dataOrderRecorded = true;
+		boolean diving = settings.style.equals("diving");
+		if (diving == false && settings.style.equals("normal") == false) {
+			// Nosurvey legs have no readings, so are written in their own style
+			return;
+		}
+		List<String> modelOrder = new ArrayList<String>(settings.dataOrder);
+		if (diving) {
+			modelOrder.retainAll(Arrays.asList(CaveConverter.DATA_ORDER_CAT_FROMSTN,
+					CaveConverter.DATA_ORDER_CAT_TOSTN, CaveConverter.DATA_ORDER_CAT_LENGTH,
+					CaveConverter.DATA_ORDER_CAT_BEARING, CaveConverter.DATA_ORDER_CAT_FROMDEPTH,
+					CaveConverter.DATA_ORDER_CAT_TODEPTH, CaveConverter.DATA_ORDER_CAT_DEPTHCHANGE));
+		} else {
+			modelOrder.retainAll(Arrays.asList(CaveConverter.DATA_ORDER_CAT_FROMSTN,
+					CaveConverter.DATA_ORDER_CAT_TOSTN, CaveConverter.DATA_ORDER_CAT_LENGTH,
+					CaveConverter.DATA_ORDER_CAT_BEARING, CaveConverter.DATA_ORDER_CAT_CLINO));
+		}
+		if (liveSeries.hasDataOrder() && UtilityFunctions.dataOrderIsDiving(liveSeries.getDataOrder()) != diving) {
+			liveSeries.setDataOrder2(modelOrder);
+		} else {
+			liveSeries.setDataOrder(modelOrder);
+		}
+	}
+
+	/**
+	 * Parses a clino reading into degrees, with the calibration of the series
+	 */
+	private double parseClino(String item, SurveySeries liveSeries, String lineRef) throws ParseException {
+		String val = item.toLowerCase();
+		if (val.equals("-v") || val.equals("down") || val.equals("d")) {
+			return -90;
+		} else if (val.equals("+v") || val.equals("up") || val.equals("u")) {
+			return 90;
+		} else if (val.equals("-") || val.equals("level")) {
+			return 0;
+		}
+		double clino = parseNumber(item, lineRef) * settings.clinoUnit;
+		if (settings.clinoPercent) {
+			clino = Math.toDegrees(Math.atan(clino / 100));
+		}
+		// Convert to a reading which gives the same corrected value with the series calibration
+		double corrected = (clino - settings.clinoCalibration) * settings.clinoScale;
+		return corrected / liveSeries.getClinoScaleFactor() + liveSeries.getClinoCalibration(GradientUnit.Degrees);
+	}
+
+	private SurveyStation createStation(String name, SurveySeries liveSeries) {
+		// Both forms of anonymous station are read as the anonymous splay station
+		String stnName = name.equals(".") ? "-" : name;
+		return UtilityFunctions.createStationFromNameForSeries(stnName, liveSeries);
+	}
+
+	/**
+	 * Sets the positions of the stations fixed in the centreline block just ended on the legs
+	 * to those stations
+	 */
+	private void applyFixes(SurveySeries liveSeries, String lineRef) {
+		for (String[] fix : fixes) {
+			boolean found = false;
+			for (int legIdx = 0; legIdx < liveSeries.legCount() && found == false; legIdx++) {
+				SurveyLeg leg = liveSeries.getLegRaw(legIdx);
+				SurveyStation stn = null;
+				if (leg.getFromStn().getName().equals(fix[0])) {
+					stn = leg.getFromStn();
+				} else if (leg.getToStn() != null && leg.getToStn().getName().equals(fix[0])) {
+					stn = leg.getToStn();
+				}
+				if (stn != null) {
+					stn.setFixed(FixType.OTHER, Double.parseDouble(fix[1]), Double.parseDouble(fix[2]),
+							Double.parseDouble(fix[3]));
+					found = true;
+				}
+			}
+			if (found == false) {
+				logger.logMessage(UtilityFunctions.formatFileParserMsg(
+						"Fixed station " + fix[0] + " is not on any leg in the survey, so the fix is skipped",
+						lineRef));
+			}
+		}
+		fixes.clear();
+	}
+
+	/**
+	 * Adds equates for a list of stations, which are all equated to the first station
+	 */
+	private void addEquates(String[] data, String lineRef) throws ParseException {
+		if (data.length < 3) {
+			throw new ParseException(UtilityFunctions.formatFileParserMsg(
+					"Equate command did not contain at least two stations.", lineRef), lineCount);
+		}
+		String[] first = stationReference(data[1], lineRef);
+		for (int i = 2; i < data.length; i++) {
+			String[] other = stationReference(data[i], lineRef);
+			equates.add(new Equate(first[0], first[1], other[0], other[1]));
+		}
+	}
+
+	/**
+	 * Converts a Therion station reference into the full path of its series and the station name.
+	 * Therion references give the surveys nearest the station first, and are relative to the
+	 * current survey.
+	 */
+	private String[] stationReference(String reference, String lineRef) throws ParseException {
+		List<String> path = new ArrayList<String>(nameStack);
+		String stnName = reference;
+		int atPos = reference.indexOf('@');
+		if (atPos >= 0) {
+			stnName = reference.substring(0, atPos);
+			List<String> surveys = Arrays.asList(reference.substring(atPos + 1).split("[.]"));
+			for (int i = surveys.size() - 1; i >= 0; i--) {
+				path.add(surveys.get(i));
+			}
+		}
+		if (path.isEmpty()) {
+			throw new ParseException(UtilityFunctions.formatFileParserMsg(
+					"Station " + reference + " in equate is not in any survey.", lineRef), lineCount);
+		}
+		return new String[] { String.join(".", path), stnName };
+	}
+
+	private double lengthUnit(String units, String lineRef) throws ParseException {
+		if (units.startsWith("met") || units.equals("m")) {
+			return 1.0;
+		} else if (units.startsWith("centimet") || units.equals("cm")) {
+			return 0.01;
+		} else if (units.startsWith("inch") || units.equals("in")) {
+			return 0.0254;
+		} else if (units.equals("feet") || units.equals("foot") || units.equals("ft")) {
+			return UtilityFunctions.lengthToMetres(1.0, LengthUnit.Feet);
+		} else if (units.startsWith("yard") || units.equals("yd")) {
+			return UtilityFunctions.lengthToMetres(1.0, LengthUnit.Yards);
+		}
+		throw new ParseException(UtilityFunctions.formatFileParserMsg("Unsupported length unit '" + units + "'.",
+				lineRef), lineCount);
+	}
+
+	private double angleUnit(String units, String lineRef) throws ParseException {
+		String unit = units.toLowerCase();
+		if (unit.startsWith("deg")) {
+			return 1.0;
+		} else if (unit.startsWith("min")) {
+			return 1.0 / 60;
+		} else if (unit.startsWith("grad")) {
+			return 0.9;
+		} else if (unit.startsWith("mil")) {
+			return 360.0 / 6400;
+		}
+		throw new ParseException(UtilityFunctions.formatFileParserMsg("Unsupported angle unit '" + units + "'.",
+				lineRef), lineCount);
+	}
+
+	/**
+	 * Parses a Therion date, which may give only the year or month, and may be followed by a
+	 * time or be the start of a date range
+	 */
+	private Date parseDate(String value, String lineRef) throws ParseException {
+		String date = value;
+		int timePos = date.indexOf('@');
+		if (timePos >= 0) {
+			date = date.substring(0, timePos);
+		}
+		String[] parts = date.split("[.]");
+		String format = (parts.length == 1) ? "yyyy" : (parts.length == 2) ? "yyyy.MM" : "yyyy.MM.dd";
+		try {
+			return UtilityFunctions.stringToDate(date, format);
+		} catch (ParseException e) {
+			throw new ParseException(UtilityFunctions.formatFileParserMsg("Invalid date '" + value + "'.", lineRef),
+					lineCount);
+		}
+	}
+
+	private boolean isNumber(String value) {
+		try {
+			Double.parseDouble(value);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private double parseNumber(String value, String lineRef) throws ParseException {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new ParseException(
+					UtilityFunctions.formatFileParserMsg("Invalid number '" + value + "'.", lineRef), lineCount);
+		}
+	}
+
+	/**
+	 * Removes a comment from the end of a line, ignoring comment characters in quoted text
+	 */
+	private String stripComment(String line) {
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == '#' && quoted == false) {
+				return line.substring(0, i).trim();
+			}
+		}
+		return line.trim();
+	}
+
+	/**
+	 * Splits a line into words separated by white space. Quoted text and text in square brackets
+	 * are kept together as single words, without the quotes.
+	 */
+	private String[] splitLine(String line) {
+		List<String> words = new ArrayList<String>();
+		StringBuilder word = new StringBuilder();
+		boolean inWord = false;
+		char closing = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (closing != 0) {
+				if (c == closing) {
+					if (closing == ']') {
+						word.append(c);
+					}
+					closing = 0;
+				} else {
+					word.append(c);
+				}
+			} else if (Character.isWhitespace(c)) {
+				if (inWord) {
+					words.add(word.toString());
+					word.setLength(0);
+					inWord = false;
+				}
+			} else {
+				inWord = true;
+				if (c == '"') {
+					closing = '"';
+				} else {
+					if (c == '[') {
+						closing = ']';
+					}
+					word.append(c);
+				}
+			}
+		}
+		if (inWord) {
+			words.add(word.toString());
+		}
+		return words.toArray(new String[words.size()]);
+	}
+
+}
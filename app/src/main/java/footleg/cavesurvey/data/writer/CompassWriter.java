@@ -18,317 +18,438 @@
  */
 package footleg.cavesurvey.data.writer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import footleg.cavesurvey.converter.CaveConverter;
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
 import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
 import footleg.cavesurvey.data.model.CaveSurvey;
 import footleg.cavesurvey.data.model.SurveyLeg;
 import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.tools.SurveyNetwork;
 
 /**
  * Writer for Compass file format text data.
- * 
+ *
+ * Compass data files hold a flat list of surveys, so every series containing legs is written
+ * as a survey named with a unique short name of up to 4 characters. Compass joins surveys by
+ * station name alone, so stations are named with the short name of their series and an
+ * underscore followed by the station name, and stations equated between series are given the
+ * name used where they are first written. Station names longer than the 12 characters Compass
+ * allows, or which would clash with a name already used, are cut short and end with a hyphen and
+ * a number to keep them unique. Splays end at stations named with the short name, a
+ * hyphen and a number. Measurements are written as recorded, in feet, with the series
+ * calibrations written as the survey corrections. Fixed station positions are not written,
+ * as Compass holds them in the project file rather than the data file.
+ *
+ * Data can be streamed to a writer one line at a time, so large surveys are not held in
+ * memory as text.
+ *
  * @author Footleg
  * @version 2024.09.24 (ISO 8601 YYYY.MM.DD)
  * @since 1.8 (The Java version used)
  */
 public class CompassWriter {
+	// Value Compass uses for passage dimensions which were not measured
+	private static final String MISSING_LRUD = "-9999.00";
+	private static final String FORM_FEED = "\f";
+	// Longest station name Compass reads from the fixed width leg lines
+	static final int MAX_STATION_NAME_LENGTH = 12;
+
 	private List<String> shortNames = new ArrayList<String>();
+	// Short names in upper case, as Compass names are not case sensitive
+	private Set<String> shortNamesUsed = new HashSet<String>();
+	private int fallbackNameSequence = 0;
+	// Station names written in the current file in upper case, as Compass names are not case sensitive
+	private Set<String> stationNamesUsed = new HashSet<String>();
+	// Names given to stations which are not in the survey network, keyed by their full dotted name
+	private Map<String, String> unlinkedStationNames = new HashMap<String, String>();
+	private int shortenedNameSequence = 0;
+	private int shortenedNameCount = 0;
 	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
 
 	public CompassWriter(Logger logger) {
 		super();
 		this.logger = logger;
 	}
 
+	/**
+	 * Sets the monitor to report writing progress to, and to check for cancellation
+	 *
+	 * @param progress Progress monitor for the task running this writer
+	 */
+	public void setProgressMonitor(ProgressMonitor progress) {
+		this.progress = progress;
+	}
+
 	/**
 	 * Generates Compass format data from a cave survey
-	 * 
-	 * TODO: Compass Writer CLASS IS NOT FULLY IMPLEMENTED YET AND WILL NOT GENERATE
-	 * VALID DATA
-	 * 
-	 * @param surveyData The cave survey model to generate Compass data for
+	 *
+	 * @param surveyData   The cave survey model to generate Compass data for
+	 * @param defaultDate  Date to write for series which have no survey date
+	 * @param outputSplays Flag to enable splays to be output
 	 * @return Text lines of Compass format data
 	 */
-	public List<String> generateCompassData(CaveSurvey surveyData) {
+	public List<String> generateCompassData(CaveSurvey surveyData, Date defaultDate, boolean outputSplays) {
 		List<String> outputData = new ArrayList<String>();
-		String caveName = "cave";
+		try {
+			writeCompassData(surveyData, defaultDate, outputSplays, outputData::add);
+		} catch (IOException e) {
+			// Adding lines to a list does not throw
+			throw new UncheckedIOException(e);
+		}
+		return outputData;
+	}
+
+	/**
+	 * Writes Compass format data from a cave survey to a writer, one line at a time. Lines are
+	 * separated in the same way as files written from lists of lines, with no separator after the
+	 * last line. The writer is flushed but not closed.
+	 *
+	 * @param surveyData   The cave survey model to generate Compass data for
+	 * @param defaultDate  Date to write for series which have no survey date
+	 * @param outputSplays Flag to enable splays to be output
+	 * @param output       Writer to write the data to
+	 * @throws IOException If the data could not be written
+	 */
+	public void writeCompassData(CaveSurvey surveyData, Date defaultDate, boolean outputSplays, Writer output)
+			throws IOException {
+		writeCompassData(surveyData, defaultDate, outputSplays, new LineWriter(output));
+		output.flush();
+	}
 
-		// See if we can determine cave name from series name of first series
-		SurveySeries series1 = surveyData.get(0);
-		if (series1.getSeriesName().length() > 0) {
+	private void writeCompassData(CaveSurvey surveyData, Date defaultDate, boolean outputSplays, LineOutput output)
+			throws IOException {
+		if (surveyData.isEmpty()) {
+			logger.logMessage("No survey data to write to Compass file.");
+			return;
+		}
+		String caveName = caveName(surveyData.get(0));
+		// Names from any earlier survey written by this writer are not reused
+		shortNames.clear();
+		shortNamesUsed.clear();
+		fallbackNameSequence = 0;
+		stationNamesUsed.clear();
+		unlinkedStationNames.clear();
+		shortenedNameSequence = 0;
+		shortenedNameCount = 0;
+
+		// Flatten the series tree into the list of series with legs, which become Compass surveys
+		List<SurveySeries> surveys = new ArrayList<SurveySeries>();
+		List<String> surveyPaths = new ArrayList<String>();
+		for (int seriesIdx = 0; seriesIdx < surveyData.size(); seriesIdx++) {
+			addSurveys(surveyData.get(seriesIdx), "", surveys, surveyPaths);
+		}
+
+		// Equated stations share an index in the survey network, so are given the same name
+		SurveyNetwork network = SurveyNetwork.build(surveyData);
+		String[] stationNames = new String[network.getStationCount()];
+		SimpleDateFormat dateFormat = new SimpleDateFormat("M d yyyy");
+
+		for (int surveyIdx = 0; surveyIdx < surveys.size(); surveyIdx++) {
+			progress.checkProgress("Writing series", surveyIdx, surveys.size());
+			SurveySeries series = surveys.get(surveyIdx);
+			String path = surveyPaths.get(surveyIdx);
+			String shortName = generateShortName(series.getSeriesName());
+
+			// Write header lines for survey
+			Date date = (series.getSurveyDate() != null) ? series.getSurveyDate() : defaultDate;
+			output.add(caveName);
+			output.add("SURVEY NAME: " + shortName);
+			output.add("SURVEY DATE: " + dateFormat.format(date) + "  COMMENT:" + path);
+			output.add("SURVEY TEAM:");
+			output.add("");
+			output.add("DECLINATION: " + CaveConverter.padNumber(0.0 - series.getDeclination(), 2, 7)
+					+ "  FORMAT: DDDDLUDRLADN  CORRECTIONS: "
+					+ CaveConverter.padNumber(0.0 - series.getCompassCalibration(BearingUnit.Degrees), 2, 0) + " "
+					+ CaveConverter.padNumber(0.0 - series.getClinoCalibration(GradientUnit.Degrees), 2, 0) + " "
+					+ CaveConverter.padNumber(0.0 - series.getTapeCalibration(LengthUnit.Feet), 2, 0));
+			output.add("");
+			output.add("        FROM           TO   LENGTH  BEARING      INC     LEFT       UP     DOWN    RIGHT"
+					+ "   FLAGS  COMMENTS");
+			output.add("");
+
+			// Write the legs
+			int splayCount = 0;
+			for (int legIdx = 0; legIdx < series.legCount(); legIdx++) {
+				SurveyLeg leg = series.getLegRaw(legIdx);
+				String fromStn = stationName(leg.getFromStn().getName(), path, shortName, network, stationNames);
+				String toStn;
+				String flags = "";
+				if (leg.isSplay()) {
+					if (outputSplays == false) {
+						continue;
+					}
+					// Splays end at stations which are not used anywhere else, and are excluded from
+					// the survey length
+					splayCount++;
+					toStn = uniqueStationName(shortName + "-" + splayCount);
+					flags = "#|L#";
+				} else {
+					toStn = stationName(leg.getToStn().getName(), path, shortName, network, stationNames);
+					if (leg.isNosurvey()) {
+						// No measurements, so exclude from processing
+						flags = "#|X#";
+					} else if (leg.isDuplicate()) {
+						flags = "#|L#";
+					}
+				}
+				output.add(legLine(leg, fromStn, toStn, flags));
+			}
+
+			// End of survey
+			output.add(FORM_FEED);
+		}
+		if (shortenedNameCount > 0) {
+			logger.logMessage("Warning: " + shortenedNameCount + " station names were changed to fit the "
+					+ MAX_STATION_NAME_LENGTH + " characters Compass allows and remain unique.");
+		}
+		logger.logMessage("Written " + surveys.size() + " surveys to Compass data.");
+	}
+
+	/**
+	 * Determines the cave name from the name of the first series, taking the name before the first
+	 * dot separator, or the name without any trailing numbers
+	 */
+	private String caveName(SurveySeries series1) {
+		String caveName = "cave";
+		String name = series1.getSeriesName();
+		if (name.length() > 0) {
 			// Check for dot separator
-			int pos = series1.getSeriesName().indexOf('.');
+			int pos = name.indexOf('.');
 			if (pos > 0) {
 				// Take name before first separator
-				caveName = series1.getSeriesName().substring(0, pos);
+				caveName = name.substring(0, pos);
 			} else {
 				// Work backwards until first non-numeric character found
-				for (int nameIdx = series1.getSeriesName().length() - 1; nameIdx > -1; nameIdx--) {
+				for (int nameIdx = name.length() - 1; nameIdx > -1; nameIdx--) {
 					// Check for non-numerical character
-					int charCode = series1.getSeriesName().charAt(nameIdx);
+					int charCode = name.charAt(nameIdx);
 					if (charCode < 48 || charCode > 57) {
 						// Take name prior to this point
-						caveName = series1.getSeriesName().substring(0, nameIdx + 1);
+						caveName = name.substring(0, nameIdx + 1);
 						nameIdx = 0;
 					}
 				}
 			}
 		}
+		return caveName;
+	}
 
-		// Generate short names for all series
-		for (int seriesIdx = 0; seriesIdx < surveyData.size(); seriesIdx++) {
-			String seriesName = surveyData.get(seriesIdx).getSeriesName();
-			String reducedName = "";
-
-			/*
-			 * //Remove cave name prefix if found
-			 * if ( seriesName.substring(0, caveName.length() + 1 ).compareTo( caveName +
-			 * "." ) == 0 ) {
-			 * seriesName = seriesName.substring(caveName.length() + 1);
-			 * }
-			 */
+	/**
+	 * Adds a series and all its inner series which contain legs to the list of surveys, with the
+	 * full dotted path of each series, which is how the survey network names them
+	 */
+	private void addSurveys(SurveySeries series, String parentPath, List<SurveySeries> surveys,
+			List<String> surveyPaths) {
+		String path = parentPath;
+		if (series.getSeriesName().length() > 0) {
+			path = (parentPath.length() == 0) ? series.getSeriesName() : parentPath + "." + series.getSeriesName();
+		}
+		if (series.legCount() > 0) {
+			surveys.add(series);
+			surveyPaths.add(path);
+		}
+		for (int innerIdx = 0; innerIdx < series.innerSeriesCount(); innerIdx++) {
+			addSurveys(series.getInnerSeries(innerIdx), path, surveys, surveyPaths);
+		}
+	}
 
-			// Look for last part of multi-part names
-			String nameLastPart = seriesName;
-			int lstIdx = seriesName.lastIndexOf('.');
-			if (lstIdx > -1 && lstIdx < (seriesName.length() - 1)) {
-				// Take just last part of name
-				nameLastPart = seriesName.substring(lstIdx + 1);
+	/**
+	 * Gets the Compass name for a station, which is the name it was first written with if it is
+	 * equated to a station in a series already written
+	 */
+	private String stationName(String name, String seriesPath, String shortName, SurveyNetwork network,
+			String[] stationNames) {
+		String fullName = (seriesPath.length() == 0) ? name : seriesPath + "." + name;
+		int stn = network.findStation(fullName);
+		if (stn < 0) {
+			// Station is not in the network (only on legs with no measurements)
+			String compassName = unlinkedStationNames.get(fullName);
+			if (compassName == null) {
+				compassName = uniqueStationName(shortName + "_" + name.replaceAll("\\s", "_"));
+				unlinkedStationNames.put(fullName, compassName);
 			}
+			return compassName;
+		}
+		if (stationNames[stn] == null) {
+			stationNames[stn] = uniqueStationName(shortName + "_" + name.replaceAll("\\s", "_"));
+		}
+		return stationNames[stn];
+	}
 
-			// Remove illegal characters
-			for (int idx = 0; reducedName.length() < 4 && idx < nameLastPart.length(); idx++) {
-				if (nameLastPart.charAt(idx) != '.') {
-					reducedName += nameLastPart.charAt(idx);
-				}
-			}
+	/**
+	 * Gets a station name no longer than Compass allows which has not been used for another
+	 * station. Names which are too long or already used are cut short and given a number from a
+	 * sequence which only moves forward, so finding names for many similar stations is still
+	 * linear time.
+	 *
+	 * @param compassName Name for the station made from its series short name and station name
+	 * @return Unique name for the station
+	 */
+	private String uniqueStationName(String compassName) {
+		if (compassName.length() <= MAX_STATION_NAME_LENGTH && stationNamesUsed.add(compassName.toUpperCase())) {
+			return compassName;
+		}
+		shortenedNameCount++;
+		String shortened;
+		do {
+			shortenedNameSequence++;
+			String suffix = "-" + shortenedNameSequence;
+			shortened = leading(compassName, MAX_STATION_NAME_LENGTH - suffix.length()) + suffix;
+		} while (stationNamesUsed.add(shortened.toUpperCase()) == false);
+		return shortened;
+	}
 
-			int trys = 0;
-			while (trys < 110) {
-				trys++;
-				String testName = "    ";
+	/**
+	 * Generates a data line for a leg
+	 */
+	private String legLine(SurveyLeg leg, String fromStn, String toStn, String flags) {
+		double length = leg.getLength(LengthUnit.Feet);
+		double compass = leg.getCompass(BearingUnit.Degrees);
+		double clino;
+		if (leg.isNosurvey()) {
+			length = 0;
+			compass = 0;
+			clino = 0;
+		} else if (leg.isDiving()) {
+			// Inclination from the depth change, which increases downwards
+			double metres = leg.getLength(LengthUnit.Metres);
+			double ratio = (metres > 0) ? -leg.getDepthChange(LengthUnit.Metres) / metres : 0;
+			clino = Math.toDegrees(Math.asin(Math.max(-1.0, Math.min(1.0, ratio))));
+		} else {
+			clino = leg.getClino(GradientUnit.Degrees);
+		}
+		if (compass < 0 || compass > 360) {
+			// No bearing, such as on a vertical leg
+			compass = 0;
+		}
+		if (clino < -90 || clino > 90) {
+			clino = 0;
+		}
 
-				switch (trys) {
-					case 1:
-						// Try using first 4 chars of name padded with leading spaces
-						testName = reducedName;
-						break;
-					case 2:
-						// Try removing vowels
-						reducedName = "";
-						for (int idx = 0; reducedName.length() < 4 && idx < nameLastPart.length(); idx++) {
-							if (nameLastPart.charAt(idx) != '.'
-									&& nameLastPart.charAt(idx) != 'a'
-									&& nameLastPart.charAt(idx) != 'e'
-									&& nameLastPart.charAt(idx) != 'i'
-									&& nameLastPart.charAt(idx) != 'o'
-									&& nameLastPart.charAt(idx) != 'u'
-									&& nameLastPart.charAt(idx) != 'A'
-									&& nameLastPart.charAt(idx) != 'E'
-									&& nameLastPart.charAt(idx) != 'I'
-									&& nameLastPart.charAt(idx) != 'O'
-									&& nameLastPart.charAt(idx) != 'U') {
-								reducedName += nameLastPart.charAt(idx);
-							}
-						}
-						testName += reducedName;
-						break;
-					case 3:
-					case 4:
-					case 5:
-					case 6:
-					case 7:
-					case 8:
-					case 9:
-					case 10:
-					case 11:
-						// Try adding increment number to end of 3 char name
-						testName += reducedName.substring(0, 3) + (trys - 2);
-						break;
-					default:
-						// Try adding increment number to end of 2 char name
-						testName += reducedName.substring(0, 2) + (trys - 11);
-				}
+		String line = CaveConverter.padString(fromStn, 12) + " " + CaveConverter.padString(toStn, 12)
+				+ CaveConverter.padNumber(Math.max(length, 0), 2, 9)
+				+ CaveConverter.padNumber(compass, 2, 9)
+				+ CaveConverter.padNumber(clino, 2, 9);
+		if (leg.isSplay() == false && leg.getLeft(LengthUnit.Metres) + leg.getRight(LengthUnit.Metres)
+				+ leg.getUp(LengthUnit.Metres) + leg.getDown(LengthUnit.Metres) > 0.0) {
+			line += CaveConverter.padNumber(leg.getLeft(LengthUnit.Feet), 2, 9)
+					+ CaveConverter.padNumber(leg.getUp(LengthUnit.Feet), 2, 9)
+					+ CaveConverter.padNumber(leg.getDown(LengthUnit.Feet), 2, 9)
+					+ CaveConverter.padNumber(leg.getRight(LengthUnit.Feet), 2, 9);
+		} else {
+			line += " " + MISSING_LRUD + " " + MISSING_LRUD + " " + MISSING_LRUD + " " + MISSING_LRUD;
+		}
+		if (flags.length() > 0) {
+			line += "  " + flags;
+		}
+		if (leg.getComment() != null && leg.getComment().length() > 0) {
+			line += "  " + leg.getComment().replaceAll("[\\r\\n]+", " ");
+		}
+		return line;
+	}
 
-				// Trim to 4 chars
-				testName = testName.substring(testName.length() - 4);
+	/**
+	 * Generates a unique short name of up to 4 characters for a survey from its series name.
+	 * Names are tried from the first characters of the name, then without vowels, then with
+	 * numbers added, and finally from a sequence of numbers, so a name is always found. Names
+	 * already used are held in a hash set, so each name is checked in constant time.
+	 *
+	 * @param seriesName Name of the series
+	 * @return Short name for the series
+	 */
+	private String generateShortName(String seriesName) {
+		// Look for last part of multi-part names
+		String nameLastPart = seriesName;
+		int lstIdx = seriesName.lastIndexOf('.');
+		if (lstIdx > -1 && lstIdx < (seriesName.length() - 1)) {
+			// Take just last part of name
+			nameLastPart = seriesName.substring(lstIdx + 1);
+		}
 
-				// Check if name already used
-				if (nameAlreadyUsed(testName) == false) {
-					// Use this name
-					shortNames.add(testName);
-					trys = 999;
+		// Keep just the letters and digits, which are valid in station names
+		String reducedName = "";
+		String consonants = "";
+		for (int idx = 0; idx < nameLastPart.length(); idx++) {
+			char ch = nameLastPart.charAt(idx);
+			if (Character.isLetterOrDigit(ch) && ch < 128) {
+				reducedName += ch;
+				if ("aeiouAEIOU".indexOf(ch) < 0) {
+					consonants += ch;
 				}
 			}
-			// Check name was added
-			if (trys != 999) {
-				RuntimeException ex = new RuntimeException(
-						"Failed to generate unique short name for series name: " + seriesName);
-				throw ex;
-			}
+		}
+		if (reducedName.length() == 0) {
+			reducedName = "S";
+		}
+		if (consonants.length() == 0) {
+			consonants = reducedName;
 		}
 
-		// Loop through all series
-		for (int seriesIdx = 0; seriesIdx < surveyData.size(); seriesIdx++) {
-			SurveySeries series = surveyData.get(seriesIdx);
-			List<String> legsData = new ArrayList<String>();
-			List<String> fixedStnsData = new ArrayList<String>();
-			List<String> passageData = new ArrayList<String>();
-
-			// Write header lines for series
-			outputData.add(caveName);
-			outputData.add("SURVEY NAME: " + series.getSeriesName());
-			outputData.add("SURVEY DATE: " + series.getSurveyDate());
-			outputData.add("SURVEY TEAM: ");
-			outputData.add(" ");
-			outputData.add("DECLINATION:    " + series.getCompassCalibration(BearingUnit.Degrees)
-					+ "  FORMAT: DMMDLRUDLADN  CORRECTIONS: 0.00 0.00 0.00");
-			outputData.add(" ");
-			outputData.add(
-					"FROM           TO   LENGTH  BEARING      INC     LEFT       UP     DOWN    RIGHT   FLAGS  COMMENTS");
-			/*
-			 * //Add equates to output
-			 * for ( int linkIdx = 0; linkIdx < series.getLinks().size(); linkIdx++ ) {
-			 * SeriesLink link = series.getLinks().get(linkIdx);
-			 * String equate = "*EQUATE ";
-			 * if ( link.getLinkedSeries() == -1 ) {
-			 * //Link to series not in current data file, so create 'false' equate
-			 * placeholder in file
-			 * equate = ";" + equate + series.getSeriesName() + "." +
-			 * link.getLocalStation().getName() + " " +
-			 * "CAVE" + "." +
-			 * link.getLocalStation();
-			 * }
-			 * else {
-			 * equate += series.getSeriesName() + "." + link.getLocalStation().getName() +
-			 * " " +
-			 * surveyData.get( link.getLinkedSeries() ).getSeriesName() + "." +
-			 * link.getLinkedStation().getName();
-			 * }
-			 * outputData.add( equate );
-			 * }
-			 * outputData.add( "");
-			 */
-			// Start series block
-			outputData.add("*BEGIN " + series.getSeriesName());
-
-			// TODO Write date if present
-			// if ( series.getSurveyDate().length() > 0 ) {
-			// compassData.add( ";Date " + series.getSurveyDate() );
-			// }
-
-			// Write calibration lines
-			if (series.getTapeCalibration(LengthUnit.Metres) != 0) {
-				outputData.add("*CALIBRATE tape " + series.getTapeCalibration(LengthUnit.Feet));
-			}
-			if (series.getCompassCalibration(BearingUnit.Degrees) != 0) {
-				outputData.add("*CALIBRATE declination " + series.getCompassCalibration(BearingUnit.Degrees));
-			}
-			if (series.getClinoCalibration(GradientUnit.Degrees) != 0) {
-				outputData.add("*CALIBRATE clino " + series.getClinoCalibration(GradientUnit.Degrees));
-			}
-			outputData.add("");
-
-			// Loop through the series legs writing details of each leg found
-			for (int legIdx = 0; legIdx < series.legCount(); legIdx++) {
-				SurveyLeg leg = series.getLegRaw(legIdx);
-
-				// Check for valid leg
-				String fromStn = leg.getFromStn().getName();
-				String toStn = leg.getToStn().getName();
-				if (leg.getLength(LengthUnit.Metres) > 0) {
-					// Write leg data
-					legsData.add(fromStn + "\t" + toStn + "\t" +
-							CaveConverter.padNumber(leg.getLength(LengthUnit.Feet), 2, 5) + "\t" +
-							CaveConverter.padNumber(leg.getCompass(BearingUnit.Degrees), 2, 6) + "\t" +
-							CaveConverter.padNumber(leg.getClino(GradientUnit.Degrees), 2, 6) + "\t");
-				} else {
-					// Zero length leg
-					// Get to stn name if there is one
-					if (leg.isSplay() == false) {
-						// Valid leg, so write as equate
-						legsData.add("*EQUATE " + fromStn + "\t" + toStn);
-					}
-				}
-
-				// Add FIXed points to fixed stns block for series
-				// if (leg.hasFixedStn() == true) {
-				// String fixedStnLine = "*FIX ";
-				// if ( leg.isFromStnFixed() == true ) {
-				// fixedStnLine += fromStn;
-				// }
-				// else {
-				// fixedStnLine += getActualStationName( series, leg.getToStn() );
-				// }
-				// fixedStnLine += "\t" + leg.getEasting() + "\t" + leg.getNorthing() + "\t" +
-				// leg.getAltitude();
-				// fixedStnsData.add( fixedStnLine );
-				// }
-
-				// Add LRUD to passages block for series
-				if (leg.getLeft(LengthUnit.Metres) + leg.getRight(LengthUnit.Metres) +
-						leg.getUp(LengthUnit.Metres) + leg.getDown(LengthUnit.Metres) > 0.0) {
-					passageData.add(fromStn + "\t" + leg.getLeft(LengthUnit.Feet) + "\t" +
-							leg.getRight(LengthUnit.Feet) + "\t" + leg.getUp(LengthUnit.Feet) + "\t" +
-							leg.getDown(LengthUnit.Feet) + "\t");
-				}
-			}
-			// Write fixes data block
-			if (fixedStnsData.size() > 0) {
-				outputData.addAll(fixedStnsData);
+		// Try first 4 characters of name, then with vowels removed
+		if (useShortName(leading(reducedName, 4)) || useShortName(leading(consonants, 4))) {
+			return shortNames.get(shortNames.size() - 1);
+		}
+		// Try adding increment number to end of 3 char name, then 2 char name
+		for (int num = 1; num < 10; num++) {
+			if (useShortName(leading(consonants, 3) + num)) {
+				return shortNames.get(shortNames.size() - 1);
 			}
-			// Write legs data block
-			outputData.addAll(legsData);
-			// Write passage data block
-			if (passageData.size() > 0) {
-				outputData.add("");
-				outputData.add("*data passage station left right up down");
-				outputData.addAll(passageData);
+		}
+		for (int num = 1; num < 100; num++) {
+			if (useShortName(leading(consonants, 2) + num)) {
+				return shortNames.get(shortNames.size() - 1);
 			}
-			// Close the series
-			outputData.add("*END " + series.getSeriesName() + "\n");
 		}
+		// Use the next unused name in a sequence, which only moves forward, so finding names for
+		// many series with similar names is still linear time
+		while (useShortName(Integer.toString(fallbackNameSequence, 36).toUpperCase()) == false) {
+			fallbackNameSequence++;
+		}
+		return shortNames.get(shortNames.size() - 1);
+	}
 
-		// Close the cave name
-		outputData.add("*END " + caveName);
-
-		// Use the logger just to stop the compiler warning that it is never used
-		logger.logMessage("Finished writing Compass file (it won't be valid as this class is still in development).");
+	private static String leading(String name, int length) {
+		return (name.length() > length) ? name.substring(0, length) : name;
+	}
 
-		return outputData;
+	/**
+	 * Adds a short name to the names used, if it has not already been used
+	 *
+	 * @param name
+	 * @return true if the name was not already used for another series
+	 */
+	private boolean useShortName(String name) {
+		if (shortNamesUsed.add(name.toUpperCase())) {
+			shortNames.add(name);
+			return true;
+		}
+		return false;
 	}
 
 	/**
 	 * Looks up short series name for series from array of names created previously
-	 * 
-	 * @param seriesIdx
+	 *
+	 * @param seriesIdx Index of the survey in the order they were written
 	 * @return short (4 character) name for series
 	 */
 	protected String getShortSeriesName(int seriesIdx) {
 		return shortNames.get(seriesIdx);
 	}
 
-	/**
-	 * Determines if a name has already been used for a short series name
-	 * 
-	 * @param name
-	 * @return true if name has already been used for another series
-	 */
-	private boolean nameAlreadyUsed(String name) {
-		boolean found = false;
-		for (int i = 0; i < shortNames.size(); i++) {
-			if (shortNames.get(i).compareToIgnoreCase(name) == 0) {
-				found = true;
-				i = shortNames.size();
-			}
-		}
-		return found;
-	}
-
 }
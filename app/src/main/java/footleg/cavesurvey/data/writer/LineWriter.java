@@ -0,0 +1,48 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes lines to a writer with line separators between them, in the same way as output files
+ * are written from lists of lines, with no separator after the last line.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+class LineWriter implements LineOutput {
+	private final Writer writer;
+	private boolean firstLine = true;
+
+	LineWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	@Override
+	public void add(String line) throws IOException {
+		if (firstLine == false) {
+			writer.write(System.getProperty("line.separator"));
+		}
+		writer.write(line);
+		firstLine = false;
+	}
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SeriesLink;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+
+/**
+ * Writer for the binary snapshot format, a compact serialisation of the complete cave survey
+ * data model which can be reloaded much faster than reparsing the original survey data files.
+ *
+ * The file starts with a magic string and format version number, followed by a table of every
+ * distinct string in the model. The model itself then follows as a depth first walk of the series
+ * tree. Counts, string references and station references are written as unsigned varints.
+ * Stations are written in full the first time they are referenced and by number after that, so
+ * any station objects shared within the model are shared again when the snapshot is loaded. The
+ * measurements for all the legs in a series are written as one block of raw doubles following the
+ * leg records, so the reader can pull them out without any number parsing.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SnapshotWriter {
+	/** Bytes identifying a snapshot file */
+	public static final byte[] SNAPSHOT_MAGIC = { 'C', 'C', 'S', 'N', 'A', 'P' };
+	/** Format version written to new snapshots, incremented whenever the layout changes */
+	public static final int SNAPSHOT_VERSION = 1;
+
+	// Leg flag bits
+	public static final int LEG_SPLAY = 0x01;
+	public static final int LEG_DUPLICATE = 0x02;
+	public static final int LEG_SURFACE = 0x04;
+	public static final int LEG_DIVING = 0x08;
+	public static final int LEG_NOSURVEY = 0x10;
+
+	// Station flag bits, with the fix type ordinal held in the bits above the entrance flag
+	public static final int STN_ENTRANCE = 0x01;
+	public static final int STN_FIX_SHIFT = 1;
+
+	private Logger logger;
+	private Map<String, Integer> stringIndex;
+	private List<String> strings;
+	private Map<SurveyStation, Integer> stationIndex;
+
+	/**
+	 * Class constructor
+	 *
+	 * @param logger Logging class to output information, warning and error messages
+	 *               to
+	 */
+	public SnapshotWriter(Logger logger) {
+		super();
+		this.logger = logger;
+	}
+
+	/**
+	 * Generates the binary snapshot data for a cave survey model
+	 *
+	 * @param surveyData The cave survey model to serialise
+	 * @return Byte array containing the complete snapshot file contents
+	 */
+	public byte[] generateSnapshotData(CaveSurvey surveyData) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			writeSnapshotData(surveyData, out);
+		} catch (IOException e) {
+			// Writing to a byte array cannot fail
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Writes the binary snapshot data for a cave survey model to a stream
+	 *
+	 * @param surveyData The cave survey model to serialise
+	 * @param output     Stream to write the snapshot to
+	 * @throws IOException If writing to the stream fails
+	 */
+	public void writeSnapshotData(CaveSurvey surveyData, OutputStream output) throws IOException {
+		stringIndex = new HashMap<String, Integer>();
+		strings = new ArrayList<String>();
+		stationIndex = new IdentityHashMap<SurveyStation, Integer>();
+
+		// Write model body first, so all strings are known before the string table is written
+		ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		DataOutputStream body = new DataOutputStream(bodyBytes);
+		writeString(body, surveyData.getSurveyName());
+		writeVarint(body, surveyData.size());
+		for (int i = 0; i < surveyData.size(); i++) {
+			writeSeries(body, surveyData.get(i));
+		}
+		body.flush();
+
+		DataOutputStream out = new DataOutputStream(output);
+		out.write(SNAPSHOT_MAGIC);
+		writeVarint(out, SNAPSHOT_VERSION);
+		writeVarint(out, strings.size());
+		for (String text : strings) {
+			byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+			writeVarint(out, utf8.length);
+			out.write(utf8);
+		}
+		bodyBytes.writeTo(out);
+		out.flush();
+
+		logger.logMessage("Snapshot contains " + strings.size() + " strings and " + stationIndex.size()
+				+ " stations.");
+
+		stringIndex = null;
+		strings = null;
+		stationIndex = null;
+	}
+
+	private void writeSeries(DataOutputStream out, SurveySeries series) throws IOException {
+		writeString(out, series.getSeriesName());
+		writeString(out, series.getComment());
+		if (series.getSurveyDate() == null) {
+			out.writeByte(0);
+		} else {
+			out.writeByte(1);
+			out.writeLong(series.getSurveyDate().getTime());
+		}
+		out.writeByte(series.getLengthUnit().ordinal());
+		out.writeByte(series.getDepthUnit().ordinal());
+		out.writeByte(series.getBearingUnit().ordinal());
+		out.writeByte(series.getGradientUnit().ordinal());
+		out.writeDouble(series.getDeclination());
+		out.writeDouble(series.getTapeCalibration(LengthUnit.Metres));
+		out.writeDouble(series.getCompassCalibration(BearingUnit.Degrees));
+		out.writeDouble(series.getClinoCalibration(GradientUnit.Degrees));
+		out.writeDouble(series.getClinoScaleFactor());
+		writeStringList(out, series.getDataOrder());
+		writeStringList(out, series.getDataOrder2());
+
+		int mappedNames = series.getMappedStnNameCount();
+		writeVarint(out, mappedNames);
+		for (int i = 1; i <= mappedNames; i++) {
+			writeString(out, series.getMappedStnName(-i));
+		}
+
+		// Leg records, followed by a block of raw measurements for all the legs
+		int legCount = series.legCount();
+		writeVarint(out, legCount);
+		for (int i = 0; i < legCount; i++) {
+			SurveyLeg leg = series.getLegRaw(i);
+			writeStation(out, leg.getFromStn());
+			writeStation(out, leg.getToStn());
+			int flags = 0;
+			if (leg.isSplay()) {
+				flags |= LEG_SPLAY;
+			}
+			if (leg.isDuplicate()) {
+				flags |= LEG_DUPLICATE;
+			}
+			if (leg.isSurface()) {
+				flags |= LEG_SURFACE;
+			}
+			if (leg.isDiving()) {
+				flags |= LEG_DIVING;
+			}
+			if (leg.isNosurvey()) {
+				flags |= LEG_NOSURVEY;
+			}
+			out.writeByte(flags);
+			writeString(out, leg.getComment());
+		}
+		for (int i = 0; i < legCount; i++) {
+			SurveyLeg leg = series.getLegRaw(i);
+			out.writeDouble(leg.getLength(LengthUnit.Metres));
+			out.writeDouble(leg.getCompass(BearingUnit.Degrees));
+			out.writeDouble(leg.getClino(GradientUnit.Degrees));
+			out.writeDouble(leg.getFromDepth(LengthUnit.Metres));
+			out.writeDouble(leg.getToDepth(LengthUnit.Metres));
+			out.writeDouble(leg.getLeft(LengthUnit.Metres));
+			out.writeDouble(leg.getRight(LengthUnit.Metres));
+			out.writeDouble(leg.getUp(LengthUnit.Metres));
+			out.writeDouble(leg.getDown(LengthUnit.Metres));
+		}
+
+		// LRUD readings at the to stations of series ends
+		List<SurveySeries.ToStnLRUD> lruds = series.getToStnLRUDs();
+		writeVarint(out, lruds.size());
+		for (SurveySeries.ToStnLRUD lrud : lruds) {
+			writeStation(out, lrud.getFromStn());
+		}
+		for (SurveySeries.ToStnLRUD lrud : lruds) {
+			out.writeDouble(lrud.getLeft());
+			out.writeDouble(lrud.getRight());
+			out.writeDouble(lrud.getUp());
+			out.writeDouble(lrud.getDown());
+		}
+
+		List<SeriesLink> links = series.getLinks();
+		writeVarint(out, links.size());
+		for (SeriesLink link : links) {
+			writeString(out, link.getSeries1());
+			writeStation(out, link.getStn1());
+			writeString(out, link.getSeries2());
+			writeStation(out, link.getStn2());
+		}
+
+		writeVarint(out, series.innerSeriesCount());
+		for (int i = 0; i < series.innerSeriesCount(); i++) {
+			writeSeries(out, series.getInnerSeries(i));
+		}
+	}
+
+	/**
+	 * Writes a station reference. Zero is no station, and a value one greater than the number of
+	 * stations already written introduces a new station whose record follows immediately.
+	 */
+	private void writeStation(DataOutputStream out, SurveyStation stn) throws IOException {
+		if (stn == null) {
+			writeVarint(out, 0);
+			return;
+		}
+		Integer idx = stationIndex.get(stn);
+		if (idx != null) {
+			writeVarint(out, idx + 1);
+			return;
+		}
+		int newIdx = stationIndex.size();
+		stationIndex.put(stn, newIdx);
+		writeVarint(out, newIdx + 1);
+
+		int id = stn.getId();
+		writeVarint(out, (id << 1) ^ (id >> 31));
+		// Names which just repeat the id number are left unset, as they were when parsed
+		String name = stn.getName();
+		writeString(out, name.equals("" + id) ? null : name);
+		writeString(out, stn.getComment());
+		int flags = stn.getFixType().ordinal() << STN_FIX_SHIFT;
+		if (stn.isEntrance()) {
+			flags |= STN_ENTRANCE;
+		}
+		out.writeByte(flags);
+		if (stn.isFixed()) {
+			out.writeDouble(stn.getEasting());
+			out.writeDouble(stn.getNorthing());
+			out.writeDouble(stn.getAltitude());
+		}
+	}
+
+	private void writeStringList(DataOutputStream out, List<String> list) throws IOException {
+		writeVarint(out, list.size());
+		for (String text : list) {
+			writeString(out, text);
+		}
+	}
+
+	/**
+	 * Writes a reference into the string table, adding the string to the table if it is new. Zero
+	 * is used for null strings.
+	 */
+	private void writeString(DataOutputStream out, String text) throws IOException {
+		if (text == null) {
+			writeVarint(out, 0);
+			return;
+		}
+		Integer idx = stringIndex.get(text);
+		if (idx == null) {
+			idx = strings.size();
+			strings.add(text);
+			stringIndex.put(text, idx);
+		}
+		writeVarint(out, idx + 1);
+	}
+
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+}
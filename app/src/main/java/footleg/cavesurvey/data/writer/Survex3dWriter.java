@@ -0,0 +1,417 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveySeries.ToStnLRUD;
+import footleg.cavesurvey.tools.CrossSections;
+import footleg.cavesurvey.tools.NetworkAdjustment;
+import footleg.cavesurvey.tools.SurveyNetwork;
+
+/**
+ * Writer for the Survex .3d binary file format (version 8), as read by the
+ * Aven viewer and other Survex compatible tools. Station positions are
+ * calculated from the survey data by a loop closing {@link NetworkAdjustment},
+ * so no separate run of the Survex cavern program is needed.
+ *
+ * The file contains the centreline legs as move and line items labelled with
+ * their series, a label item for each station, and passage cross-sections
+ * for runs of legs which have LRUD data. Cross-sections can instead use the
+ * dimensions of passage outlines built from all the splays at each station
+ * (see {@link #setCrossSectionsFromSplays(boolean)}). Labels are prefix compressed against
+ * the previous label written, as the format requires.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class Survex3dWriter {
+	private static final String FILE_ID = "Survex 3D Image File";
+	private static final int FILE_VERSION = 8;
+
+	// Item codes
+	private static final int ITEM_STYLE_NORMAL = 0x00;
+	private static final int ITEM_STYLE_DIVING = 0x01;
+	private static final int ITEM_MOVE = 0x0f;
+	private static final int ITEM_XSECT = 0x30;
+	private static final int ITEM_XSECT_32BIT = 0x01;
+	private static final int ITEM_XSECT_LAST = 0x02;
+	private static final int ITEM_LINE = 0x40;
+	private static final int ITEM_LABEL = 0x80;
+
+	// Line flags
+	private static final int LINE_SURFACE = 0x01;
+	private static final int LINE_DUPLICATE = 0x02;
+	private static final int LINE_SPLAY = 0x04;
+	private static final int LINE_NO_LABEL = 0x20;
+
+	// Station flags
+	private static final int STN_SURFACE = 0x01;
+	private static final int STN_UNDERGROUND = 0x02;
+	private static final int STN_ENTRANCE = 0x04;
+	private static final int STN_FIXED = 0x10;
+
+	private static final Charset LABEL_CHARSET = Charset.forName("UTF-8");
+
+	private Logger logger;
+	private byte[] currentLabel = new byte[0];
+	private boolean crossSectionsFromSplays = false;
+
+	public Survex3dWriter(Logger logger) {
+		super();
+		this.logger = logger;
+	}
+
+	/**
+	 * Sets whether passage cross-sections at stations with splays use the dimensions of the
+	 * {@link CrossSections} outline built from all the splays at the station, instead of the
+	 * LRUD data in the survey. Stations without enough splays still use the LRUD data.
+	 *
+	 * @param crossSectionsFromSplays True to use dimensions from the splays where possible
+	 */
+	public void setCrossSectionsFromSplays(boolean crossSectionsFromSplays) {
+		this.crossSectionsFromSplays = crossSectionsFromSplays;
+	}
+
+	/**
+	 * Generates Survex .3d format data from a cave survey
+	 *
+	 * @param surveyData   The cave survey model to generate the .3d data for
+	 * @param date         Date to record as the time the data was processed
+	 * @param outputSplays Indicates whether splay legs are written to the file
+	 * @return Bytes of the .3d file
+	 */
+	public byte[] generateSurvex3dData(CaveSurvey surveyData, Date date, boolean outputSplays) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			writeSurvex3dData(surveyData, date, outputSplays, bytes);
+		} catch (IOException ex) {
+			// Writing to memory does not throw
+			throw new RuntimeException(ex);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes Survex .3d format data for a cave survey to a stream
+	 *
+	 * @param surveyData   The cave survey model to generate the .3d data for
+	 * @param date         Date to record as the time the data was processed
+	 * @param outputSplays Indicates whether splay legs are written to the file
+	 * @param stream       Stream to write the file data to
+	 * @throws IOException If writing to the stream fails
+	 */
+	public void writeSurvex3dData(CaveSurvey surveyData, Date date, boolean outputSplays, OutputStream stream)
+			throws IOException {
+		logger.logMessage("Calculating station positions...");
+		SurveyNetwork network = SurveyNetwork.build(surveyData);
+		NetworkAdjustment adjustment = new NetworkAdjustment(logger);
+		adjustment.adjust(network);
+
+		logger.logMessage("Generating Survex 3d format data...");
+		currentLabel = new byte[0];
+		OutputStream out = new BufferedOutputStream(stream);
+
+		// File header
+		String title = surveyData.getSurveyName();
+		if (title == null) {
+			title = "";
+		}
+		writeAscii(out, FILE_ID + "\n");
+		writeAscii(out, "v" + FILE_VERSION + "\n");
+		out.write(title.getBytes(LABEL_CHARSET));
+		out.write('\n');
+		writeAscii(out, "@" + (date.getTime() / 1000) + "\n");
+		// File-wide flags (not an extended elevation)
+		out.write(0);
+
+		int[] stnFlags = writeLegs(network, outputSplays, out);
+		writeStations(network, stnFlags, out);
+		CrossSections sections = crossSectionsFromSplays ? CrossSections.build(network) : null;
+		writeCrossSections(surveyData, network, sections, out);
+
+		out.flush();
+	}
+
+	/**
+	 * Writes the centreline legs and splays, returning the station flags implied
+	 * by the legs attached to each station
+	 */
+	private int[] writeLegs(SurveyNetwork network, boolean outputSplays, OutputStream out) throws IOException {
+		int[] stnFlags = new int[network.getStationCount()];
+		int currentStn = -1;
+		int style = ITEM_STYLE_NORMAL;
+
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			int legFlags = network.getLegFlags(leg);
+			int lineFlags = 0;
+			if ((legFlags & SurveyNetwork.FLAG_SURFACE) != 0) {
+				lineFlags |= LINE_SURFACE;
+				stnFlags[from] |= STN_SURFACE;
+				stnFlags[to] |= STN_SURFACE;
+			} else {
+				stnFlags[from] |= STN_UNDERGROUND;
+				stnFlags[to] |= STN_UNDERGROUND;
+			}
+			if ((legFlags & SurveyNetwork.FLAG_DUPLICATE) != 0) {
+				lineFlags |= LINE_DUPLICATE;
+			}
+			int legStyle = ((legFlags & SurveyNetwork.FLAG_DIVING) != 0) ? ITEM_STYLE_DIVING : ITEM_STYLE_NORMAL;
+			if (legStyle != style) {
+				style = legStyle;
+				out.write(style);
+			}
+
+			// Continue from the end of the previous leg where possible, otherwise move to the leg start
+			if (from != currentStn) {
+				out.write(ITEM_MOVE);
+				writeStationPosition(network, from, out);
+			}
+			writeLine(lineFlags, network.getSeriesName(network.getLegSeries(leg)), network.getX(to),
+					network.getY(to), network.getZ(to), out);
+			currentStn = to;
+		}
+
+		if (outputSplays) {
+			if (style != ITEM_STYLE_NORMAL) {
+				out.write(ITEM_STYLE_NORMAL);
+			}
+			for (int splay = 0; splay < network.getSplayCount(); splay++) {
+				int from = network.getSplayFrom(splay);
+				out.write(ITEM_MOVE);
+				writeStationPosition(network, from, out);
+				writeLine(LINE_SPLAY, network.getSeriesName(network.getSplaySeries(splay)),
+						network.getX(from) + network.getSplayDx(splay), network.getY(from) + network.getSplayDy(splay),
+						network.getZ(from) + network.getSplayDz(splay), out);
+			}
+		}
+		return stnFlags;
+	}
+
+	private void writeLine(int lineFlags, String seriesName, double x, double y, double z, OutputStream out)
+			throws IOException {
+		byte[] label = seriesName.getBytes(LABEL_CHARSET);
+		if (Arrays.equals(label, currentLabel)) {
+			out.write(ITEM_LINE | LINE_NO_LABEL | lineFlags);
+		} else {
+			out.write(ITEM_LINE | lineFlags);
+			writeLabel(label, out);
+		}
+		writeCoordinates(x, y, z, out);
+	}
+
+	private void writeStations(SurveyNetwork network, int[] stnFlags, OutputStream out) throws IOException {
+		for (int stn = 0; stn < network.getStationCount(); stn++) {
+			int flags = stnFlags[stn];
+			if (network.isEntrance(stn)) {
+				flags |= STN_ENTRANCE;
+			}
+			if (network.isFixed(stn)) {
+				flags |= STN_FIXED;
+			}
+			out.write(ITEM_LABEL | flags);
+			writeLabel(network.getStationName(stn).getBytes(LABEL_CHARSET), out);
+			writeStationPosition(network, stn, out);
+		}
+	}
+
+	/**
+	 * Writes passage cross-sections for each run of connected legs in a series
+	 * where the legs have LRUD data. The last station of each run uses the to-station
+	 * LRUD data stored on the series if present. Where sections built from splays
+	 * are passed in, they replace the LRUD data at the stations they are at.
+	 */
+	private void writeCrossSections(CaveSurvey surveyData, SurveyNetwork network, CrossSections sections,
+			OutputStream out) throws IOException {
+		Map<String, ToStnLRUD> toStnLruds = new HashMap<String, ToStnLRUD>();
+		for (int seriesIdx = 0; seriesIdx < surveyData.size(); seriesIdx++) {
+			collectToStnLruds(surveyData.get(seriesIdx), "", toStnLruds);
+		}
+
+		int legCount = network.getLegCount();
+		int runStart = 0;
+		while (runStart < legCount) {
+			// Find end of run of legs which follow on from each other in the same series
+			int runEnd = runStart + 1;
+			while (runEnd < legCount && network.getLegSeries(runEnd) == network.getLegSeries(runStart)
+					&& network.getLegFrom(runEnd) == network.getLegTo(runEnd - 1)) {
+				runEnd++;
+			}
+			int lastStn = network.getLegTo(runEnd - 1);
+			ToStnLRUD endLrud = toStnLruds.get(network.getStationName(lastStn));
+
+			int endSection = (sections != null) ? sections.findSection(lastStn) : -1;
+
+			boolean hasData = (endLrud != null) || (endSection >= 0);
+			for (int leg = runStart; hasData == false && leg < runEnd; leg++) {
+				if (sections != null && sections.findSection(network.getLegFrom(leg)) >= 0) {
+					hasData = true;
+				}
+				for (int dim = 0; dim < 4; dim++) {
+					if (network.getLegLrud(leg, dim) != 0) {
+						hasData = true;
+					}
+				}
+			}
+			if (hasData) {
+				for (int leg = runStart; leg < runEnd; leg++) {
+					int from = network.getLegFrom(leg);
+					int section = (sections != null) ? sections.findSection(from) : -1;
+					if (section >= 0) {
+						writeCrossSection(network.getStationName(from), sections.getLrud(section, 0),
+								sections.getLrud(section, 1), sections.getLrud(section, 2), sections.getLrud(section, 3),
+								false, out);
+					} else {
+						writeCrossSection(network.getStationName(from), network.getLegLrud(leg, 0),
+								network.getLegLrud(leg, 1), network.getLegLrud(leg, 2), network.getLegLrud(leg, 3),
+								false, out);
+					}
+				}
+				if (endSection >= 0) {
+					writeCrossSection(network.getStationName(lastStn), sections.getLrud(endSection, 0),
+							sections.getLrud(endSection, 1), sections.getLrud(endSection, 2),
+							sections.getLrud(endSection, 3), true, out);
+				} else if (endLrud != null) {
+					writeCrossSection(network.getStationName(lastStn), endLrud.getLeft(), endLrud.getRight(),
+							endLrud.getUp(), endLrud.getDown(), true, out);
+				} else {
+					// Dimensions at the last station were not recorded
+					writeCrossSection(network.getStationName(lastStn), -0.01, -0.01, -0.01, -0.01, true, out);
+				}
+			}
+			runStart = runEnd;
+		}
+	}
+
+	private void collectToStnLruds(SurveySeries series, String parentPath, Map<String, ToStnLRUD> toStnLruds) {
+		String seriesPath = parentPath.length() == 0 ? series.getSeriesName()
+				: parentPath + "." + series.getSeriesName();
+		List<ToStnLRUD> lruds = series.getToStnLRUDs();
+		for (int idx = 0; idx < lruds.size(); idx++) {
+			ToStnLRUD lrud = lruds.get(idx);
+			String stnName = lrud.getFromStn().getName();
+			toStnLruds.put(seriesPath.length() == 0 ? stnName : seriesPath + "." + stnName, lrud);
+		}
+		List<SurveySeries> innerSeries = series.getInnerSeriesList();
+		for (int idx = 0; idx < innerSeries.size(); idx++) {
+			collectToStnLruds(innerSeries.get(idx), seriesPath, toStnLruds);
+		}
+	}
+
+	private void writeCrossSection(String stnName, double left, double right, double up, double down,
+			boolean last, OutputStream out) throws IOException {
+		long[] dims = { Math.round(left * 100), Math.round(right * 100), Math.round(up * 100),
+				Math.round(down * 100) };
+		boolean fitsIn16Bits = true;
+		for (int dim = 0; dim < 4; dim++) {
+			if (dims[dim] < Short.MIN_VALUE || dims[dim] > Short.MAX_VALUE) {
+				fitsIn16Bits = false;
+			}
+		}
+		int item = ITEM_XSECT;
+		if (fitsIn16Bits == false) {
+			item |= ITEM_XSECT_32BIT;
+		}
+		if (last) {
+			item |= ITEM_XSECT_LAST;
+		}
+		out.write(item);
+		writeLabel(stnName.getBytes(LABEL_CHARSET), out);
+		for (int dim = 0; dim < 4; dim++) {
+			if (fitsIn16Bits) {
+				out.write((int) dims[dim] & 0xff);
+				out.write(((int) dims[dim] >> 8) & 0xff);
+			} else {
+				writeInt32((int) dims[dim], out);
+			}
+		}
+	}
+
+	/**
+	 * Writes a label as the number of bytes to remove from the end of the previous
+	 * label, the number of bytes to add, and the bytes to add
+	 */
+	private void writeLabel(byte[] label, OutputStream out) throws IOException {
+		int common = 0;
+		int maxCommon = Math.min(label.length, currentLabel.length);
+		while (common < maxCommon && label[common] == currentLabel[common]) {
+			common++;
+		}
+		int remove = currentLabel.length - common;
+		int add = label.length - common;
+		if (remove <= 15 && add <= 15 && (remove > 0 || add > 0)) {
+			out.write((remove << 4) | add);
+		} else {
+			out.write(0);
+			writeCount(remove, out);
+			writeCount(add, out);
+		}
+		out.write(label, common, add);
+		currentLabel = label;
+	}
+
+	private void writeCount(int count, OutputStream out) throws IOException {
+		if (count < 0xff) {
+			out.write(count);
+		} else {
+			out.write(0xff);
+			writeInt32(count, out);
+		}
+	}
+
+	private void writeStationPosition(SurveyNetwork network, int stn, OutputStream out) throws IOException {
+		writeCoordinates(network.getX(stn), network.getY(stn), network.getZ(stn), out);
+	}
+
+	/**
+	 * Writes a position as three little-endian 32 bit integers in centimetres
+	 */
+	private void writeCoordinates(double x, double y, double z, OutputStream out) throws IOException {
+		writeInt32((int) Math.round(x * 100), out);
+		writeInt32((int) Math.round(y * 100), out);
+		writeInt32((int) Math.round(z * 100), out);
+	}
+
+	private static void writeInt32(int value, OutputStream out) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+		out.write((value >> 16) & 0xff);
+		out.write((value >> 24) & 0xff);
+	}
+
+	private static void writeAscii(OutputStream out, String text) throws IOException {
+		out.write(text.getBytes(Charset.forName("US-ASCII")));
+	}
+
+}
@@ -19,11 +19,22 @@
 package footleg.cavesurvey.data.writer;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import footleg.cavesurvey.converter.CaveConverter;
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
 import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
@@ -55,12 +66,35 @@ import footleg.cavesurvey.tools.UtilityFunctions;
  */
 public class SurvexWriter {
 	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
+	private AtomicInteger seriesWritten = new AtomicInteger();
+	private int parallelism = 1;
 	
 	public SurvexWriter( Logger logger ) {
 		super();
 		this.logger = logger;
 	}
 
+	/**
+	 * Sets the monitor to report the number of series written to, and to check for cancellation
+	 * @param progress Progress monitor for the task running this writer
+	 */
+	public void setProgressMonitor( ProgressMonitor progress ) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Sets the number of threads used to generate data for separate series at the same time.
+	 * Each series is generated into its own list of lines, and the lists are joined in the 
+	 * order of the series, so the output is identical to generating the series one at a time.
+	 * The logger and progress monitor must be safe to call from several threads when more than
+	 * one thread is used.
+	 * @param parallelism Number of threads to use, or 1 to generate all series on the calling thread
+	 */
+	public void setParallelism( int parallelism ) {
+		this.parallelism = Math.max( 1, parallelism );
+	}
+
 	/**
 	 * Supported splay formats for output
 	 */
@@ -83,19 +117,69 @@ public class SurvexWriter {
 		logger.logMessage("Generating Survex format data...");
 		
 		//Create dummy parent series to pass in neutral calibration settings for top level series
-		SurveySeries parentSeries = new SurveySeries("parent");
+		final SurveySeries parentSeries = new SurveySeries("parent");
+		seriesWritten.set( 0 );
 		
-		//Loop through all series
-		ListIterator<SurveySeries> seriesIterator = surveyData.listIterator();
-		while ( seriesIterator.hasNext() ) {
-			SurveySeries series = seriesIterator.next();
+		if ( parallelism > 1 ) {
+			//Generate series on a pool of threads, joining the data for each series in order
+			ForkJoinPool pool = new ForkJoinPool( parallelism );
+			try {
+				outputData = pool.invoke( new RecursiveTask<List<String>>() {
+					private static final long serialVersionUID = 1L;
 
-			outputData.addAll( generateSurvexDataSeries( series, parentSeries, splaysOutput ) );
+					@Override
+					protected List<String> compute() {
+						List<ForkJoinTask<List<String>>> tasks = forkSeries( surveyData.listIterator(), parentSeries, splaysOutput );
+						List<String> data = new ArrayList<String>();
+						for ( ForkJoinTask<List<String>> task : tasks ) {
+							data.addAll( task.join() );
+						}
+						return data;
+					}
+				});
+			}
+			finally {
+				pool.shutdown();
+			}
+		}
+		else {
+			//Loop through all series
+			ListIterator<SurveySeries> seriesIterator = surveyData.listIterator();
+			while ( seriesIterator.hasNext() ) {
+				SurveySeries series = seriesIterator.next();
+	
+				outputData.addAll( generateSurvexDataSeries( series, parentSeries, splaysOutput ) );
+			}
 		}
 
 		return outputData;
 	}
 	
+	/**
+	 * Starts tasks to generate Survex format data for a list of series on the fork join pool
+	 * running the current task
+	 * 
+	 * @param seriesIterator Iterator over the series to generate data for
+	 * @param parentSeries Survey series which is the parent of the series iterated over
+	 * @return Tasks generating the data for each series, in the same order as the series
+	 */
+	private List<ForkJoinTask<List<String>>> forkSeries( ListIterator<SurveySeries> seriesIterator, 
+			final SurveySeries parentSeries, final SplayFormats splaysOutput ) {
+		List<ForkJoinTask<List<String>>> tasks = new ArrayList<ForkJoinTask<List<String>>>();
+		while ( seriesIterator.hasNext() ) {
+			final SurveySeries series = seriesIterator.next();
+			tasks.add( new RecursiveTask<List<String>>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected List<String> compute() {
+					return generateSurvexDataSeries( series, parentSeries, splaysOutput );
+				}
+			}.fork() );
+		}
+		return tasks;
+	}
+	
 	/**
 	 * Generates Survex format data for a survey series
 	 * 
@@ -104,12 +188,17 @@ public class SurvexWriter {
 	 * @return Text lines for a Survex format series data block
 	 */
 	private List<String> generateSurvexDataSeries( SurveySeries series, SurveySeries parentSeries, SplayFormats splaysOutput ) {
+		//In parallel mode, start generating inner series on other threads while this series is generated
+		List<ForkJoinTask<List<String>>> innerTasks = null;
+		if ( parallelism > 1 && ForkJoinTask.inForkJoinPool() ) {
+			innerTasks = forkSeries( series.getInnerSeriesList().listIterator(), series, splaysOutput );
+		}
 		List<String> outputData = new ArrayList<String>();
 		List<String> legsData = new ArrayList<String>();
 		List<String> fixedStnsData = new ArrayList<String>();
 		
 		//List of passage data blocks. Each block is a child list of the station name and the LRUD data line.
-		List<List<String[]>> passageData = new ArrayList<List<String[]>>();
+		List<List<PassageStation>> passageData = new ArrayList<List<PassageStation>>();
 
 		boolean duplicateFlagOn = false;
 		boolean surfaceFlagOn = false;
@@ -197,6 +286,22 @@ public class SurvexWriter {
 			outputData.add( "*" + UtilityFunctions.dataFormatLineForSeries( series, false ) );
 		}
 
+		//Index the stations at the ends of passage data blocks, and the stations preceding each station
+		//in the series legs, to find the block to add LRUD data for each leg to
+		PassageBlockEnds blockEnds = new PassageBlockEnds();
+		Map<String, List<String>> precedingStnsByToStn = new HashMap<String, List<String>>();
+		for ( int legIdx = 0; legIdx < series.legCount(); legIdx++ ) {
+			SurveyLeg chkLeg = series.getLegRaw(legIdx);
+			if ( chkLeg.getToStn() != null ) {
+				List<String> precedingStns = precedingStnsByToStn.get( chkLeg.getToStn().getName() );
+				if ( precedingStns == null ) {
+					precedingStns = new ArrayList<String>();
+					precedingStnsByToStn.put( chkLeg.getToStn().getName(), precedingStns );
+				}
+				precedingStns.add( chkLeg.getFromStn().getName() );
+			}
+		}
+
 		//Loop through the series legs and LRUD data writing details of each leg found
 		int psuedoLegCount = series.legCount() + series.getToStnLRUDs().size();
 		boolean lastLegWasDiving = false;
@@ -431,106 +536,68 @@ public class SurvexWriter {
 					newBlock = true;
 				}
 				else {
-					//Check if station linked to a station at either end of an existing block
-					// We are looking for the toStn at either end of an existing block
-					boolean foundExistingBlock = false;
-
-					for (int idx = 0; idx < passageData.size(); idx++ ) {
-						List<String[]> block = passageData.get(idx);
-						
-						if ( leg.getToStn() != null ) {
-							//Check if this block starts with the toStn for the leg
-							if ( ( block.size() == 1 ) && ( block.get(0)[0].equals( leg.getToStn().getName() ) ) ) {
-								//Leg toStn matches only station in block, so leg could go before or after this LRUD
-								//We need to know which direction the leg for the existing LRUD measurements was in
-								if ( block.get(0)[2].equals( leg.getFromStn().getName() ) ) {
-									//This leg follows the one previously added to this block, so add at end
-									activeBlockIdx = idx;
-									addAtFront = false;
-									foundExistingBlock = true;
-								}
-								else {
-									//This leg does NOT follow the one which started this block, so it must go before it
-									activeBlockIdx = idx;
-									addAtFront = true;
-									foundExistingBlock = true;
-								}
-							}
-							else if ( block.get(block.size() - 1)[0].equals( leg.getToStn().getName() ) ) {
-								//Matching toStn at end, so add LRUD to end of this block
-								activeBlockIdx = idx;
-								addAtFront = false;
-								foundExistingBlock = true;
-							}
-							else if ( block.get(0)[0].equals( leg.getToStn().getName() ) ) {
-								//Matching toStn at start, so add LRUD to start of this block
-								activeBlockIdx = idx;
-								addAtFront = true;
-								foundExistingBlock = true;
-							}
-						}
-						if ( foundExistingBlock == false ) {
-							//Need to find another leg which has a toStn matching the fromStn of this leg
-							for (int idx2 = 0; idx2 < series.legCount(); idx2++ ) {
-								SurveyLeg chkLeg = series.getLegRaw(idx2);
-								if ( ( chkLeg.getToStn() != null ) 
-								&& ( chkLeg.getToStn().getName().equals(leg.getFromStn().getName() ) ) ) {
-									//Found a leg which precedes the leg we are adding LRUD data from.
-									//Check if the fromStn of this preceding leg is the last stn in the block
-									if ( block.get(block.size() - 1)[0].equals( chkLeg.getFromStn().getName() ) ) {
-										//Matching fromStn for previous leg at end of block, so add LRUD to end of this block
-										activeBlockIdx = idx;
-										addAtFront = false;
-										foundExistingBlock = true;
-									}
-// This last case turns out not to be needed as it is generally better to start a new passage data block in this case.
-//									else {
-//										//Check if the preceding leg starts this block 
-//										//(but is not already covered going down this block)
-//										int blockIdx2 = 1;
-//										if ( block.size() == 1 ) {
-//											blockIdx2 = 0;
-//										}
-//										if ( ( block.get(0)[0].equals( chkLeg.getFromStn().getName() ) )
-//										&& ( block.get(blockIdx2)[0].equals( chkLeg.getToStn().getName() ) == false ) ) {
-//											//Matching toStn at start, so add LRUD to start of this block
-//											activeBlockIdx = idx;
-//											addAtFront = true;
-//											foundExistingBlock = true;
-//											logger.logMessage("Stn " + leg.getFromStn().getName() + " fromStn for leg matched toStn of leg " +
-//													chkLeg.getFromStn().getName() + "-" + chkLeg.getToStn().getName() + 
-//													" where fromStn was at start of PD block but leg is not covered in this block");
-//										}
-//									}
-									if ( foundExistingBlock ) {
-										break;
-									}
-								}
-							}
-						}
-						if ( foundExistingBlock ) {
-							break;
+					//Find the first block which either starts or ends with the toStn for the leg,
+					//or ends with the fromStn of a leg which precedes this leg
+					int toStnBlockIdx = -1;
+					if ( leg.getToStn() != null ) {
+						toStnBlockIdx = firstBlockIdx( blockEnds.nextStartingWith( leg.getToStn().getName(), -1 ),
+								blockEnds.nextEndingWith( leg.getToStn().getName(), -1 ) );
+					}
+					int precedingBlockIdx = -1;
+					List<String> precedingStns = precedingStnsByToStn.get( leg.getFromStn().getName() );
+					if ( precedingStns != null ) {
+						for ( String precedingStn : precedingStns ) {
+							precedingBlockIdx = firstBlockIdx( precedingBlockIdx, blockEnds.nextEndingWith( precedingStn, -1 ) );
 						}
 					}
-
-					if ( foundExistingBlock == false ) {
+					int foundBlockIdx = firstBlockIdx( toStnBlockIdx, precedingBlockIdx );
+					
+					if ( foundBlockIdx < 0 ) {
 						//Create new block for station as it is not connected to any other existing block
 						newBlock = true;
 					}
+					else if ( foundBlockIdx == toStnBlockIdx ) {
+						List<PassageStation> block = passageData.get(foundBlockIdx);
+						activeBlockIdx = foundBlockIdx;
+						if ( ( block.size() == 1 ) && ( block.get(0).stn.equals( leg.getToStn().getName() ) ) ) {
+							//Leg toStn matches only station in block, so leg could go before or after this LRUD
+							//We need to know which direction the leg for the existing LRUD measurements was in
+							//If this leg follows the one previously added to this block then add at end, 
+							//otherwise it must go before it
+							addAtFront = ( block.get(0).toStn.equals( leg.getFromStn().getName() ) == false );
+						}
+						else if ( block.get(block.size() - 1).stn.equals( leg.getToStn().getName() ) ) {
+							//Matching toStn at end, so add LRUD to end of this block
+							addAtFront = false;
+						}
+						else {
+							//Matching toStn at start, so add LRUD to start of this block
+							addAtFront = true;
+						}
+					}
+					else {
+						//Matching fromStn for previous leg at end of block, so add LRUD to end of this block
+						activeBlockIdx = foundBlockIdx;
+						addAtFront = false;
+					}
 				}
 				
 				if (newBlock) {
-					passageData.add( new ArrayList<String[]>() );
+					passageData.add( new ArrayList<PassageStation>() );
 					activeBlockIdx = passageData.size() - 1;
 				}
+				else {
+					blockEnds.remove( activeBlockIdx, passageData.get(activeBlockIdx) );
+				}
 				
-				String[] lrudLine = createLrudLine( leg );
+				PassageStation lrudStn = new PassageStation( leg );
 				if ( addAtFront ) {
-					passageData.get(activeBlockIdx).add(0, lrudLine);
+					passageData.get(activeBlockIdx).add(0, lrudStn);
 				}
 				else {
-					passageData.get(activeBlockIdx).add( lrudLine );
+					passageData.get(activeBlockIdx).add( lrudStn );
 				}
+				blockEnds.add( activeBlockIdx, passageData.get(activeBlockIdx) );
 			}
 		}
 		//Add missing toStns from legs which close loops
@@ -561,35 +628,53 @@ public class SurvexWriter {
 		if ( passageData.size() > 0 ) {
 			outputData.add( "");
 			//outputData.addAll( passageData );
-			ListIterator<List<String[]>> blocksIter = passageData.listIterator();
+			ListIterator<List<PassageStation>> blocksIter = passageData.listIterator();
 			while ( blocksIter.hasNext() ) {
-				List<String[]> block = blocksIter.next();
+				List<PassageStation> block = blocksIter.next();
 				outputData.add("*data passage station left right up down");
-				ListIterator<String[]> blockIter = block.listIterator();
+				ListIterator<PassageStation> blockIter = block.listIterator();
 				while ( blockIter.hasNext() ) {
-					String[] line = blockIter.next();
-					//line[0] is fromStn name, and needs illegal characters substituting
-					//line[1] is the LRUD numbers, line[2] is the toStn name and is not output
-					outputData.add( substIllegalNameChars( line[0] ) + "\t" + line[1] );
+					PassageStation line = blockIter.next();
+					//Station name needs illegal characters substituting, LRUD numbers are formatted here
+					outputData.add( substIllegalNameChars( line.stn ) + "\t" + line.formatLrud() );
 				}
 			}
 		}
 
 		//Loop through inner series
-		ListIterator<SurveySeries> seriesIterator = series.getInnerSeriesList().listIterator();
-		while ( seriesIterator.hasNext() ) {
-			SurveySeries innerSeries = seriesIterator.next();
-
-			outputData.addAll( generateSurvexDataSeries( innerSeries, series, splaysOutput ) );
+		if ( innerTasks != null ) {
+			for ( ForkJoinTask<List<String>> task : innerTasks ) {
+				outputData.addAll( task.join() );
+			}
+		}
+		else {
+			ListIterator<SurveySeries> seriesIterator = series.getInnerSeriesList().listIterator();
+			while ( seriesIterator.hasNext() ) {
+				SurveySeries innerSeries = seriesIterator.next();
+	
+				outputData.addAll( generateSurvexDataSeries( innerSeries, series, splaysOutput ) );
+			}
 		}
 
 		//Close the series
 		outputData.add( "*END " + substIllegalNameChars( series.getSeriesName() ) );
+		reportSeriesWritten();
 		outputData.add( "" );
 
 		return outputData;
 	}
 	
+	/**
+	 * Counts a series as written, and reports progress. Series may be completed on several threads
+	 * in parallel mode, so progress reports are made one at a time.
+	 */
+	private void reportSeriesWritten() {
+		int written = seriesWritten.incrementAndGet();
+		synchronized ( progress ) {
+			progress.checkProgress( "Writing series", written, -1 );
+		}
+	}
+	
 	/* Replace illegal characters in station or series names with Survex allowed name characters.
 	 * This method should store previous conversions in case ambiguous cases might arise, and
 	 * use a different character to prevent converted stations becoming ambiguous.
@@ -771,119 +856,132 @@ public class SurvexWriter {
 	 * leg can be matched to both the station on the data line, and the next station in the block then
 	 * we can update the LRUD data to be from that leg.
 	 */
-	private void reprocessPassageDataBlocks( SurveySeries series, List<List<String[]>> passageData ) {
-		//Process all blocks
-		ListIterator<List<String[]>> blocksIter = passageData.listIterator();
-		while ( blocksIter.hasNext() ) {
-			List<String[]> block = blocksIter.next();
+	private void reprocessPassageDataBlocks( SurveySeries series, List<List<PassageStation>> passageData ) {
+		//Index the first real leg with LRUD data for each pair of from and to stations
+		Map<String, Map<String, SurveyLeg>> lrudLegs = new HashMap<String, Map<String, SurveyLeg>>();
+		for ( int legIdx = 0; legIdx < series.legCount(); legIdx++ ) {
+			SurveyLeg leg = series.getLegRaw(legIdx);
+			if ( ( leg.isSplay() == false )
+			&& ( leg.getToStn() != null )
+			&& ( leg.getLeft(LengthUnit.Metres) + leg.getRight(LengthUnit.Metres) + 
+					leg.getUp(LengthUnit.Metres) + leg.getDown(LengthUnit.Metres) > 0.0 ) ) {
+				Map<String, SurveyLeg> toStnLegs = lrudLegs.get( leg.getFromStn().getName() );
+				if ( toStnLegs == null ) {
+					toStnLegs = new HashMap<String, SurveyLeg>();
+					lrudLegs.put( leg.getFromStn().getName(), toStnLegs );
+				}
+				if ( toStnLegs.containsKey( leg.getToStn().getName() ) == false ) {
+					toStnLegs.put( leg.getToStn().getName(), leg );
+				}
+			}
+		}
 		
+		//Process all blocks, keeping those which are still needed
+		List<List<PassageStation>> keptBlocks = new ArrayList<List<PassageStation>>( passageData.size() );
+		for ( List<PassageStation> block : passageData ) {
 			//Remove block if only contains a single station as these are obsolete
-			if ( block.size() < 2 ) {
-				blocksIter.remove();
-			}
-			else {
+			if ( block.size() >= 2 ) {
 				//Update LRUD data for lines in block
 				boolean noLrudDataInBlock = true;
 				//Loop through each pair of stations in the block
 				for ( int blockIdx = 0; blockIdx < ( block.size() - 1 ); blockIdx++ ) {
-					String[] line1 = block.get(blockIdx);
-					String[] line2 = block.get(blockIdx + 1);
+					PassageStation line1 = block.get(blockIdx);
+					PassageStation line2 = block.get(blockIdx + 1);
 					
-					//Look for a leg representing this line1
-					boolean legMatchesPassageData = false;
-					for ( int legIdx = 0; legIdx < series.legCount(); legIdx++ ) {
-						SurveyLeg leg = series.getLegRaw(legIdx);
-						if ( ( leg.isSplay() == false )
-						&& ( leg.getToStn() != null )
-						&& ( leg.getLeft(LengthUnit.Metres) + leg.getRight(LengthUnit.Metres) + 
-								leg.getUp(LengthUnit.Metres) + leg.getDown(LengthUnit.Metres) > 0.0 ) ) {
-							//Leg is a real leg with LRUD data, check for match both ways
-							if ( ( line1[0].equals( leg.getFromStn().getName() ) )
-							&& ( line2[0].equals( leg.getToStn().getName() ) ) ) {
-								legMatchesPassageData = true;
-							}
-//Do not look for reverse leg match because LRUD will be on opposite end of leg to the passage data line we are updating							
-//							else if ( ( line2[0].equals( leg.getFromStn().getName() ) )
-//							&& ( line1[0].equals( leg.getToStn().getName() ) ) ) {
-//								legMatchesPassageData = true;
-//							}
-						}
-						//If a matching leg was found then regenerate LRUD data for this line using the leg
-						if ( legMatchesPassageData ) {
-							//Replace LRUD data for this line with data from this leg
-							String[] newLine = createLrudLine(leg);
-							if ( line1[1].equals( newLine[1] ) == false ) {
-								block.remove(blockIdx);
-								block.add(blockIdx, newLine);
-							}
-							break; //Exit legs for loop
+					//Look for a leg representing this line1 (not in reverse, because the LRUD would be 
+					//on the opposite end of the leg to the passage data line we are updating)
+					Map<String, SurveyLeg> toStnLegs = lrudLegs.get( line1.stn );
+					SurveyLeg leg = ( toStnLegs != null ) ? toStnLegs.get( line2.stn ) : null;
+					if ( leg != null ) {
+						//Replace LRUD data for this line with data from this leg
+						PassageStation newLine = new PassageStation( leg );
+						if ( line1.sameLrud( newLine ) == false ) {
+							block.set(blockIdx, newLine);
 						}
 					}
 					
 					//Check if the line has any LRUD data if this block has not had any so far
 					if ( ( noLrudDataInBlock ) 
-					&& ( ( line1[1].equals( " 0.00\t 0.00\t 0.00\t 0.00" ) == false ) 
-						|| ( line2[1].equals( " 0.00\t 0.00\t 0.00\t 0.00" ) == false ) ) 
+					&& ( line1.hasLrud() || line2.hasLrud() ) 
 					) {
 						noLrudDataInBlock = false;
 					}
 				}
 				
 				//Remove block if no LRUD data on any station
-				if ( noLrudDataInBlock ) {
-					blocksIter.remove();
+				if ( noLrudDataInBlock == false ) {
+					keptBlocks.add( block );
 				}
 			}
 		}
+		passageData.clear();
+		passageData.addAll( keptBlocks );
 	}
 	
 
 	/* Combine any passage data blocks which start with the same station as another block ends with.
+	 * Blocks are appended in the same order as scanning the list of blocks for each block would find
+	 * them, so blocks starting with a station are found from an index instead. Positions of blocks in 
+	 * the list are tracked as blocks are removed, as the scanning order depends on them.
 	 */
-	private void combinePassageDataBlocks( List<List<String[]>> passageData ) {
+	private void combinePassageDataBlocks( List<List<PassageStation>> passageData ) {
+		//Blocks are identified by their original index in the list. Start stations do not change.
+		List<List<PassageStation>> blocks = new ArrayList<List<PassageStation>>( passageData );
+		PassageBlockEnds blockEnds = new PassageBlockEnds();
+		for ( int idx = 0; idx < blocks.size(); idx++ ) {
+			blockEnds.add( idx, blocks.get(idx) );
+		}
+		BlockPositions positions = new BlockPositions( blocks.size() );
+		
 		//Process all blocks
 		int outerIdx = 0;
-		while ( outerIdx < passageData.size() ) {
-			List<String[]> block = passageData.get( outerIdx );
+		while ( outerIdx < positions.size() ) {
+			int outerBlockIdx = positions.blockAt( outerIdx );
+			final List<PassageStation> block = blocks.get( outerBlockIdx );
 		
-			String lastStn = block.get( block.size() - 1 )[0];
+			String lastStn = block.get( block.size() - 1 ).stn;
 			
-			//Iterate through all blocks to see if any start with the last station in this block
-			for ( int innerIdx1 = 0; innerIdx1 < passageData.size(); innerIdx1++ ) {
-				List<String[]> innerBlock = passageData.get( innerIdx1 );
+			//Find blocks, after the last one checked, which start with the last station in this block
+			int checkedIdx = -1;
+			int innerIdx1;
+			while ( ( innerIdx1 = blockEnds.nextStartingWith( lastStn, checkedIdx ) ) >= 0 ) {
+				checkedIdx = innerIdx1;
+				final List<PassageStation> innerBlock = blocks.get( innerIdx1 );
 				
 				if ( innerBlock.equals( block ) == false ) {
-					String innerStartStn = innerBlock.get( 0 )[0];
-
-					if ( innerStartStn.equals( lastStn ) ) {
-						boolean removeInner = true;
+					//Don't copy first station, but check it matches LRUD of last item in block we are appending to
+					if ( block.get( block.size() - 1 ).sameLrud( innerBlock.get( 0 ) ) == false )  {
+						logger.logDebug( () -> "Unable to merge passage data blocks due to LRUD data mismatch: " +
+								"Block ending " + block.get( block.size() - 1 ).stn + "=" + block.get( block.size() - 1 ).formatLrud() + ", " +
+								"Block starting " + innerBlock.get( 0 ).stn + "=" + innerBlock.get( 0 ).formatLrud() );
+					}
+					else {
 						//Append this inner block to the end of the main iterator block
-						for ( int innerIdx2 = 0; innerIdx2 < innerBlock.size(); innerIdx2++ ) {
-							if ( innerIdx2 == 0 ) {
-								//Don't copy first station, but check it matches LRUD of last item in block we are appending to
-								if ( block.get( block.size() - 1 )[1].equals( innerBlock.get( 0 )[1] ) == false )  {
-									logger.logMessage("Unable to merge passage data blocks due to LRUD data mismatch: " +
-											"Block ending " + block.get( block.size() - 1 )[0] + "=" + block.get( block.size() - 1 )[1] + ", " +
-											"Block starting " + innerBlock.get( 0 )[0] + "=" + innerBlock.get( 0 )[1]);
-									removeInner = false;
-									break;
-								}
-							}
-							else {
-								block.add( innerBlock.get( innerIdx2 ) );
-							}
-						}
-						if ( removeInner ) {
-							//Remove the inner block now it has been copied
-							passageData.remove( innerIdx1 );
-							outerIdx--;
-							//Update last station to new end station
-							lastStn = block.get( block.size() - 1 )[0];
+						blockEnds.remove( outerBlockIdx, block );
+						block.addAll( innerBlock.subList( 1, innerBlock.size() ) );
+						blockEnds.add( outerBlockIdx, block );
+						//Remove the inner block now it has been copied
+						blockEnds.remove( innerIdx1, innerBlock );
+						positions.remove( innerIdx1 );
+						outerIdx--;
+						//Update last station to new end station
+						lastStn = block.get( block.size() - 1 ).stn;
+						//The block which moved into the position of the removed block is not checked
+						int nextPosition = positions.positionOf( innerIdx1 );
+						if ( nextPosition >= positions.size() ) {
+							break;
 						}
+						checkedIdx = positions.blockAt( nextPosition );
 					}
 				}	
 			}
-			outerIdx++;
+			//Merging several blocks into the first block can move back past the start of the list
+			outerIdx = Math.max( 0, outerIdx + 1 );
+		}
+		
+		passageData.clear();
+		for ( int position = 0; position < positions.size(); position++ ) {
+			passageData.add( blocks.get( positions.blockAt( position ) ) );
 		}
 	}
 	
@@ -892,117 +990,280 @@ public class SurvexWriter {
 	 * Perhaps there should be? Or easier to analyse all passage data blocks here, consolidate blocks which are adjoined
 	 * and then look for any legs where the toStn is not represented and add them by copying data from another leg.
 	 */
-	private void addMissingPassageDataAtLoopClosureStations( SurveySeries series, List<List<String[]>> passageData ) {
+	private void addMissingPassageDataAtLoopClosureStations( SurveySeries series, List<List<PassageStation>> passageData ) {
+		//Index the from stations of all legs
+		Set<String> fromStns = new HashSet<String>();
+		for ( int legIdx = 0; legIdx < series.legCount(); legIdx++ ) {
+			fromStns.add( series.getLegRaw(legIdx).getFromStn().getName() );
+		}
+		
+		//Index the pairs of stations on adjacent lines in blocks (in both directions), the stations at 
+		//the ends of each block, and the first line for each station in each block
+		Map<String, Set<String>> adjacentStns = new HashMap<String, Set<String>>();
+		PassageBlockEnds blockEnds = new PassageBlockEnds();
+		Map<String, TreeMap<Integer, PassageStation>> stnLines = new HashMap<String, TreeMap<Integer, PassageStation>>();
+		for ( int idx = 0; idx < passageData.size(); idx++ ) {
+			List<PassageStation> block = passageData.get(idx);
+			blockEnds.add( idx, block );
+			for ( int blockIdx = 0; blockIdx < block.size(); blockIdx++ ) {
+				PassageStation line = block.get(blockIdx);
+				if ( blockIdx > 0 ) {
+					addAdjacentStns( adjacentStns, block.get(blockIdx - 1).stn, line.stn );
+				}
+				addStnLine( stnLines, line, idx, false );
+			}
+		}
 		
 		//Check for legs with LRUD data on the toStn which are not represented in blocks
 		for ( int legIdx = 0; legIdx < series.legCount(); legIdx++ ) {
 			SurveyLeg leg = series.getLegRaw(legIdx);
-			if ( ( leg.isSplay() == false ) && ( leg.getLeft(LengthUnit.Metres) + leg.getRight(LengthUnit.Metres) + 
-					leg.getUp(LengthUnit.Metres) + leg.getDown(LengthUnit.Metres) > 0.0 ) ) {
-				//Check for a leg which has LRUD data on the toStn of this leg
-				for ( int legIdx2 = 0; legIdx2 < series.legCount(); legIdx2++ ) {
-					SurveyLeg leg2 = series.getLegRaw(legIdx2);
-					if ( ( leg.isSplay() == false ) 
-					&& ( leg.getToStn() != null )		
-					&& ( leg.getLeft(LengthUnit.Metres) + leg.getRight(LengthUnit.Metres) + 
-							leg.getUp(LengthUnit.Metres) + leg.getDown(LengthUnit.Metres) > 0.0 ) 
-					&& ( leg.getToStn().getName().equals( leg2.getFromStn().getName() ) ) ) {
-						//Check if the leg is represented in a passage data block
-						boolean foundLegInPassData = false;
-						ListIterator<List<String[]>> blocksIter = passageData.listIterator();
-						while ( blocksIter.hasNext() ) {
-							List<String[]> block = blocksIter.next();
-							//Look for pair of lines in this block which represent this leg
-							for ( int blockIdx = 0; blockIdx < ( block.size() - 1 ); blockIdx++ ) {
-								String[] line1 = block.get(blockIdx);
-								String[] line2 = block.get(blockIdx + 1);
-								if ( ( line1[0].equals( leg.getFromStn().getName() ) )
-								&& ( line2[0].equals( leg.getToStn().getName() ) ) ) {
-									foundLegInPassData = true;
-									break; //Exit block for loop
-								}
-								else if ( ( line2[0].equals( leg.getFromStn().getName() ) )
-								&& ( line1[0].equals( leg.getToStn().getName() ) ) ) {
-									foundLegInPassData = true;
-									break; //Exit block for loop
-								}
+			//Check for a leg which has LRUD data on the toStn of this leg
+			if ( ( leg.isSplay() == false ) 
+			&& ( leg.getToStn() != null )		
+			&& ( leg.getLeft(LengthUnit.Metres) + leg.getRight(LengthUnit.Metres) + 
+					leg.getUp(LengthUnit.Metres) + leg.getDown(LengthUnit.Metres) > 0.0 ) 
+			&& ( fromStns.contains( leg.getToStn().getName() ) ) ) {
+				//Check if the leg is represented in a passage data block
+				Set<String> adjacent = adjacentStns.get( leg.getFromStn().getName() );
+				boolean foundLegInPassData = ( adjacent != null ) && adjacent.contains( leg.getToStn().getName() );
+				if ( foundLegInPassData == false ) {
+					//Leg with toStn LRUD is missing from passage data. 
+					//Check if any passage data block starts or ends with one of the stns from the leg
+					//so we can add it
+					int endIdx = blockEnds.nextEndingWith( leg.getFromStn().getName(), -1 );
+					int addIdx = firstBlockIdx( endIdx, blockEnds.nextStartingWith( leg.getFromStn().getName(), -1 ) );
+					if ( addIdx >= 0 ) {
+						List<PassageStation> blockForAdd = passageData.get(addIdx);
+						//Insert at end if leg from station found at end of block, otherwise at start
+						boolean insertAtStart = ( addIdx != endIdx );
+						//Find the first passage data block line which matches the toStn
+						TreeMap<Integer, PassageStation> lines = stnLines.get( leg.getToStn().getName() );
+						if ( lines != null ) {
+							PassageStation line = lines.firstEntry().getValue();
+							blockEnds.remove( addIdx, blockForAdd );
+							if ( insertAtStart ) {
+								addAdjacentStns( adjacentStns, line.stn, blockForAdd.get(0).stn );
+								blockForAdd.add(0, line);
 							}
-							if ( foundLegInPassData ) {
-								break; //Exit passage data blocks loop
-							}
-						}
-						if ( foundLegInPassData == false ) {
-							//Leg with toStn LRUD is missing from passage data. 
-							//Check if any passage data block starts or ends with one of the stns from the leg
-							//so we can add it
-							ListIterator<List<String[]>> blocksIter2 = passageData.listIterator();
-							while ( blocksIter2.hasNext() ) {
-								List<String[]> blockForAdd = blocksIter2.next();
-								int insertPoint = 0; //0=not found, 1=start, 2=end
-								if ( blockForAdd.get(blockForAdd.size() - 1)[0].equals( leg.getFromStn().getName() ) ) {
-									//Leg from station found at end of block
-									insertPoint = 2;
-								} 
-								else if ( blockForAdd.get(0)[0].equals( leg.getFromStn().getName() ) ) {
-									//Leg from station found at start of block
-									insertPoint = 1;
-								} 
-								if ( insertPoint > 0 ) {
-									//Loop through all passage data block lines looking for one which matches the toStn
-									ListIterator<List<String[]>> blocksIter3 = passageData.listIterator();
-									while ( blocksIter3.hasNext() ) {
-										List<String[]> blockToCopyFrom = blocksIter3.next();
-										boolean lineAdded = false;
-										ListIterator<String[]> blockIter = blockToCopyFrom.listIterator();
-										while ( blockIter.hasNext() ) {
-											String[] line = blockIter.next();
-											
-											if ( line[0].equals( leg.getToStn().getName() ) ) {
-												//Insert suitable LRUD line here
-												if ( insertPoint == 1) {
-													//Insert at start
-													blockForAdd.add(0, line);
-												}
-												else {
-													//Insert at end
-													blockForAdd.add(line);
-												}
-												lineAdded = true;
-												break; //Exit loop through block looking for line to add
-											}
-										}
-										
-										if ( lineAdded ) {
-											break; //Exit loop looking for passage data block to add line from
-										}
-									}
-									
-									break; //Exit passage data blocks2 loop
-								}
+							else {
+								addAdjacentStns( adjacentStns, blockForAdd.get(blockForAdd.size() - 1).stn, line.stn );
+								blockForAdd.add(line);
 							}
+							blockEnds.add( addIdx, blockForAdd );
+							addStnLine( stnLines, line, addIdx, insertAtStart );
 						}
-						break; //Exit loop leg2 as leg has been processed
 					}
 				}
 			}
 		}
+	}
+	
+	private static void addAdjacentStns( Map<String, Set<String>> adjacentStns, String stn1, String stn2 ) {
+		for ( int direction = 0; direction < 2; direction++ ) {
+			String from = ( direction == 0 ) ? stn1 : stn2;
+			String to = ( direction == 0 ) ? stn2 : stn1;
+			Set<String> adjacent = adjacentStns.get( from );
+			if ( adjacent == null ) {
+				adjacent = new HashSet<String>();
+				adjacentStns.put( from, adjacent );
+			}
+			adjacent.add( to );
+		}
+	}
+	
+	/* Records a line as the first line for its station in a block, if it was added at the start 
+	 * of the block or there is no earlier line for the station in the block
+	 */
+	private static void addStnLine( Map<String, TreeMap<Integer, PassageStation>> stnLines, PassageStation line, 
+			int blockIdx, boolean atStart ) {
+		TreeMap<Integer, PassageStation> lines = stnLines.get( line.stn );
+		if ( lines == null ) {
+			lines = new TreeMap<Integer, PassageStation>();
+			stnLines.put( line.stn, lines );
+		}
+		if ( atStart || lines.containsKey( blockIdx ) == false ) {
+			lines.put( blockIdx, line );
+		}
+	}
+	
+	/* Returns the lower of two block indexes, where -1 indicates no block
+	 */
+	private static int firstBlockIdx( int blockIdx1, int blockIdx2 ) {
+		if ( blockIdx1 < 0 ) {
+			return blockIdx2;
+		}
+		if ( blockIdx2 < 0 ) {
+			return blockIdx1;
+		}
+		return Math.min( blockIdx1, blockIdx2 );
+	}
+	
+	/**
+	 * A station in a passage data block, with the passage dimensions from the leg the LRUD data was 
+	 * taken from. Dimensions are compared as the text they are written as, so they are rounded the 
+	 * same way for comparisons as in the output, and are only formatted when first needed. The station the leg goes to is kept, as it shows which
+	 * way the leg was surveyed, but is not written.
+	 */
+	private static final class PassageStation {
+		private static final String NO_LRUD = " 0.00\t 0.00\t 0.00\t 0.00";
+		final String stn;
+		final String toStn;
+		private final double left;
+		private final double right;
+		private final double up;
+		private final double down;
+		// Dimensions as written, formatted when first needed
+		private String lrud;
 		
-
+		PassageStation( SurveyLeg leg ) {
+			stn = leg.getFromStn().getName();
+			toStn = ( leg.getToStn() != null ) ? leg.getToStn().getName() : null;
+			left = leg.getLeft(LengthUnit.Metres);
+			right = leg.getRight(LengthUnit.Metres);
+			up = leg.getUp(LengthUnit.Metres);
+			down = leg.getDown(LengthUnit.Metres);
+		}
+		
+		/**
+		 * @return True if the dimensions are written the same as those at another station
+		 */
+		boolean sameLrud( PassageStation other ) {
+			return formatLrud().equals( other.formatLrud() );
+		}
+		
+		/**
+		 * @return True if any dimension is not written as zero (small negative values are written
+		 * as -0.00, so count as dimensions)
+		 */
+		boolean hasLrud() {
+			return formatLrud().equals( NO_LRUD ) == false;
+		}
+		
+		/**
+		 * Dimensions are compared as they are written, so the comparisons use the same rounding
+		 * as the output
+		 * @return Dimensions formatted as tab separated columns for a passage data line
+		 */
+		String formatLrud() {
+			if ( lrud == null ) {
+				lrud = CaveConverter.padNumber(left,2,5) + "\t" + 
+						CaveConverter.padNumber(right,2,5) + "\t" + 
+						CaveConverter.padNumber(up,2,5) + "\t" + 
+						CaveConverter.padNumber(down,2,5);
+			}
+			return lrud;
+		}
 	}
 	
-	private String[] createLrudLine( SurveyLeg bestLeg ) {
-		String[] lrudLine = new String[3];
-		lrudLine[0] = bestLeg.getFromStn().getName();
-		lrudLine[1] =  
-				CaveConverter.padNumber(bestLeg.getLeft(LengthUnit.Metres),2,5) + "\t" + 
-				CaveConverter.padNumber(bestLeg.getRight(LengthUnit.Metres),2,5) + "\t" + 
-				CaveConverter.padNumber(bestLeg.getUp(LengthUnit.Metres),2,5) + "\t" + 
-				CaveConverter.padNumber(bestLeg.getDown(LengthUnit.Metres),2,5);
-		if ( bestLeg.getToStn() != null ) {
-			lrudLine[2] = bestLeg.getToStn().getName();
-		}
-		return lrudLine;
-
+	/**
+	 * Index of the stations at the start and end of each passage data block, so blocks connecting to
+	 * a station are found without checking every block. Blocks are identified by an index, and the 
+	 * entries for a block must be removed before the stations at its ends are changed and added 
+	 * again afterwards.
+	 */
+	private static class PassageBlockEnds {
+		private final Map<String, TreeSet<Integer>> starts = new HashMap<String, TreeSet<Integer>>();
+		private final Map<String, TreeSet<Integer>> ends = new HashMap<String, TreeSet<Integer>>();
+		
+		void add( int blockIdx, List<PassageStation> block ) {
+			addEntry( starts, block.get(0).stn, blockIdx );
+			addEntry( ends, block.get(block.size() - 1).stn, blockIdx );
+		}
+		
+		void remove( int blockIdx, List<PassageStation> block ) {
+			starts.get( block.get(0).stn ).remove( blockIdx );
+			ends.get( block.get(block.size() - 1).stn ).remove( blockIdx );
+		}
+		
+		/**
+		 * @return Lowest index above afterIdx of a block starting with the station, or -1 if none
+		 */
+		int nextStartingWith( String stn, int afterIdx ) {
+			return next( starts, stn, afterIdx );
+		}
+		
+		/**
+		 * @return Lowest index above afterIdx of a block ending with the station, or -1 if none
+		 */
+		int nextEndingWith( String stn, int afterIdx ) {
+			return next( ends, stn, afterIdx );
+		}
+		
+		private static void addEntry( Map<String, TreeSet<Integer>> entries, String stn, int blockIdx ) {
+			TreeSet<Integer> blocks = entries.get( stn );
+			if ( blocks == null ) {
+				blocks = new TreeSet<Integer>();
+				entries.put( stn, blocks );
+			}
+			blocks.add( blockIdx );
+		}
+		
+		private static int next( Map<String, TreeSet<Integer>> entries, String stn, int afterIdx ) {
+			TreeSet<Integer> blocks = entries.get( stn );
+			if ( blocks != null ) {
+				Integer blockIdx = blocks.higher( afterIdx );
+				if ( blockIdx != null ) {
+					return blockIdx;
+				}
+			}
+			return -1;
+		}
+	}
+	
+	/**
+	 * Tracks the positions in a list of the blocks which have not been removed, where each block is 
+	 * identified by its original position. Uses a binary indexed tree of counts of blocks remaining, 
+	 * so positions are found in logarithmic time.
+	 */
+	private static class BlockPositions {
+		private final int[] tree;
+		private int size;
+		
+		BlockPositions( int blockCount ) {
+			tree = new int[blockCount + 1];
+			for ( int i = 1; i <= blockCount; i++ ) {
+				//Each node counts the blocks in the range it covers, which are all present initially
+				tree[i] = i & -i;
+			}
+			size = blockCount;
+		}
+		
+		int size() {
+			return size;
+		}
+		
+		void remove( int blockIdx ) {
+			for ( int i = blockIdx + 1; i < tree.length; i += i & -i ) {
+				tree[i]--;
+			}
+			size--;
+		}
+		
+		/**
+		 * @return Number of remaining blocks before the block, which is its position if not removed
+		 */
+		int positionOf( int blockIdx ) {
+			int count = 0;
+			for ( int i = blockIdx; i > 0; i -= i & -i ) {
+				count += tree[i];
+			}
+			return count;
+		}
+		
+		/**
+		 * @return Original index of the remaining block at a position
+		 */
+		int blockAt( int position ) {
+			int idx = 0;
+			int remaining = position + 1;
+			for ( int step = Integer.highestOneBit( tree.length ); step > 0; step >>= 1 ) {
+				if ( idx + step < tree.length && tree[idx + step] < remaining ) {
+					idx += step;
+					remaining -= tree[idx];
+				}
+			}
+			return idx;
+		}
 	}
 	
 }
@@ -0,0 +1,366 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import footleg.cavesurvey.converter.CaveConverter;
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SeriesLink;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Writer for Therion format text data.
+ *
+ * Each series is written as a survey, with inner series as nested surveys and the links
+ * between series as equates. The legs of a series are written in a single centreline block
+ * with the date and calibrations of the series, in metres and degrees. Passage dimensions are
+ * written as readings on the legs, where any leg in the series has them, and splays are
+ * written to anonymous stations. Fixed stations are written as fix commands.
+ *
+ * Survey and station names are written using only the characters Therion allows in keywords.
+ * Names which would be written the same way as another name in the same survey are given a
+ * numbered suffix, so they stay distinct.
+ *
+ * Data can be streamed to a writer one line at a time, so large surveys are not held in
+ * memory as text.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class TherionWriter {
+	private static final String INDENT = "  ";
+
+	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
+	private int seriesWritten;
+	// Names written for the surveys in each survey, and for the stations in each survey, keyed by
+	// the path of the survey holding them
+	private Map<String, NameMap> surveyNames = new HashMap<String, NameMap>();
+	private Map<String, NameMap> stationNames = new HashMap<String, NameMap>();
+
+	/**
+	 * Names written for the surveys or stations in a survey, so each name is always written the
+	 * same way and different names are never written the same way
+	 */
+	private static class NameMap {
+		private Map<String, String> written = new HashMap<String, String>();
+		private Set<String> used = new HashSet<String>();
+
+		String nameFor(String name, String validName) {
+			String result = written.get(name);
+			if (result == null) {
+				result = validName;
+				for (int suffix = 2; used.contains(result); suffix++) {
+					result = validName + "_" + suffix;
+				}
+				used.add(result);
+				written.put(name, result);
+			}
+			return result;
+		}
+	}
+
+	public TherionWriter(Logger logger) {
+		super();
+		this.logger = logger;
+	}
+
+	/**
+	 * Sets the monitor to report writing progress to, and to check for cancellation
+	 *
+	 * @param progress Progress monitor for the task running this writer
+	 */
+	public void setProgressMonitor(ProgressMonitor progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Generates Therion format data from a cave survey
+	 *
+	 * @param surveyData   The cave survey model to generate Therion data for
+	 * @param outputSplays Flag to enable splays to be output
+	 * @return Text lines of Therion format data
+	 */
+	public List<String> generateTherionData(CaveSurvey surveyData, boolean outputSplays) {
+		List<String> outputData = new ArrayList<String>();
+		try {
+			writeTherionData(surveyData, outputSplays, outputData::add);
+		} catch (IOException e) {
+			// Adding lines to a list does not throw
+			throw new UncheckedIOException(e);
+		}
+		return outputData;
+	}
+
+	/**
+	 * Writes Therion format data from a cave survey to a writer, one line at a time. Lines are
+	 * separated in the same way as files written from lists of lines, with no separator after the
+	 * last line. The writer is flushed but not closed.
+	 *
+	 * @param surveyData   The cave survey model to generate Therion data for
+	 * @param outputSplays Flag to enable splays to be output
+	 * @param output       Writer to write the data to
+	 * @throws IOException If the data could not be written
+	 */
+	public void writeTherionData(CaveSurvey surveyData, boolean outputSplays, Writer output) throws IOException {
+		writeTherionData(surveyData, outputSplays, new LineWriter(output));
+		output.flush();
+	}
+
+	private void writeTherionData(CaveSurvey surveyData, boolean outputSplays, LineOutput output)
+			throws IOException {
+		seriesWritten = 0;
+		surveyNames.clear();
+		stationNames.clear();
+		for (int seriesIdx = 0; seriesIdx < surveyData.size(); seriesIdx++) {
+			progress.checkProgress("Writing series", seriesIdx, surveyData.size());
+			writeSeries(surveyData.get(seriesIdx), "", "", outputSplays, output);
+		}
+		logger.logMessage("Written " + seriesWritten + " series to Therion data.");
+	}
+
+	private void writeSeries(SurveySeries series, String parentPath, String indent, boolean outputSplays,
+			LineOutput output) throws IOException {
+		seriesWritten++;
+		output.add(indent + "survey " + surveyName(parentPath, series.getSeriesName()));
+		String seriesPath = joinPath(parentPath, series.getSeriesName());
+		String innerIndent = indent + INDENT;
+
+		// Add equates to output
+		for (SeriesLink link : series.getLinks()) {
+			output.add(innerIndent + "equate " + stationReference(seriesPath, link.getSeries1(), link.getStn1())
+					+ " " + stationReference(seriesPath, link.getSeries2(), link.getStn2()));
+		}
+
+		if (series.legCount() > 0) {
+			writeCentreline(series, seriesPath, innerIndent, outputSplays, output);
+		}
+
+		for (int innerIdx = 0; innerIdx < series.innerSeriesCount(); innerIdx++) {
+			writeSeries(series.getInnerSeries(innerIdx), seriesPath, innerIndent, outputSplays, output);
+		}
+		output.add(indent + "endsurvey");
+	}
+
+	private void writeCentreline(SurveySeries series, String seriesPath, String indent, boolean outputSplays,
+			LineOutput output) throws IOException {
+		output.add(indent + "centreline");
+		String dataIndent = indent + INDENT;
+		if (series.getSurveyDate() != null) {
+			output.add(dataIndent + "date "
+					+ UtilityFunctions.dateToString(series.getSurveyDate(), UtilityFunctions.SURVEXDATE_FORMAT));
+		}
+		// Therion declination is the magnetic declination, which is added to bearings
+		if (series.getDeclination() != 0.0) {
+			output.add(dataIndent + "declination "
+					+ CaveConverter.decimalNumberStringEnglish(0.0 - series.getDeclination()) + " degrees");
+		}
+		if (series.getTapeCalibration(LengthUnit.Metres) != 0.0) {
+			output.add(dataIndent + "calibrate length "
+					+ CaveConverter.padNumber(series.getTapeCalibration(LengthUnit.Metres), 2, 0));
+		}
+		if (series.getCompassCalibration(BearingUnit.Degrees) != 0.0) {
+			output.add(dataIndent + "calibrate compass "
+					+ CaveConverter.decimalNumberStringEnglish(series.getCompassCalibration(BearingUnit.Degrees)));
+		}
+		if (series.getClinoCalibration(GradientUnit.Degrees) != 0.0 || series.getClinoScaleFactor() != 1.0) {
+			String calibration = dataIndent + "calibrate clino "
+					+ CaveConverter.decimalNumberStringEnglish(series.getClinoCalibration(GradientUnit.Degrees));
+			if (series.getClinoScaleFactor() != 1.0) {
+				calibration += " " + CaveConverter.decimalNumberStringEnglish(series.getClinoScaleFactor());
+			}
+			output.add(calibration);
+		}
+
+		// Passage dimensions are only written where the series has them
+		boolean hasDimensions = false;
+		for (int legIdx = 0; legIdx < series.legCount() && hasDimensions == false; legIdx++) {
+			SurveyLeg leg = series.getLegRaw(legIdx);
+			hasDimensions = leg.getLeft(LengthUnit.Metres) + leg.getRight(LengthUnit.Metres)
+					+ leg.getUp(LengthUnit.Metres) + leg.getDown(LengthUnit.Metres) > 0;
+		}
+
+		String dataLine = null;
+		boolean duplicateFlagOn = false;
+		boolean surfaceFlagOn = false;
+		List<String> fixedStnsData = new ArrayList<String>();
+		Set<String> fixedStns = new HashSet<String>();
+		for (int legIdx = 0; legIdx < series.legCount(); legIdx++) {
+			SurveyLeg leg = series.getLegRaw(legIdx);
+			if (leg.isSplay() && outputSplays == false) {
+				continue;
+			}
+
+			// Write data command when the style of data changes
+			String legDataLine;
+			if (leg.isNosurvey()) {
+				legDataLine = "data nosurvey from to";
+			} else if (leg.isDiving()) {
+				legDataLine = leg.isDepthChangeLeg() ? "data diving from to length compass depthchange"
+						: "data diving from to length compass fromdepth todepth";
+			} else {
+				legDataLine = "data normal from to length compass clino";
+				if (hasDimensions) {
+					legDataLine += " left right up down";
+				}
+			}
+			if (legDataLine.equals(dataLine) == false) {
+				output.add(dataIndent + legDataLine);
+				dataLine = legDataLine;
+			}
+
+			// Determine if any flags need setting
+			String flagsSetting = "";
+			if (leg.isDuplicate() != duplicateFlagOn) {
+				duplicateFlagOn = leg.isDuplicate();
+				flagsSetting += duplicateFlagOn ? " duplicate" : " not duplicate";
+			}
+			if (leg.isSurface() != surfaceFlagOn) {
+				surfaceFlagOn = leg.isSurface();
+				flagsSetting += surfaceFlagOn ? " surface" : " not surface";
+			}
+			if (flagsSetting.length() > 0) {
+				output.add(dataIndent + "flags" + flagsSetting);
+			}
+
+			String fromStn = stationName(seriesPath, leg.getFromStn().getName());
+			// Splays are written to anonymous stations
+			String toStn = leg.isSplay() ? "-" : stationName(seriesPath, leg.getToStn().getName());
+			String legLine = dataIndent + fromStn + "\t" + toStn;
+			if (leg.isNosurvey() == false) {
+				legLine += "\t" + CaveConverter.padNumber(leg.getLength(LengthUnit.Metres), 2, 5) + "\t"
+						+ CaveConverter.padNumber(leg.getCompass(BearingUnit.Degrees), 2, 6);
+				if (leg.isDiving() == false) {
+					legLine += "\t" + CaveConverter.padNumber(leg.getClino(GradientUnit.Degrees), 2, 6);
+					if (hasDimensions) {
+						legLine += "\t" + CaveConverter.padNumber(leg.getLeft(LengthUnit.Metres), 2, 5) + "\t"
+								+ CaveConverter.padNumber(leg.getRight(LengthUnit.Metres), 2, 5) + "\t"
+								+ CaveConverter.padNumber(leg.getUp(LengthUnit.Metres), 2, 5) + "\t"
+								+ CaveConverter.padNumber(leg.getDown(LengthUnit.Metres), 2, 5);
+					}
+				} else if (leg.isDepthChangeLeg()) {
+					legLine += "\t" + CaveConverter.padNumber(leg.getDepthChange(LengthUnit.Metres), 2, 5);
+				} else {
+					legLine += "\t" + CaveConverter.padNumber(leg.getFromDepth(LengthUnit.Metres), 2, 5) + "\t"
+							+ CaveConverter.padNumber(leg.getToDepth(LengthUnit.Metres), 2, 5);
+				}
+			}
+			if (leg.getComment().length() > 0) {
+				legLine += "\t# " + leg.getComment();
+			}
+			output.add(legLine);
+
+			// Add fixed points to fixed stations block for series
+			addFix(leg.getFromStn(), seriesPath, dataIndent, fixedStns, fixedStnsData);
+			if (leg.isSplay() == false) {
+				addFix(leg.getToStn(), seriesPath, dataIndent, fixedStns, fixedStnsData);
+			}
+		}
+		for (String fix : fixedStnsData) {
+			output.add(fix);
+		}
+		output.add(indent + "endcentreline");
+	}
+
+	private void addFix(SurveyStation stn, String seriesPath, String indent, Set<String> fixedStns,
+			List<String> fixedStnsData) {
+		if (stn.isFixed() && fixedStns.add(stn.getName())) {
+			fixedStnsData.add(indent + "fix " + stationName(seriesPath, stn.getName()) + "\t"
+					+ CaveConverter.decimalNumberStringEnglish(stn.getEasting()) + "\t"
+					+ CaveConverter.decimalNumberStringEnglish(stn.getNorthing()) + "\t"
+					+ CaveConverter.decimalNumberStringEnglish(stn.getAltitude()));
+		}
+	}
+
+	/**
+	 * Generates a Therion station reference from a series path relative to the series holding a
+	 * link. Therion references name the survey nearest the station first.
+	 */
+	private String stationReference(String holdingPath, String seriesPath, SurveyStation stn) {
+		String reference = stationName(joinPath(holdingPath, seriesPath), stn.getName());
+		if (seriesPath.length() > 0) {
+			String[] surveys = seriesPath.split("[.]");
+			String[] names = new String[surveys.length];
+			String parentPath = holdingPath;
+			for (int i = 0; i < surveys.length; i++) {
+				names[i] = surveyName(parentPath, surveys[i]);
+				parentPath = joinPath(parentPath, surveys[i]);
+			}
+			reference += "@";
+			for (int i = names.length - 1; i >= 0; i--) {
+				reference += names[i] + ((i > 0) ? "." : "");
+			}
+		}
+		return reference;
+	}
+
+	private static String joinPath(String parentPath, String name) {
+		return (parentPath.length() == 0) ? name : parentPath + "." + name;
+	}
+
+	/**
+	 * Gets the name written for a survey, using only characters Therion allows in survey names
+	 */
+	private String surveyName(String parentPath, String name) {
+		return nameFor(surveyNames, parentPath, name, "[^A-Za-z0-9_\\-]");
+	}
+
+	/**
+	 * Gets the name written for a station in a survey, using only characters Therion allows in
+	 * station names
+	 */
+	private String stationName(String seriesPath, String name) {
+		return nameFor(stationNames, seriesPath, name, "[^A-Za-z0-9_/\\-]");
+	}
+
+	private static String nameFor(Map<String, NameMap> names, String path, String name, String invalidChars) {
+		NameMap pathNames = names.get(path);
+		if (pathNames == null) {
+			pathNames = new NameMap();
+			names.put(path, pathNames);
+		}
+		String validName = name.replaceAll(invalidChars, "_");
+		// Therion names can not be empty or start with a minus sign
+		if (validName.length() == 0) {
+			validName = "unnamed";
+		} else if (validName.startsWith("-")) {
+			validName = "_" + validName;
+		}
+		return pathNames.nameFor(name, validName);
+	}
+
+}
@@ -25,6 +25,7 @@ import java.util.ListIterator;
 
 import footleg.cavesurvey.converter.CaveConverter;
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
 import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
@@ -45,11 +46,20 @@ import footleg.cavesurvey.tools.UtilityFunctions;
 public class TopoRobotWriter {
 	private List<ToStnLRUD> terminalLRUDCache;
 	private Logger logger;
+	private ProgressMonitor progress = new ProgressMonitor();
 	
 	public TopoRobotWriter( Logger logger ) {
 		super();
 		this.logger = logger;
 	}
+
+	/**
+	 * Sets the monitor to report the number of series written to, and to check for cancellation
+	 * @param progress Progress monitor for the task running this writer
+	 */
+	public void setProgressMonitor( ProgressMonitor progress ) {
+		this.progress = progress;
+	}
 		
 	/**
 	 * Generates TopoRobot format data from a cave survey
@@ -117,6 +127,7 @@ public class TopoRobotWriter {
 		while ( seriesItr.hasNext() ) {
 			SurveySeries series = seriesItr.next();
 			seriesNo++;
+			progress.checkProgress( "Writing series", seriesNo - 1, processedSurveyData.innerSeriesCount() );
 			
 			//Generate series header
 			outputData.add( CaveConverter.padNumber(seriesNo,6) +  "    -2   1   1   1 Series " + series.getSeriesName() );
@@ -427,7 +438,7 @@ public class TopoRobotWriter {
 	
 	private void processSeriesLinks(SurveySeries series, String masterSeriesNamePrefix, List<List<String>> linkCache){
 		//Process links for this series
-		logger.logMessage("Processing links from series: " + series.getSeriesName() );
+		logger.logDebug( () -> "Processing links from series: " + series.getSeriesName() );
 		addLinksToCache( series, masterSeriesNamePrefix, linkCache );
 		
 		//Process any inner series
@@ -444,7 +455,7 @@ public class TopoRobotWriter {
 	private void processSeriesLegs(SurveySeries series, SurveySeries masterSeries, String masterSeriesNamePrefix, 
 			List<List<String>> linkCache, boolean outputSplays ){
 		//Process legs from this series
-		logger.logMessage("Processing legs from series: " + series.getSeriesName() );
+		logger.logDebug( () -> "Processing legs from series: " + series.getSeriesName() );
 		addLegsToMasterSeries( series, masterSeries, masterSeriesNamePrefix, linkCache, outputSplays );
 		
 		//Process any inner series
@@ -495,13 +506,15 @@ public class TopoRobotWriter {
 		 */
 		
 		//Debug dump links cache
-		for ( int k = 0; k < linkCache.size(); k++ ) {
-			List<String> rec = linkCache.get(k);
-			String msg = "Linked";
-			for ( int m = 0; m < rec.size(); m++ ) {
-				msg += ":" + rec.get(m);
+		if ( logger.isLevelEnabled( Logger.Level.DEBUG ) ) {
+			for ( int k = 0; k < linkCache.size(); k++ ) {
+				List<String> rec = linkCache.get(k);
+				StringBuilder msg = new StringBuilder("Linked");
+				for ( int m = 0; m < rec.size(); m++ ) {
+					msg.append(':').append( rec.get(m) );
+				}
+				logger.log( Logger.Level.DEBUG, msg.toString() );
 			}
-			logger.logMessage(msg);
 		}
 		
 		return rawData;
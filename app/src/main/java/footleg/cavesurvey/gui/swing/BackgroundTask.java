@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.gui.swing;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import javax.swing.SwingWorker;
+
+import footleg.cavesurvey.converter.ProgressMonitor;
+
+/**
+ * Long running task (parsing, processing or exporting survey data) run on a background thread,
+ * so the GUI stays responsive. Progress reported by the task is shown in a
+ * {@link TaskProgressPanel}, and the task result is applied on the event dispatch thread in a
+ * single call once the task has completed.
+ *
+ * Cancellation is cooperative. Parsers and writers check the progress monitor as they work and
+ * stop by throwing a CancellationException, so a cancelled task has always stopped running by
+ * the time it is reported as cancelled.
+ *
+ * @param <T> Type of the result produced by the task
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public abstract class BackgroundTask<T> extends SwingWorker<T, BackgroundTask.Progress> {
+	// Minimum time between progress updates sent to the GUI
+	private static final long PUBLISH_INTERVAL_NANOS = 50000000L;
+
+	/**
+	 * Progress report passed from the background thread to the GUI
+	 */
+	static class Progress {
+		final String phase;
+		final int done;
+		final int total;
+
+		Progress(String phase, int done, int total) {
+			this.phase = phase;
+			this.done = done;
+			this.total = total;
+		}
+	}
+
+	private final String description;
+	private volatile boolean cancelRequested = false;
+	private TaskProgressPanel progressPanel;
+	private final ProgressMonitor monitor = new ProgressMonitor() {
+		private long lastPublished = 0;
+		private String lastPhase = null;
+
+		@Override
+		public void reportProgress(String phase, int done, int total) {
+			// Only send a report to the GUI when the phase changes, or periodically
+			long now = System.nanoTime();
+			if (phase.equals(lastPhase) == false || now - lastPublished > PUBLISH_INTERVAL_NANOS) {
+				lastPublished = now;
+				lastPhase = phase;
+				publish(new Progress(phase, done, total));
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelRequested;
+		}
+	};
+
+	/**
+	 * Creates a task
+	 *
+	 * @param description Description of the task to show while it runs
+	 */
+	public BackgroundTask(String description) {
+		super();
+		this.description = description;
+	}
+
+	/**
+	 * @return Description of the task
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return Progress monitor to pass to parsers and writers used by the task
+	 */
+	protected ProgressMonitor getProgressMonitor() {
+		return monitor;
+	}
+
+	/**
+	 * Asks the task to stop at the next point it checks for cancellation
+	 */
+	public void requestCancel() {
+		cancelRequested = true;
+	}
+
+	/**
+	 * Starts the task running, showing its progress in a panel
+	 *
+	 * @param panel Panel to display the task progress in
+	 */
+	void start(TaskProgressPanel panel) {
+		progressPanel = panel;
+		execute();
+	}
+
+	/**
+	 * Does the work of the task. Runs on a background thread, so must not update the GUI.
+	 *
+	 * @return Result of the task
+	 * @throws Exception Any error which stopped the task completing
+	 */
+	protected abstract T runTask() throws Exception;
+
+	/**
+	 * Applies the result of the task to the GUI. Runs on the event dispatch thread.
+	 *
+	 * @param result The result returned by {@link #runTask()}
+	 */
+	protected abstract void succeeded(T result);
+
+	/**
+	 * Reports an error which stopped the task. Runs on the event dispatch thread.
+	 *
+	 * @param error The exception thrown by {@link #runTask()}
+	 */
+	protected abstract void failed(Throwable error);
+
+	/**
+	 * Called on the event dispatch thread if the task was cancelled before completing
+	 */
+	protected void cancelled() {
+	}
+
+	@Override
+	protected final T doInBackground() throws Exception {
+		return runTask();
+	}
+
+	@Override
+	protected final void process(List<Progress> chunks) {
+		if (progressPanel != null) {
+			// Only the latest progress report matters
+			Progress latest = chunks.get(chunks.size() - 1);
+			progressPanel.showProgress(latest.phase, latest.done, latest.total);
+		}
+	}
+
+	@Override
+	protected final void done() {
+		try {
+			if (progressPanel != null) {
+				progressPanel.taskFinished(this);
+			}
+			T result = get();
+			succeeded(result);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CancellationException) {
+				cancelled();
+			} else {
+				failed(e.getCause());
+			}
+		} catch (InterruptedException | CancellationException e) {
+			cancelled();
+		}
+	}
+
+}
@@ -20,16 +20,21 @@ package footleg.cavesurvey.gui.swing;
 
 import java.awt.Dimension;
 import java.awt.Font;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
+import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.JTree;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingWorker;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 
@@ -39,15 +44,27 @@ import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
 import footleg.cavesurvey.converter.CaveConverter.SurveyDataOutputFormats;
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.ProgressMonitor;
+import footleg.cavesurvey.converter.SurveyStatisticsReport;
 import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.LegPage;
 import footleg.cavesurvey.data.model.SurveyLeg;
 import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.reader.SnapshotReader;
+import footleg.cavesurvey.data.writer.SnapshotWriter;
 import footleg.cavesurvey.data.writer.SurvexWriter;
 import footleg.cavesurvey.data.writer.TopoRobotWriter;
 import footleg.cavesurvey.tools.SurveyProcessing;
+import footleg.cavesurvey.tools.SurveyStatistics;
+import footleg.cavesurvey.tools.SurveyStatistics.Totals;
 
 /**
  * Component to display the cave data model
+ * 
+ * The survey statistics shown in the summary are calculated by the background tasks which build
+ * or change the model, so they only need to be read here. If the model was changed on the event
+ * dispatch thread, the statistics are calculated on a worker thread and the summary is updated
+ * when they are ready.
  *  
  * @author      Footleg
  * @version     2017.01.09                                (ISO 8601 YYYY.MM.DD)
@@ -76,6 +93,11 @@ public class CaveModelVisualiser extends JSplitPane {
 				SurveySeries selectedSeries  = (SurveySeries) selectedNode;
 				taCaveLog.setText( ReportSeriesStats(selectedSeries) );
 			}
+			else if (selectedNode instanceof LegPage) {
+				LegPage selectedPage = (LegPage) selectedNode;
+				taCaveLog.setText( selectedPage.toString() + " of " + selectedPage.getSeries().legCount()
+						+ " in series " + selectedPage.getSeries().getSeriesName() + CaveConverter.newline );
+			}
 			else if (selectedNode instanceof SurveyLeg) {
 				SurveyLeg selectedLeg  = (SurveyLeg) selectedNode;
 				taCaveLog.setText( ReportLegStats(selectedLeg) );
@@ -89,7 +111,11 @@ public class CaveModelVisualiser extends JSplitPane {
 	private JTextArea taCaveLog;
 	private CaveSurvey caveModel;
 	private JTree tree;
+	private CentrelineView centrelineView;
 	private Logger logger;
+	private SwingWorker<SurveyStatistics, Void> statisticsCalculator;
+	// Reason the statistics could not be calculated for the current model
+	private String statisticsError;
 
 	/**
 	 * Create TextArea scrollable tab instance and display model summary. This is a very basic start for a 
@@ -113,13 +139,24 @@ public class CaveModelVisualiser extends JSplitPane {
 		//Create tree for left pane, using the CaveSurvey class as the TreeModel
 		tree = new JTree( caveModel );
 		tree.addTreeSelectionListener( new SelectionListener() );
+		//Fixed height rows let the tree lay out only the visible rows of very large models
+		if ( tree.getRowHeight() <= 0 ) {
+			tree.setRowHeight( Math.max( 18, tree.getFontMetrics( tree.getFont() ).getHeight() + 2 ) );
+		}
+		tree.setLargeModel( true );
 		JScrollPane spSurveyTree = new JScrollPane (tree, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_ALWAYS);
 
 		//Configure split pane
 		spCaveLog.setPreferredSize(new Dimension(250, 400));
 		spSurveyTree.setPreferredSize(new Dimension(250, 400));
 		this.setTopComponent( spSurveyTree );
-		this.setBottomComponent( spCaveLog );
+
+		//Summary and 3D view of the model share the right pane
+		centrelineView = new CentrelineView( caveModel );
+		JTabbedPane tpModelViews = new JTabbedPane();
+		tpModelViews.addTab( "Summary", spCaveLog );
+		tpModelViews.addTab( "3D View", centrelineView );
+		this.setBottomComponent( tpModelViews );
 
 		renderCaveModel();
 	}
@@ -134,9 +171,11 @@ public class CaveModelVisualiser extends JSplitPane {
 	 */
 	public void setCaveModel(CaveSurvey caveModel) {
 		this.caveModel = caveModel;
+		statisticsError = null;
 		
 		//Pass the new model to the jTree
 		tree.setModel( getCaveModel() );
+		centrelineView.setCaveModel( getCaveModel() );
 
 		renderCaveModel();
 	}
@@ -162,12 +201,53 @@ public class CaveModelVisualiser extends JSplitPane {
 	}
 
 	/**
-	 * Generates LRUD data for stations from splay legs in each series
+	 * Generates LRUD data for stations from splay legs in each series. This works on a copy of the
+	 * cave model, so the displayed model is not changed while a background task generates the data.
+	 * @param progress Progress monitor to report to and check for cancellation
+	 * @return Copy of the cave model with LRUD data generated, or null if the model has no data
+	 * @throws IOException If the cave model could not be copied
 	 */
-	public void generateLRUDFromSplays() {
+	public CaveSurvey generateLRUDFromSplays( ProgressMonitor progress ) throws IOException {
+		CaveSurvey model = caveModel;
+		CaveSurvey lrudModel = null;
 		//Generate LRUD if model contains data
-		if ( ( caveModel != null ) && ( caveModel.isEmpty() == false ) ) {
-			caveModel.generateLRUDfromSplays();
+		if ( ( model != null ) && ( model.isEmpty() == false ) ) {
+			//Copy the model via a snapshot, which holds everything the LRUD generation uses
+			progress.checkProgress( "Copying cave model", 0, -1 );
+			byte[] snapshot = new SnapshotWriter(logger).generateSnapshotData( model );
+			lrudModel = new SnapshotReader(logger).parseData( ByteBuffer.wrap( snapshot ) );
+			lrudModel.generateLRUDfromSplays( progress, Runtime.getRuntime().availableProcessors() );
+			calculateStatistics( lrudModel, progress );
+		}
+		return lrudModel;
+	}
+
+	/**
+	 * Calculates the statistics for a cave model, so they are held in the model ready to be shown
+	 * in the summary. Runs on a background thread. If the statistics cannot be calculated then
+	 * the reason is shown in the summary instead.
+	 * @param model The cave model to calculate the statistics for
+	 * @param progress Progress monitor to report to and check for cancellation
+	 */
+	public static void calculateStatistics( CaveSurvey model, ProgressMonitor progress ) {
+		if ( ( model != null ) && ( model.isEmpty() == false ) ) {
+			progress.checkProgress( "Calculating survey statistics", 0, -1 );
+			try {
+				model.getStatistics();
+			}
+			catch ( RuntimeException e ) {
+				//Calculated again when the summary is shown, so the error can be reported there
+			}
+		}
+	}
+
+	/**
+	 * Displays a cave model with LRUD data generated by {@link #generateLRUDFromSplays(ProgressMonitor)}
+	 * @param lrudModel The cave model with generated LRUD data, or null if there was no data
+	 */
+	public void showGeneratedLRUD( CaveSurvey lrudModel ) {
+		if ( lrudModel != null ) {
+			setCaveModel( lrudModel );
 			taCaveLog.append( "LRUD data generated from splays in cave model." + CaveConverter.newline);
 		}
 		else {
@@ -186,8 +266,9 @@ public class CaveModelVisualiser extends JSplitPane {
 
 			//Process series
 			 if ( SurveyProcessing.generateSeriesFromFullPathStationNames(selectedSeries) ) {;
-				//Reload model
+				//Reload model, discarding the statistics as the series was changed directly
 			 	CaveSurvey model = caveModel;
+			 	model.invalidateStatistics();
 			 	setCaveModel( model );
 			 }
 			 else {
@@ -202,9 +283,10 @@ public class CaveModelVisualiser extends JSplitPane {
 	/**
 	 * Returns data file content for a specified survey format for the current cave model
 	 * @param outputFormat The format to export
+	 * @param progress Progress monitor for the writer to report to and check for cancellation
 	 * @return Data file content for the model in the specified format
 	 */
-	public List<String> exportModel( CaveConverter.SurveyDataOutputFormats outputFormat ) {
+	public List<String> exportModel( CaveConverter.SurveyDataOutputFormats outputFormat, ProgressMonitor progress ) {
 		List<String> outputData = null;
 
 		if ( outputFormat == SurveyDataOutputFormats.Survex ) {
@@ -212,6 +294,7 @@ public class CaveModelVisualiser extends JSplitPane {
 			SurvexWriter.SplayFormats outputSplays = SurvexWriter.SplayFormats.Flagged;
 			//Generate Survex format data
 			SurvexWriter writer = new SurvexWriter(logger);
+			writer.setProgressMonitor( progress );
 			outputData = writer.generateSurvexData( caveModel, outputSplays );
 		}
 		else if ( outputFormat == SurveyDataOutputFormats.Toporobot ) {
@@ -222,6 +305,7 @@ public class CaveModelVisualiser extends JSplitPane {
 			Date today = cal.getTime();
 			//Generate Toporobot format data
 			TopoRobotWriter writer = new TopoRobotWriter(logger);
+			writer.setProgressMonitor( progress );
 			outputData = writer.generateToporobotData( caveModel, today, outputSplays );
 		}
 
@@ -229,7 +313,7 @@ public class CaveModelVisualiser extends JSplitPane {
 	}
 
 	/**
-	 * Generates a summary report for the survey
+	 * Generates a summary report for the survey, using the statistics cached in the model
 	 * @param survey
 	 * @return Report text
 	 */
@@ -242,13 +326,21 @@ public class CaveModelVisualiser extends JSplitPane {
 		else {
 			report += survey.getSurveyName() + CaveConverter.newline;
 
-			if ( caveModel.size() == 0 ) {
+			if ( survey.size() == 0 ) {
 				report += "No data was loaded into the cave model!" + CaveConverter.newline;
 			}
 			else {
-				report += "Cave model contains " + caveModel.size() + " top level series." + CaveConverter.newline;
-				for (int i = 0; i < caveModel.size(); i++ ) {
-					report += ReportSeriesStats( caveModel.get(i) );
+				report += "Cave model contains " + survey.size() + " top level series." + CaveConverter.newline;
+				SurveyStatistics stats = survey.getCalculatedStatistics();
+				if ( stats != null ) {
+					report += "Stations: " + stats.getStationCount() + ", series: " + stats.getSeriesCount() + CaveConverter.newline;
+					report += ReportTotals( stats.getSurveyTotals() );
+					for (int i = 0; i < survey.size(); i++ ) {
+						report += ReportSeriesSummary( survey.get(i), stats );
+					}
+				}
+				else {
+					report += ReportStatisticsPending( survey );
 				}
 			}
 		}
@@ -257,7 +349,8 @@ public class CaveModelVisualiser extends JSplitPane {
 	}
 
 	/**
-	 * Generates a summary report for the survey series
+	 * Generates a summary report for the survey series, with totals for the series and all its
+	 * inner series from the statistics cached in the model, and a line for each inner series
 	 * @param series
 	 * @return Report text
 	 */
@@ -283,15 +376,114 @@ public class CaveModelVisualiser extends JSplitPane {
 			report += "(Contains " + series.innerSeriesCount() + " child series).";
 		}
 		report += CaveConverter.newline;
-		
-		//Recursively log details of inner series
-		for (int i = 0; i < series.innerSeriesCount(); i++ ) {
-			report += ReportSeriesStats( series.getInnerSeries(i) );
+
+		SurveyStatistics stats = caveModel.getCalculatedStatistics();
+		if ( stats != null ) {
+			Totals totals = stats.getSeriesTotals( series );
+			if ( totals != null ) {
+				if ( series.innerSeriesCount() > 0 ) {
+					report += "Including child series:" + CaveConverter.newline;
+				}
+				report += ReportTotals( totals );
+				for (int i = 0; i < series.innerSeriesCount(); i++ ) {
+					report += ReportSeriesSummary( series.getInnerSeries(i), stats );
+				}
+			}
+		}
+		else {
+			report += ReportStatisticsPending( caveModel );
 		}
 		
 		return report;
 	}
 
+	/**
+	 * Reports that the statistics for the survey are not available yet, and starts calculating them
+	 * on a worker thread if they are not already being calculated. The summary is shown again when
+	 * they have been calculated.
+	 * @param survey
+	 * @return Report text
+	 */
+	private String ReportStatisticsPending(CaveSurvey survey) {
+		if ( statisticsError != null ) {
+			return "Unable to calculate survey statistics: " + statisticsError + CaveConverter.newline;
+		}
+		if ( ( statisticsCalculator == null ) || statisticsCalculator.isDone() ) {
+			final CaveSurvey model = survey;
+			statisticsCalculator = new SwingWorker<SurveyStatistics, Void>() {
+				@Override
+				protected SurveyStatistics doInBackground() {
+					return model.getStatistics();
+				}
+
+				@Override
+				protected void done() {
+					if ( model != caveModel ) {
+						return;
+					}
+					try {
+						get();
+					}
+					catch ( ExecutionException e ) {
+						statisticsError = e.getCause().getMessage();
+					}
+					catch ( InterruptedException e ) {
+						statisticsError = e.getMessage();
+					}
+					ShowSelectionSummary();
+				}
+			};
+			statisticsCalculator.execute();
+		}
+		return "Calculating survey statistics..." + CaveConverter.newline;
+	}
+
+	/**
+	 * Shows the summary for the selected survey or series again, once the statistics have been
+	 * calculated
+	 */
+	private void ShowSelectionSummary() {
+		Object selectedNode = tree.getLastSelectedPathComponent();
+		if ( selectedNode instanceof SurveySeries ) {
+			taCaveLog.setText( ReportSeriesStats( (SurveySeries) selectedNode ) );
+		}
+		else if ( ( selectedNode == null ) || ( selectedNode instanceof CaveSurvey ) ) {
+			renderCaveModel();
+		}
+	}
+
+	/**
+	 * Generates a one line summary of the length and legs in a series and its inner series
+	 * @param series
+	 * @param stats Statistics for the survey containing the series
+	 * @return Report text
+	 */
+	private String ReportSeriesSummary(SurveySeries series, SurveyStatistics stats) {
+		String report = "Series: " + series.getSeriesName();
+		Totals totals = stats.getSeriesTotals( series );
+		if ( totals != null ) {
+			report += " - length " + CaveConverter.padNumber( totals.getLength(), 2, 0 ) + "m, "
+					+ totals.getLegCount() + " legs, " + totals.getSplayCount() + " splays";
+		}
+		if ( series.innerSeriesCount() > 0 ) {
+			report += " (contains " + series.innerSeriesCount() + " child series)";
+		}
+		return report + CaveConverter.newline;
+	}
+
+	/**
+	 * Generates a report of survey totals
+	 * @param totals
+	 * @return Report text
+	 */
+	private String ReportTotals(Totals totals) {
+		String report = "";
+		for ( String line : SurveyStatisticsReport.describe( totals ) ) {
+			report += line + CaveConverter.newline;
+		}
+		return report;
+	}
+
 	/**
 	 * Generates a summary report for the survey leg
 	 * @param leg
@@ -0,0 +1,631 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.gui.swing;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+
+import footleg.cavesurvey.converter.CaveConverter;
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.tools.CentrelineGeometry;
+import footleg.cavesurvey.tools.CrossSections;
+import footleg.cavesurvey.tools.NetworkAdjustment;
+import footleg.cavesurvey.tools.SpatialIndex;
+import footleg.cavesurvey.tools.SurveyNetwork;
+
+/**
+ * Interactive 3D view of the centreline of a cave model, drawn as an orthographic projection which
+ * can be rotated, tilted, panned and zoomed with the mouse.
+ *
+ * The station positions are calculated by adjusting the survey network on a background thread,
+ * and the centreline is held as a {@link CentrelineGeometry}. Frames are drawn into an image on a
+ * separate render thread, using the spatial index in the geometry to skip parts of the survey
+ * outside the view, and the coarsest level of detail which is accurate to the size of a pixel.
+ * A coarser pixel tolerance is used while the view is being dragged, and the view is redrawn in
+ * full detail once the mouse stops moving. A new frame request supersedes any frame still being
+ * drawn, and while a new frame is being drawn the last completed frame is shown shifted to follow
+ * the pan, so large surveys stay responsive. Clicking on a station shows its name and position,
+ * found using a spatial index of the stations.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class CentrelineView extends JComponent {
+	private static final long serialVersionUID = 1L;
+
+	// Maximum error in pixels for the level of detail while interacting, and when idle
+	private static final double INTERACTIVE_PIXEL_TOLERANCE = 3.0;
+	private static final double IDLE_PIXEL_TOLERANCE = 0.75;
+	// Time after the last mouse movement before the view is redrawn in full detail
+	private static final int IDLE_DELAY_MILLIS = 250;
+	// Time after which a partly drawn frame is shown while the rest is drawn
+	private static final long PARTIAL_FRAME_NANOS = 100000000L;
+	// Scale (pixels per metre) above which passage cross sections are drawn
+	private static final double CROSS_SECTION_MIN_SCALE = 4.0;
+	// Distance in pixels from the mouse within which a click picks a station
+	private static final double PICK_PIXELS = 5.0;
+
+	private static final Color BACKGROUND = Color.BLACK;
+	private static final Color CROSS_SECTION_COLOUR = new Color(128, 128, 128);
+
+	/**
+	 * View settings used to draw a frame. Immutable so a frame being drawn on the render thread is
+	 * not affected by changes to the view.
+	 */
+	private static class ViewState {
+		final CentrelineGeometry geometry;
+		final double azimuth;
+		final double tilt;
+		final double scale;
+		// Centre of the view in survey coordinates
+		final double centreX;
+		final double centreY;
+		final double centreZ;
+		final int width;
+		final int height;
+		final double pixelTolerance;
+		final double[] right;
+		final double[] up;
+
+		ViewState(CentrelineGeometry geometry, double azimuth, double tilt, double scale, double centreX,
+				double centreY, double centreZ, int width, int height, double pixelTolerance) {
+			this.geometry = geometry;
+			this.azimuth = azimuth;
+			this.tilt = tilt;
+			this.scale = scale;
+			this.centreX = centreX;
+			this.centreY = centreY;
+			this.centreZ = centreZ;
+			this.width = width;
+			this.height = height;
+			this.pixelTolerance = pixelTolerance;
+			right = new double[] { Math.cos(azimuth), -Math.sin(azimuth), 0 };
+			up = new double[] { Math.sin(azimuth) * Math.sin(tilt), Math.cos(azimuth) * Math.sin(tilt),
+					Math.cos(tilt) };
+		}
+
+		boolean sameProjection(ViewState other) {
+			return other != null && geometry == other.geometry && azimuth == other.azimuth && tilt == other.tilt
+					&& scale == other.scale && width == other.width && height == other.height;
+		}
+	}
+
+	/**
+	 * An image of the view, with the settings it was drawn with
+	 */
+	private static class Frame {
+		final BufferedImage image;
+		final ViewState view;
+
+		Frame(BufferedImage image, ViewState view) {
+			this.image = image;
+			this.view = view;
+		}
+	}
+
+	private CaveSurvey caveModel;
+	private CentrelineGeometry geometry;
+	// Network and index of its stations for picking stations, built with the geometry
+	private SurveyNetwork stationNetwork;
+	private SpatialIndex stationIndex;
+	private boolean rebuildPending = false;
+	private SwingWorker<CentrelineGeometry, Void> geometryBuilder;
+	private boolean fitOnBuild = true;
+	private String statusMessage = "";
+
+	// View settings, only changed on the event dispatch thread
+	private double azimuth = 0.0;
+	private double tilt = Math.PI / 2;
+	private double scale = 1.0;
+	private double centreX;
+	private double centreY;
+	private double centreZ;
+	private boolean interacting = false;
+
+	private volatile Frame frontFrame;
+	private final AtomicInteger frameGeneration = new AtomicInteger();
+	private final ExecutorService renderer = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "Centreline renderer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final Timer idleTimer;
+
+	private final TreeModelListener modelListener = new TreeModelListener() {
+		@Override
+		public void treeNodesChanged(TreeModelEvent e) {
+			modelChanged();
+		}
+
+		@Override
+		public void treeNodesInserted(TreeModelEvent e) {
+			modelChanged();
+		}
+
+		@Override
+		public void treeNodesRemoved(TreeModelEvent e) {
+			modelChanged();
+		}
+
+		@Override
+		public void treeStructureChanged(TreeModelEvent e) {
+			modelChanged();
+		}
+	};
+
+	/**
+	 * Class constructor
+	 *
+	 * @param model The cave survey model to show the centreline of
+	 */
+	public CentrelineView(CaveSurvey model) {
+		super();
+		setPreferredSize(new Dimension(400, 400));
+		setOpaque(true);
+		idleTimer = new Timer(IDLE_DELAY_MILLIS, e -> {
+			interacting = false;
+			requestFrame();
+		});
+		idleTimer.setRepeats(false);
+
+		MouseAdapter mouseHandler = new MouseAdapter() {
+			private int lastX;
+			private int lastY;
+
+			@Override
+			public void mousePressed(MouseEvent e) {
+				lastX = e.getX();
+				lastY = e.getY();
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				int dx = e.getX() - lastX;
+				int dy = e.getY() - lastY;
+				lastX = e.getX();
+				lastY = e.getY();
+				if (SwingUtilities.isRightMouseButton(e) || e.isShiftDown()) {
+					pan(dx, dy);
+				} else {
+					rotate(dx, dy);
+				}
+			}
+
+			@Override
+			public void mouseWheelMoved(MouseWheelEvent e) {
+				zoom(Math.pow(1.2, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+			}
+
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				if (e.getClickCount() == 2) {
+					fitToView();
+				} else if (e.getClickCount() == 1 && SwingUtilities.isLeftMouseButton(e)) {
+					pickStation(e.getX(), e.getY());
+				}
+			}
+		};
+		addMouseListener(mouseHandler);
+		addMouseMotionListener(mouseHandler);
+		addMouseWheelListener(mouseHandler);
+
+		setCaveModel(model);
+	}
+
+	/**
+	 * Shows a different cave model in the view
+	 *
+	 * @param model The cave survey model to show the centreline of
+	 */
+	public void setCaveModel(CaveSurvey model) {
+		if (caveModel != null) {
+			caveModel.removeTreeModelListener(modelListener);
+		}
+		caveModel = model;
+		if (caveModel != null) {
+			caveModel.addTreeModelListener(modelListener);
+		}
+		fitOnBuild = true;
+		modelChanged();
+	}
+
+	/**
+	 * Schedules the geometry to be rebuilt from the model, once the event which changed it has
+	 * been handled, so several changes made together only cause one rebuild.
+	 */
+	private void modelChanged() {
+		if (rebuildPending == false) {
+			rebuildPending = true;
+			SwingUtilities.invokeLater(this::buildGeometry);
+		}
+	}
+
+	/**
+	 * Starts building the geometry from the current model. The network is built from the model on
+	 * the event dispatch thread, as the model is only changed on that thread, and handed to a
+	 * worker thread which adjusts it and builds the geometry. Drawing the view only shows the
+	 * last geometry which was built.
+	 */
+	private void buildGeometry() {
+		rebuildPending = false;
+		if (geometryBuilder != null) {
+			geometryBuilder.cancel(false);
+		}
+		if (caveModel == null || caveModel.isEmpty()) {
+			setGeometry(null, "No survey data");
+			return;
+		}
+		final SurveyNetwork network;
+		try {
+			network = SurveyNetwork.build(caveModel);
+		} catch (RuntimeException e) {
+			setGeometry(null, "Unable to build survey network: " + e.getMessage());
+			return;
+		}
+		statusMessage = "Calculating station positions...";
+		geometryBuilder = new SwingWorker<CentrelineGeometry, Void>() {
+			private SpatialIndex stations;
+
+			@Override
+			protected CentrelineGeometry doInBackground() {
+				// Adjustment messages are already reported when the survey is processed
+				new NetworkAdjustment(new Logger()).adjust(network);
+				stations = SpatialIndex.forStations(network);
+				// Show passage outlines built from the splays where stations have them
+				return CentrelineGeometry.build(network, CrossSections.build(network));
+			}
+
+			@Override
+			protected void done() {
+				if (isCancelled() || geometryBuilder != this) {
+					return;
+				}
+				try {
+					CentrelineGeometry newGeometry = get();
+					stationNetwork = network;
+					stationIndex = stations;
+					setGeometry(newGeometry, "");
+				} catch (Exception e) {
+					Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+					setGeometry(null, "Unable to calculate station positions: " + cause.getMessage());
+				}
+			}
+		};
+		geometryBuilder.execute();
+		repaint();
+	}
+
+	private void setGeometry(CentrelineGeometry newGeometry, String message) {
+		statusMessage = message;
+		if (newGeometry != null && geometry != null && fitOnBuild == false) {
+			// Keep the view centred on the same point if the origin of the survey has moved
+			centreX += geometry.getOriginX() - newGeometry.getOriginX();
+			centreY += geometry.getOriginY() - newGeometry.getOriginY();
+			centreZ += geometry.getOriginZ() - newGeometry.getOriginZ();
+		}
+		geometry = newGeometry;
+		if (geometry == null) {
+			stationNetwork = null;
+			stationIndex = null;
+		}
+		frontFrame = null;
+		if (geometry != null && fitOnBuild) {
+			fitOnBuild = false;
+			fitToView();
+		} else {
+			requestFrame();
+		}
+	}
+
+	/**
+	 * Centres the survey in the view, and zooms so it fills the view
+	 */
+	public void fitToView() {
+		if (geometry == null || getWidth() == 0 || getHeight() == 0) {
+			fitOnBuild = true;
+			return;
+		}
+		float[] bounds = new float[6];
+		geometry.getBounds(bounds);
+		centreX = (bounds[0] + bounds[3]) / 2;
+		centreY = (bounds[1] + bounds[4]) / 2;
+		centreZ = (bounds[2] + bounds[5]) / 2;
+		ViewState view = currentView(IDLE_PIXEL_TOLERANCE);
+		double extentH = 0;
+		double extentV = 0;
+		for (int a = 0; a < 3; a++) {
+			extentH += Math.abs(view.right[a]) * (bounds[a + 3] - bounds[a]);
+			extentV += Math.abs(view.up[a]) * (bounds[a + 3] - bounds[a]);
+		}
+		scale = 0.9 * Math.min(getWidth() / Math.max(extentH, 1.0), getHeight() / Math.max(extentV, 1.0));
+		requestFrame();
+	}
+
+	private void rotate(int dx, int dy) {
+		azimuth += dx * 0.01;
+		tilt = Math.max(-Math.PI / 2, Math.min(Math.PI / 2, tilt - dy * 0.01));
+		interactionChanged();
+	}
+
+	private void pan(int dx, int dy) {
+		ViewState view = currentView(INTERACTIVE_PIXEL_TOLERANCE);
+		for (int a = 0; a < 3; a++) {
+			double move = (-dx * view.right[a] + dy * view.up[a]) / scale;
+			if (a == 0) {
+				centreX += move;
+			} else if (a == 1) {
+				centreY += move;
+			} else {
+				centreZ += move;
+			}
+		}
+		interactionChanged();
+	}
+
+	/**
+	 * Zooms the view, keeping the point under the mouse in the same place on the screen
+	 */
+	private void zoom(double factor, int mouseX, int mouseY) {
+		double offsetH = (mouseX - getWidth() / 2.0) / scale;
+		double offsetV = -(mouseY - getHeight() / 2.0) / scale;
+		double shift = 1.0 - 1.0 / factor;
+		ViewState view = currentView(INTERACTIVE_PIXEL_TOLERANCE);
+		centreX += (offsetH * view.right[0] + offsetV * view.up[0]) * shift;
+		centreY += (offsetH * view.right[1] + offsetV * view.up[1]) * shift;
+		centreZ += (offsetH * view.right[2] + offsetV * view.up[2]) * shift;
+		scale *= factor;
+		interactionChanged();
+	}
+
+	/**
+	 * Shows the name and position of the station nearest to a point on the view, if there is a
+	 * station within a few pixels of it
+	 */
+	private void pickStation(int mouseX, int mouseY) {
+		if (geometry == null || stationIndex == null) {
+			return;
+		}
+		// Line of sight through the point, in survey coordinates
+		ViewState view = currentView(IDLE_PIXEL_TOLERANCE);
+		double offsetH = (mouseX - getWidth() / 2.0) / scale;
+		double offsetV = -(mouseY - getHeight() / 2.0) / scale;
+		double[] point = { geometry.getOriginX() + centreX, geometry.getOriginY() + centreY,
+				geometry.getOriginZ() + centreZ };
+		for (int a = 0; a < 3; a++) {
+			point[a] += offsetH * view.right[a] + offsetV * view.up[a];
+		}
+		double[] r = view.right;
+		double[] u = view.up;
+		double[] sight = { r[1] * u[2] - r[2] * u[1], r[2] * u[0] - r[0] * u[2], r[0] * u[1] - r[1] * u[0] };
+
+		// Pick the station nearest to the line of sight
+		int picked = -1;
+		double pickedDistSq = Double.MAX_VALUE;
+		for (int stn : stationIndex.findNearLine(point, sight, PICK_PIXELS / scale)) {
+			double dx = stationNetwork.getX(stn) - point[0];
+			double dy = stationNetwork.getY(stn) - point[1];
+			double dz = stationNetwork.getZ(stn) - point[2];
+			double along = dx * sight[0] + dy * sight[1] + dz * sight[2];
+			double distSq = dx * dx + dy * dy + dz * dz - along * along;
+			if (distSq < pickedDistSq) {
+				picked = stn;
+				pickedDistSq = distSq;
+			}
+		}
+		if (picked >= 0) {
+			statusMessage = stationNetwork.getStationName(picked) + "  E "
+					+ CaveConverter.padNumber(stationNetwork.getX(picked), 2, 0) + "  N "
+					+ CaveConverter.padNumber(stationNetwork.getY(picked), 2, 0) + "  Alt "
+					+ CaveConverter.padNumber(stationNetwork.getZ(picked), 2, 0);
+		} else {
+			statusMessage = "";
+		}
+		repaint();
+	}
+
+	private void interactionChanged() {
+		interacting = true;
+		idleTimer.restart();
+		requestFrame();
+	}
+
+	private ViewState currentView(double pixelTolerance) {
+		return new ViewState(geometry, azimuth, tilt, scale, centreX, centreY, centreZ, getWidth(), getHeight(),
+				pixelTolerance);
+	}
+
+	/**
+	 * Requests a new frame for the current view settings, superseding any frame being drawn
+	 */
+	private void requestFrame() {
+		repaint();
+		if (geometry == null || getWidth() == 0 || getHeight() == 0) {
+			return;
+		}
+		final ViewState view = currentView(interacting ? INTERACTIVE_PIXEL_TOLERANCE : IDLE_PIXEL_TOLERANCE);
+		final int generation = frameGeneration.incrementAndGet();
+		renderer.execute(() -> renderFrame(view, generation));
+	}
+
+	/**
+	 * Draws a frame on the render thread. Stops early if a newer frame has been requested.
+	 */
+	private void renderFrame(ViewState view, int generation) {
+		if (frameGeneration.get() != generation) {
+			return;
+		}
+		CentrelineGeometry geom = view.geometry;
+		BufferedImage image = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setColor(BACKGROUND);
+			g.fillRect(0, 0, view.width, view.height);
+			if (view.pixelTolerance < INTERACTIVE_PIXEL_TOLERANCE) {
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			}
+
+			// Find leaves of the spatial index within the view
+			double[] r = view.right;
+			double[] u = view.up;
+			double centreH = view.centreX * r[0] + view.centreY * r[1] + view.centreZ * r[2];
+			double centreV = view.centreX * u[0] + view.centreY * u[1] + view.centreZ * u[2];
+			double halfWidth = view.width / 2.0 / view.scale;
+			double halfHeight = view.height / 2.0 / view.scale;
+			int[] leaves = new int[geom.getLeafCount()];
+			int leafCount = geom.findVisibleLeaves(r, u, centreH - halfWidth, centreH + halfWidth,
+					centreV - halfHeight, centreV + halfHeight, leaves);
+
+			// Use the coarsest level of detail which is accurate to within the pixel tolerance
+			int level = 0;
+			while (level + 1 < geom.getLevelCount()
+					&& geom.getLevelTolerance(level + 1) * view.scale <= view.pixelTolerance) {
+				level++;
+			}
+			float[] segments = geom.getSegmentVertices(level);
+			float[] sections = geom.getCrossSectionVertices();
+			boolean drawSections = view.scale >= CROSS_SECTION_MIN_SCALE;
+
+			float[] surveyBounds = new float[6];
+			geom.getBounds(surveyBounds);
+			float[] leafBounds = new float[6];
+			double offsetX = view.width / 2.0 - centreH * view.scale;
+			double offsetY = view.height / 2.0 + centreV * view.scale;
+			long startTime = System.nanoTime();
+			boolean shown = false;
+			for (int i = 0; i < leafCount; i++) {
+				if (frameGeneration.get() != generation) {
+					return;
+				}
+				int leaf = leaves[i];
+				if (drawSections) {
+					g.setColor(CROSS_SECTION_COLOUR);
+					drawLines(g, sections, geom.getLeafCrossSectionStart(leaf), geom.getLeafCrossSectionEnd(leaf),
+							view, offsetX, offsetY);
+				}
+				geom.getLeafBounds(leaf, leafBounds);
+				g.setColor(altitudeColour((leafBounds[2] + leafBounds[5]) / 2, surveyBounds[2], surveyBounds[5]));
+				drawLines(g, segments, geom.getLeafSegmentStart(level, leaf), geom.getLeafSegmentEnd(level, leaf),
+						view, offsetX, offsetY);
+
+				if (shown == false && System.nanoTime() - startTime > PARTIAL_FRAME_NANOS) {
+					// Show the partly drawn frame rather than leave an out of date one showing
+					shown = true;
+					showFrame(new Frame(image, view), generation);
+				}
+			}
+		} finally {
+			g.dispose();
+		}
+		showFrame(new Frame(image, view), generation);
+	}
+
+	private static void drawLines(Graphics2D g, float[] vertices, int start, int end, ViewState view,
+			double offsetX, double offsetY) {
+		double[] r = view.right;
+		double[] u = view.up;
+		double s = view.scale;
+		for (int seg = start; seg < end; seg++) {
+			int p = seg * 6;
+			double x1 = offsetX + (vertices[p] * r[0] + vertices[p + 1] * r[1] + vertices[p + 2] * r[2]) * s;
+			double y1 = offsetY - (vertices[p] * u[0] + vertices[p + 1] * u[1] + vertices[p + 2] * u[2]) * s;
+			double x2 = offsetX + (vertices[p + 3] * r[0] + vertices[p + 4] * r[1] + vertices[p + 5] * r[2]) * s;
+			double y2 = offsetY - (vertices[p + 3] * u[0] + vertices[p + 4] * u[1] + vertices[p + 5] * u[2]) * s;
+			g.drawLine((int) Math.round(x1), (int) Math.round(y1), (int) Math.round(x2), (int) Math.round(y2));
+		}
+	}
+
+	/**
+	 * Colours parts of the survey from blue at the lowest point to red at the highest point
+	 */
+	private static Color altitudeColour(double z, double minZ, double maxZ) {
+		double range = maxZ - minZ;
+		float fraction = (range > 0) ? (float) ((z - minZ) / range) : 0.5f;
+		return Color.getHSBColor(0.66f * (1.0f - fraction), 0.8f, 1.0f);
+	}
+
+	private void showFrame(Frame frame, int generation) {
+		if (frameGeneration.get() == generation) {
+			frontFrame = frame;
+			repaint();
+		}
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		g.setColor(BACKGROUND);
+		g.fillRect(0, 0, getWidth(), getHeight());
+
+		Frame frame = frontFrame;
+		if (frame != null && frame.view.geometry == geometry) {
+			ViewState current = currentView(IDLE_PIXEL_TOLERANCE);
+			int shiftX = 0;
+			int shiftY = 0;
+			if (frame.view.sameProjection(current)) {
+				// Shift the frame to follow any pan since it was drawn
+				double dx = frame.view.centreX - current.centreX;
+				double dy = frame.view.centreY - current.centreY;
+				double dz = frame.view.centreZ - current.centreZ;
+				double[] r = current.right;
+				double[] u = current.up;
+				shiftX = (int) Math.round((dx * r[0] + dy * r[1] + dz * r[2]) * scale);
+				shiftY = (int) Math.round(-(dx * u[0] + dy * u[1] + dz * u[2]) * scale);
+			}
+			g.drawImage(frame.image, shiftX, shiftY, null);
+		}
+
+		if (statusMessage.length() > 0) {
+			g.setColor(Color.WHITE);
+			g.drawString(statusMessage, 10, 20);
+		}
+	}
+
+	@Override
+	public void setBounds(int x, int y, int width, int height) {
+		boolean resized = width != getWidth() || height != getHeight();
+		super.setBounds(x, y, width, height);
+		if (resized) {
+			if (fitOnBuild && geometry != null) {
+				fitOnBuild = false;
+				fitToView();
+			} else {
+				requestFrame();
+			}
+		}
+	}
+
+}
@@ -33,14 +33,15 @@ import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -57,6 +58,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JToolBar;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.event.ChangeEvent;
@@ -67,13 +69,16 @@ import javax.swing.plaf.metal.MetalLookAndFeel;
 import javax.swing.plaf.metal.OceanTheme;
 
 import footleg.cavesurvey.converter.CaveConverter;
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
 import footleg.cavesurvey.converter.CaveConverter.SurveyDataOutputFormats;
 import footleg.cavesurvey.converter.DialogMsgLogger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.data.model.CaveSurvey;
 import footleg.cavesurvey.data.reader.CompassParser;
 import footleg.cavesurvey.data.reader.DxfParser;
+import footleg.cavesurvey.data.reader.IncrementalSurvexParser;
 import footleg.cavesurvey.data.reader.PocketTopoParser;
-import footleg.cavesurvey.data.reader.SurvexParser;
+import footleg.cavesurvey.data.reader.TherionParser;
 
 /**
  * GUI application built on top of CaveConverter library.
@@ -266,6 +271,7 @@ public class MainForm extends JFrame {
 			fileOpenDialog.addChoosableFileFilter(new FileNameExtensionFilter("DXF Files", "dxf"));
 			fileOpenDialog.addChoosableFileFilter(new FileNameExtensionFilter("PocketTopo Text Files", "txt"));
 			fileOpenDialog.addChoosableFileFilter(new FileNameExtensionFilter("Survex Files", "svx"));
+			fileOpenDialog.addChoosableFileFilter(new FileNameExtensionFilter("Therion Files", "th", "thconfig"));
 		}
 
 		@Override
@@ -368,10 +374,29 @@ public class MainForm extends JFrame {
 
 		@Override
 		public void actionPerformed(ActionEvent evnt) {
-			// Process the data in the input data tab and generate a model
+			// Generate LRUD data for the cave model in the background
 			if (visualiser != null) {
-				visualiser.generateLRUDFromSplays();
+				runBackgroundTask(new BackgroundTask<CaveSurvey>("Generating LRUD data") {
+					@Override
+					protected CaveSurvey runTask() throws Exception {
+						return visualiser.generateLRUDFromSplays(getProgressMonitor());
+					}
+
+					@Override
+					protected void succeeded(CaveSurvey model) {
+						visualiser.showGeneratedLRUD(model);
+					}
+
+					@Override
+					protected void failed(Throwable error) {
+						JOptionPane.showMessageDialog(getMainFrame(),
+								"Unexpected error generating LRUD data: " + error.getMessage(), "Error",
+								JOptionPane.ERROR_MESSAGE);
+						error.printStackTrace();
+					}
+				});
 			}
+
 		}
 	}
 
@@ -502,6 +527,8 @@ public class MainForm extends JFrame {
 	private SourceDataComponent inputData;
 	private CaveModelVisualiser visualiser;
 	private DialogMsgLogger dialogLogger;
+	private TaskProgressPanel taskProgress;
+	private boolean[] actionsEnabledBeforeTask;
 
 	/**
 	 * Create main application window
@@ -659,6 +686,10 @@ public class MainForm extends JFrame {
 		// Set up tab pane
 		tabPane = new JTabbedPane(JTabbedPane.TOP, JTabbedPane.SCROLL_TAB_LAYOUT);
 		add(tabPane, BorderLayout.CENTER);
+
+		// Status bar showing progress of background tasks
+		taskProgress = new TaskProgressPanel(this::restoreActionsAfterTask);
+		add(taskProgress, BorderLayout.SOUTH);
 		tabPane.addChangeListener(new ChangeListener() {
 			@Override
 			public void stateChanged(ChangeEvent e) {
@@ -872,34 +903,50 @@ public class MainForm extends JFrame {
 	/**
 	 * Generate survey data from the cave data model in the specified output format
 	 */
-	private void generateOutputData(CaveConverter.SurveyDataOutputFormats format) {
+	private void generateOutputData(final CaveConverter.SurveyDataOutputFormats format) {
 		if (visualiser != null) {
-			List<String> outputData = visualiser.exportModel(format);
-
-			// Create tabPane for this output data
-			SurveyDatafileTabPane exportTab = new ExportDataComponent(font, this.getLogger(), format);
-			if (format == SurveyDataOutputFormats.Survex) {
-				exportTab.title = "Survex Export Data";
-			} else if (format == SurveyDataOutputFormats.Toporobot) {
-				exportTab.title = "Toporobot Export Data";
-			}
+			runBackgroundTask(new BackgroundTask<String>("Exporting " + format + " data") {
+				@Override
+				protected String runTask() throws Exception {
+					// Build the whole text in the background, so the tab is filled in one update
+					List<String> outputData = visualiser.exportModel(format, getProgressMonitor());
+					StringBuilder text = new StringBuilder();
+					for (int i = 0; i < outputData.size(); i++) {
+						if (i > 0) {
+							text.append(System.getProperty("line.separator"));
+						}
+						text.append(outputData.get(i));
+					}
+					return text.toString();
+				}
 
-			tabPane.addTab(exportTab.title, exportTab.getTabPaneComponent());
-			exportTab.addPropertyChangeListener("modified", dataModified);
+				@Override
+				protected void succeeded(String outputText) {
+					// Create tabPane for this output data
+					SurveyDatafileTabPane exportTab = new ExportDataComponent(font, getLogger(), format);
+					if (format == SurveyDataOutputFormats.Survex) {
+						exportTab.title = "Survex Export Data";
+					} else if (format == SurveyDataOutputFormats.Toporobot) {
+						exportTab.title = "Toporobot Export Data";
+					}
 
-			// Write strings from list to the file
-			exportTab.setText("");
-			Iterator<String> iterator = outputData.listIterator();
-			while (iterator.hasNext()) {
-				String line = iterator.next();
-				if (iterator.hasNext()) {
-					exportTab.append(line + System.getProperty("line.separator"));
-				} else {
-					exportTab.append(line);
+					tabPane.addTab(exportTab.title, exportTab.getTabPaneComponent());
+					exportTab.addPropertyChangeListener("modified", dataModified);
+
+					exportTab.setText(outputText);
+					exportTab.setCaretPosition(0);
+					// Bring to front
+					tabPane.setSelectedComponent(exportTab.getTabPaneComponent());
 				}
-			}
-			// Bring to front
-			tabPane.setSelectedComponent(exportTab.getTabPaneComponent());
+
+				@Override
+				protected void failed(Throwable error) {
+					JOptionPane.showMessageDialog(getMainFrame(),
+							"Unexpected error exporting " + format + " data: " + error.getMessage(), "Error",
+							JOptionPane.ERROR_MESSAGE);
+					error.printStackTrace();
+				}
+			});
 		}
 	}
 
@@ -907,8 +954,77 @@ public class MainForm extends JFrame {
 	 * Process the data in the input data tab and generate a model
 	 */
 	private void buildCaveModelFromInputData() {
-		CaveSurvey dataModel = processInputData();
+		final SurveyDataInputFormats format = inputData.getFormat();
+		if (format == null) {
+			// TODO In case of unknown format, ask user to select the format
+			JOptionPane.showMessageDialog(this,
+					"Format of data unknown. Currently this is determined by the file extension. The option to let you specify the format is not written yet.",
+					"Unknown Survey Data Format", JOptionPane.OK_OPTION);
+			return;
+		}
 
+		// Get text data from input tab, and which lines were edited since the last parse
+		final List<String> surveyDataLines = getSurveyDataFromText(inputData.getText());
+		final int[] editedLines = inputData.getDirtyLineRange();
+		inputData.clearDirtyRange();
+
+		// Edited Survex data only needs the edited series reparsing if the current model came
+		// from the same data. The input tab replaces its parser whenever a file is opened.
+		final IncrementalSurvexParser survexParser;
+		if (format == SurveyDataInputFormats.Survex) {
+			survexParser = inputData.getSurvexParser();
+			survexParser.setModelUpdater(MainForm::runOnEventThread);
+		} else {
+			survexParser = null;
+		}
+		final boolean reparseEdits = (survexParser != null) && (editedLines != null) && (visualiser != null)
+				&& (visualiser.getCaveModel() == survexParser.getModel());
+
+		runBackgroundTask(new BackgroundTask<CaveSurvey>("Building cave model") {
+			@Override
+			protected CaveSurvey runTask() throws Exception {
+				CaveSurvey dataModel = processInputData(format, surveyDataLines, survexParser,
+						reparseEdits ? editedLines : null, getProgressMonitor());
+				// Calculate the statistics here, so showing the model does not calculate them
+				CaveModelVisualiser.calculateStatistics(dataModel, getProgressMonitor());
+				return dataModel;
+			}
+
+			@Override
+			protected void succeeded(CaveSurvey dataModel) {
+				showCaveModel(dataModel);
+			}
+
+			@Override
+			protected void failed(Throwable error) {
+				// The model no longer matches the data, so the next parse needs to be a full parse
+				inputData.resetSurvexParser();
+				if (error instanceof ParseException) {
+					// Display error message
+					JOptionPane.showMessageDialog(getMainFrame(),
+							"Error processing " + format + " file data: " + error.getMessage(), "Error",
+							JOptionPane.ERROR_MESSAGE);
+				} else {
+					JOptionPane.showMessageDialog(getMainFrame(),
+							"Unexpected error processing " + format + " file data: " + error.getMessage(), "Error",
+							JOptionPane.ERROR_MESSAGE);
+					error.printStackTrace();
+				}
+			}
+
+			@Override
+			protected void cancelled() {
+				inputData.resetSurvexParser();
+			}
+		});
+	}
+
+	/**
+	 * Displays a cave model in the visualiser tab, creating the tab if needed
+	 * 
+	 * @param dataModel The cave data model to display
+	 */
+	private void showCaveModel(CaveSurvey dataModel) {
 		// Create or update model tab if data was loaded
 		if ((dataModel != null) && (dataModel.isEmpty() == false)) {
 			// Reuse tab if already exists
@@ -916,8 +1032,10 @@ public class MainForm extends JFrame {
 				visualiser = new CaveModelVisualiser(this, dataModel, font);
 				tabPane.addTab("Survey Data Model", visualiser.getTabPaneComponent());
 			} else {
-				// Update cave model in visualiser
-				visualiser.setCaveModel(dataModel);
+				// Update cave model in visualiser, unless the existing model was updated in place
+				if (visualiser.getCaveModel() != dataModel) {
+					visualiser.setCaveModel(dataModel);
+				}
 			}
 			// Bring to front
 			tabPane.setSelectedComponent(visualiser.getTabPaneComponent());
@@ -938,98 +1056,121 @@ public class MainForm extends JFrame {
 	}
 
 	/**
-	 * Parse the cave survey data in an input data tab into a cave data model
+	 * Parse the cave survey data from the input data tab into a cave data model. Runs on a
+	 * background thread.
 	 * 
+	 * @param format          Format of the survey data
+	 * @param surveyDataLines Lines of survey data from the input data tab
+	 * @param survexParser    Parser for Survex data, holding the state of the last parse
+	 * @param editedLines     First and last lines edited since the Survex data was last parsed,
+	 *                        or null to parse all the data
+	 * @param progress        Progress monitor to report parsing progress to
 	 * @return Cave data model generated from parsed data file
+	 * @throws ParseException Exception raised when information in the data is not supported or
+	 *                        valid for the format
 	 */
-	private CaveSurvey processInputData() {
+	private CaveSurvey processInputData(SurveyDataInputFormats format, List<String> surveyDataLines,
+			IncrementalSurvexParser survexParser, int[] editedLines, ProgressMonitor progress) throws ParseException {
 		CaveSurvey surveyData = null;
 
-		// Get text data from input tab
-		List<String> surveyDataLines = getSurveyDataFromText(inputData.getText());
+		// Parse the data into the cave data model
+		switch (format) {
+			case Compass:
+				// Parse Compass data
+				CompassParser cParser = new CompassParser(dialogLogger);
+				cParser.setProgressMonitor(progress);
+				surveyData = cParser.parseFile(surveyDataLines);
+				break;
 
-		// Determine data type from input tab
-		if (inputData.getFormat() == null) {
-			// TODO In case of unknown format, ask user to select the format
-			JOptionPane.showMessageDialog(this,
-					"Format of data unknown. Currently this is determined by the file extension. The option to let you specify the format is not written yet.",
-					"Unknown Survey Data Format", JOptionPane.OK_OPTION);
-		}
-		if (inputData.getFormat() != null) {
-			// Parse the data into the cave data model
-			switch (inputData.getFormat()) {
-				case Compass:
-					// Parse Compass data
-					CompassParser cParser = new CompassParser(dialogLogger);
-					try {
-						surveyData = cParser.parseFile(surveyDataLines);
-					} catch (ParseException e) {
-						// Display error message
-						JOptionPane.showMessageDialog(this, "Error processing Compass file data: " + e.getMessage(),
-								"Error", JOptionPane.ERROR_MESSAGE);
-					} catch (Exception e) {
-						JOptionPane.showMessageDialog(this,
-								"Unexpected error processing Compass file data: " + e.getMessage(),
-								"Error", JOptionPane.ERROR_MESSAGE);
-						e.printStackTrace();
-					}
-					break;
+			case DXF:
+				// Parse DXF data
+				DxfParser dParser = new DxfParser(dialogLogger);
+				dParser.setProgressMonitor(progress);
+				surveyData = dParser.parseFile(surveyDataLines, 0);
+				break;
 
-				case DXF:
-					// Parse DXF data
-					DxfParser dParser = new DxfParser(dialogLogger);
-					try {
-						surveyData = dParser.parseFile(surveyDataLines, 0);
-					} catch (Exception e) {
-						JOptionPane.showMessageDialog(this,
-								"Unexpected error processing DXF file data: " + e.getMessage(),
-								"Error", JOptionPane.ERROR_MESSAGE);
-						e.printStackTrace();
-					}
-					break;
+			case PocketTopo:
+				// Parse PocketTopo data
+				PocketTopoParser pParser = new PocketTopoParser(dialogLogger);
+				pParser.setProgressMonitor(progress);
+				surveyData = pParser.parseFile(surveyDataLines);
+				// Generate LRUD from splays by default for PocketTopo, processing series on all cores
+				surveyData.generateLRUDfromSplays(progress, Runtime.getRuntime().availableProcessors());
+				break;
 
-				case PocketTopo:
-					// Parse PocketTopo data
-					PocketTopoParser pParser = new PocketTopoParser(dialogLogger);
-					try {
-						surveyData = pParser.parseFile(surveyDataLines);
-						// Generate LRUD from splays by default for PocketTopo
-						// CaveConverter.logMessage("Generating LRUD data from splays...");
-						surveyData.generateLRUDfromSplays();
-					} catch (ParseException e) {
-						// Display error message
-						JOptionPane.showMessageDialog(this, "Error processing PocketTopo file data: " + e.getMessage(),
-								"Error", JOptionPane.ERROR_MESSAGE);
-					} catch (Exception e) {
-						JOptionPane.showMessageDialog(this,
-								"Unexpected error processing PocketTopo file data: " + e.getMessage(),
-								"Error", JOptionPane.ERROR_MESSAGE);
-						e.printStackTrace();
-					}
-					break;
+			case Survex:
+				// Parse Survex data, only reparsing the edited series where possible
+				survexParser.setProgressMonitor(progress);
+				if (editedLines != null) {
+					surveyData = survexParser.reparse(surveyDataLines, editedLines[0], editedLines[1]);
+				} else {
+					surveyData = survexParser.parseAll(surveyDataLines);
+				}
+				break;
 
-				case Survex:
-					// Parse Survex data
-					SurvexParser sParser = new SurvexParser(dialogLogger);
-					try {
-						surveyData = sParser.parseFile(surveyDataLines, null);
-					} catch (ParseException e) {
-						// Display error message
-						JOptionPane.showMessageDialog(this, "Error processing Survex file data: " + e.getMessage(),
-								"Error", JOptionPane.ERROR_MESSAGE);
-					} catch (Exception e) {
-						JOptionPane.showMessageDialog(this,
-								"Unexpected error processing Survex file data: " + e.getMessage(),
-								"Error", JOptionPane.ERROR_MESSAGE);
-						e.printStackTrace();
-					}
-					break;
+			case Therion:
+				// Parse Therion data
+				TherionParser tParser = new TherionParser(dialogLogger);
+				tParser.setProgressMonitor(progress);
+				surveyData = tParser.parseFile(surveyDataLines, null);
+				break;
+
+		}
+
+		return surveyData;
+	}
 
+	/**
+	 * Runs an update on the event dispatch thread, waiting for it to complete. Used by
+	 * background tasks to change data which is displayed in the GUI.
+	 * 
+	 * @param update The update to run
+	 */
+	private static void runOnEventThread(Runnable update) {
+		if (SwingUtilities.isEventDispatchThread()) {
+			update.run();
+		} else {
+			try {
+				SwingUtilities.invokeAndWait(update);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Interrupted while updating cave model.");
+			} catch (InvocationTargetException e) {
+				throw new RuntimeException(e.getCause());
 			}
+		}
+	}
 
+	/**
+	 * Runs a long running task in the background, disabling the actions which use the input data
+	 * or cave model until it has finished
+	 * 
+	 * @param task The task to run
+	 */
+	private void runBackgroundTask(BackgroundTask<?> task) {
+		if (taskProgress.isBusy()) {
+			return;
 		}
+		// Remember which actions were enabled so they can be restored when the task finishes
+		Action[] actions = getTaskLockedActions();
+		actionsEnabledBeforeTask = new boolean[actions.length];
+		for (int i = 0; i < actions.length; i++) {
+			actionsEnabledBeforeTask[i] = actions[i].isEnabled();
+			actions[i].setEnabled(false);
+		}
+		taskProgress.runTask(task);
+	}
 
-		return surveyData;
+	private Action[] getTaskLockedActions() {
+		return new Action[] { openFileAction, parseInputDataAction, generateLRUDAction, genSeriesFromStnNamesAction,
+				exportSurvexDataAction, exportToporobotDataAction };
+	}
+
+	private void restoreActionsAfterTask() {
+		Action[] actions = getTaskLockedActions();
+		for (int i = 0; i < actions.length; i++) {
+			actions[i].setEnabled(actionsEnabledBeforeTask[i]);
+		}
 	}
 
 	/**
@@ -25,10 +25,15 @@ import java.util.List;
 import java.util.ListIterator;
 
 import javax.swing.JFileChooser;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
 
 import footleg.cavesurvey.converter.CaveConverter;
 import footleg.cavesurvey.converter.Logger;
 import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
+import footleg.cavesurvey.data.reader.IncrementalSurvexParser;
 import footleg.cavesurvey.tools.UtilityFunctions;
 
 /**
@@ -45,6 +50,11 @@ import footleg.cavesurvey.tools.UtilityFunctions;
 public class SourceDataComponent extends SurveyDatafileTabPane {
 	private CaveConverter.SurveyDataInputFormats format;
 	private List<String> multifileLineRefs;
+	//Range of text edited since the data was last parsed, which move with later edits
+	private Position dirtyStart;
+	private Position dirtyEnd;
+	//Parser holding the block structure of the Survex data in this tab from its last parse
+	private IncrementalSurvexParser survexParser;
 	
 	/**
 	 * Create TextArea scrollable tab instance with specified font
@@ -53,6 +63,88 @@ public class SourceDataComponent extends SurveyDatafileTabPane {
 	 */
 	public SourceDataComponent(Font font, Logger logger) {
         super( font, logger );
+        
+		//Track the range of the text which has been edited
+		this.getDocument().addDocumentListener(new DocumentListener() {
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				extendDirtyRange( e.getOffset(), e.getOffset() );
+			}
+
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				extendDirtyRange( e.getOffset(), e.getOffset() + e.getLength() );
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				//Attribute changes do not alter the text
+			}
+		});
+	}
+
+	private void extendDirtyRange( int startOffset, int endOffset ) {
+		try {
+			if ( dirtyStart == null || startOffset < dirtyStart.getOffset() ) {
+				dirtyStart = getDocument().createPosition( startOffset );
+			}
+			if ( dirtyEnd == null || endOffset > dirtyEnd.getOffset() ) {
+				dirtyEnd = getDocument().createPosition( endOffset );
+			}
+		}
+		catch (BadLocationException e) {
+			//Offsets come from the document event so should always be valid
+			logger.logMessage( "Unable to track edited text range: " + e.getMessage() );
+		}
+	}
+
+	/**
+	 * Gets the range of lines which have been edited since the dirty range was last cleared
+	 * @return Array holding the first and last line index edited, or null if no edits have been made
+	 */
+	public int[] getDirtyLineRange() {
+		int[] range = null;
+		if ( dirtyStart != null ) {
+			try {
+				range = new int[2];
+				range[0] = getLineOfOffset( Math.min( dirtyStart.getOffset(), getDocument().getLength() ) );
+				range[1] = getLineOfOffset( Math.min( dirtyEnd.getOffset(), getDocument().getLength() ) );
+			}
+			catch (BadLocationException e) {
+				range = null;
+			}
+		}
+		return range;
+	}
+
+	/**
+	 * Clears the record of edited lines, called once the data has been parsed
+	 */
+	public void clearDirtyRange() {
+		dirtyStart = null;
+		dirtyEnd = null;
+	}
+
+	/**
+	 * Gets the parser used to parse the Survex data in this tab, which keeps the block structure
+	 * of the last parse so edits can be reparsed one series at a time. A new parser is created
+	 * for each file opened, so edits to one file are never reparsed against the model of another.
+	 * @return Incremental parser for the Survex data in this tab
+	 */
+	public IncrementalSurvexParser getSurvexParser() {
+		if ( survexParser == null ) {
+			survexParser = new IncrementalSurvexParser( logger );
+		}
+		return survexParser;
+	}
+
+	/**
+	 * Discards the parser state for the data in this tab, so the next parse is a full parse.
+	 * Called when the model no longer matches the data, such as after a parse fails.
+	 */
+	public void resetSurvexParser() {
+		survexParser = null;
 	}
 
 	/**
@@ -78,9 +170,10 @@ public class SourceDataComponent extends SurveyDatafileTabPane {
 			//Reset fields before attempting to load new data
 			setText("");
 			format = null;
+			survexParser = null;
 
 			//Determine file type from file extension
-			boolean multiFile = false;
+			UtilityFunctions.IncludeSyntax includeSyntax = null;
 			String fileName = dataFile.getName();
 			int extnStart = fileName.lastIndexOf('.') + 1;
 			String fileExtn = "";
@@ -101,13 +194,18 @@ public class SourceDataComponent extends SurveyDatafileTabPane {
 			}
 			else if ( format == SurveyDataInputFormats.Survex ) {
 				fileSaveDialog.setFileFilter( survexFileFilter );
-				multiFile = true;
+				includeSyntax = UtilityFunctions.IncludeSyntax.Survex;
+				multifileLineRefs = new ArrayList<String>();
+			}
+			else if ( format == SurveyDataInputFormats.Therion ) {
+				fileSaveDialog.setFileFilter( therionFileFilter );
+				includeSyntax = UtilityFunctions.IncludeSyntax.Therion;
 				multifileLineRefs = new ArrayList<String>();
 			}
 
 			//Read data from file
 			List<String> fileData = 
-					UtilityFunctions.readTextFile(dataFile, characterSetEncoding, multiFile, multifileLineRefs, logger);
+					UtilityFunctions.readTextFile(dataFile, characterSetEncoding, includeSyntax, multifileLineRefs, null, logger);
 
 			//Put data into tab
 			ListIterator<String> dataIter = fileData.listIterator();
@@ -117,8 +215,9 @@ public class SourceDataComponent extends SurveyDatafileTabPane {
 
 			//Store filename in class property
 			loadedFile = dataFile;
-			//Reset modified flag now file loading is complete
+			//Reset modified flag and edited range now file loading is complete
 			setModified( false );
+			clearDirtyRange();
 			res = true;
 
 		}
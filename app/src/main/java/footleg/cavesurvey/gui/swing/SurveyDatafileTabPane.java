@@ -55,6 +55,7 @@ public class SurveyDatafileTabPane extends JTextArea {
 	protected FileNameExtensionFilter dxfFileFilter = new FileNameExtensionFilter("DXF Files","dxf");
 	protected FileNameExtensionFilter pocketTopoFileFilter = new FileNameExtensionFilter("PocketTopo Text Files","txt");
 	protected FileNameExtensionFilter survexFileFilter = new FileNameExtensionFilter("Survex Files","svx");
+	protected FileNameExtensionFilter therionFileFilter = new FileNameExtensionFilter("Therion Files","th","thconfig");
 	protected FileNameExtensionFilter toporobotFileFilter = new FileNameExtensionFilter("Toporobot Data Files","text");
 	private boolean modified;
 	protected String title = "";
@@ -113,6 +114,7 @@ public class SurveyDatafileTabPane extends JTextArea {
 		fileSaveDialog.addChoosableFileFilter( dxfFileFilter );
 		fileSaveDialog.addChoosableFileFilter( pocketTopoFileFilter );
 		fileSaveDialog.addChoosableFileFilter( survexFileFilter );
+		fileSaveDialog.addChoosableFileFilter( therionFileFilter );
 		fileSaveDialog.addChoosableFileFilter( toporobotFileFilter );
 	}
 
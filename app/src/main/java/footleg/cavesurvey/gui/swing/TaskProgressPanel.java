@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.gui.swing;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+
+/**
+ * Status bar panel showing the progress of the running background task, with a button to
+ * cancel it. The panel is hidden when no task is running.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+@SuppressWarnings("serial")
+public class TaskProgressPanel extends JPanel {
+	private JLabel statusLabel;
+	private JProgressBar progressBar;
+	private JButton cancelButton;
+	private BackgroundTask<?> activeTask;
+	private Runnable onTaskFinished;
+
+	/**
+	 * Creates the panel
+	 *
+	 * @param onTaskFinished Called on the event dispatch thread when the running task finishes,
+	 *                       before its result is applied
+	 */
+	public TaskProgressPanel(Runnable onTaskFinished) {
+		super(new BorderLayout(8, 0));
+		this.onTaskFinished = onTaskFinished;
+		setBorder(BorderFactory.createEmptyBorder(2, 4, 2, 4));
+
+		statusLabel = new JLabel();
+		progressBar = new JProgressBar();
+		cancelButton = new JButton("Cancel");
+		cancelButton.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (activeTask != null) {
+					activeTask.requestCancel();
+					statusLabel.setText(activeTask.getDescription() + ": cancelling...");
+					cancelButton.setEnabled(false);
+				}
+			}
+		});
+
+		add(statusLabel, BorderLayout.WEST);
+		add(progressBar, BorderLayout.CENTER);
+		add(cancelButton, BorderLayout.EAST);
+		setVisible(false);
+	}
+
+	/**
+	 * @return True if a task is currently running
+	 */
+	public boolean isBusy() {
+		return activeTask != null;
+	}
+
+	/**
+	 * Starts a task running in the background and shows its progress
+	 *
+	 * @param task The task to run
+	 * @return False if the task could not be started because another task is still running
+	 */
+	public boolean runTask(BackgroundTask<?> task) {
+		if (activeTask != null) {
+			return false;
+		}
+		activeTask = task;
+		statusLabel.setText(task.getDescription());
+		progressBar.setIndeterminate(true);
+		progressBar.setStringPainted(false);
+		cancelButton.setEnabled(true);
+		setVisible(true);
+		task.start(this);
+		return true;
+	}
+
+	/**
+	 * Updates the progress display for the running task
+	 *
+	 * @param phase Description of the current phase of the task
+	 * @param done  Number of items processed so far in this phase
+	 * @param total Total number of items in this phase, or -1 if not known
+	 */
+	void showProgress(String phase, int done, int total) {
+		if (activeTask == null || cancelButton.isEnabled() == false) {
+			return;
+		}
+		statusLabel.setText(activeTask.getDescription() + ": " + phase);
+		if (total > 0) {
+			progressBar.setIndeterminate(false);
+			progressBar.setMaximum(total);
+			progressBar.setValue(done);
+			progressBar.setString(done + " / " + total);
+		} else {
+			progressBar.setIndeterminate(true);
+			progressBar.setString("" + done);
+		}
+		progressBar.setStringPainted(true);
+	}
+
+	/**
+	 * Called when the running task finishes, whether it completed, failed or was cancelled
+	 *
+	 * @param task The task which finished
+	 */
+	void taskFinished(BackgroundTask<?> task) {
+		if (task == activeTask) {
+			activeTask = null;
+			setVisible(false);
+			if (onTaskFinished != null) {
+				onTaskFinished.run();
+			}
+		}
+	}
+
+}
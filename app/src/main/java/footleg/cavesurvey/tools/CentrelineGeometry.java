@@ -0,0 +1,608 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.util.Arrays;
+
+/**
+ * Centreline geometry for drawing a survey in 3D, built from a survey network once the station
+ * coordinates have been calculated.
+ *
+ * Centreline legs are held in primitive float arrays of segment end points (relative to an origin
+ * at the centre of the survey, so single precision is enough). The legs are split into leaves of
+ * a k-d tree with a bounding box for each node, so a view can skip whole branches of the tree
+ * which are outside the visible area. Each leaf holds its legs at several levels of detail. The
+ * finest level holds every leg, and coarser levels replace chains of legs with fewer segments
+ * which stay within a tolerance of the original chain. A view picks the coarsest level whose
+ * tolerance is below the size of a pixel, so distant or zoomed out parts of a large cave are
+ * drawn with far fewer lines. Passage cross sections are held separately for each leaf. Where a
+ * {@link CrossSections} outline built from splays exists for a station the outline is used, and
+ * otherwise LRUD data is shown as a horizontal left to right line and a vertical up to down line.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class CentrelineGeometry {
+	/**
+	 * Maximum number of legs in a leaf of the spatial index
+	 */
+	public static final int LEAF_LEGS = 256;
+
+	// Tolerances for each level of detail in metres, finest first
+	private static final double[] LOD_TOLERANCES = { 0.0, 1.0, 4.0, 16.0, 64.0, 256.0 };
+
+	private double originX;
+	private double originY;
+	private double originZ;
+	private int legCount;
+
+	// Spatial index nodes. Bounds are min x, y, z then max x, y, z for each node.
+	private int nodeCount;
+	private float[] nodeBounds = new float[64 * 6];
+	private int[] nodeChildren = new int[64 * 2];
+	private int[] nodeLeaf = new int[64];
+	private int leafCount;
+	private int[] leafNodes = new int[32];
+
+	// Segment end points (6 floats per segment) for each level of detail, with the index of the
+	// first segment of each leaf
+	private float[][] lodVertices;
+	private int[][] lodLeafStart;
+	private float[] lrudVertices;
+	private int[] lrudLeafStart;
+
+	// Working data used while building
+	private float[] legVertices;
+	private int[] legFrom;
+	private int[] legTo;
+	private int[] legOrder;
+
+	private CentrelineGeometry() {
+		super();
+	}
+
+	/**
+	 * Builds the geometry for the centreline legs of a survey network. Splays are not included.
+	 *
+	 * @param network Survey network with calculated station coordinates
+	 * @return The centreline geometry
+	 */
+	public static CentrelineGeometry build(SurveyNetwork network) {
+		return build(network, null);
+	}
+
+	/**
+	 * Builds the geometry for the centreline legs of a survey network, with passage cross section
+	 * outlines at stations which have a section. Splays are not included.
+	 *
+	 * @param network  Survey network with calculated station coordinates
+	 * @param sections Cross sections built from the splays in the network, or null to show only
+	 *                 LRUD data
+	 * @return The centreline geometry
+	 */
+	public static CentrelineGeometry build(SurveyNetwork network, CrossSections sections) {
+		CentrelineGeometry geometry = new CentrelineGeometry();
+		geometry.buildGeometry(network, sections);
+		return geometry;
+	}
+
+	private void buildGeometry(SurveyNetwork network, CrossSections sections) {
+		// Collect the centreline legs, and find the centre of the survey to use as the origin
+		int[] legs = new int[network.getLegCount()];
+		double[] min = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+		double[] max = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			if ((network.getLegFlags(leg) & SurveyNetwork.FLAG_SPLAY) == 0) {
+				legs[legCount++] = leg;
+				includeInBounds(network, network.getLegFrom(leg), min, max);
+				includeInBounds(network, network.getLegTo(leg), min, max);
+			}
+		}
+		if (legCount > 0) {
+			originX = (min[0] + max[0]) / 2;
+			originY = (min[1] + max[1]) / 2;
+			originZ = (min[2] + max[2]) / 2;
+		}
+
+		legVertices = new float[legCount * 6];
+		legFrom = new int[legCount];
+		legTo = new int[legCount];
+		for (int i = 0; i < legCount; i++) {
+			legFrom[i] = network.getLegFrom(legs[i]);
+			legTo[i] = network.getLegTo(legs[i]);
+			setVertex(legVertices, i * 6, network, legFrom[i]);
+			setVertex(legVertices, i * 6 + 3, network, legTo[i]);
+		}
+
+		// Build the spatial index, which orders the legs so each leaf holds a range of them
+		legOrder = new int[legCount];
+		for (int i = 0; i < legCount; i++) {
+			legOrder[i] = i;
+		}
+		if (legCount > 0) {
+			buildNode(0, legCount);
+		}
+		nodeBounds = Arrays.copyOf(nodeBounds, nodeCount * 6);
+		nodeChildren = Arrays.copyOf(nodeChildren, nodeCount * 2);
+		nodeLeaf = Arrays.copyOf(nodeLeaf, nodeCount);
+		leafNodes = Arrays.copyOf(leafNodes, leafCount);
+
+		buildLevelsOfDetail();
+		buildCrossSections(network, legs, sections);
+
+		legVertices = null;
+		legFrom = null;
+		legTo = null;
+		legOrder = null;
+	}
+
+	private void includeInBounds(SurveyNetwork network, int stn, double[] min, double[] max) {
+		min[0] = Math.min(min[0], network.getX(stn));
+		min[1] = Math.min(min[1], network.getY(stn));
+		min[2] = Math.min(min[2], network.getZ(stn));
+		max[0] = Math.max(max[0], network.getX(stn));
+		max[1] = Math.max(max[1], network.getY(stn));
+		max[2] = Math.max(max[2], network.getZ(stn));
+	}
+
+	private void setVertex(float[] vertices, int offset, SurveyNetwork network, int stn) {
+		vertices[offset] = (float) (network.getX(stn) - originX);
+		vertices[offset + 1] = (float) (network.getY(stn) - originY);
+		vertices[offset + 2] = (float) (network.getZ(stn) - originZ);
+	}
+
+	/**
+	 * Recursively builds a node of the spatial index for a range of the ordered legs, splitting
+	 * the legs at the median of their mid points along the longest side of the bounding box.
+	 *
+	 * @return Index of the node
+	 */
+	private int buildNode(int start, int end) {
+		int node = nodeCount++;
+		if (nodeCount * 6 > nodeBounds.length) {
+			nodeBounds = Arrays.copyOf(nodeBounds, nodeBounds.length * 2);
+			nodeChildren = Arrays.copyOf(nodeChildren, nodeChildren.length * 2);
+			nodeLeaf = Arrays.copyOf(nodeLeaf, nodeLeaf.length * 2);
+		}
+		float[] bounds = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE,
+				-Float.MAX_VALUE };
+		for (int i = start; i < end; i++) {
+			int offset = legOrder[i] * 6;
+			for (int axis = 0; axis < 3; axis++) {
+				float a = legVertices[offset + axis];
+				float b = legVertices[offset + 3 + axis];
+				bounds[axis] = Math.min(bounds[axis], Math.min(a, b));
+				bounds[axis + 3] = Math.max(bounds[axis + 3], Math.max(a, b));
+			}
+		}
+		System.arraycopy(bounds, 0, nodeBounds, node * 6, 6);
+
+		if (end - start <= LEAF_LEGS) {
+			// Keep legs in a leaf in their original order, so chains of legs can be found
+			Arrays.sort(legOrder, start, end);
+			if (leafCount == leafNodes.length) {
+				leafNodes = Arrays.copyOf(leafNodes, leafNodes.length * 2);
+			}
+			nodeLeaf[node] = leafCount;
+			leafNodes[leafCount++] = node;
+			// Leaves have no children, so store the range of ordered legs in the leaf instead
+			nodeChildren[node * 2] = -1 - start;
+			nodeChildren[node * 2 + 1] = -1 - end;
+			return node;
+		}
+
+		int axis = 0;
+		for (int a = 1; a < 3; a++) {
+			if (bounds[a + 3] - bounds[a] > bounds[axis + 3] - bounds[axis]) {
+				axis = a;
+			}
+		}
+		// Sort the range by mid point along the axis, packing the sort key and leg into longs
+		long[] keys = new long[end - start];
+		for (int i = start; i < end; i++) {
+			int offset = legOrder[i] * 6;
+			float mid = (legVertices[offset + axis] + legVertices[offset + 3 + axis]) / 2;
+			int bits = Float.floatToIntBits(mid);
+			// Flip bits so the integer order of the keys matches the order of the floats
+			bits ^= (bits >> 31) & 0x7fffffff;
+			keys[i - start] = ((long) bits << 32) | (legOrder[i] & 0xffffffffL);
+		}
+		Arrays.sort(keys);
+		for (int i = start; i < end; i++) {
+			legOrder[i] = (int) keys[i - start];
+		}
+		int mid = (start + end) >>> 1;
+		nodeLeaf[node] = -1;
+		int left = buildNode(start, mid);
+		int right = buildNode(mid, end);
+		nodeChildren[node * 2] = left;
+		nodeChildren[node * 2 + 1] = right;
+		return node;
+	}
+
+	/**
+	 * Builds the segments for each level of detail of each leaf
+	 */
+	private void buildLevelsOfDetail() {
+		int levels = LOD_TOLERANCES.length;
+		FloatList[] segments = new FloatList[levels];
+		lodLeafStart = new int[levels][leafCount + 1];
+		for (int level = 0; level < levels; level++) {
+			segments[level] = new FloatList();
+		}
+		FloatList points = new FloatList();
+		double[] importance = new double[LEAF_LEGS + 1];
+		int[] stack = new int[(LEAF_LEGS + 1) * 2];
+		for (int leaf = 0; leaf < leafCount; leaf++) {
+			for (int level = 0; level < levels; level++) {
+				lodLeafStart[level][leaf] = segments[level].size / 6;
+			}
+			int node = leafNodes[leaf];
+			int start = -1 - nodeChildren[node * 2];
+			int end = -1 - nodeChildren[node * 2 + 1];
+			int i = start;
+			while (i < end) {
+				// Collect a chain of legs which each start at the end of the previous leg
+				points.size = 0;
+				int leg = legOrder[i];
+				points.add(legVertices, leg * 6, 3);
+				points.add(legVertices, leg * 6 + 3, 3);
+				i++;
+				while (i < end && legFrom[legOrder[i]] == legTo[legOrder[i - 1]]) {
+					points.add(legVertices, legOrder[i] * 6 + 3, 3);
+					i++;
+				}
+				int count = points.size / 3;
+				calculateImportance(points.data, count, importance, stack);
+				for (int level = 0; level < levels; level++) {
+					// Keep the points which the Douglas-Peucker algorithm keeps for this tolerance
+					double tolerance = LOD_TOLERANCES[level];
+					int prev = 0;
+					for (int p = 1; p < count; p++) {
+						if (importance[p] > tolerance || p == count - 1) {
+							segments[level].add(points.data, prev * 3, 3);
+							segments[level].add(points.data, p * 3, 3);
+							prev = p;
+						}
+					}
+				}
+			}
+		}
+		lodVertices = new float[levels][];
+		for (int level = 0; level < levels; level++) {
+			lodLeafStart[level][leafCount] = segments[level].size / 6;
+			lodVertices[level] = segments[level].toArray();
+		}
+	}
+
+	/**
+	 * Calculates the importance of each point in a chain for simplification with the
+	 * Douglas-Peucker algorithm. The algorithm always splits a chain at the point furthest from the
+	 * line between its ends, so the splits are the same for any tolerance and only the depth it
+	 * stops at varies. A point is kept for a tolerance if its own distance and the distances of all
+	 * the splits above it exceed the tolerance, so the smallest of these is recorded as its
+	 * importance. The end points are always kept.
+	 */
+	private static void calculateImportance(float[] pts, int count, double[] importance, int[] stack) {
+		importance[0] = Double.MAX_VALUE;
+		importance[count - 1] = Double.MAX_VALUE;
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = count - 1;
+		while (top > 0) {
+			int last = stack[--top];
+			int first = stack[--top];
+			if (last - first < 2) {
+				continue;
+			}
+			double maxDistSq = -1;
+			int furthest = first + 1;
+			for (int p = first + 1; p < last; p++) {
+				double distSq = distanceToSegmentSq(pts, p, first, last);
+				if (distSq > maxDistSq) {
+					maxDistSq = distSq;
+					furthest = p;
+				}
+			}
+			// Parent importance is the smaller of the end points which are not chain ends
+			double parent = Math.min(importance[first], importance[last]);
+			importance[furthest] = Math.min(Math.sqrt(maxDistSq), parent);
+			stack[top++] = first;
+			stack[top++] = furthest;
+			stack[top++] = furthest;
+			stack[top++] = last;
+		}
+	}
+
+	private static double distanceToSegmentSq(float[] pts, int p, int a, int b) {
+		double ax = pts[a * 3], ay = pts[a * 3 + 1], az = pts[a * 3 + 2];
+		double dx = pts[b * 3] - ax, dy = pts[b * 3 + 1] - ay, dz = pts[b * 3 + 2] - az;
+		double px = pts[p * 3] - ax, py = pts[p * 3 + 1] - ay, pz = pts[p * 3 + 2] - az;
+		double lenSq = dx * dx + dy * dy + dz * dz;
+		double t = (lenSq > 0) ? Math.max(0, Math.min(1, (px * dx + py * dy + pz * dz) / lenSq)) : 0;
+		double ex = px - t * dx, ey = py - t * dy, ez = pz - t * dz;
+		return ex * ex + ey * ey + ez * ez;
+	}
+
+	/**
+	 * Builds passage cross section lines at the from station of each leg, from the outline of the
+	 * section at the station if there is one, or from the LRUD data
+	 */
+	private void buildCrossSections(SurveyNetwork network, int[] legs, CrossSections sections) {
+		FloatList segments = new FloatList();
+		boolean[] outlined = new boolean[network.getStationCount()];
+		double[] axes = new double[6];
+		lrudLeafStart = new int[leafCount + 1];
+		for (int leaf = 0; leaf < leafCount; leaf++) {
+			lrudLeafStart[leaf] = segments.size / 6;
+			int node = leafNodes[leaf];
+			for (int i = -1 - nodeChildren[node * 2]; i < -1 - nodeChildren[node * 2 + 1]; i++) {
+				int leg = legOrder[i];
+				int netLeg = legs[leg];
+				double left = network.getLegLrud(netLeg, 0);
+				double right = network.getLegLrud(netLeg, 1);
+				double up = network.getLegLrud(netLeg, 2);
+				double down = network.getLegLrud(netLeg, 3);
+				int offset = leg * 6;
+				float x = legVertices[offset], y = legVertices[offset + 1], z = legVertices[offset + 2];
+				int section = (sections != null) ? sections.findSection(legFrom[leg]) : -1;
+				if (section >= 0) {
+					// Draw the outline once for the station, as a closed polygon
+					if (outlined[legFrom[leg]] == false) {
+						outlined[legFrom[leg]] = true;
+						addOutline(sections, section, x, y, z, axes, segments);
+					}
+					continue;
+				}
+				double hx = legVertices[offset + 3] - x;
+				double hy = legVertices[offset + 4] - y;
+				double hLen = Math.sqrt(hx * hx + hy * hy);
+				if ((left > 0 || right > 0) && hLen > 0) {
+					// Unit vector to the left of the leg direction in plan
+					double lx = -hy / hLen, ly = hx / hLen;
+					segments.add((float) (x + lx * left), (float) (y + ly * left), z);
+					segments.add((float) (x - lx * right), (float) (y - ly * right), z);
+				}
+				if (up > 0 || down > 0) {
+					segments.add(x, y, (float) (z + up));
+					segments.add(x, y, (float) (z - down));
+				}
+			}
+		}
+		lrudLeafStart[leafCount] = segments.size / 6;
+		lrudVertices = segments.toArray();
+	}
+
+	/**
+	 * Adds the outline of a cross section as a line between each pair of adjacent outline points
+	 */
+	private static void addOutline(CrossSections sections, int section, float x, float y, float z, double[] axes,
+			FloatList segments) {
+		sections.getAxes(section, axes);
+		float[] points = sections.getPoints();
+		int start = sections.getPointStart(section);
+		int end = sections.getPointEnd(section);
+		for (int i = start; i < end; i++) {
+			int j = (i + 1 < end) ? i + 1 : start;
+			if (j == i) {
+				break;
+			}
+			addOutlinePoint(points, i, x, y, z, axes, segments);
+			addOutlinePoint(points, j, x, y, z, axes, segments);
+		}
+	}
+
+	private static void addOutlinePoint(float[] points, int point, float x, float y, float z, double[] axes,
+			FloatList segments) {
+		double h = points[point * 2], v = points[point * 2 + 1];
+		segments.add((float) (x + h * axes[0] + v * axes[3]), (float) (y + h * axes[1] + v * axes[4]),
+				(float) (z + h * axes[2] + v * axes[5]));
+	}
+
+	/**
+	 * Finds the leaves of the spatial index which may be visible in a view. The view is an
+	 * orthographic projection onto two axes, and a leaf is visible if its bounding box projects
+	 * into the given range of positions along both axes.
+	 *
+	 * @param right  Unit vector along the horizontal axis of the view
+	 * @param up     Unit vector along the vertical axis of the view
+	 * @param minH   Minimum position along the horizontal axis (relative to the origin)
+	 * @param maxH   Maximum position along the horizontal axis
+	 * @param minV   Minimum position along the vertical axis
+	 * @param maxV   Maximum position along the vertical axis
+	 * @param leaves Array to fill with the visible leaves, with space for every leaf
+	 * @return Number of visible leaves
+	 */
+	public int findVisibleLeaves(double[] right, double[] up, double minH, double maxH, double minV, double maxV,
+			int[] leaves) {
+		if (nodeCount == 0) {
+			return 0;
+		}
+		int found = 0;
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			if (isProjectedInRange(node, right, minH, maxH) && isProjectedInRange(node, up, minV, maxV)) {
+				if (nodeLeaf[node] >= 0) {
+					leaves[found++] = nodeLeaf[node];
+				} else {
+					if (top + 2 > stack.length) {
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					}
+					stack[top++] = nodeChildren[node * 2 + 1];
+					stack[top++] = nodeChildren[node * 2];
+				}
+			}
+		}
+		return found;
+	}
+
+	private boolean isProjectedInRange(int node, double[] axis, double min, double max) {
+		int b = node * 6;
+		double centre = 0;
+		double extent = 0;
+		for (int a = 0; a < 3; a++) {
+			centre += axis[a] * (nodeBounds[b + a] + nodeBounds[b + 3 + a]) / 2;
+			extent += Math.abs(axis[a]) * (nodeBounds[b + 3 + a] - nodeBounds[b + a]) / 2;
+		}
+		return centre + extent >= min && centre - extent <= max;
+	}
+
+	public double getOriginX() {
+		return originX;
+	}
+
+	public double getOriginY() {
+		return originY;
+	}
+
+	public double getOriginZ() {
+		return originZ;
+	}
+
+	/**
+	 * @return Number of centreline legs in the geometry
+	 */
+	public int getLegCount() {
+		return legCount;
+	}
+
+	public int getLeafCount() {
+		return leafCount;
+	}
+
+	/**
+	 * Gets the bounding box of a leaf, relative to the origin
+	 *
+	 * @param leaf   Index of the leaf
+	 * @param bounds Array to fill with min x, y, z then max x, y, z
+	 */
+	public void getLeafBounds(int leaf, float[] bounds) {
+		System.arraycopy(nodeBounds, leafNodes[leaf] * 6, bounds, 0, 6);
+	}
+
+	/**
+	 * Gets the bounding box of the whole survey, relative to the origin
+	 *
+	 * @param bounds Array to fill with min x, y, z then max x, y, z
+	 */
+	public void getBounds(float[] bounds) {
+		if (nodeCount > 0) {
+			System.arraycopy(nodeBounds, 0, bounds, 0, 6);
+		} else {
+			Arrays.fill(bounds, 0);
+		}
+	}
+
+	/**
+	 * @return Number of levels of detail
+	 */
+	public int getLevelCount() {
+		return LOD_TOLERANCES.length;
+	}
+
+	/**
+	 * @param level Level of detail, 0 being the finest
+	 * @return Maximum distance in metres between the segments of this level and the legs
+	 */
+	public double getLevelTolerance(int level) {
+		return LOD_TOLERANCES[level];
+	}
+
+	/**
+	 * Gets the segment end points for a level of detail. The array is not copied, so must not be
+	 * modified.
+	 *
+	 * @param level Level of detail, 0 being the finest
+	 * @return Array of 6 floats for each segment (x, y, z of each end relative to the origin)
+	 */
+	public float[] getSegmentVertices(int level) {
+		return lodVertices[level];
+	}
+
+	/**
+	 * @param level Level of detail
+	 * @param leaf  Index of the leaf
+	 * @return Index of the first segment of the leaf in the segment vertices for the level
+	 */
+	public int getLeafSegmentStart(int level, int leaf) {
+		return lodLeafStart[level][leaf];
+	}
+
+	/**
+	 * @param level Level of detail
+	 * @param leaf  Index of the leaf
+	 * @return Index after the last segment of the leaf in the segment vertices for the level
+	 */
+	public int getLeafSegmentEnd(int level, int leaf) {
+		return lodLeafStart[level][leaf + 1];
+	}
+
+	/**
+	 * Gets the cross section line end points. The array is not copied, so must not be modified.
+	 *
+	 * @return Array of 6 floats for each line (x, y, z of each end relative to the origin)
+	 */
+	public float[] getCrossSectionVertices() {
+		return lrudVertices;
+	}
+
+	public int getLeafCrossSectionStart(int leaf) {
+		return lrudLeafStart[leaf];
+	}
+
+	public int getLeafCrossSectionEnd(int leaf) {
+		return lrudLeafStart[leaf + 1];
+	}
+
+	/**
+	 * Growable array of floats
+	 */
+	private static class FloatList {
+		float[] data = new float[96];
+		int size = 0;
+
+		void add(float[] src, int offset, int count) {
+			ensureCapacity(count);
+			System.arraycopy(src, offset, data, size, count);
+			size += count;
+		}
+
+		void add(float x, float y, float z) {
+			ensureCapacity(3);
+			data[size++] = x;
+			data[size++] = y;
+			data[size++] = z;
+		}
+
+		private void ensureCapacity(int extra) {
+			if (size + extra > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+			}
+		}
+
+		float[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+
+}
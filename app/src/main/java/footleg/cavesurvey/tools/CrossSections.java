@@ -0,0 +1,480 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.util.Arrays;
+
+/**
+ * Passage cross sections at stations, built from all the splays measured at each station of a
+ * survey network.
+ *
+ * The passage direction at a station bisects the forward leg from the station and the most
+ * in-line leg arriving at the station (or follows the only leg at the station). Every splay from
+ * the station is projected onto the plane perpendicular to the passage direction, and the outline
+ * of the passage is the furthest splay in each of a fixed number of sectors around the station,
+ * in angular order. This gives a star-shaped polygon around the station which follows recesses
+ * in the passage walls, and has a bounded number of points however many splays were measured
+ * (e.g. for DistoX scans with hundreds of splays at a station). Splays which point along the
+ * passage are not used, as they do not measure the walls of the cross section.
+ *
+ * Left, right, up and down dimensions are the distances from the station to the outline along the
+ * axes of the cross section plane. Where the outline does not surround the station in the
+ * direction of an axis, the dimension is the furthest any outline point extends along that axis.
+ *
+ * Sections are held in primitive arrays, with the outline points of all sections in one array of
+ * coordinates in the cross section plane, so writers and views can use them without creating
+ * objects per section.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class CrossSections {
+	/**
+	 * Number of sectors around a station the outline is divided into. Each sector contributes at
+	 * most one point to the outline.
+	 */
+	public static final int SECTORS = 72;
+
+	/**
+	 * Minimum number of splays used in a cross section for a section to be built at a station
+	 */
+	public static final int MIN_SPLAYS = 3;
+
+	// Splays closer than this angle to the passage direction are not used (10 degrees)
+	private static final double MIN_SPLAY_ANGLE_SIN = Math.sin(Math.toRadians(10.0));
+
+	private int sectionCount;
+	private int[] sectionStation = new int[16];
+	// Right axis then up axis of the cross section plane for each section (6 floats per section)
+	private float[] sectionAxes = new float[16 * 6];
+	// Left, right, up and down for each section (4 floats per section)
+	private float[] sectionLrud = new float[16 * 4];
+	// Index of the first outline point of each section, with an extra entry for the end
+	private int[] sectionPointStart = new int[17];
+	// Outline points as right and up coordinates in the cross section plane (2 floats per point)
+	private float[] points = new float[16 * 2];
+	private int pointCount;
+	private int[] stationSection;
+
+	private CrossSections() {
+		super();
+	}
+
+	/**
+	 * Builds the cross sections at every station with splays and at least one centreline leg. If
+	 * the station coordinates of the network have been calculated then leg directions are taken
+	 * from them, otherwise from the measured leg vectors.
+	 *
+	 * @param network The survey network
+	 * @return The cross sections
+	 */
+	public static CrossSections build(SurveyNetwork network) {
+		CrossSections sections = new CrossSections();
+		sections.buildSections(network);
+		return sections;
+	}
+
+	private void buildSections(SurveyNetwork network) {
+		int stationCount = network.getStationCount();
+		stationSection = new int[stationCount];
+		Arrays.fill(stationSection, -1);
+
+		// Group the splays by station
+		int[] splayStart = new int[stationCount + 1];
+		for (int splay = 0; splay < network.getSplayCount(); splay++) {
+			splayStart[network.getSplayFrom(splay) + 1]++;
+		}
+		int maxSplays = 0;
+		for (int stn = 0; stn < stationCount; stn++) {
+			maxSplays = Math.max(maxSplays, splayStart[stn + 1]);
+			splayStart[stn + 1] += splayStart[stn];
+		}
+		int[] splayOrder = new int[network.getSplayCount()];
+		int[] fill = Arrays.copyOf(splayStart, stationCount);
+		for (int splay = 0; splay < network.getSplayCount(); splay++) {
+			splayOrder[fill[network.getSplayFrom(splay)]++] = splay;
+		}
+
+		// Group the centreline legs by the stations at each end
+		int[] legStart = new int[stationCount + 1];
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			if ((network.getLegFlags(leg) & SurveyNetwork.FLAG_SPLAY) == 0) {
+				legStart[network.getLegFrom(leg) + 1]++;
+				legStart[network.getLegTo(leg) + 1]++;
+			}
+		}
+		for (int stn = 0; stn < stationCount; stn++) {
+			legStart[stn + 1] += legStart[stn];
+		}
+		int[] stnLegs = new int[legStart[stationCount]];
+		fill = Arrays.copyOf(legStart, stationCount);
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			if ((network.getLegFlags(leg) & SurveyNetwork.FLAG_SPLAY) == 0) {
+				stnLegs[fill[network.getLegFrom(leg)]++] = leg;
+				stnLegs[fill[network.getLegTo(leg)]++] = leg;
+			}
+		}
+
+		// Working arrays, reused for each station
+		double[] direction = new double[3];
+		double[] legVector = new double[3];
+		double[] backVector = new double[3];
+		double[] right = new double[3];
+		double[] up = new double[3];
+		double[] sectorX = new double[SECTORS];
+		double[] sectorY = new double[SECTORS];
+		double[] sectorRadius = new double[SECTORS];
+		double[] outlineX = new double[SECTORS];
+		double[] outlineY = new double[SECTORS];
+		double[] outlineAngle = new double[SECTORS];
+
+		for (int stn = 0; stn < stationCount; stn++) {
+			if (splayStart[stn + 1] - splayStart[stn] < MIN_SPLAYS) {
+				continue;
+			}
+			if (passageDirection(network, stn, stnLegs, legStart[stn], legStart[stn + 1], direction, legVector,
+					backVector) == false) {
+				continue;
+			}
+			planeAxes(direction, right, up);
+
+			// Keep the furthest splay in each sector around the station
+			Arrays.fill(sectorRadius, -1.0);
+			int used = 0;
+			for (int i = splayStart[stn]; i < splayStart[stn + 1]; i++) {
+				int splay = splayOrder[i];
+				double dx = network.getSplayDx(splay);
+				double dy = network.getSplayDy(splay);
+				double dz = network.getSplayDz(splay);
+				double x = dx * right[0] + dy * right[1] + dz * right[2];
+				double y = dx * up[0] + dy * up[1] + dz * up[2];
+				double radius = Math.sqrt(x * x + y * y);
+				double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+				if (radius == 0.0 || radius < length * MIN_SPLAY_ANGLE_SIN) {
+					continue;
+				}
+				used++;
+				int sector = sectorOf(Math.atan2(y, x));
+				if (radius > sectorRadius[sector]) {
+					sectorRadius[sector] = radius;
+					sectorX[sector] = x;
+					sectorY[sector] = y;
+				}
+			}
+			if (used < MIN_SPLAYS) {
+				continue;
+			}
+
+			// Outline is the sector points in angular order
+			int outlineCount = 0;
+			for (int sector = 0; sector < SECTORS; sector++) {
+				if (sectorRadius[sector] >= 0.0) {
+					outlineX[outlineCount] = sectorX[sector];
+					outlineY[outlineCount] = sectorY[sector];
+					outlineAngle[outlineCount] = angle(sectorX[sector], sectorY[sector]);
+					outlineCount++;
+				}
+			}
+			addSection(stn, right, up, outlineX, outlineY, outlineAngle, outlineCount);
+		}
+
+		sectionStation = Arrays.copyOf(sectionStation, sectionCount);
+		sectionAxes = Arrays.copyOf(sectionAxes, sectionCount * 6);
+		sectionLrud = Arrays.copyOf(sectionLrud, sectionCount * 4);
+		sectionPointStart = Arrays.copyOf(sectionPointStart, sectionCount + 1);
+		points = Arrays.copyOf(points, pointCount * 2);
+	}
+
+	/**
+	 * Works out the passage direction at a station. The forward leg is the first leg from the
+	 * station (or the first leg arriving at it if no legs start there), and the direction bisects
+	 * the forward leg and the other leg at the station which is most in line with it.
+	 *
+	 * @return False if the station has no legs of any length
+	 */
+	private static boolean passageDirection(SurveyNetwork network, int stn, int[] stnLegs, int start, int end,
+			double[] direction, double[] legVector, double[] backVector) {
+		// Find the forward leg, as a vector in the direction of travel through the station
+		int forward = -1;
+		for (int i = start; i < end && forward < 0; i++) {
+			int leg = stnLegs[i];
+			if (network.getLegFrom(leg) == stn && legVectorFrom(network, leg, stn, direction)) {
+				forward = leg;
+			}
+		}
+		for (int i = start; i < end && forward < 0; i++) {
+			int leg = stnLegs[i];
+			if (legVectorFrom(network, leg, stn, direction)) {
+				forward = leg;
+				// Arriving leg, so travel continues in the opposite direction to the leg back to its from station
+				direction[0] = -direction[0];
+				direction[1] = -direction[1];
+				direction[2] = -direction[2];
+			}
+		}
+		if (forward < 0) {
+			return false;
+		}
+
+		// Find the other leg most directly behind the forward leg
+		double bestDot = Double.MAX_VALUE;
+		for (int i = start; i < end; i++) {
+			int leg = stnLegs[i];
+			if (leg != forward && legVectorFrom(network, leg, stn, legVector)) {
+				double dot = legVector[0] * direction[0] + legVector[1] * direction[1] + legVector[2] * direction[2];
+				if (dot < bestDot) {
+					bestDot = dot;
+					System.arraycopy(legVector, 0, backVector, 0, 3);
+				}
+			}
+		}
+		if (bestDot < Double.MAX_VALUE) {
+			double bx = direction[0] - backVector[0];
+			double by = direction[1] - backVector[1];
+			double bz = direction[2] - backVector[2];
+			double length = Math.sqrt(bx * bx + by * by + bz * bz);
+			if (length > 1e-9) {
+				direction[0] = bx / length;
+				direction[1] = by / length;
+				direction[2] = bz / length;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the unit vector along a leg leading away from one of its stations
+	 *
+	 * @return False if the leg has no length
+	 */
+	private static boolean legVectorFrom(SurveyNetwork network, int leg, int stn, double[] vector) {
+		double dx, dy, dz;
+		if (network.isCoordinatesCalculated()) {
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			dx = network.getX(to) - network.getX(from);
+			dy = network.getY(to) - network.getY(from);
+			dz = network.getZ(to) - network.getZ(from);
+		} else {
+			dx = network.getLegDx(leg);
+			dy = network.getLegDy(leg);
+			dz = network.getLegDz(leg);
+		}
+		double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (length == 0.0) {
+			return false;
+		}
+		double sign = (network.getLegFrom(leg) == stn) ? 1.0 : -1.0;
+		vector[0] = sign * dx / length;
+		vector[1] = sign * dy / length;
+		vector[2] = sign * dz / length;
+		return true;
+	}
+
+	/**
+	 * Works out the axes of the plane perpendicular to a passage direction. The right axis is
+	 * horizontal, to the right of the direction of travel, and the up axis is perpendicular to the
+	 * right axis and the passage direction. In a vertical passage the right axis is east.
+	 */
+	private static void planeAxes(double[] direction, double[] right, double[] up) {
+		double rx = direction[1];
+		double ry = -direction[0];
+		double length = Math.sqrt(rx * rx + ry * ry);
+		if (length < 1e-9) {
+			right[0] = 1.0;
+			right[1] = 0.0;
+		} else {
+			right[0] = rx / length;
+			right[1] = ry / length;
+		}
+		right[2] = 0.0;
+		// Up is right x direction
+		up[0] = right[1] * direction[2] - right[2] * direction[1];
+		up[1] = right[2] * direction[0] - right[0] * direction[2];
+		up[2] = right[0] * direction[1] - right[1] * direction[0];
+		length = Math.sqrt(up[0] * up[0] + up[1] * up[1] + up[2] * up[2]);
+		up[0] /= length;
+		up[1] /= length;
+		up[2] /= length;
+	}
+
+	/**
+	 * @return Angle of a point in the cross section plane anticlockwise from the right axis, in
+	 *         the range 0 to 2 pi
+	 */
+	private static double angle(double x, double y) {
+		double angle = Math.atan2(y, x);
+		return (angle < 0) ? angle + 2 * Math.PI : angle;
+	}
+
+	private static int sectorOf(double atan2) {
+		double angle = (atan2 < 0) ? atan2 + 2 * Math.PI : atan2;
+		int sector = (int) (angle * SECTORS / (2 * Math.PI));
+		return Math.min(sector, SECTORS - 1);
+	}
+
+	/**
+	 * Stores a section with its outline, and calculates its LRUD from the outline
+	 */
+	private void addSection(int stn, double[] right, double[] up, double[] outlineX, double[] outlineY,
+			double[] outlineAngle, int outlineCount) {
+		if (sectionCount == sectionStation.length) {
+			int capacity = sectionCount * 2;
+			sectionStation = Arrays.copyOf(sectionStation, capacity);
+			sectionAxes = Arrays.copyOf(sectionAxes, capacity * 6);
+			sectionLrud = Arrays.copyOf(sectionLrud, capacity * 4);
+			sectionPointStart = Arrays.copyOf(sectionPointStart, capacity + 1);
+		}
+		if ((pointCount + outlineCount) * 2 > points.length) {
+			points = Arrays.copyOf(points, Math.max(points.length * 2, (pointCount + outlineCount) * 2));
+		}
+		int section = sectionCount++;
+		stationSection[stn] = section;
+		sectionStation[section] = stn;
+		for (int axis = 0; axis < 3; axis++) {
+			sectionAxes[section * 6 + axis] = (float) right[axis];
+			sectionAxes[section * 6 + 3 + axis] = (float) up[axis];
+		}
+		sectionPointStart[section] = pointCount;
+		for (int i = 0; i < outlineCount; i++) {
+			points[pointCount * 2] = (float) outlineX[i];
+			points[pointCount * 2 + 1] = (float) outlineY[i];
+			pointCount++;
+		}
+		sectionPointStart[section + 1] = pointCount;
+
+		sectionLrud[section * 4] = (float) extent(-1.0, 0.0, Math.PI, outlineX, outlineY, outlineAngle, outlineCount);
+		sectionLrud[section * 4 + 1] = (float) extent(1.0, 0.0, 0.0, outlineX, outlineY, outlineAngle, outlineCount);
+		sectionLrud[section * 4 + 2] = (float) extent(0.0, 1.0, Math.PI / 2, outlineX, outlineY, outlineAngle,
+				outlineCount);
+		sectionLrud[section * 4 + 3] = (float) extent(0.0, -1.0, Math.PI * 3 / 2, outlineX, outlineY, outlineAngle,
+				outlineCount);
+	}
+
+	/**
+	 * Finds the distance from the station to the outline along an axis of the cross section
+	 * plane. The outline edge crossing the axis is the edge between the outline points either side
+	 * of the axis angle, unless those points are half a turn or more apart, which leaves a gap in
+	 * the outline. If there is no edge crossing the axis, the furthest extent of any outline point
+	 * along the axis is used.
+	 *
+	 * @param ux        Right coordinate of the unit vector along the axis
+	 * @param uy        Up coordinate of the unit vector along the axis
+	 * @param axisAngle Angle of the axis anticlockwise from the right axis
+	 * @return Distance to the outline, or zero if no outline point extends along the axis
+	 */
+	private static double extent(double ux, double uy, double axisAngle, double[] outlineX, double[] outlineY,
+			double[] outlineAngle, int outlineCount) {
+		if (outlineCount >= 2) {
+			// Find the first point at or after the axis angle, and the point before it
+			int after = 0;
+			while (after < outlineCount && outlineAngle[after] < axisAngle) {
+				after++;
+			}
+			int next = after % outlineCount;
+			int prev = (after + outlineCount - 1) % outlineCount;
+			double gap = outlineAngle[next] - outlineAngle[prev];
+			if (gap <= 0) {
+				gap += 2 * Math.PI;
+			}
+			if (outlineAngle[next] == axisAngle) {
+				return outlineX[next] * ux + outlineY[next] * uy;
+			}
+			if (gap < Math.PI) {
+				// Intersect the axis with the edge from prev to next
+				double ax = outlineX[prev], ay = outlineY[prev];
+				double ex = outlineX[next] - ax, ey = outlineY[next] - ay;
+				double denominator = ux * ey - uy * ex;
+				if (denominator != 0.0) {
+					double t = -(ux * ay - uy * ax) / denominator;
+					return (ax + t * ex) * ux + (ay + t * ey) * uy;
+				}
+			}
+		}
+		double furthest = 0.0;
+		for (int i = 0; i < outlineCount; i++) {
+			furthest = Math.max(furthest, outlineX[i] * ux + outlineY[i] * uy);
+		}
+		return furthest;
+	}
+
+	public int getSectionCount() {
+		return sectionCount;
+	}
+
+	/**
+	 * @param section Index of section
+	 * @return Network index of the station the section is at
+	 */
+	public int getStation(int section) {
+		return sectionStation[section];
+	}
+
+	/**
+	 * @param station Network index of a station
+	 * @return Index of the section at the station, or -1 if there is no section at the station
+	 */
+	public int findSection(int station) {
+		return stationSection[station];
+	}
+
+	/**
+	 * Gets a passage dimension derived from the outline of a section
+	 *
+	 * @param section   Index of section
+	 * @param dimension 0 = left, 1 = right, 2 = up, 3 = down
+	 * @return Passage dimension in metres
+	 */
+	public double getLrud(int section, int dimension) {
+		return sectionLrud[section * 4 + dimension];
+	}
+
+	/**
+	 * Gets the axes of the cross section plane of a section, as unit vectors in easting,
+	 * northing and vertical components
+	 *
+	 * @param section Index of section
+	 * @param axes    Array to fill with the right axis then the up axis (6 values)
+	 */
+	public void getAxes(int section, double[] axes) {
+		for (int i = 0; i < 6; i++) {
+			axes[i] = sectionAxes[section * 6 + i];
+		}
+	}
+
+	/**
+	 * Gets the outline points of all sections. The array is not copied, so must not be modified.
+	 *
+	 * @return Array of 2 floats for each point (distance along the right axis then the up axis of
+	 *         the section plane from the station)
+	 */
+	public float[] getPoints() {
+		return points;
+	}
+
+	public int getPointStart(int section) {
+		return sectionPointStart[section];
+	}
+
+	public int getPointEnd(int section) {
+		return sectionPointStart[section + 1];
+	}
+
+}
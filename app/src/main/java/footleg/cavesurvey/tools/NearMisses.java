@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Finds places where the centreline of one series passes close to a station in another series
+ * without being connected to it. These are often where independently surveyed series meet and
+ * should have been equated, so each near miss pairs the station with the nearest end of the leg
+ * which passes close to it, and where the two stations are themselves within the tolerance an
+ * equate between them is suggested. Stations which are already joined by a short path along the
+ * centreline, such as either side of a junction between series, are not reported.
+ *
+ * The legs are held in a {@link SpatialIndex}, so each station is only compared with the legs
+ * near to it, and finding the near misses in a survey of n stations takes O(n log n) time rather
+ * than comparing every station with every leg. Splay legs are not included.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class NearMisses {
+	/**
+	 * Distance in metres within which a leg is reported as a near miss when no tolerance is given
+	 */
+	public static final double DEFAULT_TOLERANCE = 0.25;
+
+	// Stations already joined by a path along the centreline shorter than this multiple of the
+	// distance from the station to the leg (or of the tolerance, if larger) are not reported
+	private static final double CONNECTED_PATH_RATIO = 10.0;
+
+	private final SurveyNetwork network;
+	private final double tolerance;
+	private int count;
+	private int[] stations = new int[16];
+	private int[] otherStations = new int[16];
+	private int[] legs = new int[16];
+	private double[] legDistances = new double[16];
+
+	private NearMisses(SurveyNetwork network, double tolerance) {
+		super();
+		this.network = network;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Finds the near misses between series in a survey network
+	 *
+	 * @param network   Survey network with calculated station coordinates
+	 * @param tolerance Maximum distance in metres between a station and a leg in another series
+	 * @return The near misses found
+	 */
+	public static NearMisses find(SurveyNetwork network, double tolerance) {
+		NearMisses nearMisses = new NearMisses(network, tolerance);
+		nearMisses.findNearMisses();
+		return nearMisses;
+	}
+
+	private void findNearMisses() {
+		// Index the centreline legs, and build adjacency lists of centreline legs for each station
+		int stnCount = network.getStationCount();
+		int legCount = network.getLegCount();
+		double[] coords = new double[legCount * 6];
+		int[] indexedLegs = new int[legCount];
+		int indexedCount = 0;
+		int[] adjStart = new int[stnCount + 1];
+		for (int leg = 0; leg < legCount; leg++) {
+			if ((network.getLegFlags(leg) & SurveyNetwork.FLAG_SPLAY) == 0) {
+				int from = network.getLegFrom(leg);
+				int to = network.getLegTo(leg);
+				coords[indexedCount * 6] = network.getX(from);
+				coords[indexedCount * 6 + 1] = network.getY(from);
+				coords[indexedCount * 6 + 2] = network.getZ(from);
+				coords[indexedCount * 6 + 3] = network.getX(to);
+				coords[indexedCount * 6 + 4] = network.getY(to);
+				coords[indexedCount * 6 + 5] = network.getZ(to);
+				indexedLegs[indexedCount++] = leg;
+				adjStart[from + 1]++;
+				adjStart[to + 1]++;
+			}
+		}
+		for (int stn = 0; stn < stnCount; stn++) {
+			adjStart[stn + 1] += adjStart[stn];
+		}
+		int[] adjLegs = new int[adjStart[stnCount]];
+		int[] fill = new int[stnCount];
+		for (int i = 0; i < indexedCount; i++) {
+			int leg = indexedLegs[i];
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			adjLegs[adjStart[from] + fill[from]++] = leg;
+			adjLegs[adjStart[to] + fill[to]++] = leg;
+		}
+		SpatialIndex index = SpatialIndex.forSegments(coords, indexedCount);
+
+		Set<Long> pairsFound = new HashSet<Long>();
+		for (int stn = 0; stn < stnCount; stn++) {
+			if (adjStart[stn] == adjStart[stn + 1]) {
+				// Station is not on the centreline
+				continue;
+			}
+			double x = network.getX(stn);
+			double y = network.getY(stn);
+			double z = network.getZ(stn);
+			for (int found : index.findWithinDistance(x, y, z, tolerance)) {
+				int leg = indexedLegs[found];
+				if (isInStationSeries(leg, stn, adjStart, adjLegs)) {
+					continue;
+				}
+				// Pair the station with the nearer end of the leg
+				int other = network.getLegFrom(leg);
+				int to = network.getLegTo(leg);
+				if (distanceSq(stn, to) < distanceSq(stn, other)) {
+					other = to;
+				}
+				if (other == stn || isSameSeries(stn, other, adjStart, adjLegs)) {
+					// Only report pairs of stations in different series
+					continue;
+				}
+				long pair = ((long) Math.min(stn, other) << 32) | Math.max(stn, other);
+				if (pairsFound.add(pair)) {
+					double legDistance = index.distance(found, x, y, z);
+					double pathLimit = CONNECTED_PATH_RATIO * Math.max(legDistance, tolerance);
+					if (isConnectedWithin(stn, other, pathLimit, adjStart, adjLegs) == false) {
+						add(stn, other, leg, legDistance);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a leg is in any of the series which the centreline legs at a station are in
+	 */
+	private boolean isInStationSeries(int leg, int stn, int[] adjStart, int[] adjLegs) {
+		int series = network.getLegSeries(leg);
+		for (int adj = adjStart[stn]; adj < adjStart[stn + 1]; adj++) {
+			if (network.getLegSeries(adjLegs[adj]) == series) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether two stations both have centreline legs in the same series, which includes
+	 * stations joined by a leg
+	 */
+	private boolean isSameSeries(int stn, int other, int[] adjStart, int[] adjLegs) {
+		for (int adj = adjStart[other]; adj < adjStart[other + 1]; adj++) {
+			if (isInStationSeries(adjLegs[adj], stn, adjStart, adjLegs)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether there is a path along the centreline between two stations which is no longer
+	 * than a limit, searching outwards from the first station only as far as the limit
+	 */
+	private boolean isConnectedWithin(int stn, int other, double limit, int[] adjStart, int[] adjLegs) {
+		Map<Integer, Double> reached = new HashMap<Integer, Double>();
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0]));
+		reached.put(stn, 0.0);
+		queue.add(new double[] { 0.0, stn });
+		while (queue.isEmpty() == false) {
+			double[] next = queue.poll();
+			int current = (int) next[1];
+			if (current == other) {
+				return true;
+			}
+			if (next[0] > reached.get(current)) {
+				// Already reached by a shorter path
+				continue;
+			}
+			for (int adj = adjStart[current]; adj < adjStart[current + 1]; adj++) {
+				int leg = adjLegs[adj];
+				int neighbour = (network.getLegFrom(leg) == current) ? network.getLegTo(leg) : network.getLegFrom(leg);
+				double path = next[0] + Math.sqrt(distanceSq(current, neighbour));
+				Double previous = reached.get(neighbour);
+				if (path <= limit && (previous == null || path < previous)) {
+					reached.put(neighbour, path);
+					queue.add(new double[] { path, neighbour });
+				}
+			}
+		}
+		return false;
+	}
+
+	private double distanceSq(int stn, int other) {
+		double dx = network.getX(other) - network.getX(stn);
+		double dy = network.getY(other) - network.getY(stn);
+		double dz = network.getZ(other) - network.getZ(stn);
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private void add(int stn, int other, int leg, double legDistance) {
+		if (count == stations.length) {
+			stations = Arrays.copyOf(stations, count * 2);
+			otherStations = Arrays.copyOf(otherStations, count * 2);
+			legs = Arrays.copyOf(legs, count * 2);
+			legDistances = Arrays.copyOf(legDistances, count * 2);
+		}
+		stations[count] = stn;
+		otherStations[count] = other;
+		legs[count] = leg;
+		legDistances[count] = legDistance;
+		count++;
+	}
+
+	/**
+	 * @return Number of near misses found
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return The maximum distance between a station and a leg which was reported as a near miss
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * @param nearMiss Index of near miss
+	 * @return Index in the survey network of the station which the leg passes close to
+	 */
+	public int getStation(int nearMiss) {
+		return stations[nearMiss];
+	}
+
+	/**
+	 * @param nearMiss Index of near miss
+	 * @return Index in the survey network of the end of the leg which is nearer to the station
+	 */
+	public int getOtherStation(int nearMiss) {
+		return otherStations[nearMiss];
+	}
+
+	/**
+	 * @param nearMiss Index of near miss
+	 * @return Index in the survey network of the leg which passes close to the station
+	 */
+	public int getLeg(int nearMiss) {
+		return legs[nearMiss];
+	}
+
+	/**
+	 * @param nearMiss Index of near miss
+	 * @return Distance in metres from the station to the nearest point on the leg
+	 */
+	public double getLegDistance(int nearMiss) {
+		return legDistances[nearMiss];
+	}
+
+	/**
+	 * @param nearMiss Index of near miss
+	 * @return Distance in metres between the two stations
+	 */
+	public double getStationDistance(int nearMiss) {
+		return Math.sqrt(distanceSq(stations[nearMiss], otherStations[nearMiss]));
+	}
+
+	/**
+	 * @param nearMiss Index of near miss
+	 * @return True if the two stations are within the tolerance of each other, so should probably
+	 *         be equated
+	 */
+	public boolean isEquateSuggested(int nearMiss) {
+		return getStationDistance(nearMiss) <= tolerance;
+	}
+
+	/**
+	 * Generates Survex equate commands for the near misses where the stations are within the
+	 * tolerance of each other. Stations are given by their full names, so the commands are valid
+	 * in the top level of the survey.
+	 *
+	 * @return Lines of equate commands
+	 */
+	public List<String> getEquateSuggestions() {
+		List<String> equates = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			if (isEquateSuggested(i)) {
+				equates.add("*equate " + network.getStationName(stations[i]) + " "
+						+ network.getStationName(otherStations[i]));
+			}
+		}
+		return equates;
+	}
+
+}
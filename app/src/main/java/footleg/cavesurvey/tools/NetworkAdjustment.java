@@ -0,0 +1,614 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.util.Arrays;
+
+import footleg.cavesurvey.converter.Logger;
+
+/**
+ * Calculates station coordinates for a survey network, distributing loop
+ * misclosures across the legs of each loop by least squares in the same way as
+ * the Survex cavern program. Each leg is weighted by the inverse of its length,
+ * so longer legs take a larger share of the misclosure.
+ *
+ * The network is first traversed from its fixed stations to give starting
+ * positions, and then reduced to a {@link ReducedNetwork} of junctions and
+ * traverse edges split into biconnected blocks. Blocks are solved one at a time
+ * outwards from the fixed station, each holding the articulation point it
+ * shares with the blocks already solved. Where a component has more than one
+ * fixed station, all of its edges are solved together. The normal equations are
+ * assembled into a sparse matrix held as compressed sparse row arrays, which is
+ * solved separately for each axis using a Jacobi preconditioned conjugate
+ * gradient solver. Stations on collapsed traverses and in dead end branches are
+ * then placed from the solved junctions.
+ *
+ * Fixed stations keep their fixed positions. Where a component has no fixed
+ * station, the first station in it is placed at the origin.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class NetworkAdjustment {
+	private Logger logger;
+	private double tolerance = 1e-10;
+	private int componentCount;
+	private int loopCount;
+	private int iterationCount;
+	private ReducedNetwork reducedNetwork;
+
+	public NetworkAdjustment(Logger logger) {
+		super();
+		this.logger = logger;
+	}
+
+	/**
+	 * Sets the convergence tolerance of the iterative solver, as the ratio of the
+	 * residual norm to the right hand side norm
+	 *
+	 * @param tolerance Relative tolerance to solve to
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @return Number of connected components found in the last network adjusted
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	/**
+	 * @return Number of independent loops in the last network adjusted
+	 */
+	public int getLoopCount() {
+		return loopCount;
+	}
+
+	/**
+	 * @return Total solver iterations used over all axes and blocks in the last adjustment
+	 */
+	public int getIterationCount() {
+		return iterationCount;
+	}
+
+	/**
+	 * @return The reduced network used in the last adjustment
+	 */
+	public ReducedNetwork getReducedNetwork() {
+		return reducedNetwork;
+	}
+
+	/**
+	 * Calculates the coordinates of all stations in the network
+	 *
+	 * @param network The survey network to calculate station positions for
+	 */
+	public void adjust(SurveyNetwork network) {
+		int stnCount = network.getStationCount();
+		componentCount = 0;
+		loopCount = 0;
+		iterationCount = 0;
+
+		// Build adjacency lists of legs for each station, ignoring legs which start and end at the same station
+		int[] adjStart = new int[stnCount + 1];
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			if (from != to) {
+				adjStart[from + 1]++;
+				adjStart[to + 1]++;
+			}
+		}
+		for (int stn = 0; stn < stnCount; stn++) {
+			adjStart[stn + 1] += adjStart[stn];
+		}
+		int[] adjLegs = new int[adjStart[stnCount]];
+		int[] fill = new int[stnCount];
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			if (from != to) {
+				adjLegs[adjStart[from] + fill[from]++] = leg;
+				adjLegs[adjStart[to] + fill[to]++] = leg;
+			}
+		}
+
+		double[] pos = new double[stnCount * 3];
+		boolean[] known = new boolean[stnCount];
+		int[] componentStns = new int[stnCount];
+		int[] queue = new int[stnCount];
+		// Anchor station of each station's component, or -1 where the component has a fixed station
+		int[] anchorOf = new int[stnCount];
+
+		for (int startStn = 0; startStn < stnCount; startStn++) {
+			if (known[startStn]) {
+				continue;
+			}
+			componentCount++;
+
+			// Collect stations in this connected component, and count its legs and fixed stations
+			int size = 0;
+			int fixedCount = 0;
+			int legEnds = 0;
+			componentStns[size++] = startStn;
+			known[startStn] = true;
+			for (int head = 0; head < size; head++) {
+				int stn = componentStns[head];
+				legEnds += adjStart[stn + 1] - adjStart[stn];
+				if (network.isFixed(stn)) {
+					fixedCount++;
+				}
+				for (int adj = adjStart[stn]; adj < adjStart[stn + 1]; adj++) {
+					int other = otherEnd(network, adjLegs[adj], stn);
+					if (known[other] == false) {
+						known[other] = true;
+						componentStns[size++] = other;
+					}
+				}
+			}
+			int freeCount = size - Math.max(fixedCount, 1);
+			loopCount += (legEnds / 2) - freeCount;
+
+			// Place fixed stations, or the first station at the origin if none are fixed
+			int queueSize = 0;
+			for (int idx = 0; idx < size; idx++) {
+				int stn = componentStns[idx];
+				known[stn] = false;
+				anchorOf[stn] = (fixedCount == 0) ? startStn : -1;
+				if (network.isFixed(stn)) {
+					pos[stn * 3] = network.getX(stn);
+					pos[stn * 3 + 1] = network.getY(stn);
+					pos[stn * 3 + 2] = network.getZ(stn);
+					known[stn] = true;
+					queue[queueSize++] = stn;
+				}
+			}
+			if (fixedCount == 0) {
+				known[startStn] = true;
+				queue[queueSize++] = startStn;
+				if (size > 1) {
+					logger.logMessage("No fixed station in survey network containing station "
+							+ network.getStationName(startStn) + ", so this station was placed at the origin.");
+				}
+			}
+
+			// Traverse out from the placed stations to give starting positions for all stations
+			for (int head = 0; head < queueSize; head++) {
+				int stn = queue[head];
+				for (int adj = adjStart[stn]; adj < adjStart[stn + 1]; adj++) {
+					int leg = adjLegs[adj];
+					int other = otherEnd(network, leg, stn);
+					if (known[other] == false) {
+						double sign = (network.getLegFrom(leg) == stn) ? 1.0 : -1.0;
+						pos[other * 3] = pos[stn * 3] + sign * network.getLegDx(leg);
+						pos[other * 3 + 1] = pos[stn * 3 + 1] + sign * network.getLegDy(leg);
+						pos[other * 3 + 2] = pos[stn * 3 + 2] + sign * network.getLegDz(leg);
+						known[other] = true;
+						queue[queueSize++] = other;
+					}
+				}
+			}
+		}
+
+		if (loopCount > 0) {
+			reducedNetwork = ReducedNetwork.build(network);
+			solveReducedNetwork(reducedNetwork, pos);
+			placeCollapsedStations(reducedNetwork, pos);
+			placePeeledStations(reducedNetwork, pos);
+
+			// Solving may have moved the anchor of components with no fixed station, so move them back to the origin
+			double[] offsets = new double[stnCount * 3];
+			for (int stn = 0; stn < stnCount; stn++) {
+				if (anchorOf[stn] == stn) {
+					System.arraycopy(pos, stn * 3, offsets, stn * 3, 3);
+				}
+			}
+			for (int stn = 0; stn < stnCount; stn++) {
+				int anchor = anchorOf[stn];
+				if (anchor >= 0) {
+					pos[stn * 3] -= offsets[anchor * 3];
+					pos[stn * 3 + 1] -= offsets[anchor * 3 + 1];
+					pos[stn * 3 + 2] -= offsets[anchor * 3 + 2];
+				}
+			}
+			logger.logDebug(reducedNetwork::toString);
+		} else {
+			reducedNetwork = null;
+		}
+
+		for (int stn = 0; stn < stnCount; stn++) {
+			network.setPosition(stn, pos[stn * 3], pos[stn * 3 + 1], pos[stn * 3 + 2]);
+		}
+		network.setCoordinatesCalculated(true);
+
+		logger.logMessage("Survey network adjusted: " + stnCount + " stations, " + network.getLegCount()
+				+ " legs, " + componentCount + " components, " + loopCount + " loops closed in "
+				+ iterationCount + " solver iterations.");
+	}
+
+	/**
+	 * Solves the junction positions of the reduced network. Each connected part of
+	 * the reduced graph is solved block by block outwards from its fixed station,
+	 * or all at once if it contains more than one fixed station.
+	 */
+	private void solveReducedNetwork(ReducedNetwork reduced, double[] pos) {
+		SurveyNetwork network = reduced.getNetwork();
+		int nodeCount = reduced.getNodeCount();
+
+		// Node to edge adjacency, and node to block adjacency
+		int[] nodeAdjStart = new int[nodeCount + 1];
+		for (int edge = 0; edge < reduced.getEdgeCount(); edge++) {
+			nodeAdjStart[reduced.getEdgeFrom(edge) + 1]++;
+			nodeAdjStart[reduced.getEdgeTo(edge) + 1]++;
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			nodeAdjStart[node + 1] += nodeAdjStart[node];
+		}
+		int[] nodeAdjEdges = new int[nodeAdjStart[nodeCount]];
+		int[] fill = new int[nodeCount];
+		for (int edge = 0; edge < reduced.getEdgeCount(); edge++) {
+			int from = reduced.getEdgeFrom(edge);
+			int to = reduced.getEdgeTo(edge);
+			nodeAdjEdges[nodeAdjStart[from] + fill[from]++] = edge;
+			nodeAdjEdges[nodeAdjStart[to] + fill[to]++] = edge;
+		}
+		int[] edgeBlock = new int[reduced.getEdgeCount()];
+		Arrays.fill(edgeBlock, -1);
+		for (int block = 0; block < reduced.getBlockCount(); block++) {
+			for (int idx = 0; idx < reduced.getBlockEdgeCount(block); idx++) {
+				edgeBlock[reduced.getBlockEdge(block, idx)] = block;
+			}
+		}
+
+		boolean[] visited = new boolean[nodeCount];
+		boolean[] held = new boolean[nodeCount];
+		boolean[] blockDone = new boolean[reduced.getBlockCount()];
+		int[] partNodes = new int[nodeCount];
+		int[] queue = new int[nodeCount];
+		int[] partEdges = new int[reduced.getEdgeCount()];
+		int[] localIdx = new int[nodeCount];
+		Arrays.fill(localIdx, -1);
+
+		for (int root = 0; root < nodeCount; root++) {
+			if (visited[root]) {
+				continue;
+			}
+			int size = 0;
+			int fixedCount = 0;
+			partNodes[size++] = root;
+			visited[root] = true;
+			for (int head = 0; head < size; head++) {
+				int node = partNodes[head];
+				if (network.isFixed(reduced.getNodeStation(node))) {
+					fixedCount++;
+				}
+				for (int adj = nodeAdjStart[node]; adj < nodeAdjStart[node + 1]; adj++) {
+					int edge = nodeAdjEdges[adj];
+					int other = (reduced.getEdgeFrom(edge) == node) ? reduced.getEdgeTo(edge)
+							: reduced.getEdgeFrom(edge);
+					if (visited[other] == false) {
+						visited[other] = true;
+						partNodes[size++] = other;
+					}
+				}
+			}
+
+			if (fixedCount > 1) {
+				// Fixed stations in different blocks constrain each other, so solve the whole part together
+				int edgeTotal = 0;
+				for (int idx = 0; idx < size; idx++) {
+					int node = partNodes[idx];
+					held[node] = network.isFixed(reduced.getNodeStation(node));
+					for (int adj = nodeAdjStart[node]; adj < nodeAdjStart[node + 1]; adj++) {
+						int edge = nodeAdjEdges[adj];
+						if (edgeBlock[edge] >= 0 && reduced.getEdgeFrom(edge) == node) {
+							partEdges[edgeTotal++] = edge;
+						}
+					}
+				}
+				solveEdges(reduced, partEdges, edgeTotal, held, localIdx, pos);
+				continue;
+			}
+
+			// Solve blocks outwards from the fixed node, holding the node each block is reached through
+			int start = root;
+			for (int idx = 0; idx < size; idx++) {
+				if (network.isFixed(reduced.getNodeStation(partNodes[idx]))) {
+					start = partNodes[idx];
+				}
+			}
+			int queueSize = 0;
+			queue[queueSize++] = start;
+			held[start] = true;
+			for (int head = 0; head < queueSize; head++) {
+				int node = queue[head];
+				for (int adj = nodeAdjStart[node]; adj < nodeAdjStart[node + 1]; adj++) {
+					int block = edgeBlock[nodeAdjEdges[adj]];
+					if (block < 0 || blockDone[block]) {
+						continue;
+					}
+					blockDone[block] = true;
+					int edgeTotal = reduced.getBlockEdgeCount(block);
+					for (int idx = 0; idx < edgeTotal; idx++) {
+						partEdges[idx] = reduced.getBlockEdge(block, idx);
+					}
+					solveEdges(reduced, partEdges, edgeTotal, held, localIdx, pos);
+
+					// All nodes of the block are now solved, so hold them for the neighbouring blocks
+					for (int idx = 0; idx < edgeTotal; idx++) {
+						int edge = partEdges[idx];
+						int[] ends = { reduced.getEdgeFrom(edge), reduced.getEdgeTo(edge) };
+						for (int end : ends) {
+							if (held[end] == false) {
+								held[end] = true;
+								queue[queueSize++] = end;
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Assembles and solves the least squares normal equations for a set of reduced
+	 * network edges, keeping the held nodes at their current positions
+	 */
+	private void solveEdges(ReducedNetwork reduced, int[] edges, int edgeTotal, boolean[] held, int[] localIdx,
+			double[] pos) {
+		// Assign local equation numbers to the free nodes, counting the off-diagonal entries in each row
+		int[] rowNodes = new int[edgeTotal * 2];
+		int[] rowCounts = new int[edgeTotal * 2 + 1];
+		int freeCount = 0;
+		for (int idx = 0; idx < edgeTotal; idx++) {
+			int edge = edges[idx];
+			int[] ends = { reduced.getEdgeFrom(edge), reduced.getEdgeTo(edge) };
+			for (int end : ends) {
+				if (held[end] == false) {
+					if (localIdx[end] < 0) {
+						localIdx[end] = freeCount;
+						rowNodes[freeCount] = end;
+						freeCount++;
+					}
+					rowCounts[localIdx[end] + 1]++;
+				}
+			}
+		}
+		if (freeCount == 0) {
+			return;
+		}
+
+		// Build the off-diagonal terms in CSR arrays, with the diagonal held separately for the preconditioner
+		int[] rowStart = new int[freeCount + 1];
+		for (int row = 0; row < freeCount; row++) {
+			rowStart[row + 1] = rowStart[row] + rowCounts[row + 1];
+		}
+		int[] cursor = Arrays.copyOf(rowStart, freeCount);
+		int[] cols = new int[rowStart[freeCount]];
+		double[] vals = new double[rowStart[freeCount]];
+		double[] diag = new double[freeCount];
+		double[] rhs = new double[freeCount * 3];
+		double[] solution = new double[freeCount * 3];
+		for (int idx = 0; idx < edgeTotal; idx++) {
+			int edge = edges[idx];
+			int from = reduced.getEdgeFrom(edge);
+			int to = reduced.getEdgeTo(edge);
+			double weight = 1.0 / reduced.getEdgeVariance(edge);
+			double[] vector = { reduced.getEdgeDx(edge), reduced.getEdgeDy(edge), reduced.getEdgeDz(edge) };
+			int fromStn = reduced.getNodeStation(from);
+			int toStn = reduced.getNodeStation(to);
+			int fromRow = localIdx[from];
+			int toRow = localIdx[to];
+			if (fromRow >= 0) {
+				diag[fromRow] += weight;
+				for (int axis = 0; axis < 3; axis++) {
+					rhs[fromRow * 3 + axis] -= weight * vector[axis];
+				}
+				if (toRow >= 0) {
+					cols[cursor[fromRow]] = toRow;
+					vals[cursor[fromRow]++] = -weight;
+				} else {
+					// Held position moves to the right hand side
+					for (int axis = 0; axis < 3; axis++) {
+						rhs[fromRow * 3 + axis] += weight * pos[toStn * 3 + axis];
+					}
+				}
+			}
+			if (toRow >= 0) {
+				diag[toRow] += weight;
+				for (int axis = 0; axis < 3; axis++) {
+					rhs[toRow * 3 + axis] += weight * vector[axis];
+				}
+				if (fromRow >= 0) {
+					cols[cursor[toRow]] = fromRow;
+					vals[cursor[toRow]++] = -weight;
+				} else {
+					for (int axis = 0; axis < 3; axis++) {
+						rhs[toRow * 3 + axis] += weight * pos[fromStn * 3 + axis];
+					}
+				}
+			}
+		}
+		for (int row = 0; row < freeCount; row++) {
+			System.arraycopy(pos, reduced.getNodeStation(rowNodes[row]) * 3, solution, row * 3, 3);
+		}
+
+		for (int axis = 0; axis < 3; axis++) {
+			iterationCount += solveConjugateGradient(rowStart, cols, vals, diag, rhs, solution, axis, tolerance,
+					Math.max(100, freeCount * 2));
+		}
+
+		for (int row = 0; row < freeCount; row++) {
+			System.arraycopy(solution, row * 3, pos, reduced.getNodeStation(rowNodes[row]) * 3, 3);
+			localIdx[rowNodes[row]] = -1;
+		}
+	}
+
+	/**
+	 * Places the stations along each collapsed traverse, distributing the
+	 * misclosure between the traverse end positions in proportion to the
+	 * accumulated leg variance, which is the least squares solution for a chain
+	 */
+	private static void placeCollapsedStations(ReducedNetwork reduced, double[] pos) {
+		SurveyNetwork network = reduced.getNetwork();
+		for (int edge = 0; edge < reduced.getEdgeCount(); edge++) {
+			int legs = reduced.getEdgeLegCount(edge);
+			if (legs < 2) {
+				continue;
+			}
+			int fromStn = reduced.getNodeStation(reduced.getEdgeFrom(edge));
+			int toStn = reduced.getNodeStation(reduced.getEdgeTo(edge));
+			double[] misclosure = { pos[toStn * 3] - pos[fromStn * 3] - reduced.getEdgeDx(edge),
+					pos[toStn * 3 + 1] - pos[fromStn * 3 + 1] - reduced.getEdgeDy(edge),
+					pos[toStn * 3 + 2] - pos[fromStn * 3 + 2] - reduced.getEdgeDz(edge) };
+			double totalVariance = reduced.getEdgeVariance(edge);
+			double[] cumulative = new double[3];
+			double variance = 0;
+			int stn = fromStn;
+			for (int idx = 0; idx < legs - 1; idx++) {
+				int leg = reduced.getEdgeLeg(edge, idx);
+				double sign = reduced.isEdgeLegReversed(edge, idx) ? -1.0 : 1.0;
+				cumulative[0] += sign * network.getLegDx(leg);
+				cumulative[1] += sign * network.getLegDy(leg);
+				cumulative[2] += sign * network.getLegDz(leg);
+				variance += network.getLegVariance(leg);
+				stn = otherEnd(network, leg, stn);
+				for (int axis = 0; axis < 3; axis++) {
+					pos[stn * 3 + axis] = pos[fromStn * 3 + axis] + cumulative[axis]
+							+ misclosure[axis] * variance / totalVariance;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Places dead end stations from the stations they hang from, in the reverse of
+	 * the order they were peeled so that each is placed after its parent
+	 */
+	private static void placePeeledStations(ReducedNetwork reduced, double[] pos) {
+		SurveyNetwork network = reduced.getNetwork();
+		for (int idx = reduced.getPeeledCount() - 1; idx >= 0; idx--) {
+			int stn = reduced.getPeeledStation(idx);
+			int leg = reduced.getPeeledLeg(idx);
+			int parent = otherEnd(network, leg, stn);
+			double sign = (network.getLegTo(leg) == stn) ? 1.0 : -1.0;
+			pos[stn * 3] = pos[parent * 3] + sign * network.getLegDx(leg);
+			pos[stn * 3 + 1] = pos[parent * 3 + 1] + sign * network.getLegDy(leg);
+			pos[stn * 3 + 2] = pos[parent * 3 + 2] + sign * network.getLegDz(leg);
+		}
+	}
+
+	private static int otherEnd(SurveyNetwork network, int leg, int stn) {
+		int from = network.getLegFrom(leg);
+		return (from == stn) ? network.getLegTo(leg) : from;
+	}
+
+	/**
+	 * Solves the symmetric positive definite system A.x = b by the conjugate
+	 * gradient method with a Jacobi (diagonal) preconditioner. The right hand side
+	 * and solution arrays are interleaved for three axes, and the axis argument
+	 * selects which one to solve.
+	 *
+	 * @param rowStart      Start of each row in the CSR arrays, with an extra final entry
+	 * @param cols          Column index of each off-diagonal entry
+	 * @param vals          Value of each off-diagonal entry
+	 * @param diag          Diagonal entries of the matrix
+	 * @param rhs           Interleaved right hand side vectors
+	 * @param solution      Interleaved solution vectors, holding the starting estimate on entry
+	 * @param axis          Axis to solve for (0, 1 or 2)
+	 * @param tolerance     Relative residual tolerance to stop at
+	 * @param maxIterations Maximum number of iterations
+	 * @return Number of iterations used
+	 */
+	static int solveConjugateGradient(int[] rowStart, int[] cols, double[] vals, double[] diag, double[] rhs,
+			double[] solution, int axis, double tolerance, int maxIterations) {
+		int n = diag.length;
+		double[] x = new double[n];
+		double[] r = new double[n];
+		double[] z = new double[n];
+		double[] p = new double[n];
+		double[] ap = new double[n];
+
+		double rhsNorm = 0;
+		for (int i = 0; i < n; i++) {
+			x[i] = solution[i * 3 + axis];
+			double b = rhs[i * 3 + axis];
+			rhsNorm += b * b;
+		}
+		multiply(rowStart, cols, vals, diag, x, ap);
+		double rz = 0;
+		double residualNorm = 0;
+		for (int i = 0; i < n; i++) {
+			r[i] = rhs[i * 3 + axis] - ap[i];
+			z[i] = r[i] / diag[i];
+			p[i] = z[i];
+			rz += r[i] * z[i];
+			residualNorm += r[i] * r[i];
+		}
+		double limit = tolerance * tolerance * Math.max(rhsNorm, 1.0);
+
+		int iteration = 0;
+		while (residualNorm > limit && iteration < maxIterations) {
+			iteration++;
+			multiply(rowStart, cols, vals, diag, p, ap);
+			double pAp = 0;
+			for (int i = 0; i < n; i++) {
+				pAp += p[i] * ap[i];
+			}
+			if (pAp <= 0) {
+				break;
+			}
+			double alpha = rz / pAp;
+			double rzNew = 0;
+			residualNorm = 0;
+			for (int i = 0; i < n; i++) {
+				x[i] += alpha * p[i];
+				r[i] -= alpha * ap[i];
+				z[i] = r[i] / diag[i];
+				rzNew += r[i] * z[i];
+				residualNorm += r[i] * r[i];
+			}
+			double beta = rzNew / rz;
+			rz = rzNew;
+			for (int i = 0; i < n; i++) {
+				p[i] = z[i] + beta * p[i];
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			solution[i * 3 + axis] = x[i];
+		}
+		return iteration;
+	}
+
+	private static void multiply(int[] rowStart, int[] cols, double[] vals, double[] diag, double[] in,
+			double[] out) {
+		for (int row = 0; row < diag.length; row++) {
+			double sum = diag[row] * in[row];
+			for (int entry = rowStart[row]; entry < rowStart[row + 1]; entry++) {
+				sum += vals[entry] * in[cols[entry]];
+			}
+			out[row] = sum;
+		}
+	}
+
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.reader.SnapshotReader;
+import footleg.cavesurvey.data.writer.SnapshotWriter;
+
+/**
+ * Persistent on disk cache of parsed survey data models, so unchanged survey projects do not need
+ * to be read and parsed again on every conversion.
+ *
+ * Each entry holds the parsed model as a binary snapshot, along with a record of every file which
+ * was read to build it (the input file and everything it included). Each dependency is recorded
+ * with its path, size, modification time and a SHA-256 hash of its contents. An entry is only
+ * reused if all its dependencies still match. A file whose modification time has changed but
+ * whose contents have not (e.g. after a checkout) is detected by the hash and still counts as
+ * unchanged. Entries are evicted least recently used first when the total size of the cache
+ * directory exceeds the configured limit.
+ *
+ * Survex parsing is context dependent across include statements, as data orders, calibrations
+ * and begin blocks carry through from the including file. So models are cached for each input
+ * file along with its full include graph, rather than for each included file on its own.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class ParseCache {
+	private static final int ENTRY_MAGIC = 0x43435043; // "CCPC"
+	private static final int ENTRY_VERSION = 1;
+	private static final String ENTRY_EXTN = ".cache";
+	private static final String TEMP_EXTN = ".tmp";
+	// Magic number, version and dependency count
+	private static final int ENTRY_HEADER_LENGTH = 12;
+	private static final int HASH_LENGTH = 32;
+
+	private File cacheDir;
+	private long maxCacheBytes;
+	private Logger logger;
+
+	/**
+	 * Class constructor
+	 *
+	 * @param cacheDir      Folder to hold the cache entries, created if it does not exist
+	 * @param maxCacheBytes Maximum total size of the cache entries, in bytes
+	 * @param logger        Logging class to output information, warning and error messages to
+	 */
+	public ParseCache(File cacheDir, long maxCacheBytes, Logger logger) {
+		super();
+		this.cacheDir = cacheDir;
+		this.maxCacheBytes = maxCacheBytes;
+		this.logger = logger;
+	}
+
+	/**
+	 * Looks up a cached model for an input file
+	 *
+	 * @param inputFile The survey data file which was parsed
+	 * @param parseKey  Identifies how the file was parsed (e.g. format and character set), so the
+	 *                  same file read with different settings is cached separately
+	 * @return The cached model, or null if there is no valid entry for the file
+	 */
+	public CaveSurvey lookup(File inputFile, String parseKey) {
+		File entryFile = entryFileFor(inputFile, parseKey);
+		if (entryFile.exists() == false) {
+			return null;
+		}
+
+		CaveSurvey surveyData = null;
+		boolean corrupt = false;
+		try {
+			// Read into memory rather than mapping the file, as a mapping keeps the file locked on
+			// some platforms, which would stop the entry being deleted or replaced
+			ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(entryFile.toPath()));
+			if (data.remaining() < ENTRY_HEADER_LENGTH) {
+				throw new IOException("Entry is truncated");
+			}
+			if (data.getInt() != ENTRY_MAGIC || data.getInt() != ENTRY_VERSION) {
+				logger.logMessage("Ignoring parse cache entry with unknown format: " + entryFile.getPath());
+				return null;
+			}
+			String changed = null;
+			int depCount = data.getInt();
+			if (depCount < 0) {
+				throw new IOException("Invalid dependency count " + depCount);
+			}
+			for (int i = 0; i < depCount && changed == null; i++) {
+				int pathLength = data.getInt();
+				if (pathLength < 0 || pathLength > data.remaining()) {
+					throw new IOException("Invalid dependency path length " + pathLength);
+				}
+				byte[] path = new byte[pathLength];
+				data.get(path);
+				long size = data.getLong();
+				long modified = data.getLong();
+				byte[] hash = new byte[HASH_LENGTH];
+				data.get(hash);
+				File depFile = new File(new String(path, StandardCharsets.UTF_8));
+				if (dependencyUnchanged(depFile, size, modified, hash) == false) {
+					changed = depFile.getPath();
+				}
+			}
+			if (changed != null) {
+				logger.logMessage("Parse cache entry is out of date as file has changed: " + changed);
+			} else {
+				surveyData = new SnapshotReader(logger).parseData(data);
+			}
+		} catch (IOException e) {
+			logger.logMessage("Unable to read parse cache entry " + entryFile.getPath() + ": " + e.getMessage());
+			surveyData = null;
+			corrupt = true;
+		} catch (RuntimeException e) {
+			// Entry was truncated or its contents are not valid, e.g. reading beyond the end of the data
+			logger.logMessage("Unable to read parse cache entry " + entryFile.getPath() + ": " + e);
+			surveyData = null;
+			corrupt = true;
+		}
+
+		if (corrupt) {
+			// Remove the entry, so it is replaced when the file is parsed again
+			if (entryFile.delete()) {
+				logger.logMessage("Removed unreadable parse cache entry " + entryFile.getName());
+			}
+		} else if (surveyData != null) {
+			// Mark entry as recently used
+			entryFile.setLastModified(System.currentTimeMillis());
+			logger.logMessage("Using cached parse of file " + inputFile.getPath());
+		}
+		return surveyData;
+	}
+
+	/**
+	 * Stores a parsed model in the cache, evicting the least recently used entries if the cache
+	 * has grown beyond its size limit.
+	 *
+	 * @param inputFile    The survey data file which was parsed
+	 * @param parseKey     Identifies how the file was parsed (see {@link #lookup(File, String)})
+	 * @param dependencies All files which were read to build the model, including the input file
+	 * @param surveyData   The parsed model
+	 */
+	public void store(File inputFile, String parseKey, List<File> dependencies, CaveSurvey surveyData) {
+		File entryFile = entryFileFor(inputFile, parseKey);
+		try {
+			if (cacheDir.exists() == false && cacheDir.mkdirs() == false) {
+				throw new IOException("Failed to create cache folder " + cacheDir.getPath());
+			}
+			// Remove duplicates where the same file was included more than once
+			Set<File> uniqueDeps = new LinkedHashSet<File>();
+			uniqueDeps.add(inputFile);
+			uniqueDeps.addAll(dependencies);
+
+			ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(entryBytes);
+			out.writeInt(ENTRY_MAGIC);
+			out.writeInt(ENTRY_VERSION);
+			out.writeInt(uniqueDeps.size());
+			for (File dep : uniqueDeps) {
+				byte[] path = dep.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+				out.writeInt(path.length);
+				out.write(path);
+				// Missing files are recorded with a negative size, so creating them invalidates the entry
+				out.writeLong(dep.isFile() ? dep.length() : -1);
+				out.writeLong(dep.lastModified());
+				out.write(dep.isFile() ? hashFile(dep) : new byte[HASH_LENGTH]);
+			}
+			new SnapshotWriter(logger).writeSnapshotData(surveyData, out);
+			out.flush();
+
+			writeEntryFile(entryBytes.toByteArray(), entryFile);
+		} catch (IOException e) {
+			logger.logMessage("Unable to write parse cache entry " + entryFile.getPath() + ": " + e.getMessage());
+			return;
+		}
+		evictEntries();
+	}
+
+	/**
+	 * Writes an entry to a temporary file in the cache folder and then renames it, so a
+	 * conversion reading the entry never sees a partly written file, and an interrupted write
+	 * does not leave a truncated entry behind.
+	 */
+	private void writeEntryFile(byte[] entryData, File entryFile) throws IOException {
+		File tempFile = File.createTempFile("entry", TEMP_EXTN, cacheDir);
+		try {
+			Files.write(tempFile.toPath(), entryData);
+			try {
+				Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	/**
+	 * Deletes least recently used cache entries until the cache is within its size limit.
+	 * Synchronized so conversions running in parallel do not evict at the same time.
+	 */
+	private synchronized void evictEntries() {
+		File[] entries = cacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_EXTN));
+		if (entries == null) {
+			return;
+		}
+		long totalBytes = 0;
+		for (File entry : entries) {
+			totalBytes += entry.length();
+		}
+		if (totalBytes <= maxCacheBytes) {
+			return;
+		}
+
+		final long[] lastUsed = new long[entries.length];
+		Integer[] order = new Integer[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			lastUsed[i] = entries[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> lastUsed[i]));
+		for (int i = 0; i < order.length && totalBytes > maxCacheBytes; i++) {
+			File entry = entries[order[i]];
+			long size = entry.length();
+			if (entry.delete()) {
+				totalBytes -= size;
+				logger.logMessage("Evicted parse cache entry " + entry.getName());
+			}
+		}
+	}
+
+	/**
+	 * @return The cache entry files currently stored, for reporting and tests
+	 */
+	public List<File> getEntryFiles() {
+		List<File> list = new ArrayList<File>();
+		File[] entries = cacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_EXTN));
+		if (entries != null) {
+			list.addAll(Arrays.asList(entries));
+		}
+		return list;
+	}
+
+	private boolean dependencyUnchanged(File depFile, long size, long modified, byte[] hash) throws IOException {
+		if (depFile.isFile() == false) {
+			return size < 0;
+		}
+		if (depFile.length() != size) {
+			return false;
+		}
+		if (depFile.lastModified() == modified) {
+			return true;
+		}
+		// Timestamp changed, so compare contents
+		return Arrays.equals(hash, hashFile(depFile));
+	}
+
+	private File entryFileFor(File inputFile, String parseKey) {
+		String key = inputFile.getAbsolutePath() + "|" + parseKey;
+		byte[] digest = newDigest().digest(key.getBytes(StandardCharsets.UTF_8));
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 16; i++) {
+			name.append(String.format("%02x", digest[i]));
+		}
+		return new File(cacheDir, name.toString() + ENTRY_EXTN);
+	}
+
+	private static byte[] hashFile(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[65536];
+			int count;
+			while ((count = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
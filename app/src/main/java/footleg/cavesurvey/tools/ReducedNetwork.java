@@ -0,0 +1,510 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.util.Arrays;
+
+/**
+ * Reduced form of a survey network, holding only the stations and legs which
+ * take part in loops. It is built from a {@link SurveyNetwork} in three passes:
+ * <ol>
+ * <li>Dead end branches are peeled off by repeatedly removing stations with only
+ * one leg. These need no adjustment and are placed from the station they hang
+ * from once the rest of the network is solved.</li>
+ * <li>Linear traverses of stations with exactly two legs are collapsed into
+ * single equivalent edges between junction stations, summing the leg vectors
+ * and variances.</li>
+ * <li>The graph of junctions and edges is split at its articulation points
+ * (Hopcroft-Tarjan) into biconnected blocks, which can be adjusted one at a
+ * time.</li>
+ * </ol>
+ * Fixed stations are always kept as junction nodes so that they are never
+ * peeled or collapsed.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class ReducedNetwork {
+	private SurveyNetwork network;
+
+	// Junction nodes of the reduced graph
+	private int nodeCount;
+	private int[] nodeStation;
+	private int[] stationNode;
+	private boolean[] articulation;
+
+	// Equivalent edges between nodes, each made from a traverse of one or more legs
+	private int edgeCount;
+	private int[] edgeFrom = new int[16];
+	private int[] edgeTo = new int[16];
+	private double[] edgeVectors = new double[48];
+	private double[] edgeVariance = new double[16];
+	private int[] edgeLegStart = new int[17];
+	// Leg indices shifted left one bit, with the low bit set where the leg runs backwards along the edge
+	private int[] edgeLegs;
+
+	// Biconnected blocks, as lists of edge indices
+	private int blockCount;
+	private int[] blockEdgeStart;
+	private int[] blockEdges;
+
+	// Dead end stations in the order they were peeled, with the leg connecting each to the network
+	private int peeledCount;
+	private int[] peeledStation;
+	private int[] peeledLeg;
+
+	private ReducedNetwork(SurveyNetwork network) {
+		this.network = network;
+	}
+
+	/**
+	 * Builds the reduced network for a survey network
+	 *
+	 * @param network The survey network to reduce
+	 * @return The reduced network
+	 */
+	public static ReducedNetwork build(SurveyNetwork network) {
+		ReducedNetwork reduced = new ReducedNetwork(network);
+		int stnCount = network.getStationCount();
+		int legCount = network.getLegCount();
+
+		// Station to leg adjacency, skipping legs which start and end at the same station
+		int[] adjStart = new int[stnCount + 1];
+		for (int leg = 0; leg < legCount; leg++) {
+			if (network.getLegFrom(leg) != network.getLegTo(leg)) {
+				adjStart[network.getLegFrom(leg) + 1]++;
+				adjStart[network.getLegTo(leg) + 1]++;
+			}
+		}
+		for (int stn = 0; stn < stnCount; stn++) {
+			adjStart[stn + 1] += adjStart[stn];
+		}
+		int[] adjLegs = new int[adjStart[stnCount]];
+		int[] degree = new int[stnCount];
+		for (int leg = 0; leg < legCount; leg++) {
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			if (from != to) {
+				adjLegs[adjStart[from] + degree[from]++] = leg;
+				adjLegs[adjStart[to] + degree[to]++] = leg;
+			}
+		}
+
+		boolean[] legUsed = new boolean[legCount];
+		reduced.peelDeadEnds(adjStart, adjLegs, degree, legUsed);
+		reduced.collapseTraverses(adjStart, adjLegs, degree, legUsed);
+		reduced.findBlocks();
+		return reduced;
+	}
+
+	/**
+	 * Repeatedly removes unfixed stations which have a single remaining leg
+	 */
+	private void peelDeadEnds(int[] adjStart, int[] adjLegs, int[] degree, boolean[] legUsed) {
+		int stnCount = network.getStationCount();
+		peeledStation = new int[stnCount];
+		peeledLeg = new int[stnCount];
+		int[] queue = new int[stnCount];
+		int queueSize = 0;
+		for (int stn = 0; stn < stnCount; stn++) {
+			if (degree[stn] == 1 && network.isFixed(stn) == false) {
+				queue[queueSize++] = stn;
+			}
+		}
+		for (int head = 0; head < queueSize; head++) {
+			int stn = queue[head];
+			if (degree[stn] != 1) {
+				// The other end of a lone leg was peeled first, leaving this station isolated
+				continue;
+			}
+			int leg = -1;
+			for (int adj = adjStart[stn]; leg < 0 && adj < adjStart[stn + 1]; adj++) {
+				if (legUsed[adjLegs[adj]] == false) {
+					leg = adjLegs[adj];
+				}
+			}
+			legUsed[leg] = true;
+			degree[stn] = 0;
+			peeledStation[peeledCount] = stn;
+			peeledLeg[peeledCount] = leg;
+			peeledCount++;
+			int other = otherEnd(leg, stn);
+			degree[other]--;
+			if (degree[other] == 1 && network.isFixed(other) == false) {
+				queue[queueSize++] = other;
+			}
+		}
+	}
+
+	/**
+	 * Selects the junction nodes and walks the traverses between them to build the
+	 * equivalent edges
+	 */
+	private void collapseTraverses(int[] adjStart, int[] adjLegs, int[] degree, boolean[] legUsed) {
+		int stnCount = network.getStationCount();
+		stationNode = new int[stnCount];
+		nodeStation = new int[stnCount];
+		Arrays.fill(stationNode, -1);
+		boolean[] peeled = new boolean[stnCount];
+		for (int idx = 0; idx < peeledCount; idx++) {
+			peeled[peeledStation[idx]] = true;
+		}
+		for (int stn = 0; stn < stnCount; stn++) {
+			if (peeled[stn] == false && (degree[stn] != 2 || network.isFixed(stn))) {
+				addNode(stn);
+			}
+		}
+		edgeLegs = new int[Math.max(16, network.getLegCount())];
+		int legTotal = 0;
+
+		for (int node = 0; node < nodeCount; node++) {
+			legTotal = walkTraverses(node, adjStart, adjLegs, legUsed, legTotal);
+		}
+		// Any stations left unvisited lie on isolated rings with no junction, so make one station on each a node
+		for (int stn = 0; stn < stnCount; stn++) {
+			if (peeled[stn] == false && stationNode[stn] < 0 && hasUnusedLeg(stn, adjStart, adjLegs, legUsed)) {
+				legTotal = walkTraverses(addNode(stn), adjStart, adjLegs, legUsed, legTotal);
+			}
+		}
+		articulation = new boolean[nodeCount];
+	}
+
+	private int addNode(int stn) {
+		stationNode[stn] = nodeCount;
+		nodeStation[nodeCount] = stn;
+		return nodeCount++;
+	}
+
+	private boolean hasUnusedLeg(int stn, int[] adjStart, int[] adjLegs, boolean[] legUsed) {
+		for (int adj = adjStart[stn]; adj < adjStart[stn + 1]; adj++) {
+			if (legUsed[adjLegs[adj]] == false) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Walks along each unused leg from a node, through stations with two legs,
+	 * until another node is reached, and adds an edge for each traverse found
+	 */
+	private int walkTraverses(int node, int[] adjStart, int[] adjLegs, boolean[] legUsed, int legTotal) {
+		int startStn = nodeStation[node];
+		for (int adj = adjStart[startStn]; adj < adjStart[startStn + 1]; adj++) {
+			int leg = adjLegs[adj];
+			if (legUsed[leg]) {
+				continue;
+			}
+			ensureEdgeCapacity(edgeCount + 1);
+			double dx = 0;
+			double dy = 0;
+			double dz = 0;
+			double variance = 0;
+			int stn = startStn;
+			edgeLegStart[edgeCount] = legTotal;
+			while (leg >= 0) {
+				legUsed[leg] = true;
+				boolean reversed = (network.getLegFrom(leg) != stn);
+				double sign = reversed ? -1.0 : 1.0;
+				dx += sign * network.getLegDx(leg);
+				dy += sign * network.getLegDy(leg);
+				dz += sign * network.getLegDz(leg);
+				variance += network.getLegVariance(leg);
+				edgeLegs[legTotal++] = (leg << 1) | (reversed ? 1 : 0);
+				stn = otherEnd(leg, stn);
+
+				// Continue through the next unused leg unless a node has been reached
+				leg = -1;
+				if (stationNode[stn] < 0) {
+					for (int next = adjStart[stn]; leg < 0 && next < adjStart[stn + 1]; next++) {
+						if (legUsed[adjLegs[next]] == false) {
+							leg = adjLegs[next];
+						}
+					}
+				}
+			}
+			edgeFrom[edgeCount] = node;
+			edgeTo[edgeCount] = stationNode[stn];
+			edgeVectors[edgeCount * 3] = dx;
+			edgeVectors[edgeCount * 3 + 1] = dy;
+			edgeVectors[edgeCount * 3 + 2] = dz;
+			edgeVariance[edgeCount] = variance;
+			edgeCount++;
+			edgeLegStart[edgeCount] = legTotal;
+		}
+		return legTotal;
+	}
+
+	private void ensureEdgeCapacity(int size) {
+		if (size > edgeFrom.length) {
+			int newSize = Math.max(size, edgeFrom.length * 2);
+			edgeFrom = Arrays.copyOf(edgeFrom, newSize);
+			edgeTo = Arrays.copyOf(edgeTo, newSize);
+			edgeVectors = Arrays.copyOf(edgeVectors, newSize * 3);
+			edgeVariance = Arrays.copyOf(edgeVariance, newSize);
+			edgeLegStart = Arrays.copyOf(edgeLegStart, newSize + 1);
+		}
+	}
+
+	/**
+	 * Finds the articulation points and biconnected blocks of the reduced graph
+	 * using an iterative form of the Hopcroft-Tarjan depth first search, so that
+	 * long chains of blocks do not overflow the call stack. Edges which start and
+	 * end at the same node are not part of any block.
+	 */
+	private void findBlocks() {
+		int[] nodeAdjStart = new int[nodeCount + 1];
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (edgeFrom[edge] != edgeTo[edge]) {
+				nodeAdjStart[edgeFrom[edge] + 1]++;
+				nodeAdjStart[edgeTo[edge] + 1]++;
+			}
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			nodeAdjStart[node + 1] += nodeAdjStart[node];
+		}
+		int[] nodeAdjEdges = new int[nodeAdjStart[nodeCount]];
+		int[] fill = new int[nodeCount];
+		for (int edge = 0; edge < edgeCount; edge++) {
+			int from = edgeFrom[edge];
+			int to = edgeTo[edge];
+			if (from != to) {
+				nodeAdjEdges[nodeAdjStart[from] + fill[from]++] = edge;
+				nodeAdjEdges[nodeAdjStart[to] + fill[to]++] = edge;
+			}
+		}
+
+		int[] discovered = new int[nodeCount];
+		Arrays.fill(discovered, -1);
+		int[] low = new int[nodeCount];
+		int[] parentEdge = new int[nodeCount];
+		int[] nextAdj = new int[nodeCount];
+		int[] nodeStack = new int[nodeCount];
+		int[] edgeStack = new int[edgeCount];
+		int edgeStackSize = 0;
+		int time = 0;
+		blockEdgeStart = new int[edgeCount + 1];
+		blockEdges = new int[edgeCount];
+		int blockEdgeTotal = 0;
+
+		for (int root = 0; root < nodeCount; root++) {
+			if (discovered[root] >= 0) {
+				continue;
+			}
+			int rootChildren = 0;
+			int stackSize = 0;
+			nodeStack[stackSize++] = root;
+			discovered[root] = low[root] = time++;
+			parentEdge[root] = -1;
+			nextAdj[root] = nodeAdjStart[root];
+			while (stackSize > 0) {
+				int node = nodeStack[stackSize - 1];
+				if (nextAdj[node] < nodeAdjStart[node + 1]) {
+					int edge = nodeAdjEdges[nextAdj[node]++];
+					if (edge == parentEdge[node]) {
+						continue;
+					}
+					int other = (edgeFrom[edge] == node) ? edgeTo[edge] : edgeFrom[edge];
+					if (discovered[other] < 0) {
+						edgeStack[edgeStackSize++] = edge;
+						parentEdge[other] = edge;
+						discovered[other] = low[other] = time++;
+						nextAdj[other] = nodeAdjStart[other];
+						nodeStack[stackSize++] = other;
+						if (node == root) {
+							rootChildren++;
+						}
+					} else if (discovered[other] < discovered[node]) {
+						// Back edge to an ancestor
+						edgeStack[edgeStackSize++] = edge;
+						low[node] = Math.min(low[node], discovered[other]);
+					}
+				} else {
+					stackSize--;
+					if (stackSize > 0) {
+						int parent = nodeStack[stackSize - 1];
+						low[parent] = Math.min(low[parent], low[node]);
+						if (low[node] >= discovered[parent]) {
+							// Parent separates this subtree from the rest, so pop the edges of the block
+							if (parent != root) {
+								articulation[parent] = true;
+							}
+							int edge;
+							do {
+								edge = edgeStack[--edgeStackSize];
+								blockEdges[blockEdgeTotal++] = edge;
+							} while (edge != parentEdge[node]);
+							blockCount++;
+							blockEdgeStart[blockCount] = blockEdgeTotal;
+						}
+					}
+				}
+			}
+			if (rootChildren > 1) {
+				articulation[root] = true;
+			}
+		}
+		blockEdgeStart = Arrays.copyOf(blockEdgeStart, blockCount + 1);
+	}
+
+	private int otherEnd(int leg, int stn) {
+		int from = network.getLegFrom(leg);
+		return (from == stn) ? network.getLegTo(leg) : from;
+	}
+
+	/**
+	 * @return The survey network this reduced network was built from
+	 */
+	public SurveyNetwork getNetwork() {
+		return network;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @param node Index of node in the reduced network
+	 * @return Index of the survey network station for the node
+	 */
+	public int getNodeStation(int node) {
+		return nodeStation[node];
+	}
+
+	/**
+	 * @param stn Index of station in the survey network
+	 * @return Index of the node for this station, or -1 if the station was peeled or collapsed
+	 */
+	public int getStationNode(int stn) {
+		return stationNode[stn];
+	}
+
+	public boolean isArticulation(int node) {
+		return articulation[node];
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public int getEdgeFrom(int edge) {
+		return edgeFrom[edge];
+	}
+
+	public int getEdgeTo(int edge) {
+		return edgeTo[edge];
+	}
+
+	public double getEdgeDx(int edge) {
+		return edgeVectors[edge * 3];
+	}
+
+	public double getEdgeDy(int edge) {
+		return edgeVectors[edge * 3 + 1];
+	}
+
+	public double getEdgeDz(int edge) {
+		return edgeVectors[edge * 3 + 2];
+	}
+
+	/**
+	 * @param edge Index of edge
+	 * @return Sum of the variances of the legs making up the edge
+	 */
+	public double getEdgeVariance(int edge) {
+		return edgeVariance[edge];
+	}
+
+	/**
+	 * @param edge Index of edge
+	 * @return Number of survey legs in the traverse making up the edge
+	 */
+	public int getEdgeLegCount(int edge) {
+		return edgeLegStart[edge + 1] - edgeLegStart[edge];
+	}
+
+	/**
+	 * @param edge Index of edge
+	 * @param idx  Position of leg along the traverse, starting from the edge from-node
+	 * @return Index of the survey network leg
+	 */
+	public int getEdgeLeg(int edge, int idx) {
+		return edgeLegs[edgeLegStart[edge] + idx] >> 1;
+	}
+
+	/**
+	 * @param edge Index of edge
+	 * @param idx  Position of leg along the traverse, starting from the edge from-node
+	 * @return True if the leg was surveyed in the opposite direction to the edge
+	 */
+	public boolean isEdgeLegReversed(int edge, int idx) {
+		return (edgeLegs[edgeLegStart[edge] + idx] & 1) == 1;
+	}
+
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	public int getBlockEdgeCount(int block) {
+		return blockEdgeStart[block + 1] - blockEdgeStart[block];
+	}
+
+	public int getBlockEdge(int block, int idx) {
+		return blockEdges[blockEdgeStart[block] + idx];
+	}
+
+	/**
+	 * @return Number of dead end stations peeled from the network
+	 */
+	public int getPeeledCount() {
+		return peeledCount;
+	}
+
+	/**
+	 * @param idx Position in the order stations were peeled
+	 * @return Index of the survey network station
+	 */
+	public int getPeeledStation(int idx) {
+		return peeledStation[idx];
+	}
+
+	/**
+	 * @param idx Position in the order stations were peeled
+	 * @return Index of the leg joining the peeled station to the rest of the network
+	 */
+	public int getPeeledLeg(int idx) {
+		return peeledLeg[idx];
+	}
+
+	@Override
+	public String toString() {
+		int articulationCount = 0;
+		for (int node = 0; node < nodeCount; node++) {
+			if (articulation[node]) {
+				articulationCount++;
+			}
+		}
+		return "Reduced network: " + network.getStationCount() + " stations and " + network.getLegCount()
+				+ " legs reduced to " + nodeCount + " nodes and " + edgeCount + " edges in " + blockCount
+				+ " blocks (" + peeledCount + " dead end stations peeled, " + articulationCount
+				+ " articulation points)";
+	}
+
+}
@@ -0,0 +1,561 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index over a set of points or line segments in 3D, such as the stations or legs of a
+ * survey network once the station coordinates have been calculated.
+ *
+ * The index is a k-d tree which is bulk loaded from all the items at once. Each node holds the
+ * bounding box of its items, and nodes are split at the median of the item mid points along the
+ * longest side of the box until a leaf holds no more than {@link #LEAF_ITEMS} items. Queries
+ * skip whole branches of the tree whose bounding box cannot contain a result, so finding the
+ * nearest station to a point, or the legs in a small box, takes time proportional to the log of
+ * the number of items rather than checking every item. Items are identified by their index in
+ * the arrays the index was built from (which is the station or leg index in a survey network),
+ * and queries which return several items return them in order of item index.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SpatialIndex {
+	/**
+	 * Maximum number of items in a leaf of the tree
+	 */
+	public static final int LEAF_ITEMS = 16;
+
+	private final int itemCount;
+	// End points of each item, 6 values per item (both ends are the same for points)
+	private final double[] ends;
+
+	// Tree nodes. Bounds are min x, y, z then max x, y, z for each node. Leaves have no children,
+	// so store the range of ordered items in the leaf as negative values instead.
+	private int nodeCount;
+	private double[] nodeBounds;
+	private int[] nodeChildren;
+	private final int[] order;
+
+	private SpatialIndex(double[] ends, int itemCount) {
+		super();
+		this.ends = ends;
+		this.itemCount = itemCount;
+		order = new int[itemCount];
+		for (int i = 0; i < itemCount; i++) {
+			order[i] = i;
+		}
+		// A tree with leaves at least half full has fewer than 4 nodes per leaf
+		int nodes = Math.max(1, 4 * itemCount / LEAF_ITEMS + 1);
+		nodeBounds = new double[nodes * 6];
+		nodeChildren = new int[nodes * 2];
+		if (itemCount > 0) {
+			buildNode(0, itemCount);
+		}
+		nodeBounds = Arrays.copyOf(nodeBounds, nodeCount * 6);
+		nodeChildren = Arrays.copyOf(nodeChildren, nodeCount * 2);
+	}
+
+	/**
+	 * Builds an index of points
+	 *
+	 * @param coords Coordinates of the points, x, y and z for each point
+	 * @param count  Number of points
+	 * @return The spatial index
+	 */
+	public static SpatialIndex forPoints(double[] coords, int count) {
+		double[] ends = new double[count * 6];
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(coords, i * 3, ends, i * 6, 3);
+			System.arraycopy(coords, i * 3, ends, i * 6 + 3, 3);
+		}
+		return new SpatialIndex(ends, count);
+	}
+
+	/**
+	 * Builds an index of line segments
+	 *
+	 * @param coords Coordinates of the end points of the segments, x, y and z of the start and
+	 *               then of the end of each segment
+	 * @param count  Number of segments
+	 * @return The spatial index
+	 */
+	public static SpatialIndex forSegments(double[] coords, int count) {
+		return new SpatialIndex(Arrays.copyOf(coords, count * 6), count);
+	}
+
+	/**
+	 * Builds an index of the stations in a survey network. Item indices are station indices in
+	 * the network.
+	 *
+	 * @param network Survey network with calculated station coordinates
+	 * @return The spatial index
+	 */
+	public static SpatialIndex forStations(SurveyNetwork network) {
+		int count = network.getStationCount();
+		double[] coords = new double[count * 3];
+		for (int stn = 0; stn < count; stn++) {
+			coords[stn * 3] = network.getX(stn);
+			coords[stn * 3 + 1] = network.getY(stn);
+			coords[stn * 3 + 2] = network.getZ(stn);
+		}
+		return forPoints(coords, count);
+	}
+
+	/**
+	 * Builds an index of the legs in a survey network. Item indices are leg indices in the
+	 * network, so legs of any type can be included in or skipped from query results using the
+	 * flags of each leg in the network.
+	 *
+	 * @param network Survey network with calculated station coordinates
+	 * @return The spatial index
+	 */
+	public static SpatialIndex forLegs(SurveyNetwork network) {
+		int count = network.getLegCount();
+		double[] coords = new double[count * 6];
+		for (int leg = 0; leg < count; leg++) {
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			coords[leg * 6] = network.getX(from);
+			coords[leg * 6 + 1] = network.getY(from);
+			coords[leg * 6 + 2] = network.getZ(from);
+			coords[leg * 6 + 3] = network.getX(to);
+			coords[leg * 6 + 4] = network.getY(to);
+			coords[leg * 6 + 5] = network.getZ(to);
+		}
+		return new SpatialIndex(coords, count);
+	}
+
+	/**
+	 * Recursively builds a node of the tree for a range of the ordered items, splitting the items
+	 * at the median of their mid points along the longest side of the bounding box.
+	 *
+	 * @return Index of the node
+	 */
+	private int buildNode(int start, int end) {
+		int node = nodeCount++;
+		if (nodeCount * 6 > nodeBounds.length) {
+			nodeBounds = Arrays.copyOf(nodeBounds, nodeBounds.length * 2);
+			nodeChildren = Arrays.copyOf(nodeChildren, nodeChildren.length * 2);
+		}
+		int offset = node * 6;
+		for (int axis = 0; axis < 3; axis++) {
+			nodeBounds[offset + axis] = Double.MAX_VALUE;
+			nodeBounds[offset + axis + 3] = -Double.MAX_VALUE;
+		}
+		for (int i = start; i < end; i++) {
+			int item = order[i] * 6;
+			for (int axis = 0; axis < 3; axis++) {
+				double a = ends[item + axis];
+				double b = ends[item + axis + 3];
+				nodeBounds[offset + axis] = Math.min(nodeBounds[offset + axis], Math.min(a, b));
+				nodeBounds[offset + axis + 3] = Math.max(nodeBounds[offset + axis + 3], Math.max(a, b));
+			}
+		}
+
+		if (end - start <= LEAF_ITEMS) {
+			nodeChildren[node * 2] = -1 - start;
+			nodeChildren[node * 2 + 1] = -1 - end;
+			return node;
+		}
+
+		int axis = 0;
+		for (int a = 1; a < 3; a++) {
+			if (nodeBounds[offset + a + 3] - nodeBounds[offset + a] > nodeBounds[offset + axis + 3]
+					- nodeBounds[offset + axis]) {
+				axis = a;
+			}
+		}
+		// Sort the range by mid point along the axis, packing the sort key and item into longs.
+		// The key is only used to split the items, so single precision is enough.
+		long[] keys = new long[end - start];
+		for (int i = start; i < end; i++) {
+			int item = order[i] * 6;
+			float mid = (float) ((ends[item + axis] + ends[item + axis + 3]) / 2);
+			int bits = Float.floatToIntBits(mid);
+			// Flip bits so the integer order of the keys matches the order of the floats
+			bits ^= (bits >> 31) & 0x7fffffff;
+			keys[i - start] = ((long) bits << 32) | (order[i] & 0xffffffffL);
+		}
+		Arrays.sort(keys);
+		for (int i = start; i < end; i++) {
+			order[i] = (int) keys[i - start];
+		}
+		int mid = (start + end) >>> 1;
+		int left = buildNode(start, mid);
+		int right = buildNode(mid, end);
+		nodeChildren[node * 2] = left;
+		nodeChildren[node * 2 + 1] = right;
+		return node;
+	}
+
+	/**
+	 * @return Number of items in the index
+	 */
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * Calculates the distance from a point to an item
+	 *
+	 * @param item Index of the item
+	 * @param x    Easting of the point
+	 * @param y    Northing of the point
+	 * @param z    Altitude of the point
+	 * @return Distance from the point to the nearest point on the item
+	 */
+	public double distance(int item, double x, double y, double z) {
+		return Math.sqrt(distanceSq(item, x, y, z));
+	}
+
+	private double distanceSq(int item, double x, double y, double z) {
+		int offset = item * 6;
+		double ax = ends[offset];
+		double ay = ends[offset + 1];
+		double az = ends[offset + 2];
+		double dx = ends[offset + 3] - ax;
+		double dy = ends[offset + 4] - ay;
+		double dz = ends[offset + 5] - az;
+		double lengthSq = dx * dx + dy * dy + dz * dz;
+		double t = 0.0;
+		if (lengthSq > 0) {
+			t = Math.max(0.0, Math.min(1.0, ((x - ax) * dx + (y - ay) * dy + (z - az) * dz) / lengthSq));
+		}
+		double ex = ax + t * dx - x;
+		double ey = ay + t * dy - y;
+		double ez = az + t * dz - z;
+		return ex * ex + ey * ey + ez * ez;
+	}
+
+	private double boxDistanceSq(int node, double x, double y, double z) {
+		int offset = node * 6;
+		double dx = Math.max(0.0, Math.max(nodeBounds[offset] - x, x - nodeBounds[offset + 3]));
+		double dy = Math.max(0.0, Math.max(nodeBounds[offset + 1] - y, y - nodeBounds[offset + 4]));
+		double dz = Math.max(0.0, Math.max(nodeBounds[offset + 2] - z, z - nodeBounds[offset + 5]));
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Finds the item nearest to a point. Where several items are the same distance from the point
+	 * the one with the lowest index is returned.
+	 *
+	 * @param x Easting of the point
+	 * @param y Northing of the point
+	 * @param z Altitude of the point
+	 * @return Index of the nearest item, or -1 if the index is empty
+	 */
+	public int findNearest(double x, double y, double z) {
+		return findNearest(x, y, z, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Finds the item nearest to a point, within a maximum distance of the point. Where several
+	 * items are the same distance from the point the one with the lowest index is returned.
+	 *
+	 * @param x           Easting of the point
+	 * @param y           Northing of the point
+	 * @param z           Altitude of the point
+	 * @param maxDistance Maximum distance of the item from the point
+	 * @return Index of the nearest item, or -1 if there is no item within the maximum distance
+	 */
+	public int findNearest(double x, double y, double z, double maxDistance) {
+		if (nodeCount == 0) {
+			return -1;
+		}
+		// Best item and its squared distance
+		double[] best = { -1, maxDistance * maxDistance };
+		nearest(0, x, y, z, best);
+		return (int) best[0];
+	}
+
+	private void nearest(int node, double x, double y, double z, double[] best) {
+		int first = nodeChildren[node * 2];
+		int second = nodeChildren[node * 2 + 1];
+		if (first < 0) {
+			for (int i = -1 - first; i < -1 - second; i++) {
+				int item = order[i];
+				double distSq = distanceSq(item, x, y, z);
+				if (distSq < best[1] || (distSq == best[1] && (best[0] < 0 || item < best[0]))) {
+					best[0] = item;
+					best[1] = distSq;
+				}
+			}
+			return;
+		}
+		// Visit the nearer child first, as it is more likely to hold the nearest item
+		double firstSq = boxDistanceSq(first, x, y, z);
+		double secondSq = boxDistanceSq(second, x, y, z);
+		if (secondSq < firstSq) {
+			int swap = first;
+			first = second;
+			second = swap;
+			double swapSq = firstSq;
+			firstSq = secondSq;
+			secondSq = swapSq;
+		}
+		if (firstSq <= best[1]) {
+			nearest(first, x, y, z, best);
+		}
+		if (secondSq <= best[1]) {
+			nearest(second, x, y, z, best);
+		}
+	}
+
+	/**
+	 * Finds all the items within a distance of a point
+	 *
+	 * @param x      Easting of the point
+	 * @param y      Northing of the point
+	 * @param z      Altitude of the point
+	 * @param radius Maximum distance of the items from the point
+	 * @return Indices of the items, in order of item index
+	 */
+	public int[] findWithinDistance(double x, double y, double z, double radius) {
+		IntList results = new IntList();
+		if (nodeCount > 0) {
+			withinDistance(0, x, y, z, radius * radius, results);
+		}
+		return results.toSortedArray();
+	}
+
+	private void withinDistance(int node, double x, double y, double z, double radiusSq, IntList results) {
+		if (boxDistanceSq(node, x, y, z) > radiusSq) {
+			return;
+		}
+		int first = nodeChildren[node * 2];
+		int second = nodeChildren[node * 2 + 1];
+		if (first < 0) {
+			for (int i = -1 - first; i < -1 - second; i++) {
+				if (distanceSq(order[i], x, y, z) <= radiusSq) {
+					results.add(order[i]);
+				}
+			}
+		} else {
+			withinDistance(first, x, y, z, radiusSq, results);
+			withinDistance(second, x, y, z, radiusSq, results);
+		}
+	}
+
+	/**
+	 * Finds all the items whose bounding box overlaps a box. Points on the edge of the box are
+	 * included, so a box with the same minimum and maximum finds the items at exactly that point.
+	 *
+	 * @param min Minimum x, y and z of the box
+	 * @param max Maximum x, y and z of the box
+	 * @return Indices of the items, in order of item index
+	 */
+	public int[] findInBox(double[] min, double[] max) {
+		IntList results = new IntList();
+		if (nodeCount > 0) {
+			inBox(0, min, max, results);
+		}
+		return results.toSortedArray();
+	}
+
+	private static boolean overlaps(double[] bounds, int offset, double[] min, double[] max) {
+		for (int axis = 0; axis < 3; axis++) {
+			if (bounds[offset + axis] > max[axis] || bounds[offset + axis + 3] < min[axis]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void inBox(int node, double[] min, double[] max, IntList results) {
+		if (overlaps(nodeBounds, node * 6, min, max) == false) {
+			return;
+		}
+		int first = nodeChildren[node * 2];
+		int second = nodeChildren[node * 2 + 1];
+		if (first < 0) {
+			double[] itemBounds = new double[6];
+			for (int i = -1 - first; i < -1 - second; i++) {
+				int offset = order[i] * 6;
+				for (int axis = 0; axis < 3; axis++) {
+					itemBounds[axis] = Math.min(ends[offset + axis], ends[offset + axis + 3]);
+					itemBounds[axis + 3] = Math.max(ends[offset + axis], ends[offset + axis + 3]);
+				}
+				if (overlaps(itemBounds, 0, min, max)) {
+					results.add(order[i]);
+				}
+			}
+		} else {
+			inBox(first, min, max, results);
+			inBox(second, min, max, results);
+		}
+	}
+
+	/**
+	 * Finds all the items which cross or touch a plane. The plane is the set of points p where
+	 * the dot product of the normal and p equals the offset. A segment crosses the plane if its
+	 * ends are on opposite sides of it, and a point is only found if it lies on the plane.
+	 *
+	 * @param normal Normal vector of the plane (x, y and z)
+	 * @param offset Dot product of the normal with any point on the plane
+	 * @return Indices of the items, in order of item index
+	 */
+	public int[] findCrossingPlane(double[] normal, double offset) {
+		IntList results = new IntList();
+		if (nodeCount > 0) {
+			crossingPlane(0, normal, offset, results);
+		}
+		return results.toSortedArray();
+	}
+
+	private void crossingPlane(int node, double[] normal, double offset, IntList results) {
+		// Range of the plane function over the corners of the box
+		int bounds = node * 6;
+		double low = -offset;
+		double high = -offset;
+		for (int axis = 0; axis < 3; axis++) {
+			double a = normal[axis] * nodeBounds[bounds + axis];
+			double b = normal[axis] * nodeBounds[bounds + axis + 3];
+			low += Math.min(a, b);
+			high += Math.max(a, b);
+		}
+		if (low > 0 || high < 0) {
+			return;
+		}
+		int first = nodeChildren[node * 2];
+		int second = nodeChildren[node * 2 + 1];
+		if (first < 0) {
+			for (int i = -1 - first; i < -1 - second; i++) {
+				int item = order[i] * 6;
+				double start = normal[0] * ends[item] + normal[1] * ends[item + 1] + normal[2] * ends[item + 2]
+						- offset;
+				double end = normal[0] * ends[item + 3] + normal[1] * ends[item + 4] + normal[2] * ends[item + 5]
+						- offset;
+				if (Math.min(start, end) <= 0 && Math.max(start, end) >= 0) {
+					results.add(order[i]);
+				}
+			}
+		} else {
+			crossingPlane(first, normal, offset, results);
+			crossingPlane(second, normal, offset, results);
+		}
+	}
+
+	/**
+	 * Finds all the items within a distance of an infinite line, such as the line of sight
+	 * through a point picked on a view of the survey
+	 *
+	 * @param point     A point on the line (x, y and z)
+	 * @param direction Direction of the line (x, y and z), which must not be zero length
+	 * @param radius    Maximum distance of the items from the line
+	 * @return Indices of the items, in order of item index
+	 */
+	public int[] findNearLine(double[] point, double[] direction, double radius) {
+		double length = Math.sqrt(direction[0] * direction[0] + direction[1] * direction[1]
+				+ direction[2] * direction[2]);
+		double[] unit = { direction[0] / length, direction[1] / length, direction[2] / length };
+		IntList results = new IntList();
+		if (nodeCount > 0) {
+			nearLine(0, point, unit, radius, results);
+		}
+		return results.toSortedArray();
+	}
+
+	/**
+	 * Calculates the distance from a point to an infinite line through the origin
+	 */
+	private static double distanceFromLine(double x, double y, double z, double[] unit) {
+		double along = x * unit[0] + y * unit[1] + z * unit[2];
+		return Math.sqrt(Math.max(0.0, x * x + y * y + z * z - along * along));
+	}
+
+	/**
+	 * Calculates the distance between a segment and an infinite line through the origin
+	 */
+	private static double segmentDistanceFromLine(double[] ends, int offset, double[] point, double[] unit) {
+		double ax = ends[offset] - point[0];
+		double ay = ends[offset + 1] - point[1];
+		double az = ends[offset + 2] - point[2];
+		double dx = ends[offset + 3] - point[0] - ax;
+		double dy = ends[offset + 4] - point[1] - ay;
+		double dz = ends[offset + 5] - point[2] - az;
+		// Remove the components along the line, so the problem becomes the distance from the
+		// origin to the segment projected onto the plane across the line
+		double along = ax * unit[0] + ay * unit[1] + az * unit[2];
+		ax -= along * unit[0];
+		ay -= along * unit[1];
+		az -= along * unit[2];
+		along = dx * unit[0] + dy * unit[1] + dz * unit[2];
+		dx -= along * unit[0];
+		dy -= along * unit[1];
+		dz -= along * unit[2];
+		double lengthSq = dx * dx + dy * dy + dz * dz;
+		double t = 0.0;
+		if (lengthSq > 0) {
+			t = Math.max(0.0, Math.min(1.0, -(ax * dx + ay * dy + az * dz) / lengthSq));
+		}
+		double ex = ax + t * dx;
+		double ey = ay + t * dy;
+		double ez = az + t * dz;
+		return Math.sqrt(ex * ex + ey * ey + ez * ez);
+	}
+
+	private void nearLine(int node, double[] point, double[] unit, double radius, IntList results) {
+		// Skip the node if the sphere around its box is further from the line than the radius
+		int bounds = node * 6;
+		double halfX = (nodeBounds[bounds + 3] - nodeBounds[bounds]) / 2;
+		double halfY = (nodeBounds[bounds + 4] - nodeBounds[bounds + 1]) / 2;
+		double halfZ = (nodeBounds[bounds + 5] - nodeBounds[bounds + 2]) / 2;
+		double centreDistance = distanceFromLine(nodeBounds[bounds] + halfX - point[0],
+				nodeBounds[bounds + 1] + halfY - point[1], nodeBounds[bounds + 2] + halfZ - point[2], unit);
+		if (centreDistance > radius + Math.sqrt(halfX * halfX + halfY * halfY + halfZ * halfZ)) {
+			return;
+		}
+		int first = nodeChildren[node * 2];
+		int second = nodeChildren[node * 2 + 1];
+		if (first < 0) {
+			for (int i = -1 - first; i < -1 - second; i++) {
+				if (segmentDistanceFromLine(ends, order[i] * 6, point, unit) <= radius) {
+					results.add(order[i]);
+				}
+			}
+		} else {
+			nearLine(first, point, unit, radius, results);
+			nearLine(second, point, unit, radius, results);
+		}
+	}
+
+	/**
+	 * Growable array of ints
+	 */
+	private static class IntList {
+		int[] data = new int[16];
+		int size = 0;
+
+		void add(int value) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			data[size++] = value;
+		}
+
+		int[] toSortedArray() {
+			int[] values = Arrays.copyOf(data, size);
+			Arrays.sort(values);
+			return values;
+		}
+	}
+
+}
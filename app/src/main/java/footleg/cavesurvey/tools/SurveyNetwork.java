@@ -0,0 +1,556 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SeriesLink;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+
+/**
+ * Flattened survey network built from a cave survey model. Every station in the
+ * survey is given an integer index, with stations joined by series links
+ * (equates) sharing a single index. Centreline legs and splays are held as
+ * primitive arrays of measured vectors (easting, northing and vertical
+ * components in metres) so that coordinate calculations can run over large
+ * surveys without walking the series tree or creating objects per leg.
+ *
+ * Station coordinates are held in the network once calculated by a
+ * {@link NetworkAdjustment}.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SurveyNetwork {
+	/** Leg flag for legs on the surface */
+	public static final int FLAG_SURFACE = 1;
+	/** Leg flag for legs which duplicate other survey legs */
+	public static final int FLAG_DUPLICATE = 2;
+	/** Leg flag for diving legs where the vertical component came from depth gauge readings */
+	public static final int FLAG_DIVING = 4;
+	/** Leg flag for splay shots */
+	public static final int FLAG_SPLAY = 8;
+
+	// Minimum leg variance so that zero length legs do not produce infinite weights
+	private static final double MIN_LEG_VARIANCE = 0.01;
+
+	// Stations
+	private int stationCount;
+	private String[] stationNames = new String[16];
+	private boolean[] fixed = new boolean[16];
+	private boolean[] entrance = new boolean[16];
+	private double[] x = new double[16];
+	private double[] y = new double[16];
+	private double[] z = new double[16];
+	private Map<String, Integer> stationLookup = new HashMap<String, Integer>();
+
+	// Centreline legs
+	private int legCount;
+	private int[] legFrom = new int[16];
+	private int[] legTo = new int[16];
+	private double[] legVectors = new double[48];
+	private int[] legFlags = new int[16];
+	private int[] legSeries = new int[16];
+	private double[] legLrud = new double[64];
+
+	// Splay legs
+	private int splayCount;
+	private int[] splayFrom = new int[16];
+	private double[] splayVectors = new double[48];
+	private int[] splaySeries = new int[16];
+
+	// Series paths, indexed by the legSeries and splaySeries arrays
+	private int seriesCount;
+	private String[] seriesNames = new String[16];
+	private SurveySeries[] seriesObjects = new SurveySeries[16];
+	private int[] seriesParents = new int[16];
+
+	// Union-find parents used to merge equated stations while building
+	private int[] mergedInto = new int[16];
+
+	private boolean coordinatesCalculated = false;
+
+	/**
+	 * Builds a network from all the series in a cave survey. Stations are named
+	 * using their full dotted series path so that stations with the same name in
+	 * different series remain distinct, and series links are resolved to merge the
+	 * linked stations into a single network station.
+	 *
+	 * @param survey The cave survey to build the network from
+	 * @return The survey network
+	 */
+	public static SurveyNetwork build(CaveSurvey survey) {
+		SurveyNetwork network = new SurveyNetwork();
+		for (int seriesIdx = 0; seriesIdx < survey.size(); seriesIdx++) {
+			network.addSeries(survey.get(seriesIdx), "", -1);
+		}
+		network.compactMergedStations();
+		return network;
+	}
+
+	/**
+	 * Adds the legs, splays, fixed stations and links of a series and all its inner
+	 * series to the network
+	 */
+	private void addSeries(SurveySeries series, String parentPath, int parentIdx) {
+		String seriesPath = joinPath(parentPath, series.getSeriesName());
+		int seriesIdx = addSeriesName(seriesPath, series, parentIdx);
+
+		for (int legIdx = 0; legIdx < series.legCount(); legIdx++) {
+			SurveyLeg leg = series.getLegCorrected(legIdx);
+			if (leg.isNosurvey()) {
+				// No measurements to place the stations relative to each other
+				continue;
+			}
+			int from = addStation(seriesPath, leg.getFromStn());
+			double[] vector = legVector(leg);
+			int flags = 0;
+			if (leg.isSurface()) {
+				flags |= FLAG_SURFACE;
+			}
+			if (leg.isDuplicate()) {
+				flags |= FLAG_DUPLICATE;
+			}
+			if (leg.isDiving()) {
+				flags |= FLAG_DIVING;
+			}
+
+			if (leg.isSplay()) {
+				ensureSplayCapacity(splayCount + 1);
+				splayFrom[splayCount] = from;
+				splaySeries[splayCount] = seriesIdx;
+				System.arraycopy(vector, 0, splayVectors, splayCount * 3, 3);
+				splayCount++;
+			} else {
+				int to = addStation(seriesPath, leg.getToStn());
+				ensureLegCapacity(legCount + 1);
+				legFrom[legCount] = from;
+				legTo[legCount] = to;
+				legFlags[legCount] = flags;
+				legSeries[legCount] = seriesIdx;
+				System.arraycopy(vector, 0, legVectors, legCount * 3, 3);
+				legLrud[legCount * 4] = leg.getLeft(LengthUnit.Metres);
+				legLrud[legCount * 4 + 1] = leg.getRight(LengthUnit.Metres);
+				legLrud[legCount * 4 + 2] = leg.getUp(LengthUnit.Metres);
+				legLrud[legCount * 4 + 3] = leg.getDown(LengthUnit.Metres);
+				legCount++;
+			}
+		}
+
+		// Recurse into inner series before resolving links, as links refer to them
+		List<SurveySeries> innerSeries = series.getInnerSeriesList();
+		for (int innerIdx = 0; innerIdx < innerSeries.size(); innerIdx++) {
+			addSeries(innerSeries.get(innerIdx), seriesPath, seriesIdx);
+		}
+
+		List<SeriesLink> links = series.getLinks();
+		for (int linkIdx = 0; linkIdx < links.size(); linkIdx++) {
+			SeriesLink link = links.get(linkIdx);
+			int stn1 = addStation(joinPath(seriesPath, link.getSeries1()), link.getStn1());
+			int stn2 = addStation(joinPath(seriesPath, link.getSeries2()), link.getStn2());
+			mergeStations(stn1, stn2);
+		}
+	}
+
+	/**
+	 * Calculates the easting, northing and vertical components of a calibration
+	 * corrected leg in metres
+	 */
+	private static double[] legVector(SurveyLeg leg) {
+		double length = leg.getLength(LengthUnit.Metres);
+		double vertical;
+		double horizontal;
+		if (leg.isDiving()) {
+			// Depth increases downwards, so vertical component is the negative depth change
+			vertical = -leg.getDepthChange(LengthUnit.Metres);
+			if (Math.abs(vertical) < length) {
+				horizontal = Math.sqrt(length * length - vertical * vertical);
+			} else {
+				horizontal = 0;
+			}
+		} else {
+			double clino = leg.getClino(GradientUnit.Degrees);
+			if (clino < -90 || clino > 90) {
+				// No valid clino reading, so treat as level
+				clino = 0;
+			}
+			vertical = length * Math.sin(Math.toRadians(clino));
+			horizontal = length * Math.cos(Math.toRadians(clino));
+		}
+
+		double[] vector = new double[3];
+		double compass = leg.getCompass(BearingUnit.Degrees);
+		if (compass >= 0 && compass <= 360) {
+			vector[0] = horizontal * Math.sin(Math.toRadians(compass));
+			vector[1] = horizontal * Math.cos(Math.toRadians(compass));
+		}
+		vector[2] = vertical;
+		return vector;
+	}
+
+	private static String joinPath(String parentPath, String name) {
+		if (parentPath.length() == 0) {
+			return name;
+		} else if (name.length() == 0) {
+			return parentPath;
+		}
+		return parentPath + "." + name;
+	}
+
+	private int addSeriesName(String seriesPath, SurveySeries series, int parentIdx) {
+		if (seriesCount == seriesNames.length) {
+			seriesNames = Arrays.copyOf(seriesNames, seriesCount * 2);
+			seriesObjects = Arrays.copyOf(seriesObjects, seriesCount * 2);
+			seriesParents = Arrays.copyOf(seriesParents, seriesCount * 2);
+		}
+		seriesNames[seriesCount] = seriesPath;
+		seriesObjects[seriesCount] = series;
+		seriesParents[seriesCount] = parentIdx;
+		return seriesCount++;
+	}
+
+	/**
+	 * Looks up the index of a station, adding it to the network if not already
+	 * present. Fixed station positions and entrance flags are recorded from the
+	 * first station object found with them set.
+	 */
+	private int addStation(String seriesPath, SurveyStation stn) {
+		String fullName = joinPath(seriesPath, stn.getName());
+		Integer existing = stationLookup.get(fullName);
+		int idx;
+		if (existing != null) {
+			idx = existing.intValue();
+		} else {
+			idx = stationCount;
+			ensureStationCapacity(stationCount + 1);
+			stationNames[idx] = fullName;
+			mergedInto[idx] = idx;
+			stationLookup.put(fullName, idx);
+			stationCount++;
+		}
+		if (stn.isFixed() && fixed[idx] == false) {
+			fixed[idx] = true;
+			x[idx] = stn.getEasting();
+			y[idx] = stn.getNorthing();
+			z[idx] = stn.getAltitude();
+		}
+		if (stn.isEntrance()) {
+			entrance[idx] = true;
+		}
+		return idx;
+	}
+
+	private int findRoot(int stn) {
+		while (mergedInto[stn] != stn) {
+			mergedInto[stn] = mergedInto[mergedInto[stn]];
+			stn = mergedInto[stn];
+		}
+		return stn;
+	}
+
+	private void mergeStations(int stn1, int stn2) {
+		int root1 = findRoot(stn1);
+		int root2 = findRoot(stn2);
+		if (root1 != root2) {
+			// Keep the earliest station as the representative so names are stable
+			if (root2 < root1) {
+				int tmp = root1;
+				root1 = root2;
+				root2 = tmp;
+			}
+			mergedInto[root2] = root1;
+		}
+	}
+
+	/**
+	 * Renumbers the stations so that each group of equated stations is represented
+	 * by a single station index, and updates all leg and splay references to use
+	 * the new indices. Alternative names for merged stations remain available
+	 * through {@link #findStation(String)}.
+	 */
+	private void compactMergedStations() {
+		int[] newIndex = new int[stationCount];
+		int newCount = 0;
+		for (int stn = 0; stn < stationCount; stn++) {
+			int root = findRoot(stn);
+			if (root == stn) {
+				newIndex[stn] = newCount;
+				stationNames[newCount] = stationNames[stn];
+				fixed[newCount] = fixed[stn];
+				entrance[newCount] = entrance[stn];
+				x[newCount] = x[stn];
+				y[newCount] = y[stn];
+				z[newCount] = z[stn];
+				newCount++;
+			} else {
+				// Merged stations always point to an earlier root, which is already renumbered
+				int target = newIndex[root];
+				newIndex[stn] = target;
+				if (fixed[stn] && fixed[target] == false) {
+					fixed[target] = true;
+					x[target] = x[stn];
+					y[target] = y[stn];
+					z[target] = z[stn];
+				}
+				entrance[target] |= entrance[stn];
+			}
+		}
+		for (int leg = 0; leg < legCount; leg++) {
+			legFrom[leg] = newIndex[legFrom[leg]];
+			legTo[leg] = newIndex[legTo[leg]];
+		}
+		for (int splay = 0; splay < splayCount; splay++) {
+			splayFrom[splay] = newIndex[splayFrom[splay]];
+		}
+		for (Map.Entry<String, Integer> entry : stationLookup.entrySet()) {
+			entry.setValue(newIndex[entry.getValue().intValue()]);
+		}
+		stationCount = newCount;
+		mergedInto = null;
+	}
+
+	private void ensureStationCapacity(int size) {
+		if (size > stationNames.length) {
+			int newSize = Math.max(size, stationNames.length * 2);
+			stationNames = Arrays.copyOf(stationNames, newSize);
+			fixed = Arrays.copyOf(fixed, newSize);
+			entrance = Arrays.copyOf(entrance, newSize);
+			x = Arrays.copyOf(x, newSize);
+			y = Arrays.copyOf(y, newSize);
+			z = Arrays.copyOf(z, newSize);
+			mergedInto = Arrays.copyOf(mergedInto, newSize);
+		}
+	}
+
+	private void ensureLegCapacity(int size) {
+		if (size > legFrom.length) {
+			int newSize = Math.max(size, legFrom.length * 2);
+			legFrom = Arrays.copyOf(legFrom, newSize);
+			legTo = Arrays.copyOf(legTo, newSize);
+			legFlags = Arrays.copyOf(legFlags, newSize);
+			legSeries = Arrays.copyOf(legSeries, newSize);
+			legVectors = Arrays.copyOf(legVectors, newSize * 3);
+			legLrud = Arrays.copyOf(legLrud, newSize * 4);
+		}
+	}
+
+	private void ensureSplayCapacity(int size) {
+		if (size > splayFrom.length) {
+			int newSize = Math.max(size, splayFrom.length * 2);
+			splayFrom = Arrays.copyOf(splayFrom, newSize);
+			splaySeries = Arrays.copyOf(splaySeries, newSize);
+			splayVectors = Arrays.copyOf(splayVectors, newSize * 3);
+		}
+	}
+
+	/**
+	 * Looks up a station by its full dotted name (series path and station name).
+	 * Any of the names of a set of equated stations will find the shared station.
+	 *
+	 * @param fullName Full name of station, e.g. "cave.series1.3"
+	 * @return Index of the station, or -1 if no station has this name
+	 */
+	public int findStation(String fullName) {
+		Integer idx = stationLookup.get(fullName);
+		if (idx == null) {
+			return -1;
+		}
+		return idx.intValue();
+	}
+
+	public int getStationCount() {
+		return stationCount;
+	}
+
+	public String getStationName(int stn) {
+		return stationNames[stn];
+	}
+
+	public boolean isFixed(int stn) {
+		return fixed[stn];
+	}
+
+	public boolean isEntrance(int stn) {
+		return entrance[stn];
+	}
+
+	public double getX(int stn) {
+		return x[stn];
+	}
+
+	public double getY(int stn) {
+		return y[stn];
+	}
+
+	public double getZ(int stn) {
+		return z[stn];
+	}
+
+	/**
+	 * Sets the calculated position of a station
+	 *
+	 * @param stn     Index of station
+	 * @param easting Easting of station in metres
+	 * @param northing Northing of station in metres
+	 * @param altitude Altitude of station in metres
+	 */
+	public void setPosition(int stn, double easting, double northing, double altitude) {
+		x[stn] = easting;
+		y[stn] = northing;
+		z[stn] = altitude;
+	}
+
+	/**
+	 * @return True once a network adjustment has calculated the station coordinates
+	 */
+	public boolean isCoordinatesCalculated() {
+		return coordinatesCalculated;
+	}
+
+	void setCoordinatesCalculated(boolean coordinatesCalculated) {
+		this.coordinatesCalculated = coordinatesCalculated;
+	}
+
+	public int getLegCount() {
+		return legCount;
+	}
+
+	public int getLegFrom(int leg) {
+		return legFrom[leg];
+	}
+
+	public int getLegTo(int leg) {
+		return legTo[leg];
+	}
+
+	public double getLegDx(int leg) {
+		return legVectors[leg * 3];
+	}
+
+	public double getLegDy(int leg) {
+		return legVectors[leg * 3 + 1];
+	}
+
+	public double getLegDz(int leg) {
+		return legVectors[leg * 3 + 2];
+	}
+
+	/**
+	 * Gets the variance used to weight a leg when distributing loop misclosures.
+	 * This is proportional to the length of the leg.
+	 *
+	 * @param leg Index of leg
+	 * @return Variance of the leg
+	 */
+	public double getLegVariance(int leg) {
+		double dx = legVectors[leg * 3];
+		double dy = legVectors[leg * 3 + 1];
+		double dz = legVectors[leg * 3 + 2];
+		return Math.max(Math.sqrt(dx * dx + dy * dy + dz * dz), MIN_LEG_VARIANCE);
+	}
+
+	public int getLegFlags(int leg) {
+		return legFlags[leg];
+	}
+
+	/**
+	 * @param leg Index of leg
+	 * @return Index of the series path the leg belongs to
+	 */
+	public int getLegSeries(int leg) {
+		return legSeries[leg];
+	}
+
+	/**
+	 * Gets the passage dimensions recorded at the from station of a leg
+	 *
+	 * @param leg       Index of leg
+	 * @param dimension 0 = left, 1 = right, 2 = up, 3 = down
+	 * @return Passage dimension in metres
+	 */
+	public double getLegLrud(int leg, int dimension) {
+		return legLrud[leg * 4 + dimension];
+	}
+
+	public int getSplayCount() {
+		return splayCount;
+	}
+
+	public int getSplayFrom(int splay) {
+		return splayFrom[splay];
+	}
+
+	public double getSplayDx(int splay) {
+		return splayVectors[splay * 3];
+	}
+
+	public double getSplayDy(int splay) {
+		return splayVectors[splay * 3 + 1];
+	}
+
+	public double getSplayDz(int splay) {
+		return splayVectors[splay * 3 + 2];
+	}
+
+	public int getSplaySeries(int splay) {
+		return splaySeries[splay];
+	}
+
+	public int getSeriesCount() {
+		return seriesCount;
+	}
+
+	/**
+	 * @param series Index of series
+	 * @return Full dotted path of the series
+	 */
+	public String getSeriesName(int series) {
+		return seriesNames[series];
+	}
+
+	/**
+	 * @param series Index of series
+	 * @return The series in the cave survey which the network was built from
+	 */
+	public SurveySeries getSeries(int series) {
+		return seriesObjects[series];
+	}
+
+	/**
+	 * Series are indexed in the order they are found walking down the series tree, so a
+	 * series always has a higher index than the series containing it.
+	 *
+	 * @param series Index of series
+	 * @return Index of the series containing this series, or -1 for a top level series
+	 */
+	public int getSeriesParent(int series) {
+		return seriesParents[series];
+	}
+
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveySeries;
+
+/**
+ * Summary statistics for a cave survey: surveyed lengths, leg counts, the extent of the survey
+ * and its depth range, for the whole survey, for each series and for each survey date.
+ *
+ * Everything is calculated together from a {@link SurveyNetwork} of the survey, with station
+ * positions from a {@link NetworkAdjustment}, in a single pass over the legs and splays followed
+ * by a pass over the series to add the totals of inner series to the series containing them.
+ * The survey length excludes splays, duplicate legs and surface legs, which are totalled
+ * separately, in the same way as Survex reports survey length. Lengths use the calibration
+ * corrected measurements.
+ *
+ * Statistics are usually obtained from {@link CaveSurvey#getStatistics()}, which holds on to
+ * them until the survey is changed.
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SurveyStatistics {
+
+	/**
+	 * Totals for a set of legs: a series, a survey date or the whole survey
+	 */
+	public static class Totals {
+		private int legCount;
+		private int splayCount;
+		private int duplicateCount;
+		private int surfaceCount;
+		private double length;
+		private double horizontalLength;
+		private double verticalLength;
+		private double duplicateLength;
+		private double surfaceLength;
+		private double[] min = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+		private double[] max = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+
+		private void addLeg(int flags, double dx, double dy, double dz) {
+			double legLength = Math.sqrt(dx * dx + dy * dy + dz * dz);
+			legCount++;
+			if ((flags & SurveyNetwork.FLAG_DUPLICATE) != 0) {
+				duplicateCount++;
+				duplicateLength += legLength;
+			} else if ((flags & SurveyNetwork.FLAG_SURFACE) != 0) {
+				surfaceCount++;
+				surfaceLength += legLength;
+			} else {
+				length += legLength;
+				horizontalLength += Math.sqrt(dx * dx + dy * dy);
+				verticalLength += Math.abs(dz);
+			}
+		}
+
+		private void addPosition(double x, double y, double z) {
+			min[0] = Math.min(min[0], x);
+			min[1] = Math.min(min[1], y);
+			min[2] = Math.min(min[2], z);
+			max[0] = Math.max(max[0], x);
+			max[1] = Math.max(max[1], y);
+			max[2] = Math.max(max[2], z);
+		}
+
+		private void add(Totals other) {
+			legCount += other.legCount;
+			splayCount += other.splayCount;
+			duplicateCount += other.duplicateCount;
+			surfaceCount += other.surfaceCount;
+			length += other.length;
+			horizontalLength += other.horizontalLength;
+			verticalLength += other.verticalLength;
+			duplicateLength += other.duplicateLength;
+			surfaceLength += other.surfaceLength;
+			if (other.hasExtent()) {
+				addPosition(other.min[0], other.min[1], other.min[2]);
+				addPosition(other.max[0], other.max[1], other.max[2]);
+			}
+		}
+
+		/**
+		 * @return Number of centreline legs, including duplicate and surface legs
+		 */
+		public int getLegCount() {
+			return legCount;
+		}
+
+		public int getSplayCount() {
+			return splayCount;
+		}
+
+		public int getDuplicateCount() {
+			return duplicateCount;
+		}
+
+		public int getSurfaceCount() {
+			return surfaceCount;
+		}
+
+		/**
+		 * @return Total length in metres of the centreline legs, excluding duplicate and surface legs
+		 */
+		public double getLength() {
+			return length;
+		}
+
+		/**
+		 * @return Total horizontal length in metres of the legs included in the length
+		 */
+		public double getHorizontalLength() {
+			return horizontalLength;
+		}
+
+		/**
+		 * @return Total vertical length in metres of the legs included in the length
+		 */
+		public double getVerticalLength() {
+			return verticalLength;
+		}
+
+		/**
+		 * @return Total length in metres of the duplicate legs
+		 */
+		public double getDuplicateLength() {
+			return duplicateLength;
+		}
+
+		/**
+		 * @return Total length in metres of the surface legs
+		 */
+		public double getSurfaceLength() {
+			return surfaceLength;
+		}
+
+		/**
+		 * @return True if there are any stations, so the extent and depth range are known
+		 */
+		public boolean hasExtent() {
+			return min[0] <= max[0];
+		}
+
+		/**
+		 * @return Minimum easting, northing and altitude of the stations, which should not be changed
+		 */
+		public double[] getMin() {
+			return min;
+		}
+
+		/**
+		 * @return Maximum easting, northing and altitude of the stations, which should not be changed
+		 */
+		public double[] getMax() {
+			return max;
+		}
+
+		/**
+		 * @return Difference in altitude in metres between the highest and lowest stations
+		 */
+		public double getDepthRange() {
+			return hasExtent() ? max[2] - min[2] : 0.0;
+		}
+	}
+
+	private final int stationCount;
+	private final int seriesCount;
+	private final Totals surveyTotals = new Totals();
+	private final Map<SurveySeries, Totals> seriesTotals = new IdentityHashMap<SurveySeries, Totals>();
+	private final SortedMap<Date, Totals> dateTotals = new TreeMap<Date, Totals>();
+	private final Totals undatedTotals = new Totals();
+
+	private SurveyStatistics(SurveyNetwork network) {
+		super();
+		stationCount = network.getStationCount();
+		seriesCount = network.getSeriesCount();
+		aggregate(network);
+	}
+
+	/**
+	 * Calculates the statistics for a cave survey. This builds and adjusts a survey network, so
+	 * use {@link CaveSurvey#getStatistics()} to avoid calculating them again for an unchanged
+	 * survey.
+	 *
+	 * @param survey The cave survey
+	 * @return Statistics for the survey
+	 */
+	public static SurveyStatistics calculate(CaveSurvey survey) {
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		// Adjustment messages are reported when the survey is processed, not for statistics
+		new NetworkAdjustment(new Logger()).adjust(network);
+		return calculate(network);
+	}
+
+	/**
+	 * Calculates the statistics for a survey network
+	 *
+	 * @param network Survey network with calculated station coordinates
+	 * @return Statistics for the survey network
+	 */
+	public static SurveyStatistics calculate(SurveyNetwork network) {
+		return new SurveyStatistics(network);
+	}
+
+	private void aggregate(SurveyNetwork network) {
+		// Totals of the legs in each series, not including inner series
+		Totals[] series = new Totals[seriesCount];
+		Totals[] seriesDates = new Totals[seriesCount];
+		for (int idx = 0; idx < seriesCount; idx++) {
+			series[idx] = new Totals();
+			seriesDates[idx] = dateTotalsFor(network.getSeries(idx).getSurveyDate());
+		}
+
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			int flags = network.getLegFlags(leg);
+			double dx = network.getLegDx(leg);
+			double dy = network.getLegDy(leg);
+			double dz = network.getLegDz(leg);
+			int seriesIdx = network.getLegSeries(leg);
+			series[seriesIdx].addLeg(flags, dx, dy, dz);
+			seriesDates[seriesIdx].addLeg(flags, dx, dy, dz);
+			surveyTotals.addLeg(flags, dx, dy, dz);
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			series[seriesIdx].addPosition(network.getX(from), network.getY(from), network.getZ(from));
+			series[seriesIdx].addPosition(network.getX(to), network.getY(to), network.getZ(to));
+			seriesDates[seriesIdx].addPosition(network.getX(from), network.getY(from), network.getZ(from));
+			seriesDates[seriesIdx].addPosition(network.getX(to), network.getY(to), network.getZ(to));
+		}
+		for (int splay = 0; splay < network.getSplayCount(); splay++) {
+			int seriesIdx = network.getSplaySeries(splay);
+			series[seriesIdx].splayCount++;
+			seriesDates[seriesIdx].splayCount++;
+			surveyTotals.splayCount++;
+		}
+		for (int stn = 0; stn < stationCount; stn++) {
+			surveyTotals.addPosition(network.getX(stn), network.getY(stn), network.getZ(stn));
+		}
+
+		// Inner series always come after the series containing them, so working backwards adds
+		// each series to its parent after all its own inner series have been added to it
+		for (int idx = seriesCount - 1; idx >= 0; idx--) {
+			int parent = network.getSeriesParent(idx);
+			if (parent >= 0) {
+				series[parent].add(series[idx]);
+			}
+			Totals existing = seriesTotals.put(network.getSeries(idx), series[idx]);
+			if (existing != null) {
+				// The same series object appears more than once in the survey
+				series[idx].add(existing);
+			}
+		}
+	}
+
+	/**
+	 * Gets the totals for the day of a survey date, creating them if not found
+	 */
+	private Totals dateTotalsFor(Date date) {
+		if (date == null) {
+			return undatedTotals;
+		}
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(date);
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		Date day = cal.getTime();
+		Totals totals = dateTotals.get(day);
+		if (totals == null) {
+			totals = new Totals();
+			dateTotals.put(day, totals);
+		}
+		return totals;
+	}
+
+	/**
+	 * @return Number of stations in the survey, counting equated stations once
+	 */
+	public int getStationCount() {
+		return stationCount;
+	}
+
+	/**
+	 * @return Number of series in the survey, including all inner series
+	 */
+	public int getSeriesCount() {
+		return seriesCount;
+	}
+
+	/**
+	 * @return Totals for the whole survey
+	 */
+	public Totals getSurveyTotals() {
+		return surveyTotals;
+	}
+
+	/**
+	 * @param series A series in the survey
+	 * @return Totals for the legs in the series and all its inner series, or null if the series
+	 *         was not in the survey when the statistics were calculated
+	 */
+	public Totals getSeriesTotals(SurveySeries series) {
+		return seriesTotals.get(series);
+	}
+
+	/**
+	 * @return Totals for the legs in series with each survey date, in date order. Inner series
+	 *         are included under their own date rather than the date of the series containing them.
+	 */
+	public SortedMap<Date, Totals> getDateTotals() {
+		return Collections.unmodifiableSortedMap(dateTotals);
+	}
+
+	/**
+	 * @return Totals for the legs in series with no survey date
+	 */
+	public Totals getUndatedTotals() {
+		return undatedTotals;
+	}
+
+}
@@ -39,12 +39,14 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.TimeZone;
 
+import footleg.cavesurvey.converter.CaveConverter;
 import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
 import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
 import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
 import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
 import footleg.cavesurvey.converter.CaveConverter.SurveyDataOutputFormats;
 import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.converter.SurveyStatisticsReport;
 import footleg.cavesurvey.data.model.CaveSurvey;
 import footleg.cavesurvey.data.model.Equate;
 import footleg.cavesurvey.data.model.SurveyLeg;
@@ -66,6 +68,8 @@ public final class UtilityFunctions {
 	private static final char pocketTopoFormat = 'p';
 	private static final char survexFormat = 's';
 	private static final char toporobotFormat = 't';
+	private static final char survex3dFormat = '3';
+	private static final char therionFormat = 'h';
 
 	public static final String POCKETTOPO_DATE_FORMAT = "yyyy/MM/dd";
 	public static final String SURVEXDATE_FORMAT = "yyyy.MM.dd";
@@ -93,6 +97,9 @@ public final class UtilityFunctions {
 		case survexFormat:
 			format = SurveyDataInputFormats.Survex;
 			break;
+		case therionFormat:
+			format = SurveyDataInputFormats.Therion;
+			break;
 		default:
 			//Error: Unknown format code
 			ParseException e = new ParseException("Unknown data format letter code: " +
@@ -120,6 +127,15 @@ public final class UtilityFunctions {
 		case toporobotFormat:
 			format = SurveyDataOutputFormats.Toporobot;
 			break;
+		case survex3dFormat:
+			format = SurveyDataOutputFormats.Survex3d;
+			break;
+		case compassFormat:
+			format = SurveyDataOutputFormats.Compass;
+			break;
+		case therionFormat:
+			format = SurveyDataOutputFormats.Therion;
+			break;
 		default:
 			//Error: Unknown format code
 			ParseException e = new ParseException("Unknown data format letter code: " +
@@ -576,15 +592,30 @@ public final class UtilityFunctions {
 	}
 	
 	public static void logSurveyDebugData( CaveSurvey allSeries, Logger logger ) {
-		//Debug dump
-		logger.logMessage("============================ Cave Survey Data Summary ============================");
-		logger.logMessage("Survey contains " + allSeries.size() + " top level series.");
+		//Debug dump, skipped entirely unless debug messages are logged
+		if ( logger.isLevelEnabled( Logger.Level.DEBUG ) == false ) {
+			return;
+		}
+		logger.log( Logger.Level.DEBUG, "============================ Cave Survey Data Summary ============================");
+		logger.log( Logger.Level.DEBUG, "Survey contains " + allSeries.size() + " top level series.");
+		//Statistics are cached in the survey, so are not calculated again when reported later
+		SurveyStatistics stats = null;
+		try {
+			stats = allSeries.getStatistics();
+			for ( String line : SurveyStatisticsReport.describe( stats.getSurveyTotals() ) ) {
+				logger.log( Logger.Level.DEBUG, line );
+			}
+		}
+		catch ( RuntimeException e ) {
+			logger.log( Logger.Level.DEBUG, "Unable to calculate survey statistics: " + e.getMessage() );
+		}
 		for (int i = 0; i < allSeries.size(); i++ ) {
-			logSurveySeriesSummary( allSeries.get(i), "", logger );
+			logSurveySeriesSummary( allSeries.get(i), "", stats, logger );
 		}
 	}
 	
-	private static void logSurveySeriesSummary( SurveySeries series, String seriesParent, Logger logger ) {
+	private static void logSurveySeriesSummary( SurveySeries series, String seriesParent, SurveyStatistics stats, 
+			Logger logger ) {
 		String fullSeriesPath = seriesParent + series.getSeriesName();
 		String message = "Series: " + fullSeriesPath;
 		if ( series.legCount() > 0 ) {
@@ -593,13 +624,103 @@ public final class UtilityFunctions {
 		if ( series.innerSeriesCount() > 0 ) {
 			message += " (contains " + series.innerSeriesCount() + " child series)";
 		}
-		logger.logMessage( message );
+		if ( stats != null && stats.getSeriesTotals( series ) != null ) {
+			message += " length " + CaveConverter.padNumber( stats.getSeriesTotals( series ).getLength(), 2, 0 ) + "m";
+		}
+		logger.log( Logger.Level.DEBUG, message );
 		//Recursively log details of inner series
 		for (int i = 0; i < series.innerSeriesCount(); i++ ) {
-			logSurveySeriesSummary( series.getInnerSeries(i), fullSeriesPath + "/", logger );
+			logSurveySeriesSummary( series.getInnerSeries(i), fullSeriesPath + "/", stats, logger );
 		}
 	}
 	
+	/**
+	 * Commands in multi-file survey data which include the data from another file, with the
+	 * comment character and default file name extension for the format
+	 */
+	public static enum IncludeSyntax {
+		Survex( ';', "svx", "*include" ),
+		Therion( '#', "th", "input", "source" );
+
+		private final char commentChar;
+		private final String extension;
+		private final String[] commands;
+
+		IncludeSyntax( char commentChar, String extension, String... commands ) {
+			this.commentChar = commentChar;
+			this.extension = extension;
+			this.commands = commands;
+		}
+
+		/**
+		 * Gets the path of the file included by a line of survey data
+		 * 
+		 * @param  line Line of survey data
+		 * @return Path to the included file as given in the line, or null if the line is not an 
+		 *         include command naming a file
+		 */
+		public String includedPath( String line ) {
+			String trimmed = line.trim();
+			String lowerCase = trimmed.toLowerCase();
+			for ( String command : commands ) {
+				if ( lowerCase.startsWith( command ) ) {
+					if ( trimmed.length() > command.length() && Character.isWhitespace( trimmed.charAt( command.length() ) ) == false
+							&& trimmed.charAt( command.length() ) != '"' ) {
+						//Longer keyword starting with the command
+						continue;
+					}
+					//Take all characters after the command up to comment char or line end
+					String path = trimmed.substring( command.length() );
+					int commentPos = path.indexOf( commentChar );
+					if ( commentPos >= 0 ) {
+						path = path.substring( 0, commentPos );
+					}
+					path = path.trim();
+					//Check for quotes around path and remove them if found
+					if ( path.length() > 1 && path.charAt(0) == '"' && path.charAt( path.length() - 1 ) == '"' ) {
+						path = path.substring( 1, path.length() - 1 );
+					}
+					if ( path.length() > 0 ) {
+						return path;
+					}
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Finds an included file relative to the file including it, adding the default file 
+		 * name extension for the format if the file is not found without it
+		 */
+		private File includedFile( File inputFile, String path ) {
+			boolean extPresent = (path.lastIndexOf('.') >= 0) 
+					&& path.substring( path.lastIndexOf('.') ).toLowerCase().equals( "." + extension );
+			String nextFilePath = folderFromFile( inputFile );
+			File nextFile = new File( nextFilePath + File.separatorChar + path );
+			if ( extPresent == false && nextFile.exists() == false ) {
+				//Include statement potentially needs file extension adding, try lower case first
+				nextFile = new File( nextFilePath + File.separatorChar + path + "." + extension );
+				if ( nextFile.exists() == false ) {
+					//Still not found, try upper case first
+					nextFile = new File( nextFilePath + File.separatorChar + path + "." + extension.toUpperCase() );
+				}
+			}
+			return nextFile;
+		}
+	}
+
+	/**
+	 * Receives the lines of a text file one at a time as the file is read
+	 */
+	public interface TextLineHandler {
+		/**
+		 * @param  line Line of text from the file
+		 * @param  lineRef The file path and line number of the line, separated by a colon
+		 * @throws ParseException If the line could not be processed, which stops the file being read
+		 */
+		void handleLine( String line, String lineRef ) throws ParseException;
+	}
+
 	/**
 	 * Reads a text file and builds an ArrayList of strings, one for each line 
 	 * of the file. If the multi-file option is set then file lines will be checked
@@ -616,7 +737,81 @@ public final class UtilityFunctions {
 	 */
 	public static List<String> readTextFile( File inputFile, String characterSetEncoding, 
 			boolean multiFile,  List<String> multifileLineRefs, Logger logger ) {
+		return readTextFile( inputFile, characterSetEncoding, multiFile, multifileLineRefs, null, logger );
+	}
+
+	/**
+	 * Reads a text file as {@link #readTextFile(File, String, boolean, List, Logger)} does, and also 
+	 * records every file which was read, including all the files pulled in by include statements.
+	 *
+	 * @param  inputFile File to be read
+	 * @param  characterSetEncoding Character set encoding to use when reading the text file
+	 * @param  multiFile If set to true then file lines are checked for includes for other files to be inserted
+	 * @param  multifileLineRefs Used to output an ArrayList of strings indicating the original file and line 
+	 *             number for each data line in the output data. Requires an empty list to be passed in.
+	 * @param  filesRead List which each file read is added to, in the order they were opened (may be null)
+	 * @param  logger Logging class to output information, warning and error messages to
+	 * @return ArrayList of strings, one for each line of the input filename
+	 */
+	public static List<String> readTextFile( File inputFile, String characterSetEncoding, 
+			boolean multiFile,  List<String> multifileLineRefs, List<File> filesRead, Logger logger ) {
+		return readTextFile( inputFile, characterSetEncoding, ( multiFile ? IncludeSyntax.Survex : null ), 
+				multifileLineRefs, filesRead, logger );
+	}
+
+	/**
+	 * Reads a text file as {@link #readTextFile(File, String, boolean, List, List, Logger)} does, 
+	 * following the include commands of a survey data format.
+	 *
+	 * @param  inputFile File to be read
+	 * @param  characterSetEncoding Character set encoding to use when reading the text file
+	 * @param  includeSyntax Include commands to insert the contents of other files for, or null to
+	 *             read the file on its own
+	 * @param  multifileLineRefs Used to output an ArrayList of strings indicating the original file and line 
+	 *             number for each data line in the output data when following includes. Requires an empty 
+	 *             list to be passed in.
+	 * @param  filesRead List which each file read is added to, in the order they were opened (may be null)
+	 * @param  logger Logging class to output information, warning and error messages to
+	 * @return ArrayList of strings, one for each line of the input filename
+	 */
+	public static List<String> readTextFile( File inputFile, String characterSetEncoding, 
+			IncludeSyntax includeSyntax,  List<String> multifileLineRefs, List<File> filesRead, Logger logger ) {
 		List<String> dataLines = new ArrayList<String>();
+		try {
+			readTextFile( inputFile, characterSetEncoding, includeSyntax, ( line, lineRef ) -> {
+				dataLines.add( line );
+				if ( includeSyntax != null ) {
+					multifileLineRefs.add( lineRef );
+				}
+			}, filesRead, logger );
+		}
+		catch ( ParseException e ) {
+			//Lines are only added to lists here, so no parse errors are raised
+			throw new IllegalStateException( e );
+		}
+		return dataLines;
+	}
+
+	/**
+	 * Reads a text file one line at a time, passing each line to a handler as it is read rather than
+	 * holding the file contents in memory. If an include syntax is given then the lines of each included
+	 * file are passed to the handler in place of the include command line, so a whole multi-file project
+	 * is read in a single pass in the order it is defined.
+	 *
+	 * @param  inputFile File to be read
+	 * @param  characterSetEncoding Character set encoding to use when reading the text file
+	 * @param  includeSyntax Include commands to read the contents of other files for, or null to read
+	 *             the file on its own
+	 * @param  handler Handler to pass each line to, with the file and line number it came from
+	 * @param  filesRead List which each file read is added to, in the order they were opened (may be null)
+	 * @param  logger Logging class to output information, warning and error messages to
+	 * @throws ParseException If the handler could not process a line
+	 */
+	public static void readTextFile( File inputFile, String characterSetEncoding, IncludeSyntax includeSyntax,
+			TextLineHandler handler, List<File> filesRead, Logger logger ) throws ParseException {
+		if ( filesRead != null ) {
+			filesRead.add( inputFile );
+		}
 
 		BufferedReader bufferedReader = null;
 
@@ -629,53 +824,18 @@ public final class UtilityFunctions {
 			int lineNo = 0;
 			while ( ( text = bufferedReader.readLine() ) != null) {
 				lineNo++;
-				boolean addLine = true;
-				
-				if ( multiFile ) {
-					//Check line for include statement
-					String line = text.trim();
-					if ( line.toLowerCase().startsWith( "*include" ) ) {
-						//Extract path to include file
-						String pathAddn = "";
-						for ( int i = 8; i < line.length(); i++ ) {
-							//Take all characters after *include up to comment char or line end
-							if ( line.charAt(i) == ';' ) {
-								break;
-							}
-							else {
-								pathAddn += line.charAt(i);
-							}
-						}
-						pathAddn = pathAddn.trim();
-						//Check for quotes around pathAddn and remove them if found
-						if ( pathAddn.charAt(0) == '"' &&  pathAddn.charAt( pathAddn.length() - 1 ) == '"' ) {
-							pathAddn = pathAddn.substring(1, pathAddn.length() - 1 );
-						}
-						boolean extPresent = (pathAddn.lastIndexOf('.') >= 0) 
-								&& pathAddn.substring( pathAddn.lastIndexOf('.') ).toLowerCase().equals(".svx");
-						String nextFilePath = folderFromFile( inputFile );
-						File nextFile = new File( nextFilePath + File.separatorChar + pathAddn );
-						if ( extPresent == false && nextFile.exists() == false ) {
-							//Include statement potentially needs file extension adding, try lower case first
-							nextFile = new File( nextFilePath + File.separatorChar + pathAddn + ".svx" );
-							if ( nextFile.exists() == false ) {
-								//Still not found, try upper case first
-								nextFile = new File( nextFilePath + File.separatorChar + pathAddn + ".SVX" );
-							}
-						}
-						logger.logMessage( "Including file: " + nextFile.getPath() );
-						List<String> fileData = UtilityFunctions.readTextFile( nextFile, characterSetEncoding, multiFile,
-								multifileLineRefs, logger );
-						dataLines.addAll(fileData);
-						addLine = false;
-					}
-					else {
-						//Not an include line in a multifile read, so store line ref
-						multifileLineRefs.add( inputFile.getPath() + ":" + lineNo );
-					}
+				//Check line for include statement
+				String includedPath = null;
+				if ( includeSyntax != null ) {
+					includedPath = includeSyntax.includedPath( text );
 				}
-				if ( addLine ) {
-					dataLines.add( text );
+				if ( includedPath != null ) {
+					File nextFile = includeSyntax.includedFile( inputFile, includedPath );
+					logger.logMessage( "Including file: " + nextFile.getPath() );
+					readTextFile( nextFile, characterSetEncoding, includeSyntax, handler, filesRead, logger );
+				}
+				else {
+					handler.handleLine( text, inputFile.getPath() + ":" + lineNo );
 				}
 			}
 		} 
@@ -694,8 +854,6 @@ public final class UtilityFunctions {
 				}
 			}
 		}
-        
-        return dataLines;
 	}
 
 	/**
@@ -746,6 +904,38 @@ public final class UtilityFunctions {
 		return error;
 	}
 
+	/**
+	 * Write a binary file from an array of bytes.
+	 *
+	 * @param  fileContents Bytes to write to the file
+	 * @param  fileName Full path and name of file to be written
+	 * @return Error message if write failed, or empty string if success
+	 */
+	public static String writeBinaryFile (byte[] fileContents, String fileName ) {
+		String error = "";
+
+		FileOutputStream fos = null;
+		try {
+			fos = new FileOutputStream( fileName );
+			fos.write( fileContents );
+		}
+		catch (IOException ex) {
+			error = "Error writing file: " + ex.getLocalizedMessage();
+		}
+		finally {
+			if ( fos != null ) {
+				try {
+					fos.close();
+				}
+				catch (IOException ex) {
+					error = "Error closing file: " + ex.getLocalizedMessage();
+				}
+			}
+		}
+
+		return error;
+	}
+
 	/**
 	 * Checks for station in the series being built. If found then adding this leg would mean the
 	 * series looped back onto itself, which we cannot do in Toporobot format.
@@ -933,7 +1123,7 @@ public final class UtilityFunctions {
 
 		//Now loop through all the series and for each one match the start 
 		//station to a station in another series
-		logger.logMessage( "Linking series:" );
+		logger.log( Logger.Level.DEBUG, "Linking series:" );
 		for ( int searchIdx = 0; searchIdx < outputSeries.innerSeriesCount(); searchIdx++ ) {
 			SurveySeries seriesToLink = outputSeries.getInnerSeries(searchIdx);
 
@@ -944,8 +1134,9 @@ public final class UtilityFunctions {
 			//Check all the other series for station matching the start station for this series
 			int matchingIdx = findStationMatchingIdInInnerSeries(firstStn.getId(), searchIdx, outputSeries);
 			if ( matchingIdx > -1 ){
-				logger.logMessage( "Series: " + outputSeries.getInnerSeries(searchIdx).getSeriesName() +
-						" start stn linked to " + outputSeries.getInnerSeries(matchingIdx).getSeriesName() );
+				final SurveySeries linkedSeries = outputSeries.getInnerSeries(matchingIdx);
+				logger.logDebug( () -> "Series: " + seriesToLink.getSeriesName() +
+						" start stn linked to " + linkedSeries.getSeriesName() );
 				//Found match, so add link to parent series
 				outputSeries.addLink(outputSeries.getInnerSeries(searchIdx).getSeriesName(), firstStn, 
 						outputSeries.getInnerSeries(matchingIdx).getSeriesName(), firstStn);
@@ -962,8 +1153,9 @@ public final class UtilityFunctions {
 				//No links to start of this series, so check if end station matches
 				matchingIdx = findStationMatchingIdInInnerSeries(endStn.getId(), searchIdx, outputSeries);
 				if ( matchingIdx > -1 ){
-					logger.logMessage( "Series: " + outputSeries.getInnerSeries(searchIdx).getSeriesName() +
-							" end stn linked to " + outputSeries.getInnerSeries(matchingIdx).getSeriesName() );
+					final SurveySeries linkedSeries = outputSeries.getInnerSeries(matchingIdx);
+					logger.logDebug( () -> "Series: " + seriesToLink.getSeriesName() +
+							" end stn linked to " + linkedSeries.getSeriesName() );
 					//Found match, so need to reverse this series and add a link for it
 //No need to reverse as we now support end links					outputSeries.getInnerSeries(searchIdx).reverseSeries();
 					outputSeries.addLink(outputSeries.getInnerSeries(searchIdx).getSeriesName(), endStn, 
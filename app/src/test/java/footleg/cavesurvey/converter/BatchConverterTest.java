@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CaveConverter.SurveyDataOutputFormats;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.converter.BatchConverter}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class BatchConverterTest {
+
+	private File createArchive() throws IOException {
+		File folder = Files.createTempDirectory("ccbatch").toFile();
+		File caves = new File(folder, "caves");
+		new File(caves, "north").mkdirs();
+		writeSurvex(new File(caves, "top.svx"), "top");
+		writeSurvex(new File(caves, "north/deep.svx"), "deep");
+		// A file with an extension which is not a survey format
+		Files.write(new File(caves, "north/notes.xyz").toPath(), Arrays.asList("not survey data"));
+		return folder;
+	}
+
+	private void writeSurvex(File file, String name) throws IOException {
+		Files.write(file.toPath(), Arrays.asList("*begin " + name, "1 2 5.0 90 0", "2 3 4.0 180 -10",
+				"*end " + name), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testFindInputFilesWithGlob() throws IOException {
+		File folder = createArchive();
+		String base = new File(folder, "caves").getPath() + File.separator;
+
+		List<BatchConverter.InputFile> all = BatchConverter.findInputFiles(base + "**/*.svx");
+		assertEquals(2, all.size(), "Files matched at all depths");
+		List<BatchConverter.InputFile> top = BatchConverter.findInputFiles(base + "*.svx");
+		assertEquals(1, top.size(), "Files matched in base folder only");
+		assertEquals("top.svx", top.get(0).getFile().getName(), "Matched file");
+		List<BatchConverter.InputFile> single = BatchConverter.findInputFiles(base + "top.svx");
+		assertEquals(1, single.size(), "Plain file name");
+
+		BatchConverter batch = new BatchConverter(new File(folder, "out"), SurveyDataOutputFormats.Survex3d,
+				ConversionOptions.defaults(), 2, new Logger());
+		File output = batch.outputFileFor(all.get(0));
+		assertEquals(new File(new File(folder, "out"), "north" + File.separator + "deep.3d"), output,
+				"Output keeps folder structure relative to pattern base");
+	}
+
+	@Test
+	public void testBatchConversionReportsFailures() throws IOException {
+		File folder = createArchive();
+		File out = new File(folder, "out");
+		File manifest = new File(folder, "manifest.txt");
+		Files.write(manifest.toPath(), Arrays.asList("# Archive files", "caves/**/*.svx", "", "caves/north/notes.xyz"));
+
+		String[] args = { "batch", out.getPath(), "s", "threads", "2", "manifest", manifest.getPath() };
+		int status = BatchConverter.runFromCommandLine(args, new Logger());
+		assertEquals(BatchConverter.EXIT_FAILURES, status, "Exit status with a failed file");
+
+		File deep = new File(out, "north" + File.separator + "deep.svx");
+		assertTrue(deep.isFile(), "Output written in sub folder");
+		assertTrue(new File(out, "top.svx").isFile(), "Output written for top level file");
+		assertTrue(new File(deep.getPath() + BatchConverter.FILE_LOG_EXTN).isFile(), "Log written for each file");
+		List<String> deepLog = Files.readAllLines(new File(deep.getPath() + BatchConverter.FILE_LOG_EXTN).toPath());
+		for (String line : deepLog) {
+			assertFalse(line.contains("top.svx"), "Log only holds messages for its own file");
+		}
+
+		List<String> summary = Files.readAllLines(new File(out, BatchConverter.SUMMARY_FILENAME).toPath());
+		assertTrue(summary.contains("Files converted: 2 of 3"), "Summary counts conversions");
+		assertTrue(summary.contains("Files failed: 1"), "Summary counts failures");
+
+		// Converting only the valid files succeeds
+		String[] okArgs = { "batch", out.getPath(), "s", new File(folder, "caves").getPath() + "/**/*.svx" };
+		assertEquals(0, BatchConverter.runFromCommandLine(okArgs, new Logger()), "Exit status with no failures");
+	}
+
+	@Test
+	public void testClashingOutputFilesReportedAsFailures() throws IOException {
+		File folder = createArchive();
+		File caves = new File(folder, "caves");
+		// Same name as the Survex file, so would be converted to the same output file
+		Files.write(new File(caves, "top.txt").toPath(), Arrays.asList("not survey data"));
+		File out = new File(folder, "out");
+		BatchConverter batch = new BatchConverter(out, SurveyDataOutputFormats.Survex, ConversionOptions.defaults(),
+				2, new Logger());
+
+		List<BatchConverter.InputFile> inputs = BatchConverter.findInputFiles(caves.getPath() + "/**/*.svx");
+		inputs.addAll(BatchConverter.findInputFiles(caves.getPath() + "/*.txt"));
+		List<BatchConverter.Result> results = batch.convertAll(inputs);
+
+		assertEquals(3, results.size(), "Result for each input file");
+		int failures = 0;
+		for (BatchConverter.Result result : results) {
+			if (result.getInputFile().getName().startsWith("top.")) {
+				assertFalse(result.isSuccess(), "Clashing file not converted: " + result.getInputFile());
+				assertTrue(result.getFailureReason().contains("other input file"), "Clash reported");
+				failures++;
+			} else {
+				assertTrue(result.isSuccess(), "File without a clash converted");
+			}
+		}
+		assertEquals(2, failures, "Both clashing files reported");
+		assertFalse(new File(out, "top.svx").exists(), "No output written for clashing files");
+	}
+
+}
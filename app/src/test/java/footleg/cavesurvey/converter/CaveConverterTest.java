@@ -19,9 +19,19 @@
 package footleg.cavesurvey.converter;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
 
 import org.junit.jupiter.api.Test;
 
+import footleg.cavesurvey.converter.CaveConverter.CmdlineSplaysOpt;
 import footleg.cavesurvey.converter.CaveConverter.SurveyDataInputFormats;
 import footleg.cavesurvey.converter.CaveConverter.SurveyDataOutputFormats;
 
@@ -51,6 +61,9 @@ public class CaveConverterTest {
 
 		String testSurvexDisplayName = CaveConverter.getFormatName(SurveyDataInputFormats.Survex);
 		assertEquals("Survex", testSurvexDisplayName, "Test correct display name is returned for format");
+
+		String testTherionDisplayName = CaveConverter.getFormatName(SurveyDataInputFormats.Therion);
+		assertEquals("Therion", testTherionDisplayName, "Test correct display name is returned for format");
 	}
 
 	/**
@@ -64,6 +77,15 @@ public class CaveConverterTest {
 
 		String testToporobotDisplayName = CaveConverter.getFormatName(SurveyDataOutputFormats.Toporobot);
 		assertEquals("Toporobot", testToporobotDisplayName, "Test correct display name is returned for format");
+
+		String testSurvex3dDisplayName = CaveConverter.getFormatName(SurveyDataOutputFormats.Survex3d);
+		assertEquals("Survex 3d", testSurvex3dDisplayName, "Test correct display name is returned for format");
+
+		String testCompassDisplayName = CaveConverter.getFormatName(SurveyDataOutputFormats.Compass);
+		assertEquals("Compass", testCompassDisplayName, "Test correct display name is returned for format");
+
+		String testTherionDisplayName = CaveConverter.getFormatName(SurveyDataOutputFormats.Therion);
+		assertEquals("Therion", testTherionDisplayName, "Test correct display name is returned for format");
 	}
 
 	/**
@@ -124,6 +146,15 @@ public class CaveConverterTest {
 		assertEquals(SurveyDataInputFormats.Survex, testSurvexM,
 				"Test correct format is returned for Survex DAT file (mixedcase extn)");
 
+		// Therion files
+		SurveyDataInputFormats testTherion = CaveConverter.inputFormatFromFileExtn("th");
+		assertEquals(SurveyDataInputFormats.Therion, testTherion,
+				"Test correct format is returned for Therion data file");
+
+		SurveyDataInputFormats testTherionConfig = CaveConverter.inputFormatFromFileExtn("THCONFIG");
+		assertEquals(SurveyDataInputFormats.Therion, testTherionConfig,
+				"Test correct format is returned for Therion configuration file");
+
 		// Unknown
 		SurveyDataInputFormats testUnknown = CaveConverter.inputFormatFromFileExtn("xml");
 		assertEquals(null, testUnknown, "Test null returned for unsupported file extn");
@@ -218,4 +249,96 @@ public class CaveConverterTest {
 
 	}
 
+	private static final String SURVEX_DATA = "*begin cave\n1 2 5.0 90 0\n2 3 4.0 180 -10\n*end cave";
+
+	/**
+	 * Test method for
+	 * {@link footleg.cavesurvey.converter.CaveConverter#convert(java.io.Reader, SurveyDataInputFormats, java.io.Writer, SurveyDataOutputFormats, ConversionOptions)}.
+	 */
+	@Test
+	public void testConvertReaderToWriter() {
+		StringWriter output = new StringWriter();
+		ConversionOptions options = ConversionOptions.builder().splays(CmdlineSplaysOpt.None).build();
+		ConversionResult result = CaveConverter.convert(new StringReader(SURVEX_DATA), SurveyDataInputFormats.Survex,
+				output, SurveyDataOutputFormats.Survex, options);
+		assertTrue(result.isSuccess(), "Conversion succeeded");
+		assertFalse(result.hasErrors(), "No errors logged");
+		assertFalse(result.getDiagnostics(Logger.Level.INFO).isEmpty(), "Progress messages logged");
+		assertTrue(output.toString().contains("*BEGIN cave"), "Output contains series");
+
+		// Binary formats can not be written as text
+		result = CaveConverter.convert(new StringReader(SURVEX_DATA), SurveyDataInputFormats.Survex,
+				new StringWriter(), SurveyDataOutputFormats.Survex3d, options);
+		assertFalse(result.isSuccess(), "Binary format to a Writer fails");
+		assertTrue(result.getErrorMessage().contains("binary"), "Error describes problem");
+
+		// Include statements can not be followed in memory
+		result = CaveConverter.convert(new StringReader("*include other\n" + SURVEX_DATA),
+				SurveyDataInputFormats.Survex, new StringWriter(), SurveyDataOutputFormats.Survex, options);
+		assertTrue(result.isSuccess(), "Conversion succeeded without included file");
+		assertEquals(1, result.getDiagnostics(Logger.Level.ERROR).size(), "Skipped include statement reported");
+	}
+
+	/**
+	 * Test method for
+	 * {@link footleg.cavesurvey.converter.CaveConverter#convert(java.io.InputStream, SurveyDataInputFormats, java.io.OutputStream, SurveyDataOutputFormats, ConversionOptions)}.
+	 */
+	@Test
+	public void testConvertStreams() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ConversionResult result = CaveConverter.convert(
+				new ByteArrayInputStream(SURVEX_DATA.getBytes(StandardCharsets.UTF_8)), SurveyDataInputFormats.Survex,
+				output, SurveyDataOutputFormats.Survex3d, ConversionOptions.defaults());
+		assertTrue(result.isSuccess(), "Conversion succeeded");
+		assertEquals("Survex 3D Image File", new String(output.toByteArray(), 0, 20, StandardCharsets.US_ASCII),
+				"Survex 3d file header");
+
+		// Unreadable data fails with a diagnostic rather than an exception
+		ConversionOptions debug = ConversionOptions.defaults().toBuilder().logLevel(Logger.Level.DEBUG).build();
+		result = CaveConverter.convert(new ByteArrayInputStream("1 2 x 90 0".getBytes(StandardCharsets.UTF_8)),
+				SurveyDataInputFormats.Survex, new ByteArrayOutputStream(), SurveyDataOutputFormats.Survex, debug);
+		assertFalse(result.isSuccess(), "Conversion of invalid data fails");
+		assertTrue(result.hasErrors(), "Failure reported as an error");
+	}
+
+	/**
+	 * Test method for
+	 * {@link footleg.cavesurvey.converter.CaveConverter#convert(java.io.InputStream, SurveyDataInputFormats, java.io.OutputStream, SurveyDataOutputFormats, ConversionOptions)}.
+	 * Survex .3d output has cross-sections built from the splays only when the option is set.
+	 */
+	@Test
+	public void testConvertWithCrossSectionsFromSplays() {
+		String splayData = "*begin cave\n1 2 5.0 90 0\n2 3 4.0 90 0\n*flags splay\n2 2a 1.2 0 0\n"
+				+ "2 2b 1.5 180 0\n2 2c 2.0 0 80\n2 2d 0.5 0 -80\n*flags not splay\n*end cave";
+		ByteArrayOutputStream lrudOutput = new ByteArrayOutputStream();
+		ConversionResult result = CaveConverter.convert(
+				new ByteArrayInputStream(splayData.getBytes(StandardCharsets.UTF_8)), SurveyDataInputFormats.Survex,
+				lrudOutput, SurveyDataOutputFormats.Survex3d, ConversionOptions.defaults());
+		assertTrue(result.isSuccess(), "Conversion without cross-sections option succeeded");
+
+		ByteArrayOutputStream splayOutput = new ByteArrayOutputStream();
+		ConversionOptions options = ConversionOptions.builder().crossSectionsFromSplays(true).build();
+		assertTrue(options.toBuilder().build().isCrossSectionsFromSplays(), "Option kept by toBuilder");
+		result = CaveConverter.convert(new ByteArrayInputStream(splayData.getBytes(StandardCharsets.UTF_8)),
+				SurveyDataInputFormats.Survex, splayOutput, SurveyDataOutputFormats.Survex3d, options);
+		assertTrue(result.isSuccess(), "Conversion with cross-sections option succeeded");
+		// The survey has no LRUD data, so only the splays give cross-sections to write
+		assertTrue(splayOutput.size() > lrudOutput.size(), "Cross-sections written from splays");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.converter.ConversionOptions#getOutputDate()}. The output date
+	 * cannot be changed through the date passed to the builder or the date returned by the options.
+	 */
+	@Test
+	public void testConversionOptionsOutputDateCopied() {
+		Date date = new Date(1000000L);
+		ConversionOptions options = ConversionOptions.builder().outputDate(date).build();
+		date.setTime(2000000L);
+		assertEquals(1000000L, options.getOutputDate().getTime(), "Date passed to builder is copied");
+		options.getOutputDate().setTime(3000000L);
+		assertEquals(1000000L, options.getOutputDate().getTime(), "Date returned is a copy");
+		assertEquals(1000000L, options.toBuilder().build().getOutputDate().getTime(), "Date kept by toBuilder");
+	}
+
 }
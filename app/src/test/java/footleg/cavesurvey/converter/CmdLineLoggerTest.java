@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.converter.CmdLineLogger}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class CmdLineLoggerTest {
+
+	@Test
+	public void testRingBufferKeepsLatestMessages() {
+		CmdLineLogger logger = new CmdLineLogger(false, 5);
+		for (int i = 1; i <= 8; i++) {
+			logger.logMessage("Message " + i);
+		}
+		List<String> lines = logger.getLogLines();
+		assertEquals(6, lines.size(), "Dropped message note plus capacity");
+		assertEquals("(3 earlier messages were dropped from this log)", lines.get(0), "Dropped message note");
+		assertTrue(lines.get(1).endsWith(": Message 4"), "Oldest kept message");
+		assertTrue(lines.get(5).endsWith(": Message 8"), "Latest message");
+	}
+
+	@Test
+	public void testLevelFiltering() {
+		CmdLineLogger logger = new CmdLineLogger(false, 10);
+		logger.setMinimumLevel(Logger.Level.ERROR);
+		logger.logMessage("Information");
+		logger.logError("Problem");
+		List<String> lines = logger.getLogLines();
+		assertEquals(1, lines.size(), "Only errors logged");
+		assertTrue(lines.get(0).endsWith(": Problem"), "Error message");
+	}
+
+	@Test
+	public void testLazyMessagesOnlyBuiltWhenLevelEnabled() {
+		final int[] built = { 0 };
+		CmdLineLogger logger = new CmdLineLogger(false, 10);
+		logger.logDebug(() -> "Debug " + (++built[0]));
+		assertEquals(0, built[0], "Debug message not built at default level");
+		logger.logMessage(() -> "Info " + (++built[0]));
+		assertEquals(1, built[0], "Information message built");
+
+		logger.setMinimumLevel(Logger.Level.DEBUG);
+		logger.logDebug(() -> "Debug " + (++built[0]));
+		List<String> lines = logger.getLogLines();
+		assertEquals(2, lines.size(), "Messages logged");
+		assertTrue(lines.get(1).endsWith(": Debug 2"), "Debug message logged once enabled");
+
+		// The base logger discards everything, and does not build debug messages
+		new Logger().logDebug(() -> "Debug " + (++built[0]));
+		assertEquals(2, built[0], "Debug message not built for base logger");
+	}
+
+	@Test
+	public void testLoggersAreIndependent() throws InterruptedException {
+		final CmdLineLogger logger1 = new CmdLineLogger(false, 1000);
+		final CmdLineLogger logger2 = new CmdLineLogger(false, 1000);
+		logger1.logMessage("First logger");
+		logger2.logMessage("Second logger");
+		assertEquals(1, logger1.getLogLines().size(), "First logger only has its own message");
+
+		// Several threads logging to one logger do not lose messages
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 200; i++) {
+					logger2.logMessage("Message " + i);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(801, logger2.getLogLines().size(), "Messages from all threads kept");
+	}
+
+	@Test
+	public void testConsoleEchoWithSmallBuffer() {
+		// Logging more than the buffer holds waits for the console writer instead of losing messages
+		CmdLineLogger logger = new CmdLineLogger(true, 4);
+		for (int i = 0; i < 50; i++) {
+			logger.logMessage("Console message " + i);
+		}
+		logger.flush();
+		List<String> lines = logger.getLogLines();
+		assertEquals(5, lines.size(), "Dropped message note plus capacity");
+		assertTrue(lines.get(4).endsWith(": Console message 49"), "Latest message");
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.converter.ConversionServer}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class ConversionServerTest {
+	private static final String SURVEX_PAYLOAD = "*begin cave\\n1 2 5.0 90 0\\n2 3 4.0 180 -10\\n*end cave";
+
+	private String request(Object id, String outputFormat) {
+		String idJson = (id instanceof String) ? "\"" + id + "\"" : String.valueOf(id);
+		return "{\"id\":" + idJson + ",\"inputFormat\":\"s\",\"outputFormat\":\"" + outputFormat
+				+ "\",\"splays\":\"none\",\"payload\":\"" + SURVEX_PAYLOAD + "\"}";
+	}
+
+	@Test
+	public void testConvertRequest() throws ParseException {
+		ConversionServer server = new ConversionServer(1, 1);
+		Map<String, Object> response = ConversionServer.parseJsonObject(server.handleRequest(request("a1", "Survex")));
+		assertEquals("a1", response.get("id"), "Request id returned");
+		assertEquals(Boolean.TRUE, response.get("success"), "Conversion succeeded");
+		assertEquals("text", response.get("outputEncoding"), "Text output");
+		String output = (String) response.get("output");
+		assertTrue(output.contains("*BEGIN cave"), "Output contains series");
+		assertTrue(output.contains("5.00"), "Output contains leg length");
+
+		// Binary formats are returned base64 encoded
+		response = ConversionServer.parseJsonObject(server.handleRequest(request(7, "3")));
+		assertEquals("base64", response.get("outputEncoding"), "Binary output");
+		byte[] data = Base64.getDecoder().decode((String) response.get("output"));
+		assertEquals("Survex 3D Image File", new String(data, 0, 20), "Survex 3d file header");
+		server.shutdown();
+	}
+
+	@Test
+	public void testInvalidRequests() throws ParseException {
+		ConversionServer server = new ConversionServer(1, 1);
+		Map<String, Object> response = ConversionServer.parseJsonObject(server.handleRequest("{\"id\":3,"));
+		assertEquals(Boolean.FALSE, response.get("success"), "Malformed JSON fails");
+
+		response = ConversionServer.parseJsonObject(
+				server.handleRequest("{\"id\":4,\"inputFormat\":\"q\",\"outputFormat\":\"s\",\"payload\":\"\"}"));
+		assertEquals(Boolean.FALSE, response.get("success"), "Unknown format fails");
+		assertEquals("4", response.get("id").toString(), "Id returned for failed request");
+		assertTrue(((String) response.get("error")).contains("format"), "Error describes problem");
+
+		// Ids which are not a string or number are rejected rather than written back as invalid JSON
+		response = ConversionServer.parseJsonObject(server.handleRequest(request(1, "s").replace("\"id\":1", "\"id\":[\"a\",\"b\"]")));
+		assertEquals(Boolean.FALSE, response.get("success"), "Array id fails");
+		assertEquals(null, response.get("id"), "Array id not returned");
+		assertTrue(((String) response.get("error")).contains("'id'"), "Error describes id");
+		server.shutdown();
+	}
+
+	@Test
+	public void testTextPayloadCharset() throws ParseException {
+		ConversionServer server = new ConversionServer(1, 1);
+		String payload = SURVEX_PAYLOAD.replace("cave", "caf\\u00e9");
+		String request = "{\"id\":1,\"inputFormat\":\"s\",\"outputFormat\":\"Compass\",\"charset\":\"Cp1252\","
+				+ "\"payload\":\"" + payload + "\"}";
+		Map<String, Object> response = ConversionServer.parseJsonObject(server.handleRequest(request));
+		assertEquals(Boolean.TRUE, response.get("success"), "Conversion succeeded");
+		assertTrue(((String) response.get("output")).contains("COMMENT:caf\u00e9"), "Text read and written in charset");
+
+		response = ConversionServer.parseJsonObject(
+				server.handleRequest(request.replace("Cp1252", "no-such-charset")));
+		assertEquals(Boolean.FALSE, response.get("success"), "Unknown charset for text payload fails");
+		server.shutdown();
+	}
+
+	@Test
+	public void testServeSession() throws IOException, ParseException {
+		ConversionServer server = new ConversionServer(2, 0);
+		StringBuilder requests = new StringBuilder();
+		for (int i = 1; i <= 5; i++) {
+			requests.append(request(i, "s")).append('\n');
+		}
+		StringWriter out = new StringWriter();
+		server.serve(new StringReader(requests.toString()), out);
+
+		String[] responses = out.toString().split("\n");
+		assertEquals(5, responses.length, "One response per request");
+		int idSum = 0;
+		for (String response : responses) {
+			Map<String, Object> fields = ConversionServer.parseJsonObject(response);
+			assertEquals(Boolean.TRUE, fields.get("success"), "Conversion succeeded");
+			idSum += Integer.parseInt(fields.get("id").toString());
+		}
+		assertEquals(15, idSum, "Response for every request id");
+		server.shutdown();
+	}
+
+}
@@ -21,10 +21,19 @@ package footleg.cavesurvey.data.model;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
 
 import org.junit.jupiter.api.Test;
 
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
 import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.converter.ProgressMonitor;
 import footleg.cavesurvey.tools.TestHelper;
 
 /**
@@ -237,4 +246,178 @@ public class CaveSurveyTest {
 
 	}
 
+	@Test
+	public void testTreeModelPagesLargeSeries() {
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		SurveySeries series = new SurveySeries("big");
+		SurveySeries inner = new SurveySeries("inner");
+		series.addSeries(inner);
+		int legs = LegPage.PAGE_SIZE * 2 + 500;
+		for (int i = 0; i < legs; i++) {
+			series.addLeg(TestHelper.createTestLeg(i, i + 1, 1.0, 0.0, 0.0));
+		}
+		survey.add(series);
+
+		// Inner series then three pages of legs
+		assertEquals(4, survey.getChildCount(series), "Series children");
+		assertSame(inner, survey.getChild(series, 0), "Inner series first");
+		LegPage lastPage = (LegPage) survey.getChild(series, 3);
+		assertEquals("Legs 2001-2500", lastPage.toString(), "Last page label");
+		assertEquals(500, survey.getChildCount(lastPage), "Legs in last page");
+		assertFalse(survey.isLeaf(lastPage), "Page is not a leaf");
+		assertEquals(lastPage, survey.getChild(series, 3), "Pages created again are equal");
+
+		// Index lookups for pages, and for legs within a page
+		assertEquals(3, survey.getIndexOfChild(series, lastPage), "Page index");
+		SurveyLeg leg = series.getLegRaw(LegPage.PAGE_SIZE * 2 + 123);
+		assertSame(leg, survey.getChild(lastPage, 123), "Leg in page");
+		assertEquals(123, survey.getIndexOfChild(lastPage, leg), "Leg index in page");
+		assertEquals(-1, survey.getIndexOfChild(lastPage, series.getLegRaw(0)), "Leg from another page");
+		assertEquals(0, survey.getIndexOfChild(survey, series), "Top level series index");
+
+		// Index cache is rebuilt when the model changes without an event
+		SurveySeries inner2 = new SurveySeries("inner2");
+		series.getInnerSeriesList().add(0, inner2);
+		assertEquals(1, survey.getIndexOfChild(series, inner), "Index after inserting series");
+		assertEquals(0, survey.getIndexOfChild(series, inner2), "Index of inserted series");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.model.CaveSurvey#getIndexOfChild(Object, Object)}.
+	 * Indices are found for the children of many parents, and follow changes made to a series.
+	 */
+	@Test
+	public void testIndexOfChildForManyParents() {
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		SurveySeries cave = new SurveySeries("cave");
+		int seriesCount = 200;
+		for (int i = 0; i < seriesCount; i++) {
+			SurveySeries series = new SurveySeries("series" + i);
+			for (int leg = 0; leg < 3; leg++) {
+				series.addLeg(TestHelper.createTestLeg(leg, leg + 1, 1.0, 0.0, 0.0));
+			}
+			cave.addSeries(series);
+		}
+		survey.add(cave);
+
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < seriesCount; i++) {
+				SurveySeries series = cave.getInnerSeries(i);
+				assertEquals(i, survey.getIndexOfChild(cave, series), "Series index");
+				assertEquals(2, survey.getIndexOfChild(series, series.getLegRaw(2)), "Leg index");
+			}
+		}
+		assertEquals(-1, survey.getIndexOfChild(cave.getInnerSeries(0), cave.getInnerSeries(1).getLegRaw(0)),
+				"Leg from another series");
+
+		// Changes through the series and the model are seen by the next lookup
+		SurveySeries first = cave.getInnerSeries(0);
+		first.removeLeg(0);
+		assertEquals(1, survey.getIndexOfChild(first, first.getLegRaw(1)), "Leg index after removing a leg");
+		SurveySeries replacement = new SurveySeries("replacement");
+		survey.replaceSeries(new Object[] { survey, cave }, 5, replacement);
+		assertEquals(5, survey.getIndexOfChild(cave, replacement), "Index of replacement series");
+	}
+
+	@Test
+	public void testBatchUpdateFiresSingleEvent() {
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		final int[] events = { 0 };
+		survey.addTreeModelListener(new TreeModelListener() {
+			@Override
+			public void treeStructureChanged(TreeModelEvent e) {
+				events[0]++;
+			}
+
+			@Override
+			public void treeNodesRemoved(TreeModelEvent e) {
+			}
+
+			@Override
+			public void treeNodesInserted(TreeModelEvent e) {
+			}
+
+			@Override
+			public void treeNodesChanged(TreeModelEvent e) {
+			}
+		});
+
+		survey.beginBatchUpdate();
+		for (int i = 0; i < 10; i++) {
+			survey.add(new SurveySeries("s" + i));
+		}
+		assertEquals(0, events[0], "No events during batch");
+		survey.endBatchUpdate();
+		assertEquals(1, events[0], "One event at end of batch");
+		survey.add(new SurveySeries("after"));
+		assertEquals(2, events[0], "Events fired directly outside a batch");
+	}
+
+	/**
+	 * Creates a survey of several caves with nested series, where each series has splays
+	 */
+	private CaveSurvey createSurveyWithSplays() {
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		for (int cave = 1; cave <= 8; cave++) {
+			SurveySeries caveSeries = TestHelper.createSimpleForward5SurveyingSeriesWith4Splays();
+			SurveySeries branched = TestHelper.createBranched222ForwardSurveyingSeriesWithSplays();
+			branched.addSeries(TestHelper.createSimpleBackwardsSurveyingSeriesWithSplays());
+			caveSeries.addSeries(branched);
+			caveSeries.addSeries(TestHelper.createLinearLeapfrogSurveyingSeriesWithSplays());
+			survey.add(caveSeries);
+		}
+		return survey;
+	}
+
+	/**
+	 * Adds the LRUD data for all the legs and to stations in a series and its inner series to a list
+	 */
+	private void addLrudData(SurveySeries series, List<Double> lrudData) {
+		for (int legIdx = 0; legIdx < series.legCount(); legIdx++) {
+			SurveyLeg leg = series.getLegRaw(legIdx);
+			lrudData.add(leg.getLeft(LengthUnit.Metres));
+			lrudData.add(leg.getRight(LengthUnit.Metres));
+			lrudData.add(leg.getUp(LengthUnit.Metres));
+			lrudData.add(leg.getDown(LengthUnit.Metres));
+		}
+		for (SurveySeries.ToStnLRUD lrud : series.getToStnLRUDs()) {
+			lrudData.add(lrud.getLeft());
+			lrudData.add(lrud.getRight());
+			lrudData.add(lrud.getUp());
+			lrudData.add(lrud.getDown());
+		}
+		for (SurveySeries innerSeries : series.getInnerSeriesList()) {
+			addLrudData(innerSeries, lrudData);
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link footleg.cavesurvey.data.model.CaveSurvey#generateLRUDfromSplays(ProgressMonitor, int)}.
+	 * Tests that generating LRUD data for series on several threads gives the same data as one thread.
+	 */
+	@Test
+	public void testGenerateLRUDfromSplaysParallel() {
+		CaveSurvey sequential = createSurveyWithSplays();
+		sequential.generateLRUDfromSplays();
+		CaveSurvey parallel = createSurveyWithSplays();
+		final int[] seriesDone = { 0 };
+		parallel.generateLRUDfromSplays(new ProgressMonitor() {
+			@Override
+			public void reportProgress(String phase, int done, int total) {
+				seriesDone[0]++;
+			}
+		}, 4);
+
+		List<Double> sequentialData = new ArrayList<Double>();
+		List<Double> parallelData = new ArrayList<Double>();
+		for (int idx = 0; idx < sequential.size(); idx++) {
+			addLrudData(sequential.get(idx), sequentialData);
+			addLrudData(parallel.get(idx), parallelData);
+		}
+		assertTrue(sequentialData.stream().anyMatch(value -> value > 0.0), "LRUD data generated");
+		assertEquals(sequentialData, parallelData, "Same LRUD data generated on several threads");
+		assertEquals(32, seriesDone[0], "Progress reported for each series");
+	}
+
 }
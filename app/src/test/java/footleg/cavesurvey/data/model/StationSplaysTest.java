@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.tools.TestHelper;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.data.model.StationSplays}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class StationSplaysTest {
+
+	/**
+	 * Test method for
+	 * {@link footleg.cavesurvey.data.model.StationSplays#extentsAlong(double, double[])}.
+	 */
+	@Test
+	public void testExtentsAlong() {
+		List<SurveyLeg> splays = new ArrayList<SurveyLeg>();
+		splays.add(TestHelper.createSplayLeg(1, 2.0, 90.0, 0.0));
+		splays.add(TestHelper.createSplayLeg(1, 2.0, 270.0, 60.0));
+		splays.add(TestHelper.createSplayLeg(1, 4.0, 135.0, 0.0));
+		splays.add(TestHelper.createSplayLeg(1, 3.0, 0.0, -90.0));
+		StationSplays stationSplays = new StationSplays(splays);
+
+		assertEquals(4, stationSplays.count);
+		assertEquals(1.0, stationSplays.horizontalLength[1], 1e-9, "Horizontal length of inclined splay");
+		assertEquals(Math.sqrt(3.0), stationSplays.verticalLength[1], 1e-9, "Vertical length of inclined splay");
+		assertEquals(3.0, stationSplays.verticalLength[3], 1e-9, "Vertical length of vertical splay");
+
+		double[] extents = new double[stationSplays.count];
+		stationSplays.extentsAlong(90.0, extents);
+		assertEquals(2.0, extents[0], 1e-9, "Splay along the bearing");
+		assertEquals(-1.0, extents[1], 1e-9, "Splay away from the bearing");
+		assertEquals(4.0 * Math.cos(Math.toRadians(45.0)), extents[2], 1e-9, "Splay at an angle to the bearing");
+		assertEquals(0.0, extents[3], 1e-9, "Vertical splay has no horizontal extent");
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.reader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.converter.ProgressMonitor;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.writer.SurvexWriter;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.data.reader.IncrementalSurvexParser}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class IncrementalSurvexParserTest {
+
+	private List<String> testData() {
+		return new ArrayList<String>(Arrays.asList(
+				"*begin cave",
+				"*calibrate compass 1.5",
+				"*equate inlet.2 main.1",
+				"*begin main",
+				"*data normal from to tape compass clino",
+				"1 2 5.0 090 0",
+				"2 3 4.0 180 -5",
+				"*end main",
+				"*begin inlet",
+				"*begin upper",
+				"1 2 3.0 045 10",
+				"*end upper",
+				"1 2 2.5 270 0",
+				"*end inlet",
+				"*equate main.3 inlet.upper.1",
+				"*end cave"));
+	}
+
+	private static class EventCounter implements TreeModelListener {
+		private List<Object> inserted = new ArrayList<Object>();
+		private int structureChanges = 0;
+
+		@Override
+		public void treeNodesChanged(TreeModelEvent e) {
+		}
+
+		@Override
+		public void treeNodesInserted(TreeModelEvent e) {
+			inserted.addAll(Arrays.asList(e.getChildren()));
+		}
+
+		@Override
+		public void treeNodesRemoved(TreeModelEvent e) {
+		}
+
+		@Override
+		public void treeStructureChanged(TreeModelEvent e) {
+			structureChanges++;
+		}
+	}
+
+	private String fullParseOutput(List<String> data, CmdLineLogger logger) throws ParseException {
+		CaveSurvey survey = new SurvexParser(logger).parseFile(data, null);
+		return new SurvexWriter(logger).generateSurvexData(survey, SurvexWriter.SplayFormats.Flagged).toString();
+	}
+
+	@Test
+	public void testReparseNestedBlock() throws ParseException {
+		CmdLineLogger logger = new CmdLineLogger();
+		IncrementalSurvexParser parser = new IncrementalSurvexParser(logger);
+		List<String> data = testData();
+		CaveSurvey model = parser.parseAll(data);
+		SurveySeries oldMain = model.get(0).getInnerSeries(0);
+		SurveySeries oldUpper = model.get(0).getInnerSeries(1).getInnerSeries(0);
+		EventCounter events = new EventCounter();
+		model.addTreeModelListener(events);
+
+		// Edit a leg and add a new one in the nested upper series
+		data.set(10, "1 2 3.5 045 10");
+		data.add(11, "2 3 1.0 000 0");
+		assertSame(model, parser.reparse(data, 10, 11), "Model updated in place");
+		assertEquals(4, parser.getLastReparsedLineCount(), "Lines reparsed");
+		assertSame(oldMain, model.get(0).getInnerSeries(0), "Unedited series kept");
+		SurveySeries newUpper = model.get(0).getInnerSeries(1).getInnerSeries(0);
+		assertNotSame(oldUpper, newUpper, "Edited series replaced");
+		assertEquals(Arrays.asList((Object) newUpper), events.inserted, "Inserted tree nodes");
+		assertEquals(0, events.structureChanges, "No full tree refresh");
+		assertEquals(2, newUpper.legCount(), "Legs in edited series");
+		assertEquals(fullParseOutput(data, logger),
+				new SurvexWriter(logger).generateSurvexData(model, SurvexWriter.SplayFormats.Flagged).toString(),
+				"Output matches a full parse");
+
+		// A later edit in a different series uses the updated line numbers
+		data.set(6, "2 3 4.5 180 -5");
+		parser.reparse(data, 6, 6);
+		assertEquals(5, parser.getLastReparsedLineCount(), "Lines reparsed in main");
+		assertSame(newUpper, model.get(0).getInnerSeries(1).getInnerSeries(0), "Previously replaced series kept");
+		assertEquals(fullParseOutput(data, logger),
+				new SurvexWriter(logger).generateSurvexData(model, SurvexWriter.SplayFormats.Flagged).toString(),
+				"Output matches a full parse after second edit");
+	}
+
+	@Test
+	public void testFallsBackToLargerReparse() throws ParseException {
+		CmdLineLogger logger = new CmdLineLogger();
+		IncrementalSurvexParser parser = new IncrementalSurvexParser(logger);
+		List<String> data = testData();
+		CaveSurvey model = parser.parseAll(data);
+
+		// Changing the data order inside a block affects the data after it, so the parent is reparsed
+		data.set(4, "*data normal from to tape clino compass");
+		assertSame(model, parser.reparse(data, 4, 4), "Model updated in place");
+		assertEquals(16, parser.getLastReparsedLineCount(), "Parent series reparsed");
+
+		// Renaming the outer block is not contained in any series, so everything is reparsed
+		data.set(0, "*begin system");
+		data.set(15, "*end system");
+		CaveSurvey newModel = parser.reparse(data, 0, 15);
+		assertNotSame(model, newModel, "New model from full reparse");
+		assertEquals(fullParseOutput(data, logger),
+				new SurvexWriter(logger).generateSurvexData(newModel, SurvexWriter.SplayFormats.Flagged).toString(),
+				"Output matches a full parse");
+	}
+
+	@Test
+	public void testDifferentDataIsParsedInFull() throws ParseException {
+		CmdLineLogger logger = new CmdLineLogger();
+		IncrementalSurvexParser parser = new IncrementalSurvexParser(logger);
+		CaveSurvey model = parser.parseAll(testData());
+
+		// Data from another file with the same layout, so the edit falls in a block at the same lines
+		List<String> other = new ArrayList<String>();
+		for (String line : testData()) {
+			other.add(line.replace("main", "trunk"));
+		}
+		other.set(5, "1 2 6.0 090 0");
+		CaveSurvey newModel = parser.reparse(other, 5, 5);
+		assertNotSame(model, newModel, "New model from full parse");
+		assertEquals(16, parser.getLastReparsedLineCount(), "All lines parsed");
+		assertEquals(fullParseOutput(other, logger),
+				new SurvexWriter(logger).generateSurvexData(newModel, SurvexWriter.SplayFormats.Flagged).toString(),
+				"Output matches a full parse");
+	}
+
+	@Test
+	public void testCancelledReparseIsNotRetried() throws ParseException {
+		CmdLineLogger logger = new CmdLineLogger();
+		IncrementalSurvexParser parser = new IncrementalSurvexParser(logger);
+		List<String> data = testData();
+		CaveSurvey model = parser.parseAll(data);
+		List<String> phases = new ArrayList<String>();
+		parser.setProgressMonitor(new ProgressMonitor() {
+			@Override
+			public void reportProgress(String phase, int done, int total) {
+				phases.add(phase);
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return true;
+			}
+		});
+		parser.setModelUpdater(update -> fail("Cancelled reparse should not update the model"));
+
+		// Cancellation must stop the task rather than escalating to a larger reparse
+		data.set(10, "1 2 3.5 045 10");
+		assertThrows(CancellationException.class, () -> parser.reparse(data, 10, 10), "Cancelled reparse");
+		assertEquals(Arrays.asList("Parsing lines"), phases, "Progress reported before cancelling");
+		assertSame(model, parser.getModel(), "Model unchanged");
+	}
+
+}
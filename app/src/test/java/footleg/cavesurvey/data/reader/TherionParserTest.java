@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.writer.SurvexWriter;
+import footleg.cavesurvey.tools.SurveyNetwork;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.data.reader.TherionParser}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class TherionParserTest {
+
+	private CaveSurvey parse(String... lines) throws ParseException {
+		return new TherionParser(new CmdLineLogger()).parseFile(Arrays.asList(lines), null);
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.reader.TherionParser#parseFile}. Nested
+	 * surveys are read with the units, calibrations, date and flags of their centrelines, and
+	 * stations equated across surveys are linked.
+	 */
+	@Test
+	public void testParseNestedSurveys() throws ParseException {
+		CaveSurvey survey = parse("encoding utf-8",
+				"survey cave -title \"The Cave\"",
+				"  equate 3@entrance 1@passage # Link the two surveys",
+				"  survey entrance",
+				"    centreline",
+				"      date 2020.05.01",
+				"      declination 2 degrees",
+				"      units tape feet",
+				"      calibrate compass 1.5",
+				"      data normal from to tape compass clino",
+				"      1 2 10 90 0",
+				"      flags duplicate",
+				"      2 3 5 0 -30",
+				"      flags not duplicate",
+				"      3 . 2 45 0",
+				"    endcentreline",
+				"  endsurvey entrance",
+				"  survey passage",
+				"    centreline",
+				"      data normal from to length compass clino left right up down",
+				"      1 2 8.0 180 10 1 2 3 -",
+				"    endcentreline",
+				"  endsurvey",
+				"  scrap s1",
+				"    point 0 0 station -name 1",
+				"  endscrap",
+				"endsurvey");
+
+		assertEquals(1, survey.size());
+		SurveySeries cave = survey.get(0);
+		assertEquals("cave", cave.getSeriesName());
+		assertEquals(2, cave.innerSeriesCount());
+		SurveySeries entrance = cave.getInnerSeries(0);
+		SurveySeries passage = cave.getInnerSeries(1);
+		assertEquals("entrance", entrance.getSeriesName());
+		assertEquals(3, entrance.legCount());
+		assertEquals(1, passage.legCount());
+
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(entrance.getSurveyDate());
+		assertEquals(2020, cal.get(Calendar.YEAR));
+		assertEquals(Calendar.MAY, cal.get(Calendar.MONTH));
+		assertEquals(1, cal.get(Calendar.DAY_OF_MONTH));
+		assertEquals(-2.0, entrance.getDeclination(), 1e-9, "Magnetic declination is held negated");
+		assertEquals(1.5, entrance.getCompassCalibration(BearingUnit.Degrees), 1e-9);
+
+		SurveyLeg first = entrance.getLegRaw(0);
+		assertEquals("1", first.getFromStn().getName());
+		assertEquals("2", first.getToStn().getName());
+		assertEquals(3.048, first.getLength(LengthUnit.Metres), 1e-9, "Lengths in feet converted to metres");
+		assertEquals(90.0, first.getCompass(BearingUnit.Degrees), 1e-9);
+		assertFalse(first.isDuplicate());
+		assertTrue(entrance.getLegRaw(1).isDuplicate());
+		assertEquals(-30.0, entrance.getLegRaw(1).getClino(GradientUnit.Degrees), 1e-9);
+		assertTrue(entrance.getLegRaw(2).isSplay(), "Leg to an anonymous station is a splay");
+		assertFalse(entrance.getLegRaw(2).isDuplicate());
+
+		SurveyLeg lrud = passage.getLegRaw(0);
+		assertEquals(1.0, lrud.getLeft(LengthUnit.Metres), 1e-9);
+		assertEquals(2.0, lrud.getRight(LengthUnit.Metres), 1e-9);
+		assertEquals(3.0, lrud.getUp(LengthUnit.Metres), 1e-9);
+		assertEquals(0.0, lrud.getDown(LengthUnit.Metres), 1e-9, "Unmeasured dimension left as zero");
+
+		assertEquals(1, cave.getLinks().size());
+		assertEquals(4, SurveyNetwork.build(survey).getStationCount(),
+				"Equated stations are joined into a single station");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.reader.TherionParser#parseFile}. Readings in a
+	 * second centreline of a survey are corrected to the calibrations of the first one.
+	 */
+	@Test
+	public void testCalibrationsOfLaterCentreline() throws ParseException {
+		CaveSurvey survey = parse("survey cave",
+				"centreline",
+				"  calibrate tape 0.1",
+				"  declination 1 deg",
+				"  data normal from to tape compass clino",
+				"  1 2 10 100 0",
+				"endcentreline",
+				"centreline",
+				"  calibrate tape 0.3",
+				"  declination 3 deg",
+				"  units clino grads",
+				"  data normal from to tape compass clino",
+				"  2 3 10 100 10",
+				"endcentreline",
+				"endsurvey");
+		SurveySeries cave = survey.get(0);
+		assertEquals(2, cave.legCount());
+		assertEquals(0.1, cave.getTapeCalibration(LengthUnit.Metres), 1e-9);
+		assertEquals(-1.0, cave.getDeclination(), 1e-9);
+		assertEquals(10.0, cave.getLegRaw(0).getLength(LengthUnit.Metres), 1e-9);
+		assertEquals(9.8, cave.getLegRaw(1).getLength(LengthUnit.Metres), 1e-9,
+				"Extra tape zero error of later centreline removed from reading");
+		assertEquals(102.0, cave.getLegRaw(1).getCompass(BearingUnit.Degrees), 1e-9,
+				"Extra declination of later centreline added to reading");
+		assertEquals(9.0, cave.getLegRaw(1).getClino(GradientUnit.Degrees), 1e-9, "Clino in grads");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.reader.TherionParser#parseFile}. Diving and
+	 * nosurvey data styles are read.
+	 */
+	@Test
+	public void testDivingAndNosurveyData() throws ParseException {
+		CaveSurvey survey = parse("survey sump",
+				"centreline",
+				"  data diving from to tape compass fromdepth todepth",
+				"  1 2 5 90 2.0 4.5",
+				"  data nosurvey from to",
+				"  2 3",
+				"endcentreline",
+				"endsurvey");
+		SurveySeries sump = survey.get(0);
+		assertEquals(2, sump.legCount());
+		SurveyLeg dive = sump.getLegRaw(0);
+		assertTrue(dive.isDiving());
+		assertEquals(2.0, dive.getFromDepth(LengthUnit.Metres), 1e-9);
+		assertEquals(4.5, dive.getToDepth(LengthUnit.Metres), 1e-9);
+		assertTrue(UtilityFunctions.dataOrderIsDiving(sump.getDataOrder()));
+		assertTrue(sump.getLegRaw(1).isNosurvey());
+	}
+
+	/**
+	 * Gets the leg lines written for a survey in Survex format
+	 */
+	private List<String> survexLegLines(CaveSurvey survey) {
+		List<String> legLines = new ArrayList<String>();
+		for (String line : new SurvexWriter(new CmdLineLogger()).generateSurvexData(survey,
+				SurvexWriter.SplayFormats.Flagged)) {
+			String trimmed = line.trim();
+			if (trimmed.length() > 0 && Character.isDigit(trimmed.charAt(0))) {
+				legLines.add(trimmed.replaceAll("\\s+", " "));
+			} else if (trimmed.toLowerCase().startsWith("*data")) {
+				legLines.add(trimmed.toLowerCase());
+			}
+		}
+		return legLines;
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.reader.TherionParser#parseFile}. Diving legs
+	 * which follow normal legs in a survey keep their depths when written as Survex data.
+	 */
+	@Test
+	public void testNormalThenDivingData() throws ParseException {
+		CaveSurvey survey = parse("survey mix",
+				"centreline",
+				"  data normal from to length compass clino",
+				"  1 2 10 90 30",
+				"  data diving from to length compass fromdepth todepth",
+				"  3 4 5 180 1 3",
+				"endcentreline",
+				"endsurvey");
+		SurveySeries mix = survey.get(0);
+		assertFalse(UtilityFunctions.dataOrderIsDiving(mix.getDataOrder()));
+		assertTrue(UtilityFunctions.dataOrderIsDiving(mix.getDataOrder2()));
+		assertEquals(Arrays.asList("*data normal from to length bearing gradient", "1 2 10.00 90.00 30.00",
+				"*data diving from to length bearing fromdepth todepth", "3 4 5.00 180.00 1.00 3.00"),
+				survexLegLines(survey));
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.reader.TherionParser#parseFile}. Normal legs
+	 * which follow diving legs in a survey keep their clino readings when written as Survex data.
+	 */
+	@Test
+	public void testDivingThenNormalData() throws ParseException {
+		CaveSurvey survey = parse("survey mix",
+				"centreline",
+				"  data diving from to length compass depthchange",
+				"  1 2 5 180 -1.5",
+				"  data normal to from compass length clino",
+				"  4 3 10 5 6.0",
+				"endcentreline",
+				"endsurvey");
+		SurveySeries mix = survey.get(0);
+		assertTrue(UtilityFunctions.dataOrderIsDiving(mix.getDataOrder()));
+		assertFalse(UtilityFunctions.dataOrderIsDiving(mix.getDataOrder2()));
+		assertEquals(6.0, mix.getLegRaw(1).getClino(GradientUnit.Degrees), 1e-9);
+		assertEquals(Arrays.asList("*data diving from to length bearing depthchange", "1 2 5.00 180.00 -1.50",
+				"*data normal to from bearing length gradient", "4 3 10.00 5.00 6.00"), survexLegLines(survey));
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.reader.TherionParser#parseLine}. A project is
+	 * streamed from its configuration file into the parser one line at a time, following the
+	 * source and input commands into the data files.
+	 */
+	@Test
+	public void testStreamedMultiFileProject() throws IOException, ParseException {
+		File folder = Files.createTempDirectory("ccthtest").toFile();
+		folder.deleteOnExit();
+		File config = new File(folder, "cave.thconfig");
+		File main = new File(folder, "cave.th");
+		File sub = new File(folder, "sub.th");
+		for (File file : Arrays.asList(config, main, sub)) {
+			file.deleteOnExit();
+		}
+		Files.write(config.toPath(), Arrays.asList("source cave.th", "export model -o cave.lox"));
+		Files.write(main.toPath(), Arrays.asList("survey cave", "  input sub", "  equate 2@sub 1@main",
+				"  survey main", "    centreline", "      1 2 4.0 10 0", "    endcentreline", "  endsurvey",
+				"endsurvey"));
+		Files.write(sub.toPath(), Arrays.asList("survey sub", "  centreline", "    1 2 3.0 20 0",
+				"  endcentreline", "endsurvey"));
+
+		TherionParser parser = new TherionParser(new CmdLineLogger());
+		List<File> filesRead = new ArrayList<File>();
+		UtilityFunctions.readTextFile(config, "UTF8", UtilityFunctions.IncludeSyntax.Therion, parser::parseLine,
+				filesRead, new CmdLineLogger());
+		CaveSurvey survey = parser.finish();
+
+		assertEquals(3, filesRead.size(), "Configuration and both data files read");
+		SurveySeries cave = survey.get(0);
+		assertEquals(2, cave.innerSeriesCount());
+		assertEquals("sub", cave.getInnerSeries(0).getSeriesName());
+		assertEquals(3.0, cave.getInnerSeries(0).getLegRaw(0).getLength(LengthUnit.Metres), 1e-9);
+		assertEquals("main", cave.getInnerSeries(1).getSeriesName());
+		assertEquals(3, SurveyNetwork.build(survey).getStationCount());
+	}
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+import footleg.cavesurvey.data.reader.CompassParser;
+import footleg.cavesurvey.tools.SurveyNetwork;
+import footleg.cavesurvey.tools.TestHelper;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.data.writer.CompassWriter}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class CompassWriterTest {
+
+	private Date date(int year, int month, int day) {
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(year, month - 1, day);
+		return cal.getTime();
+	}
+
+	/**
+	 * Creates a cave with two linked series, one of which contains a duplicate leg
+	 */
+	private CaveSurvey buildSurvey() {
+		SurveySeries cave = new SurveySeries("cave");
+		SurveySeries entrance = new SurveySeries("entrance");
+		entrance.setSurveyDate(date(2020, 5, 1));
+		entrance.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 90.0, 0.0));
+		entrance.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 0.0, -30.0));
+		SurveySeries passage = new SurveySeries("passage");
+		passage.setSurveyDate(date(2021, 6, 2));
+		passage.addLeg(TestHelper.createTestLeg(1, 2, 8.0, 180.0, 10.0));
+		SurveyLeg duplicate = TestHelper.createTestLeg(2, 3, 4.0, 270.0, 0.0);
+		duplicate.setDuplicate(true);
+		passage.addLeg(duplicate);
+		cave.addSeries(entrance);
+		cave.addSeries(passage);
+		cave.addLink("entrance", new SurveyStation(3), "passage", new SurveyStation(1));
+
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(cave);
+		return survey;
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.CompassWriter#generateCompassData}.
+	 * Data written for a survey is read back by the Compass parser with the same legs and the
+	 * same links between series.
+	 */
+	@Test
+	public void testRoundTripThroughCompassParser() throws ParseException {
+		CaveSurvey survey = buildSurvey();
+		CompassWriter writer = new CompassWriter(new CmdLineLogger());
+		List<String> data = writer.generateCompassData(survey, date(2026, 1, 1), true);
+
+		CaveSurvey parsed = new CompassParser(new CmdLineLogger()).parseFile(data);
+		SurveySeries top = parsed.get(0);
+		assertEquals(2, top.innerSeriesCount(), "One Compass survey for each series with legs");
+		SurveySeries entrance = top.getInnerSeries(0);
+		SurveySeries passage = top.getInnerSeries(1);
+		assertEquals(2, entrance.legCount());
+		assertEquals(2, passage.legCount());
+		assertEquals(10.0, entrance.getLegRaw(0).getLength(LengthUnit.Metres), 1e-3, "Lengths written in feet read back");
+		assertEquals(90.0, entrance.getLegRaw(0).getCompass(BearingUnit.Degrees), 1e-2);
+		assertEquals(-30.0, entrance.getLegRaw(1).getClino(GradientUnit.Degrees), 1e-2);
+		assertFalse(passage.getLegRaw(0).isDuplicate());
+		assertTrue(passage.getLegRaw(1).isDuplicate(), "Duplicate flag read back");
+
+		assertEquals(SurveyNetwork.build(survey).getStationCount(), SurveyNetwork.build(parsed).getStationCount(),
+				"Linked stations are written with the same name so are equated again");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.CompassWriter#generateCompassData}.
+	 * Thousands of series with similar names are all given different short names.
+	 */
+	@Test
+	public void testShortNamesUniqueForManySeries() {
+		SurveySeries cave = new SurveySeries("cave");
+		int seriesCount = 2500;
+		for (int i = 0; i < seriesCount; i++) {
+			SurveySeries series = new SurveySeries("passage" + i);
+			series.addLeg(TestHelper.createTestLeg(1, 2, 1.0, 0.0, 0.0));
+			cave.addSeries(series);
+		}
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(cave);
+
+		List<String> data = new CompassWriter(new CmdLineLogger()).generateCompassData(survey, date(2026, 1, 1), false);
+		Set<String> shortNames = new HashSet<String>();
+		for (String line : data) {
+			if (line.startsWith("SURVEY NAME: ")) {
+				String name = line.substring(13);
+				assertTrue(name.length() <= 4, "Short name " + name + " is no longer than 4 characters");
+				assertTrue(shortNames.add(name.toUpperCase()), "Short name " + name + " used once");
+			}
+		}
+		assertEquals(seriesCount, shortNames.size());
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.CompassWriter#generateCompassData}.
+	 * Station names too long for Compass, or which only differ by spaces, are written as
+	 * different names no longer than Compass allows.
+	 */
+	@Test
+	public void testLongStationNamesShortenedAndUnique() throws ParseException {
+		SurveySeries passage = new SurveySeries("passage");
+		String[] names = { "EntranceChamber1", "EntranceChamber2", "EntranceChamber3", "A B", "A_B", "P_EntranceCh-1" };
+		for (int i = 1; i < names.length; i++) {
+			SurveyLeg leg = TestHelper.createTestLeg(i, i + 1, 2.0, 90.0, 0.0);
+			leg.getFromStn().setName(names[i - 1]);
+			leg.getToStn().setName(names[i]);
+			passage.addLeg(leg);
+		}
+		passage.addLeg(TestHelper.createSplayLeg(1, 1.0, 0.0, 0.0));
+		passage.getLegRaw(passage.legCount() - 1).getFromStn().setName(names[0]);
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(passage);
+
+		List<String> data = new CompassWriter(new CmdLineLogger()).generateCompassData(survey, date(2026, 1, 1), true);
+		CaveSurvey parsed = new CompassParser(new CmdLineLogger()).parseFile(data);
+		Set<String> stationNames = new HashSet<String>();
+		SurveySeries written = parsed.get(0).getInnerSeries(0);
+		for (int i = 0; i < written.legCount(); i++) {
+			for (SurveyStation stn : new SurveyStation[] { written.getLegRaw(i).getFromStn(),
+					written.getLegRaw(i).getToStn() }) {
+				assertTrue(stn.getName().length() <= CompassWriter.MAX_STATION_NAME_LENGTH,
+						"Station name " + stn.getName() + " is no longer than Compass allows");
+				stationNames.add(stn.getName().toUpperCase());
+			}
+		}
+		assertEquals(names.length + 1, stationNames.size(), "Every station and the splay end has its own name");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.CompassWriter#writeCompassData}.
+	 * Data streamed to a writer is the same as the lines generated as a list.
+	 */
+	@Test
+	public void testStreamedDataMatchesLines() throws IOException {
+		CaveSurvey survey = buildSurvey();
+		List<String> lines = new CompassWriter(new CmdLineLogger()).generateCompassData(survey, date(2026, 1, 1), true);
+		StringWriter streamed = new StringWriter();
+		new CompassWriter(new CmdLineLogger()).writeCompassData(survey, date(2026, 1, 1), true, streamed);
+		assertEquals(String.join(System.getProperty("line.separator"), lines), streamed.toString());
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.CompassWriter#generateCompassData}.
+	 * A writer used again for the same survey writes the same data as a new writer.
+	 */
+	@Test
+	public void testReusedWriterMatchesNewWriter() {
+		CaveSurvey survey = buildSurvey();
+		CompassWriter writer = new CompassWriter(new CmdLineLogger());
+		List<String> first = writer.generateCompassData(survey, date(2026, 1, 1), true);
+		List<String> second = writer.generateCompassData(survey, date(2026, 1, 1), true);
+		assertEquals(first, second);
+		assertEquals(first, new CompassWriter(new CmdLineLogger()).generateCompassData(survey, date(2026, 1, 1), true));
+	}
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation.FixType;
+import footleg.cavesurvey.data.reader.SnapshotReader;
+import footleg.cavesurvey.data.reader.SurvexParser;
+import footleg.cavesurvey.tools.TestHelper;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.data.writer.SnapshotWriter} and
+ * {@link footleg.cavesurvey.data.reader.SnapshotReader}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SnapshotWriterTest {
+
+	private CaveSurvey roundTrip(CaveSurvey surveyData, CmdLineLogger logger) throws IOException {
+		byte[] snapshot = new SnapshotWriter(logger).generateSnapshotData(surveyData);
+		return new SnapshotReader(logger).parseData(ByteBuffer.wrap(snapshot));
+	}
+
+	@Test
+	public void testSurvexFileRoundTrip() throws ParseException, IOException {
+		CmdLineLogger logger = new CmdLineLogger();
+		List<String> multiFileRefs = new ArrayList<String>();
+		List<String> fileData = UtilityFunctions.readTextFile(
+				new File("src/test/resources/data/regression/SwilEnt_in.svx"), "UTF8", true, multiFileRefs, logger);
+		CaveSurvey original = new SurvexParser(logger).parseFile(fileData, multiFileRefs);
+
+		// Reload through a snapshot file
+		File snapshotFile = File.createTempFile("SwilEnt", ".ccs");
+		snapshotFile.deleteOnExit();
+		UtilityFunctions.writeBinaryFile(new SnapshotWriter(logger).generateSnapshotData(original),
+				snapshotFile.getPath());
+		CaveSurvey reloaded = new SnapshotReader(logger).parseFile(snapshotFile);
+
+		SurvexWriter writer = new SurvexWriter(logger);
+		assertEquals(writer.generateSurvexData(original, SurvexWriter.SplayFormats.Flagged),
+				writer.generateSurvexData(reloaded, SurvexWriter.SplayFormats.Flagged),
+				"Survex output from reloaded snapshot");
+	}
+
+	private CaveSurvey createDetailedSurvey(CmdLineLogger logger) {
+		CaveSurvey surveyData = new CaveSurvey(logger);
+		surveyData.setSurveyName("snap");
+		SurveySeries series = new SurveySeries("outer");
+		SurveySeries inner = new SurveySeries("inner");
+		inner.setComment("Inner series");
+		inner.setClinoCalibration(1.5, GradientUnit.Degrees, 1.02);
+		int mapped = inner.getNumberToRepresentStnName("A1");
+
+		SurveyLeg diving = TestHelper.createTestLeg(mapped, 2, 4.5, 123.0, 0.0);
+		diving.setDepths(3.0, 7.25, LengthUnit.Metres);
+		diving.getFromStn().setName("A1");
+		diving.getFromStn().setFixed(FixType.GPS, 100.5, 200.25, 30.0);
+		diving.getFromStn().setEntrance(true);
+		inner.addLeg(diving);
+		SurveyLeg splay = TestHelper.createSplayLeg(2, 1.2, 45.0, -10.0);
+		splay.setLeft(0.5, LengthUnit.Metres);
+		splay.setComment("Splay comment");
+		inner.addLeg(splay);
+		series.addSeries(inner);
+		series.addLink("outer.inner", inner.getLegRaw(0).getToStn(), "outer", inner.getLegRaw(0).getToStn());
+		surveyData.add(series);
+		return surveyData;
+	}
+
+	@Test
+	public void testLegAndStationDetailsRoundTrip() throws IOException {
+		CmdLineLogger logger = new CmdLineLogger();
+		CaveSurvey surveyData = createDetailedSurvey(logger);
+		int mapped = surveyData.get(0).getInnerSeries(0).getNumberToRepresentStnName("A1");
+
+		CaveSurvey reloaded = roundTrip(surveyData, logger);
+
+		assertEquals("snap", reloaded.getSurveyName(), "Survey name");
+		SurveySeries reloadedInner = reloaded.get(0).getInnerSeries(0);
+		assertEquals("Inner series", reloadedInner.getComment(), "Series comment");
+		assertEquals(1.5, reloadedInner.getClinoCalibration(GradientUnit.Degrees), 0.0, "Clino calibration");
+		assertEquals(1.02, reloadedInner.getClinoScaleFactor(), 0.0, "Clino scale factor");
+		assertEquals("A1", reloadedInner.getMappedStnName(mapped), "Mapped station name");
+
+		SurveyLeg leg = reloadedInner.getLegRaw(0);
+		assertTrue(leg.isDiving(), "Diving flag");
+		assertEquals(3.0, leg.getFromDepth(LengthUnit.Metres), 0.0, "From depth");
+		assertEquals(7.25, leg.getToDepth(LengthUnit.Metres), 0.0, "To depth");
+		assertEquals(123.0, leg.getCompass(BearingUnit.Degrees), 0.0, "Compass");
+		assertEquals("A1", leg.getFromStn().getName(), "From station name");
+		assertEquals(mapped, leg.getFromStn().getId(), "From station id");
+		assertEquals(FixType.GPS, leg.getFromStn().getFixType(), "Fix type");
+		assertEquals(200.25, leg.getFromStn().getNorthing(), 0.0, "Fix northing");
+		assertTrue(leg.getFromStn().isEntrance(), "Entrance flag");
+
+		SurveyLeg reloadedSplay = reloadedInner.getLegRaw(1);
+		assertTrue(reloadedSplay.isSplay(), "Splay flag");
+		assertFalse(reloadedSplay.isDiving(), "Splay is not diving");
+		assertEquals(-10.0, reloadedSplay.getClino(GradientUnit.Degrees), 0.0, "Clino");
+		assertEquals(0.5, reloadedSplay.getLeft(LengthUnit.Metres), 0.0, "Left");
+		assertEquals("Splay comment", reloadedSplay.getComment(), "Leg comment");
+
+		assertEquals(1, reloaded.get(0).getLinks().size(), "Series link count");
+		assertSame(reloaded.get(0).getLinks().get(0).getStn1(), reloaded.get(0).getLinks().get(0).getStn2(),
+				"Shared link station object");
+	}
+
+	@Test
+	public void testRejectsUnknownVersion() {
+		CmdLineLogger logger = new CmdLineLogger();
+		byte[] snapshot = new SnapshotWriter(logger).generateSnapshotData(new CaveSurvey(logger));
+		snapshot[SnapshotWriter.SNAPSHOT_MAGIC.length] = (byte) (SnapshotWriter.SNAPSHOT_VERSION + 1);
+		assertThrows(IOException.class, () -> new SnapshotReader(logger).parseData(ByteBuffer.wrap(snapshot)),
+				"Newer snapshot version");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.reader.SnapshotReader#parseData(ByteBuffer)}. Truncated or
+	 * corrupted snapshots must only ever fail with an IOException, so callers can treat them as a cache miss.
+	 */
+	@Test
+	public void testCorruptSnapshotsReportIOException() {
+		CmdLineLogger logger = new CmdLineLogger();
+		byte[] snapshot = new SnapshotWriter(logger).generateSnapshotData(createDetailedSurvey(logger));
+		SnapshotReader reader = new SnapshotReader(logger);
+
+		for (int length = 0; length < snapshot.length; length++) {
+			ByteBuffer truncated = ByteBuffer.wrap(Arrays.copyOf(snapshot, length));
+			assertThrows(IOException.class, () -> reader.parseData(truncated), "Snapshot truncated to " + length);
+		}
+
+		byte[] corruptValues = { 0, 0x7f, (byte) 0x80, (byte) 0xff };
+		for (int offset = SnapshotWriter.SNAPSHOT_MAGIC.length; offset < snapshot.length; offset++) {
+			for (byte value : corruptValues) {
+				byte[] corrupt = snapshot.clone();
+				corrupt[offset] = value;
+				try {
+					reader.parseData(ByteBuffer.wrap(corrupt));
+				} catch (IOException e) {
+					// Expected for most corruptions, others still decode to some survey data
+				} catch (RuntimeException | Error e) {
+					fail("Byte " + offset + " set to " + value + " threw " + e);
+				}
+			}
+		}
+	}
+
+}
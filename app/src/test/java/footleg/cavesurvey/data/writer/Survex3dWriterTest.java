@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.tools.TestHelper;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.data.writer.Survex3dWriter}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class Survex3dWriterTest {
+	private static final String HEADER = "Survex 3D Image File\nv8\ntest\n@1000\n";
+
+	private CaveSurvey createTwoLegSurvey(CmdLineLogger logger) {
+		CaveSurvey surveyData = new CaveSurvey(logger);
+		surveyData.setSurveyName("test");
+		SurveySeries series = new SurveySeries("s");
+		series.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 90.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 0.0, 0.0));
+		surveyData.add(series);
+		return surveyData;
+	}
+
+	private static int readInt32(byte[] data, int pos) {
+		return (data[pos] & 0xff) | ((data[pos + 1] & 0xff) << 8) | ((data[pos + 2] & 0xff) << 16)
+				| ((data[pos + 3] & 0xff) << 24);
+	}
+
+	@Test
+	public void testHeaderAndLegs() {
+		CmdLineLogger logger = new CmdLineLogger();
+		Survex3dWriter writer = new Survex3dWriter(logger);
+		byte[] data = writer.generateSurvex3dData(createTwoLegSurvey(logger), new Date(1000000L), false);
+
+		String header = new String(data, 0, HEADER.length());
+		assertEquals(HEADER, header, "File header");
+		int pos = HEADER.length();
+		assertEquals(0, data[pos++], "File-wide flags");
+
+		// Move to first station at origin
+		assertEquals(0x0f, data[pos++], "Move item");
+		assertEquals(0, readInt32(data, pos), "Move x");
+		assertEquals(0, readInt32(data, pos + 4), "Move y");
+		assertEquals(0, readInt32(data, pos + 8), "Move z");
+		pos += 12;
+
+		// First line is labelled with the series name
+		assertEquals(0x40, data[pos++], "Line item with label");
+		assertEquals(0x01, data[pos++], "Label remove and add counts");
+		assertEquals('s', data[pos++], "Label text");
+		assertEquals(1000, readInt32(data, pos), "Line x in cm");
+		assertEquals(0, readInt32(data, pos + 4), "Line y in cm");
+		pos += 12;
+
+		// Second line follows on with no move or label
+		assertEquals(0x60, data[pos++], "Line item with unchanged label");
+		assertEquals(1000, readInt32(data, pos), "Line x in cm");
+		assertEquals(500, readInt32(data, pos + 4), "Line y in cm");
+		pos += 12;
+
+		// First station label extends the series label
+		assertEquals((byte) 0x82, data[pos++], "Underground station label item");
+		assertEquals(0x02, data[pos++], "Label remove and add counts");
+		assertEquals('.', data[pos++], "Label text");
+		assertEquals('1', data[pos++], "Label text");
+		pos += 12;
+
+		// Next station label replaces only the last character
+		assertEquals((byte) 0x82, data[pos++], "Underground station label item");
+		assertEquals(0x11, data[pos++], "Label remove and add counts");
+		assertEquals('2', data[pos++], "Label text");
+		pos += 12;
+		assertEquals((byte) 0x82, data[pos++], "Underground station label item");
+		pos += 2 + 12;
+
+		assertEquals(data.length, pos, "No cross-sections expected without LRUD data");
+	}
+
+	@Test
+	public void testCrossSections() {
+		CmdLineLogger logger = new CmdLineLogger();
+		CaveSurvey surveyData = createTwoLegSurvey(logger);
+		SurveyLeg leg = surveyData.get(0).getLegRaw(0);
+		leg.setLeft(1.5, LengthUnit.Metres);
+		leg.setRight(400.0, LengthUnit.Metres);
+
+		Survex3dWriter writer = new Survex3dWriter(logger);
+		byte[] data = writer.generateSurvex3dData(surveyData, new Date(1000000L), false);
+
+		// Cross-sections follow the header, 2 lines, 1 move and 3 station labels
+		int pos = HEADER.length() + 1 + 13 + 15 + 13 + 16 + 15 + 15;
+		// Right dimension is too large for 16 bits
+		assertEquals(0x31, data[pos++], "32 bit cross-section item");
+		pos += 2;
+		assertEquals(150, readInt32(data, pos), "Left in cm");
+		assertEquals(40000, readInt32(data, pos + 4), "Right in cm");
+		pos += 16;
+		assertEquals(0x30, data[pos++], "16 bit cross-section item");
+		pos += 2 + 8;
+		assertEquals(0x32, data[pos++], "Last cross-section in passage");
+		pos += 2;
+		assertEquals(-1, (short) ((data[pos] & 0xff) | (data[pos + 1] << 8)), "Missing dimension at end station");
+	}
+
+}
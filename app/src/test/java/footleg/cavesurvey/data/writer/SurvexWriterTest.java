@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.converter.Logger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.tools.TestHelper;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.data.writer.SurvexWriter}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SurvexWriterTest {
+
+	/**
+	 * Creates a survey of several caves, each with nested series and passage data
+	 */
+	private CaveSurvey createMultiCaveSurvey(Logger logger) {
+		CaveSurvey surveyData = new CaveSurvey(logger);
+		for (int cave = 1; cave <= 12; cave++) {
+			SurveySeries caveSeries = new SurveySeries("cave" + cave);
+			caveSeries.addLeg(TestHelper.createTestLeg(1, 2, 3.0 + cave, 10.0 * cave, 0.0));
+			SurveySeries branched = TestHelper.createBranched222ForwardSurveyingSeriesWithSplays();
+			SurveySeries leapfrog = TestHelper.createLinearLeapfrogSurveyingSeriesWithSplays();
+			if (cave % 3 == 0) {
+				// Nest a series more deeply in some caves
+				branched.addSeries(TestHelper.createSimpleForward5SurveyingSeriesWith4Splays());
+			}
+			caveSeries.addSeries(branched);
+			caveSeries.addSeries(leapfrog);
+			surveyData.add(caveSeries);
+		}
+		surveyData.generateLRUDfromSplays();
+		return surveyData;
+	}
+
+	/**
+	 * Test method for
+	 * {@link footleg.cavesurvey.data.writer.SurvexWriter#setParallelism(int)}.
+	 */
+	@Test
+	public void testParallelOutputMatchesSequential() {
+		Logger logger = new Logger();
+		CaveSurvey surveyData = createMultiCaveSurvey(logger);
+
+		SurvexWriter writer = new SurvexWriter(logger);
+		List<String> sequential = writer.generateSurvexData(surveyData, SurvexWriter.SplayFormats.Flagged);
+
+		SurvexWriter parallelWriter = new SurvexWriter(logger);
+		parallelWriter.setParallelism(4);
+		for (int run = 0; run < 5; run++) {
+			List<String> parallel = parallelWriter.generateSurvexData(surveyData, SurvexWriter.SplayFormats.Flagged);
+			assertEquals(sequential, parallel, "Parallel output identical to sequential output");
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link footleg.cavesurvey.data.writer.SurvexWriter#generateSurvexData(CaveSurvey, SurvexWriter.SplayFormats)}.
+	 * Passage data for a long series surveyed in both directions is joined into one block per passage.
+	 */
+	@Test
+	public void testPassageDataForLongSeries() {
+		Logger logger = new Logger();
+		CaveSurvey surveyData = new CaveSurvey(logger);
+		SurveySeries series = new SurveySeries("long");
+		int legCount = 20000;
+		for (int stn = 1; stn <= legCount; stn++) {
+			// Survey the second half of the passage backwards from the far end
+			SurveyLeg leg = (stn <= legCount / 2) ? TestHelper.createTestLeg(stn, stn + 1, 2.0, 90.0, 0.0)
+					: TestHelper.createTestLeg(legCount + 1 - stn + legCount / 2 + 1,
+							legCount - stn + legCount / 2 + 1, 2.0, 270.0, 0.0);
+			leg.setLeft(1.0, LengthUnit.Metres);
+			leg.setRight(1.0, LengthUnit.Metres);
+			leg.setUp(2.0, LengthUnit.Metres);
+			leg.setDown(0.5, LengthUnit.Metres);
+			series.addLeg(leg);
+		}
+		surveyData.add(series);
+
+		List<String> output = new SurvexWriter(logger).generateSurvexData(surveyData, SurvexWriter.SplayFormats.None);
+		int blocks = 0;
+		int passageLines = 0;
+		boolean inPassageData = false;
+		for (String line : output) {
+			if (line.startsWith("*data passage")) {
+				blocks++;
+				inPassageData = true;
+			} else if (line.startsWith("*END")) {
+				inPassageData = false;
+			} else if (inPassageData && line.length() > 0) {
+				passageLines++;
+			}
+		}
+		assertTrue(blocks <= 2, "Passage data in one block for each survey direction");
+		assertTrue(passageLines >= legCount, "Passage data for every station");
+	}
+
+	/**
+	 * Test method for
+	 * {@link footleg.cavesurvey.data.writer.SurvexWriter#generateSurvexData(CaveSurvey, SurvexWriter.SplayFormats)}.
+	 * Passage dimensions are compared as they are written, so small negative values written as
+	 * -0.00 count as passage data.
+	 */
+	@Test
+	public void testPassageDataComparedAsWritten() {
+		Logger logger = new Logger();
+		CaveSurvey surveyData = new CaveSurvey(logger);
+		SurveySeries series = new SurveySeries("small");
+		for (int stn = 1; stn <= 3; stn++) {
+			SurveyLeg leg = TestHelper.createTestLeg(stn, stn + 1, 2.0, 90.0, 0.0);
+			leg.setLeft(-0.004, LengthUnit.Metres);
+			series.addLeg(leg);
+		}
+		surveyData.add(series);
+
+		List<String> output = new SurvexWriter(logger).generateSurvexData(surveyData, SurvexWriter.SplayFormats.None);
+		int passageLines = 0;
+		boolean inPassageData = false;
+		for (String line : output) {
+			if (line.startsWith("*data passage")) {
+				inPassageData = true;
+			} else if (line.startsWith("*END")) {
+				inPassageData = false;
+			} else if (inPassageData && line.length() > 0) {
+				assertTrue(line.endsWith("-0.00\t 0.00\t 0.00\t 0.00"), "Dimensions as written: " + line);
+				passageLines++;
+			}
+		}
+		assertEquals(3, passageLines, "Passage data kept for dimensions written as -0.00");
+	}
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.data.writer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CaveConverter.BearingUnit;
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+import footleg.cavesurvey.data.reader.CompassParser;
+import footleg.cavesurvey.data.reader.TherionParser;
+import footleg.cavesurvey.tools.SurveyNetwork;
+import footleg.cavesurvey.tools.TestHelper;
+import footleg.cavesurvey.tools.UtilityFunctions;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.data.writer.TherionWriter}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class TherionWriterTest {
+
+	/**
+	 * Creates a cave with two linked series, one of which contains a duplicate leg and a splay
+	 */
+	private CaveSurvey buildSurvey() {
+		SurveySeries cave = new SurveySeries("cave");
+		SurveySeries entrance = new SurveySeries("entrance");
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(2020, Calendar.MAY, 1);
+		entrance.setSurveyDate(cal.getTime());
+		entrance.setDeclination(-2.5);
+		entrance.setTapeCalibration(0.05, LengthUnit.Metres);
+		entrance.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 90.0, 0.0));
+		entrance.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 0.0, -30.0));
+		entrance.addLeg(TestHelper.createSplayLeg(3, 1.5, 270.0, 5.0));
+		SurveySeries passage = new SurveySeries("passage");
+		passage.addLeg(TestHelper.createTestLeg(1, 2, 8.0, 180.0, 10.0));
+		SurveyLeg duplicate = TestHelper.createTestLeg(2, 3, 4.0, 270.0, 0.0);
+		duplicate.setDuplicate(true);
+		passage.addLeg(duplicate);
+		cave.addSeries(entrance);
+		cave.addSeries(passage);
+		cave.addLink("entrance", new SurveyStation(3), "passage", new SurveyStation(1));
+
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(cave);
+		return survey;
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.TherionWriter#generateTherionData}.
+	 * Data written for a survey is read back by the Therion parser with the same legs,
+	 * calibrations and links between series.
+	 */
+	@Test
+	public void testRoundTripThroughTherionParser() throws ParseException {
+		CaveSurvey survey = buildSurvey();
+		List<String> data = new TherionWriter(new CmdLineLogger()).generateTherionData(survey, true);
+
+		CaveSurvey parsed = new TherionParser(new CmdLineLogger()).parseFile(data, null);
+		SurveySeries top = parsed.get(0);
+		assertEquals("cave", top.getSeriesName());
+		assertEquals(2, top.innerSeriesCount());
+		SurveySeries entrance = top.getInnerSeries(0);
+		SurveySeries passage = top.getInnerSeries(1);
+		assertEquals(3, entrance.legCount());
+		assertEquals(2, passage.legCount());
+		assertEquals(-2.5, entrance.getDeclination(), 1e-9);
+		assertEquals(0.05, entrance.getTapeCalibration(LengthUnit.Metres), 1e-9);
+		assertEquals(survey.get(0).getInnerSeries(0).getSurveyDate(), entrance.getSurveyDate());
+		assertEquals(10.0, entrance.getLegRaw(0).getLength(LengthUnit.Metres), 1e-9);
+		assertEquals(90.0, entrance.getLegRaw(0).getCompass(BearingUnit.Degrees), 1e-9);
+		assertEquals(-30.0, entrance.getLegRaw(1).getClino(GradientUnit.Degrees), 1e-9);
+		assertTrue(entrance.getLegRaw(2).isSplay(), "Splay written to an anonymous station");
+		assertFalse(passage.getLegRaw(0).isDuplicate());
+		assertTrue(passage.getLegRaw(1).isDuplicate(), "Duplicate flag read back");
+
+		assertEquals(SurveyNetwork.build(survey).getStationCount(), SurveyNetwork.build(parsed).getStationCount(),
+				"Linked stations are equated again");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.TherionWriter#generateTherionData}.
+	 * Splays are left out when not wanted.
+	 */
+	@Test
+	public void testSplaysOmitted() throws ParseException {
+		List<String> data = new TherionWriter(new CmdLineLogger()).generateTherionData(buildSurvey(), false);
+		CaveSurvey parsed = new TherionParser(new CmdLineLogger()).parseFile(data, null);
+		assertEquals(2, parsed.get(0).getInnerSeries(0).legCount());
+	}
+
+	private int totalLegCount(SurveySeries series) {
+		int count = series.legCount();
+		for (int i = 0; i < series.innerSeriesCount(); i++) {
+			count += totalLegCount(series.getInnerSeries(i));
+		}
+		return count;
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.TherionWriter#generateTherionData}.
+	 * Station names containing characters which are not valid in Therion names are written so
+	 * that they are read back as the same number of distinct stations.
+	 */
+	@Test
+	public void testAwkwardCharsRoundTrip() throws ParseException {
+		String[][] files = { { "AwkwardCharsANSI_in.dat", "Cp1252" }, { "AwkwardCharsUTF8_in.dat", "UTF8" } };
+		for (String[] file : files) {
+			CmdLineLogger logger = new CmdLineLogger();
+			List<String> fileData = UtilityFunctions.readTextFile(
+					new File("src/test/resources/data/regression/" + file[0]), file[1], false, null, logger);
+			CaveSurvey survey = new CompassParser(logger).parseFile(fileData);
+			List<String> data = new TherionWriter(logger).generateTherionData(survey, true);
+
+			CaveSurvey parsed = new TherionParser(logger).parseFile(data, null);
+			assertEquals(totalLegCount(survey.get(0)), totalLegCount(parsed.get(0)), "Legs read back from " + file[0]);
+			assertEquals(SurveyNetwork.build(survey).getStationCount(), SurveyNetwork.build(parsed).getStationCount(),
+					"Stations in " + file[0] + " stay distinct");
+		}
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.TherionWriter#generateTherionData}.
+	 * Names which only differ in characters Therion does not allow are written as different names,
+	 * and links refer to the same names as the legs.
+	 */
+	@Test
+	public void testInvalidNameCharactersDoNotMergeStations() throws ParseException {
+		SurveySeries cave = new SurveySeries("cave");
+		SurveySeries first = new SurveySeries("first part");
+		SurveySeries second = new SurveySeries("first+part");
+		for (SurveySeries series : new SurveySeries[] { first, second }) {
+			String[] names = { "A 1", "A_1", "A[1]", "-A1" };
+			for (int i = 0; i < names.length - 1; i++) {
+				SurveyLeg leg = TestHelper.createTestLeg(1, 2, 5.0, 90.0 * i, 0.0);
+				leg.setFromStn(UtilityFunctions.createStationFromNameForSeries(names[i], series));
+				leg.setToStn(UtilityFunctions.createStationFromNameForSeries(names[i + 1], series));
+				series.addLeg(leg);
+			}
+			cave.addSeries(series);
+		}
+		cave.addLink("first part", UtilityFunctions.createStationFromNameForSeries("-A1", first), "first+part",
+				UtilityFunctions.createStationFromNameForSeries("A 1", second));
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(cave);
+
+		List<String> data = new TherionWriter(new CmdLineLogger()).generateTherionData(survey, true);
+		for (String line : data) {
+			assertFalse(line.contains("[") || line.contains("]") || line.contains("A 1"),
+					"Invalid characters replaced in: " + line);
+		}
+		CaveSurvey parsed = new TherionParser(new CmdLineLogger()).parseFile(data, null);
+		assertEquals(2, parsed.get(0).innerSeriesCount(), "Surveys with similar names kept apart");
+		assertEquals(7, SurveyNetwork.build(parsed).getStationCount(), "Stations kept apart, linked stations joined");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.writer.TherionWriter#writeTherionData}.
+	 * Data streamed to a writer is the same as the lines generated as a list.
+	 */
+	@Test
+	public void testStreamedDataMatchesLines() throws IOException {
+		CaveSurvey survey = buildSurvey();
+		List<String> lines = new TherionWriter(new CmdLineLogger()).generateTherionData(survey, true);
+		StringWriter streamed = new StringWriter();
+		new TherionWriter(new CmdLineLogger()).writeTherionData(survey, true, streamed);
+		assertEquals(String.join(System.getProperty("line.separator"), lines), streamed.toString());
+	}
+
+}
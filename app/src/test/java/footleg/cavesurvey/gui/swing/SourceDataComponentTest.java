@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.gui.swing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.text.BadLocationException;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.reader.IncrementalSurvexParser;
+import footleg.cavesurvey.data.reader.SurvexParser;
+import footleg.cavesurvey.data.writer.SurvexWriter;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.gui.swing.SourceDataComponent}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SourceDataComponentTest {
+
+	private File writeSurvex(String... lines) throws IOException {
+		File file = File.createTempFile("source", ".svx");
+		file.deleteOnExit();
+		Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+		return file;
+	}
+
+	/**
+	 * Builds the cave model from the data in the tab in the same way as the main form, reparsing
+	 * just the edits when the model displayed came from the tab's parser
+	 */
+	private CaveSurvey buildModel(SourceDataComponent tab, CaveSurvey displayed) throws ParseException {
+		List<String> lines = new ArrayList<String>(Arrays.asList(tab.getText().split("\n")));
+		int[] editedLines = tab.getDirtyLineRange();
+		tab.clearDirtyRange();
+		IncrementalSurvexParser parser = tab.getSurvexParser();
+		if (editedLines != null && displayed == parser.getModel()) {
+			return parser.reparse(lines, editedLines[0], editedLines[1]);
+		}
+		return parser.parseAll(lines);
+	}
+
+	private String survexOutput(CaveSurvey survey, CmdLineLogger logger) {
+		return new SurvexWriter(logger).generateSurvexData(survey, SurvexWriter.SplayFormats.Flagged).toString();
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.gui.swing.SourceDataComponent#openFile(File, String)}.
+	 * Edits to a second file opened in the tab are parsed against that file, not the model of the
+	 * first file.
+	 */
+	@Test
+	public void testEditsToSecondFileBuildItsOwnModel() throws IOException, ParseException, BadLocationException {
+		CmdLineLogger logger = new CmdLineLogger();
+		SourceDataComponent tab = new SourceDataComponent(new Font(Font.MONOSPACED, Font.PLAIN, 12), logger);
+		File first = writeSurvex("*begin cave", "*begin main", "1 2 5.0 090 0", "2 3 4.0 180 -5", "*end main",
+				"*end cave");
+		File second = writeSurvex("*begin pot", "*begin shaft", "1 2 10.0 000 -90", "2 3 3.0 045 0",
+				"*end shaft", "*end pot");
+
+		assertTrue(tab.openFile(first, "UTF8"), "First file opened");
+		IncrementalSurvexParser firstParser = tab.getSurvexParser();
+		CaveSurvey displayed = buildModel(tab, null);
+
+		assertTrue(tab.openFile(second, "UTF8"), "Second file opened");
+		assertNotSame(firstParser, tab.getSurvexParser(), "New parser for the second file");
+		assertNull(tab.getSurvexParser().getModel(), "Parser for the second file has not parsed it yet");
+		displayed = buildModel(tab, displayed);
+		assertEquals("pot", displayed.get(0).getSeriesName(), "Model built from the second file");
+
+		// Add a leg to the shaft series, which is reparsed on its own
+		tab.insert("3 4 2.0 090 0\n", tab.getLineStartOffset(4));
+		CaveSurvey edited = buildModel(tab, displayed);
+		assertSame(displayed, edited, "Edit reparsed into the model of the second file");
+		assertEquals(3, edited.get(0).getInnerSeries(0).legCount(), "Legs in edited series");
+		List<String> lines = new ArrayList<String>(Arrays.asList(tab.getText().split("\n")));
+		assertEquals(survexOutput(new SurvexParser(logger).parseFile(lines, null), logger),
+				survexOutput(edited, logger), "Model matches a full parse of the edited second file");
+	}
+
+}
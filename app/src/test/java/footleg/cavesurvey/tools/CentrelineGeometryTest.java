@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.tools.CentrelineGeometry}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class CentrelineGeometryTest {
+	private static final double TOLERANCE = 0.001;
+
+	private CentrelineGeometry buildGeometry(SurveySeries series) {
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(series);
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		new NetworkAdjustment(new CmdLineLogger()).adjust(network);
+		return CentrelineGeometry.build(network);
+	}
+
+	/**
+	 * Creates a long passage heading east which zigzags slightly north and south
+	 */
+	private SurveySeries createZigzagSeries(int legCount) {
+		SurveySeries series = new SurveySeries("zigzag");
+		for (int i = 0; i < legCount; i++) {
+			series.addLeg(TestHelper.createTestLeg(i + 1, i + 2, 5.0, (i % 2 == 0) ? 85.0 : 95.0, 0.0));
+		}
+		return series;
+	}
+
+	@Test
+	public void testBoundsAndOrigin() {
+		SurveySeries series = new SurveySeries("box");
+		series.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 90.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(2, 3, 20.0, 0.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(3, 4, 4.0, 0.0, 90.0));
+		series.addLeg(TestHelper.createSplayLeg(1, 100.0, 270.0, 0.0));
+		CentrelineGeometry geometry = buildGeometry(series);
+
+		assertEquals(3, geometry.getLegCount(), "Splays are not included");
+		assertEquals(5.0, geometry.getOriginX(), TOLERANCE, "Origin easting");
+		assertEquals(10.0, geometry.getOriginY(), TOLERANCE, "Origin northing");
+		assertEquals(2.0, geometry.getOriginZ(), TOLERANCE, "Origin altitude");
+		float[] bounds = new float[6];
+		geometry.getBounds(bounds);
+		assertEquals(-5.0, bounds[0], TOLERANCE, "Min x");
+		assertEquals(10.0, bounds[4], TOLERANCE, "Max y");
+		assertEquals(2.0, bounds[5], TOLERANCE, "Max z");
+		assertEquals(3, geometry.getSegmentVertices(0).length / 6, "Full detail segments");
+	}
+
+	@Test
+	public void testCoarserLevelsSimplifyChains() {
+		CentrelineGeometry geometry = buildGeometry(createZigzagSeries(200));
+		int fullDetail = geometry.getSegmentVertices(0).length / 6;
+		assertEquals(200, fullDetail, "Full detail has a segment per leg");
+		// Zigzag deviates by less than 0.5m from a straight line, so 1m tolerance removes it
+		int coarse = geometry.getSegmentVertices(1).length / 6;
+		assertTrue(coarse < 10, "Coarse level should simplify chain but had " + coarse + " segments");
+		for (int level = 1; level < geometry.getLevelCount(); level++) {
+			assertTrue(geometry.getLevelTolerance(level) > geometry.getLevelTolerance(level - 1),
+					"Levels ordered from finest");
+			int total = 0;
+			for (int leaf = 0; leaf < geometry.getLeafCount(); leaf++) {
+				total += geometry.getLeafSegmentEnd(level, leaf) - geometry.getLeafSegmentStart(level, leaf);
+			}
+			assertEquals(geometry.getSegmentVertices(level).length / 6, total, "Leaf ranges cover all segments");
+		}
+	}
+
+	@Test
+	public void testFindVisibleLeavesCullsOutsideView() {
+		CentrelineGeometry geometry = buildGeometry(createZigzagSeries(2000));
+		assertTrue(geometry.getLeafCount() >= 8, "Large series split into several leaves");
+		int[] leaves = new int[geometry.getLeafCount()];
+		double[] east = { 1, 0, 0 };
+		double[] north = { 0, 1, 0 };
+
+		int all = geometry.findVisibleLeaves(east, north, -1e6, 1e6, -1e6, 1e6, leaves);
+		assertEquals(geometry.getLeafCount(), all, "Everything visible in a large view");
+
+		// View only the eastern end of the passage, which is 10km long
+		int visible = geometry.findVisibleLeaves(east, north, 4000, 6000, -100, 100, leaves);
+		assertTrue(visible > 0 && visible < all / 2, "Only leaves at the east end visible, found " + visible);
+		float[] bounds = new float[6];
+		for (int i = 0; i < visible; i++) {
+			geometry.getLeafBounds(leaves[i], bounds);
+			assertTrue(bounds[3] >= 4000, "Visible leaf reaches into view");
+		}
+	}
+
+	@Test
+	public void testCrossSectionsFromLrud() {
+		SurveySeries series = new SurveySeries("lrud");
+		SurveyLeg leg = TestHelper.createTestLeg(1, 2, 10.0, 0.0, 0.0);
+		leg.setLeft(1.0, LengthUnit.Metres);
+		leg.setRight(2.0, LengthUnit.Metres);
+		leg.setUp(3.0, LengthUnit.Metres);
+		leg.setDown(0.5, LengthUnit.Metres);
+		series.addLeg(leg);
+		series.addLeg(TestHelper.createTestLeg(2, 3, 10.0, 0.0, 0.0));
+		CentrelineGeometry geometry = buildGeometry(series);
+
+		float[] lines = geometry.getCrossSectionVertices();
+		assertEquals(2, lines.length / 6, "Horizontal and vertical line for one leg");
+		// Leg heads north, so left is west. Station 1 is 10m south of the origin
+		assertEquals(-1.0, lines[0], TOLERANCE, "Left end easting");
+		assertEquals(2.0, lines[3], TOLERANCE, "Right end easting");
+		assertEquals(-10.0, lines[1], TOLERANCE, "Cross section at from station");
+		assertEquals(3.0, lines[8], TOLERANCE, "Up end altitude");
+		assertEquals(-0.5, lines[11], TOLERANCE, "Down end altitude");
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveySeries;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.tools.CrossSections}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class CrossSectionsTest {
+	private static final double TOLERANCE = 0.02;
+
+	private SurveyNetwork buildNetwork(SurveySeries series) {
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(series);
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		new NetworkAdjustment(new CmdLineLogger()).adjust(network);
+		return network;
+	}
+
+	/**
+	 * Adds splays around a station in the vertical plane across a passage heading north, at a
+	 * distance from the station which depends on the angle from east (anticlockwise looking north)
+	 */
+	private void addScan(SurveySeries series, int stn, int splayCount, double eastRadius, double upRadius) {
+		for (int i = 0; i < splayCount; i++) {
+			double angle = 2 * Math.PI * i / splayCount;
+			// Ellipse through the given distances east/west and up/down from the station
+			double x = eastRadius * Math.cos(angle);
+			double z = upRadius * Math.sin(angle);
+			double length = Math.sqrt(x * x + z * z);
+			double compass = (x >= 0) ? 90.0 : 270.0;
+			double clino = Math.toDegrees(Math.asin(z / length));
+			series.addLeg(TestHelper.createSplayLeg(stn, length, compass, clino));
+		}
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.CrossSections#build(SurveyNetwork)}.
+	 * Tests the dimensions of an elliptical passage scanned with many splays at a station.
+	 */
+	@Test
+	public void testScannedPassageDimensions() {
+		SurveySeries series = new SurveySeries("scan");
+		series.addLeg(TestHelper.createTestLeg(1, 2, 5.0, 0.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 0.0, 0.0));
+		addScan(series, 2, 720, 3.0, 1.5);
+		// Splays along the passage do not measure the walls
+		series.addLeg(TestHelper.createSplayLeg(2, 20.0, 0.0, 0.0));
+		series.addLeg(TestHelper.createSplayLeg(2, 20.0, 180.0, 2.0));
+		SurveyNetwork network = buildNetwork(series);
+
+		CrossSections sections = CrossSections.build(network);
+		assertEquals(1, sections.getSectionCount(), "Section at the scanned station only");
+		int section = sections.findSection(network.findStation("scan.2"));
+		assertTrue(section >= 0, "Section found for station");
+		assertEquals(-1, sections.findSection(network.findStation("scan.1")), "No section without splays");
+		assertEquals(3.0, sections.getLrud(section, 0), TOLERANCE, "Left");
+		assertEquals(3.0, sections.getLrud(section, 1), TOLERANCE, "Right");
+		assertEquals(1.5, sections.getLrud(section, 2), TOLERANCE, "Up");
+		assertEquals(1.5, sections.getLrud(section, 3), TOLERANCE, "Down");
+		int outlinePoints = sections.getPointEnd(section) - sections.getPointStart(section);
+		assertEquals(CrossSections.SECTORS, outlinePoints, "Outline has a point for each sector");
+
+		// Passage heading north, so the right axis is east and up is vertical
+		double[] axes = new double[6];
+		sections.getAxes(section, axes);
+		assertEquals(1.0, axes[0], TOLERANCE, "Right axis east");
+		assertEquals(1.0, axes[5], TOLERANCE, "Up axis vertical");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.CrossSections#build(SurveyNetwork)}.
+	 * Tests a station at a bend, where the section is across the bisected leg directions, and with
+	 * splays only on one side of the station.
+	 */
+	@Test
+	public void testSectionAtBendWithSplaysOnOneSide() {
+		SurveySeries series = new SurveySeries("bend");
+		series.addLeg(TestHelper.createTestLeg(1, 2, 5.0, 0.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 90.0, 0.0));
+		// Splays to the north west, south east (across the bend) and up
+		series.addLeg(TestHelper.createSplayLeg(2, 2.0, 315.0, 0.0));
+		series.addLeg(TestHelper.createSplayLeg(2, 4.0, 135.0, 0.0));
+		series.addLeg(TestHelper.createSplayLeg(2, 1.0, 0.0, 90.0));
+		SurveyNetwork network = buildNetwork(series);
+
+		CrossSections sections = CrossSections.build(network);
+		int section = sections.findSection(network.findStation("bend.2"));
+		assertTrue(section >= 0, "Section found for station");
+		// Passage heads north east through the bend, so left is north west
+		assertEquals(2.0, sections.getLrud(section, 0), TOLERANCE, "Left");
+		assertEquals(4.0, sections.getLrud(section, 1), TOLERANCE, "Right");
+		assertEquals(1.0, sections.getLrud(section, 2), TOLERANCE, "Up");
+		assertEquals(0.0, sections.getLrud(section, 3), TOLERANCE, "No splays down");
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.tools.NearMisses}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class NearMissesTest {
+
+	/**
+	 * Creates a cave with a main series heading east, and a series branching off it which loops
+	 * round and ends a few centimetres from a station further along the main series without being
+	 * equated to it
+	 */
+	private SurveyNetwork buildNetwork(double loopEndNorth) {
+		SurveySeries cave = new SurveySeries("cave");
+		SurveySeries main = new SurveySeries("main");
+		for (int stn = 1; stn <= 4; stn++) {
+			main.addLeg(TestHelper.createTestLeg(stn, stn + 1, 5.0, 90.0, 0.0));
+		}
+		SurveySeries loop = new SurveySeries("loop");
+		loop.addLeg(TestHelper.createTestLeg(1, 2, 5.0, 0.0, 0.0));
+		loop.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 90.0, 0.0));
+		loop.addLeg(TestHelper.createTestLeg(3, 4, 5.0 - loopEndNorth, 180.0, 0.0));
+		cave.addSeries(main);
+		cave.addSeries(loop);
+		cave.addLink("main", new SurveyStation(2), "loop", new SurveyStation(1));
+
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(cave);
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		new NetworkAdjustment(new CmdLineLogger()).adjust(network);
+		return network;
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.NearMisses#find(SurveyNetwork, double)}.
+	 * The end of a series is close to a station in another series.
+	 */
+	@Test
+	public void testSeriesEndingNearStation() {
+		SurveyNetwork network = buildNetwork(0.05);
+		NearMisses nearMisses = NearMisses.find(network, NearMisses.DEFAULT_TOLERANCE);
+
+		assertEquals(1, nearMisses.getCount(), "Only the unconnected stations are reported");
+		int loopEnd = network.findStation("cave.loop.4");
+		int mainStn = network.findStation("cave.main.3");
+		int stn = nearMisses.getStation(0);
+		int other = nearMisses.getOtherStation(0);
+		assertTrue((stn == loopEnd && other == mainStn) || (stn == mainStn && other == loopEnd),
+				"Near miss between end of loop and station in main series");
+		assertEquals(0.05, nearMisses.getStationDistance(0), 1e-6, "Distance between stations");
+		assertTrue(nearMisses.isEquateSuggested(0), "Equate suggested for stations within tolerance");
+
+		List<String> equates = nearMisses.getEquateSuggestions();
+		assertEquals(1, equates.size());
+		assertTrue(equates.get(0).startsWith("*equate "), "Survex equate command");
+		assertTrue(equates.get(0).contains("cave.loop.4") && equates.get(0).contains("cave.main.3"),
+				"Equate names both stations");
+
+		assertEquals(0, NearMisses.find(network, 0.01).getCount(), "No near misses within smaller tolerance");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.NearMisses#find(SurveyNetwork, double)}.
+	 * A station is close to the middle of a leg in another series, but not close to a station.
+	 */
+	@Test
+	public void testStationNearMiddleOfLeg() {
+		SurveySeries cave = new SurveySeries("cave");
+		SurveySeries main = new SurveySeries("main");
+		main.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 90.0, 0.0));
+		main.addLeg(TestHelper.createTestLeg(2, 3, 10.0, 90.0, 0.0));
+		SurveySeries side = new SurveySeries("side");
+		// Ends 10cm above the middle of the first leg of the main series
+		side.addLeg(TestHelper.createTestLeg(1, 2, 5.0, 0.0, 90.0));
+		side.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 270.0, 0.0));
+		side.addLeg(TestHelper.createTestLeg(3, 4, 4.9, 0.0, -90.0));
+		cave.addSeries(main);
+		cave.addSeries(side);
+		cave.addLink("main", new SurveyStation(2), "side", new SurveyStation(1));
+
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(cave);
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		new NetworkAdjustment(new CmdLineLogger()).adjust(network);
+
+		NearMisses nearMisses = NearMisses.find(network, NearMisses.DEFAULT_TOLERANCE);
+		assertEquals(1, nearMisses.getCount());
+		assertEquals(network.findStation("cave.side.4"), nearMisses.getStation(0), "Station near leg");
+		assertEquals(0.1, nearMisses.getLegDistance(0), 1e-6, "Distance to leg");
+		assertFalse(nearMisses.isEquateSuggested(0), "No equate when stations are far apart");
+		assertEquals(0, nearMisses.getEquateSuggestions().size());
+	}
+
+}
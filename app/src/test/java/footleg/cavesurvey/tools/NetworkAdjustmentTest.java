@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CaveConverter.GradientUnit;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+import footleg.cavesurvey.data.model.SurveyStation.FixType;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.tools.NetworkAdjustment}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class NetworkAdjustmentTest {
+	private static final double TOLERANCE = 0.0001;
+
+	private SurveyNetwork adjustSurvey(CaveSurvey survey) {
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		NetworkAdjustment adjustment = new NetworkAdjustment(new CmdLineLogger());
+		adjustment.adjust(network);
+		return network;
+	}
+
+	@Test
+	public void testTraverseWithNoLoops() {
+		SurveySeries series = new SurveySeries("trav");
+		series.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 90.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 0.0, 30.0));
+		series.addLeg(TestHelper.createTestLeg(3, 4, 2.0, 180.0, -90.0));
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(series);
+
+		SurveyNetwork network = adjustSurvey(survey);
+
+		assertTrue(network.isCoordinatesCalculated(), "Coordinates should be flagged as calculated");
+		assertEquals(4, network.getStationCount(), "Station count");
+		int stn1 = network.findStation("trav.1");
+		int stn4 = network.findStation("trav.4");
+		assertEquals(0.0, network.getX(stn1), TOLERANCE, "First station should be at origin");
+		assertEquals(10.0, network.getX(stn4), TOLERANCE, "Easting of last station");
+		assertEquals(5.0 * Math.cos(Math.toRadians(30)), network.getY(stn4), TOLERANCE, "Northing of last station");
+		assertEquals(2.5 - 2.0, network.getZ(stn4), TOLERANCE, "Altitude of last station");
+	}
+
+	@Test
+	public void testDivingLegPlacedByDepthChange() {
+		SurveySeries series = new SurveySeries("sump");
+		series.setClinoCalibration(2.0, GradientUnit.Degrees);
+		SurveyLeg dive = TestHelper.createTestLeg(1, 2, 5.0, 0.0, 0.0);
+		dive.setDepths(2.0, 5.0, LengthUnit.Metres);
+		series.addLeg(dive);
+		SurveyLeg change = TestHelper.createTestLeg(2, 3, 13.0, 90.0, 0.0);
+		change.setDepthChange(-5.0, LengthUnit.Metres);
+		series.addLeg(change);
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(series);
+
+		SurveyNetwork network = adjustSurvey(survey);
+
+		assertEquals(2, network.getLegCount(), "Leg count");
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			assertTrue((network.getLegFlags(leg) & SurveyNetwork.FLAG_DIVING) != 0, "Leg flagged as diving");
+		}
+		assertEquals(-3.0, network.getLegDz(0), TOLERANCE, "Going deeper is downwards");
+		assertEquals(4.0, network.getLegDy(0), TOLERANCE, "Horizontal part of leg from length and depth change");
+		assertEquals(5.0, network.getLegDz(1), TOLERANCE, "Depth change of leg");
+		assertEquals(12.0, network.getLegDx(1), TOLERANCE, "Horizontal part of leg from length and depth change");
+		assertEquals(2.0, network.getZ(network.findStation("sump.3")), TOLERANCE, "Altitude of last station");
+	}
+
+	@Test
+	public void testLoopMisclosureDistributedByLegLength() {
+		// Station 2 is 10m north of station 1 by a direct leg, and 10.2m by a route via station 3
+		SurveySeries series = new SurveySeries("loop");
+		series.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 0.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(1, 3, 5.0, 0.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(3, 2, 5.2, 0.0, 0.0));
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(series);
+
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		NetworkAdjustment adjustment = new NetworkAdjustment(new CmdLineLogger());
+		adjustment.adjust(network);
+
+		assertEquals(1, adjustment.getLoopCount(), "Loop count");
+		assertEquals(1, adjustment.getComponentCount(), "Component count");
+
+		// Weighted mean of the two routes with weights inversely proportional to length
+		double expectedY2 = 2.0 / (1.0 / 10.0 + 1.0 / 10.2);
+		double expectedY3 = 5.0 + (expectedY2 - 10.2) * 5.0 / 10.2;
+		assertEquals(expectedY2, network.getY(network.findStation("loop.2")), TOLERANCE, "Adjusted northing of stn 2");
+		assertEquals(expectedY3, network.getY(network.findStation("loop.3")), TOLERANCE, "Adjusted northing of stn 3");
+		assertEquals(0.0, network.getX(network.findStation("loop.2")), TOLERANCE, "Adjusted easting of stn 2");
+	}
+
+	@Test
+	public void testEquatedSeriesWithFixedStation() {
+		SurveySeries cave = new SurveySeries("cave");
+		SurveySeries series1 = new SurveySeries("a");
+		series1.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 90.0, 0.0));
+		SurveySeries series2 = new SurveySeries("b");
+		series2.addLeg(TestHelper.createTestLeg(1, 2, 4.0, 0.0, 0.0));
+		cave.addSeries(series1);
+		cave.addSeries(series2);
+		cave.addLink("a", new SurveyStation(2), "b", new SurveyStation(1));
+
+		// Fix the first station of series a using a fixed station object on its leg
+		SurveyStation fixedStn = series1.getLegRaw(0).getFromStn();
+		fixedStn.setFixed(FixType.GPS, 1000.0, 2000.0, 300.0);
+
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(cave);
+
+		SurveyNetwork network = adjustSurvey(survey);
+
+		assertEquals(3, network.getStationCount(), "Equated stations should be merged");
+		assertEquals(network.findStation("cave.a.2"), network.findStation("cave.b.1"),
+				"Equated stations should share an index");
+		int end = network.findStation("cave.b.2");
+		assertEquals(1010.0, network.getX(end), TOLERANCE, "Easting of station in equated series");
+		assertEquals(2004.0, network.getY(end), TOLERANCE, "Northing of station in equated series");
+		assertEquals(300.0, network.getZ(end), TOLERANCE, "Altitude of station in equated series");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.NetworkAdjustment#adjust(SurveyNetwork)}. A network with
+	 * several loops, traverses between junctions and a dead end branch is adjusted to the same positions as a
+	 * dense weighted least squares solve of every leg.
+	 */
+	@Test
+	public void testAdjustmentMatchesDenseLeastSquares() {
+		SurveySeries series = new SurveySeries("net");
+		double[][] legs = { { 1, 2, 10.0, 0.0, 0.0 }, { 2, 3, 8.0, 90.0, 5.0 }, { 3, 4, 6.0, 180.0, -3.0 },
+				{ 4, 1, 7.5, 265.0, 2.0 }, { 2, 5, 4.0, 45.0, 0.0 }, { 5, 6, 5.0, 80.0, 10.0 },
+				{ 6, 3, 3.2, 200.0, -20.0 }, { 4, 7, 6.0, 300.0, 0.0 }, { 7, 8, 5.0, 10.0, 0.0 },
+				{ 8, 1, 4.1, 150.0, 5.0 }, { 3, 9, 2.0, 90.0, 0.0 }, { 9, 10, 3.0, 90.0, 10.0 } };
+		for (double[] leg : legs) {
+			series.addLeg(TestHelper.createTestLeg((int) leg[0], (int) leg[1], leg[2], leg[3], leg[4]));
+		}
+		series.getLegRaw(0).getFromStn().setFixed(FixType.GPS, 100.0, 200.0, 50.0);
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(series);
+
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		NetworkAdjustment adjustment = new NetworkAdjustment(new CmdLineLogger());
+		adjustment.setTolerance(1e-12);
+		adjustment.adjust(network);
+		assertEquals(3, adjustment.getLoopCount(), "Loop count");
+
+		// Normal equations for every station except the fixed one, with legs weighted by inverse variance
+		int fixed = network.findStation("net.1");
+		int stnCount = network.getStationCount();
+		double[][] normal = new double[stnCount][stnCount];
+		double[][] rhs = new double[3][stnCount];
+		double[] fixedPos = { 100.0, 200.0, 50.0 };
+		for (int leg = 0; leg < network.getLegCount(); leg++) {
+			int from = network.getLegFrom(leg);
+			int to = network.getLegTo(leg);
+			double weight = 1.0 / network.getLegVariance(leg);
+			double[] vector = { network.getLegDx(leg), network.getLegDy(leg), network.getLegDz(leg) };
+			normal[from][from] += weight;
+			normal[to][to] += weight;
+			normal[from][to] -= weight;
+			normal[to][from] -= weight;
+			for (int axis = 0; axis < 3; axis++) {
+				rhs[axis][from] -= weight * vector[axis];
+				rhs[axis][to] += weight * vector[axis];
+			}
+		}
+		// Move the fixed station to the right hand side by replacing its row with its known position
+		for (int axis = 0; axis < 3; axis++) {
+			for (int row = 0; row < stnCount; row++) {
+				if (row != fixed) {
+					rhs[axis][row] -= normal[row][fixed] * fixedPos[axis];
+				}
+			}
+			rhs[axis][fixed] = fixedPos[axis];
+		}
+		for (int idx = 0; idx < stnCount; idx++) {
+			normal[fixed][idx] = 0.0;
+			normal[idx][fixed] = 0.0;
+		}
+		normal[fixed][fixed] = 1.0;
+
+		for (int axis = 0; axis < 3; axis++) {
+			double[] expected = denseSolve(normal, rhs[axis]);
+			for (int stn = 0; stn < stnCount; stn++) {
+				double actual = (axis == 0) ? network.getX(stn) : (axis == 1) ? network.getY(stn) : network.getZ(stn);
+				assertEquals(expected[stn], actual, TOLERANCE,
+						"Axis " + axis + " of station " + network.getStationName(stn));
+			}
+		}
+	}
+
+	/**
+	 * Solves a small dense system of equations by Gaussian elimination with partial pivoting
+	 */
+	private static double[] denseSolve(double[][] matrix, double[] rhs) {
+		int n = rhs.length;
+		double[][] a = new double[n][];
+		double[] b = rhs.clone();
+		for (int row = 0; row < n; row++) {
+			a[row] = matrix[row].clone();
+		}
+		for (int col = 0; col < n; col++) {
+			int pivot = col;
+			for (int row = col + 1; row < n; row++) {
+				if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+					pivot = row;
+				}
+			}
+			double[] swapRow = a[col];
+			a[col] = a[pivot];
+			a[pivot] = swapRow;
+			double swap = b[col];
+			b[col] = b[pivot];
+			b[pivot] = swap;
+			for (int row = col + 1; row < n; row++) {
+				double factor = a[row][col] / a[col][col];
+				for (int idx = col; idx < n; idx++) {
+					a[row][idx] -= factor * a[col][idx];
+				}
+				b[row] -= factor * b[col];
+			}
+		}
+		double[] x = new double[n];
+		for (int row = n - 1; row >= 0; row--) {
+			double sum = b[row];
+			for (int idx = row + 1; idx < n; idx++) {
+				sum -= a[row][idx] * x[idx];
+			}
+			x[row] = sum / a[row][row];
+		}
+		return x;
+	}
+
+	@Test
+	public void testConjugateGradientSolver() {
+		// Tridiagonal system: 2 -1 0 / -1 2 -1 / 0 -1 2 with solution 1,2,3 on axis 1
+		int[] rowStart = { 0, 1, 3, 4 };
+		int[] cols = { 1, 0, 2, 1 };
+		double[] vals = { -1, -1, -1, -1 };
+		double[] diag = { 2, 2, 2 };
+		double[] rhs = { 0, 0, 0, 0, 0, 0, 0, 4, 0 };
+		double[] solution = new double[9];
+
+		NetworkAdjustment.solveConjugateGradient(rowStart, cols, vals, diag, rhs, solution, 1, 1e-12, 100);
+
+		assertEquals(1.0, solution[1], TOLERANCE, "Solution x1");
+		assertEquals(2.0, solution[4], TOLERANCE, "Solution x2");
+		assertEquals(3.0, solution[7], TOLERANCE, "Solution x3");
+		assertEquals(0.0, solution[0], TOLERANCE, "Other axes should be untouched");
+	}
+
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.converter.CaveConverter.LengthUnit;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.reader.SurvexParser;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.tools.ParseCache}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class ParseCacheTest {
+	private static final String KEY = "Survex|UTF8";
+
+	private File createProject(File folder) throws IOException {
+		File main = new File(folder, "main.svx");
+		Files.write(main.toPath(), Arrays.asList("*begin main", "*include sub", "*end main"));
+		writeSubFile(folder, "1 2 5.0 90 0");
+		return main;
+	}
+
+	private void writeSubFile(File folder, String legLine) throws IOException {
+		Files.write(new File(folder, "sub.svx").toPath(), Arrays.asList("*begin sub", legLine, "*end sub"));
+	}
+
+	private CaveSurvey parseAndStore(ParseCache cache, File main, CmdLineLogger logger) throws ParseException {
+		List<String> refs = new ArrayList<String>();
+		List<File> filesRead = new ArrayList<File>();
+		List<String> fileData = UtilityFunctions.readTextFile(main, "UTF8", true, refs, filesRead, logger);
+		assertEquals(2, filesRead.size(), "Files read including include file");
+		CaveSurvey surveyData = new SurvexParser(logger).parseFile(fileData, refs);
+		cache.store(main, KEY, filesRead, surveyData);
+		return surveyData;
+	}
+
+	@Test
+	public void testReuseAndInvalidationByIncludedFile() throws IOException, ParseException {
+		CmdLineLogger logger = new CmdLineLogger();
+		File folder = Files.createTempDirectory("cctest").toFile();
+		File main = createProject(folder);
+		ParseCache cache = new ParseCache(new File(folder, "cache"), 1024 * 1024, logger);
+
+		assertNull(cache.lookup(main, KEY), "Empty cache");
+		parseAndStore(cache, main, logger);
+
+		CaveSurvey cached = cache.lookup(main, KEY);
+		assertNotNull(cached, "Cached model for unchanged files");
+		assertEquals(5.0, cached.get(0).getInnerSeries(0).getLegRaw(0).getLength(LengthUnit.Metres), 0.0,
+				"Cached leg length");
+		assertNull(cache.lookup(main, "Survex|Cp1252"), "Different parse settings are cached separately");
+
+		// Touching a file without changing it keeps the entry valid
+		File sub = new File(folder, "sub.svx");
+		sub.setLastModified(sub.lastModified() - 60000);
+		assertNotNull(cache.lookup(main, KEY), "Timestamp only change");
+
+		// Editing the included file invalidates the entry for the file including it
+		writeSubFile(folder, "1 2 7.0 90 0");
+		sub.setLastModified(sub.lastModified() - 120000);
+		assertNull(cache.lookup(main, KEY), "Included file edited");
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws IOException, ParseException {
+		CmdLineLogger logger = new CmdLineLogger();
+		File folder = Files.createTempDirectory("cctest").toFile();
+		File main = createProject(folder);
+		ParseCache cache = new ParseCache(new File(folder, "cache"), 1024 * 1024, logger);
+		parseAndStore(cache, main, logger);
+		long entrySize = cache.getEntryFiles().get(0).length();
+
+		// Limit cache to two entries, then store three
+		cache = new ParseCache(new File(folder, "cache"), entrySize * 2 + 10, logger);
+		File entry1 = cache.getEntryFiles().get(0);
+		entry1.setLastModified(System.currentTimeMillis() - 60000);
+		CaveSurvey surveyData = cache.lookup(main, KEY);
+		List<File> deps = Arrays.asList(main);
+		cache.store(new File(folder, "other1.svx"), KEY, deps, surveyData);
+		File entry2 = cache.getEntryFiles().get(cache.getEntryFiles().get(0).equals(entry1) ? 1 : 0);
+		entry2.setLastModified(System.currentTimeMillis() - 120000);
+		cache.store(new File(folder, "other2.svx"), KEY, deps, surveyData);
+
+		List<File> entries = cache.getEntryFiles();
+		assertEquals(2, entries.size(), "Entries after eviction");
+		assertTrue(entries.contains(entry1), "Recently used entry kept");
+		assertFalse(entries.contains(entry2), "Least recently used entry evicted");
+	}
+
+	@Test
+	public void testCorruptEntryTreatedAsMissAndRemoved() throws IOException, ParseException {
+		CmdLineLogger logger = new CmdLineLogger();
+		File folder = Files.createTempDirectory("cctest").toFile();
+		File main = createProject(folder);
+		File cacheDir = new File(folder, "cache");
+		ParseCache cache = new ParseCache(cacheDir, 1024 * 1024, logger);
+		parseAndStore(cache, main, logger);
+		assertEquals(1, cacheDir.listFiles().length, "Only the entry is left in the cache folder after writing");
+		File entry = cache.getEntryFiles().get(0);
+		byte[] valid = Files.readAllBytes(entry.toPath());
+
+		// Truncated entries
+		for (int length : new int[] { 0, 3, 10, 40, valid.length - 5 }) {
+			Files.write(entry.toPath(), Arrays.copyOf(valid, length));
+			assertNull(cache.lookup(main, KEY), "Entry truncated to " + length + " bytes");
+			assertFalse(entry.exists(), "Entry truncated to " + length + " bytes removed");
+			parseAndStore(cache, main, logger);
+			assertNotNull(cache.lookup(main, KEY), "Entry replaced after parsing again");
+		}
+
+		// Garbage dependency count and path length
+		for (int offset : new int[] { 8, 12 }) {
+			byte[] garbage = valid.clone();
+			garbage[offset] = (byte) 0x7f;
+			garbage[offset + 1] = (byte) 0xff;
+			Files.write(entry.toPath(), garbage);
+			assertNull(cache.lookup(main, KEY), "Entry with garbage length at byte " + offset);
+			assertFalse(entry.exists(), "Entry with garbage length at byte " + offset + " removed");
+			parseAndStore(cache, main, logger);
+		}
+	}
+
+}
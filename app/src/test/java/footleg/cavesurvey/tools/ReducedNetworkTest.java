@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveySeries;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.tools.ReducedNetwork}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class ReducedNetworkTest {
+
+	/**
+	 * Creates a network with two theta shaped loop systems joined by a two leg
+	 * traverse, and a two leg dead end branch off the second loop system
+	 */
+	private SurveyNetwork createThetaBridgeNetwork() {
+		SurveySeries series = new SurveySeries("t");
+		// First theta: three routes between stations 1 and 3
+		series.addLeg(TestHelper.createTestLeg(1, 2, 5.0, 45.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(2, 3, 5.0, 135.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(1, 3, 7.0, 90.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(1, 4, 5.0, 135.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(4, 3, 5.0, 45.0, 0.0));
+		// Traverse to second theta
+		series.addLeg(TestHelper.createTestLeg(3, 5, 10.0, 90.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(5, 6, 10.0, 90.0, 0.0));
+		// Second theta: three routes between stations 6 and 8
+		series.addLeg(TestHelper.createTestLeg(6, 7, 5.0, 45.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(7, 8, 5.0, 135.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(6, 8, 7.2, 90.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(6, 9, 5.0, 135.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(9, 8, 5.0, 45.0, 0.0));
+		// Dead end
+		series.addLeg(TestHelper.createTestLeg(8, 10, 3.0, 0.0, 0.0));
+		series.addLeg(TestHelper.createTestLeg(10, 11, 3.0, 0.0, 0.0));
+
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(series);
+		return SurveyNetwork.build(survey);
+	}
+
+	@Test
+	public void testReductionOfThetaLoopsJoinedByTraverse() {
+		SurveyNetwork network = createThetaBridgeNetwork();
+		ReducedNetwork reduced = ReducedNetwork.build(network);
+
+		assertEquals(2, reduced.getPeeledCount(), "Dead end stations peeled");
+		assertEquals(network.findStation("t.11"), reduced.getPeeledStation(0), "First station peeled");
+		assertEquals(4, reduced.getNodeCount(), "Junction node count");
+		assertEquals(7, reduced.getEdgeCount(), "Edge count");
+		assertEquals(3, reduced.getBlockCount(), "Block count");
+		assertEquals(-1, reduced.getStationNode(network.findStation("t.5")), "Traverse station should be collapsed");
+
+		int node3 = reduced.getStationNode(network.findStation("t.3"));
+		int node6 = reduced.getStationNode(network.findStation("t.6"));
+		int node1 = reduced.getStationNode(network.findStation("t.1"));
+		assertTrue(reduced.isArticulation(node3), "Station 3 joins first loops to traverse");
+		assertTrue(reduced.isArticulation(node6), "Station 6 joins traverse to second loops");
+		assertFalse(reduced.isArticulation(node1), "Station 1 is not an articulation point");
+
+		// Find the collapsed traverse edge between stations 3 and 6
+		int traverseEdge = -1;
+		for (int edge = 0; edge < reduced.getEdgeCount(); edge++) {
+			if (reduced.getEdgeLegCount(edge) == 2 && (reduced.getEdgeFrom(edge) == node6
+					|| reduced.getEdgeTo(edge) == node6) && (reduced.getEdgeFrom(edge) == node3
+					|| reduced.getEdgeTo(edge) == node3)) {
+				traverseEdge = edge;
+			}
+		}
+		assertTrue(traverseEdge >= 0, "Traverse between stations 3 and 6 should be collapsed into one edge");
+		assertEquals(20.0, reduced.getEdgeVariance(traverseEdge), 0.0001, "Variance of traverse edge");
+		double sign = (reduced.getEdgeFrom(traverseEdge) == node3) ? 1.0 : -1.0;
+		assertEquals(20.0, sign * reduced.getEdgeDx(traverseEdge), 0.0001, "Easting of traverse edge");
+	}
+
+	@Test
+	public void testAdjustmentLeavesBridgeAndDeadEndUncorrected() {
+		SurveyNetwork network = createThetaBridgeNetwork();
+		NetworkAdjustment adjustment = new NetworkAdjustment(new CmdLineLogger());
+		adjustment.adjust(network);
+
+		assertEquals(4, adjustment.getLoopCount(), "Loop count");
+
+		// Legs not in any loop take none of the misclosure
+		int stn3 = network.findStation("t.3");
+		int stn6 = network.findStation("t.6");
+		assertEquals(20.0, network.getX(stn6) - network.getX(stn3), 0.0001, "Easting along traverse");
+		assertEquals(0.0, network.getY(stn6) - network.getY(stn3), 0.0001, "Northing along traverse");
+		int stn8 = network.findStation("t.8");
+		int stn11 = network.findStation("t.11");
+		assertEquals(6.0, network.getY(stn11) - network.getY(stn8), 0.0001, "Northing along dead end");
+	}
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveySeries;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.tools.SpatialIndex}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SpatialIndexTest {
+
+	/**
+	 * Creates random segments in a 100m cube, with some zero length segments and segments sharing
+	 * end points
+	 */
+	private double[] randomSegments(Random random, int count) {
+		double[] coords = new double[count * 6];
+		for (int i = 0; i < count; i++) {
+			for (int a = 0; a < 3; a++) {
+				coords[i * 6 + a] = (i % 7 == 3) ? coords[(i - 1) * 6 + 3 + a] : random.nextDouble() * 100;
+				coords[i * 6 + 3 + a] = (i % 11 == 5) ? coords[i * 6 + a]
+						: coords[i * 6 + a] + random.nextDouble() * 10 - 5;
+			}
+		}
+		return coords;
+	}
+
+	private int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.SpatialIndex#findNearest(double, double, double)},
+	 * {@link footleg.cavesurvey.tools.SpatialIndex#findWithinDistance(double, double, double, double)},
+	 * {@link footleg.cavesurvey.tools.SpatialIndex#findInBox(double[], double[])},
+	 * {@link footleg.cavesurvey.tools.SpatialIndex#findCrossingPlane(double[], double)} and
+	 * {@link footleg.cavesurvey.tools.SpatialIndex#findNearLine(double[], double[], double)}.
+	 * Compares the results of queries on an index of segments with checking every segment.
+	 */
+	@Test
+	public void testQueriesMatchCheckingEverySegment() {
+		Random random = new Random(46);
+		int count = 2000;
+		double[] coords = randomSegments(random, count);
+		SpatialIndex index = SpatialIndex.forSegments(coords, count);
+		assertEquals(count, index.getItemCount());
+
+		for (int query = 0; query < 50; query++) {
+			double x = random.nextDouble() * 120 - 10;
+			double y = random.nextDouble() * 120 - 10;
+			double z = random.nextDouble() * 120 - 10;
+
+			// Nearest segment, and segments within a distance
+			int nearest = -1;
+			double nearestDist = Double.MAX_VALUE;
+			List<Integer> within = new ArrayList<Integer>();
+			for (int i = 0; i < count; i++) {
+				double dist = index.distance(i, x, y, z);
+				if (dist < nearestDist) {
+					nearest = i;
+					nearestDist = dist;
+				}
+				if (dist <= 8.0) {
+					within.add(i);
+				}
+			}
+			assertEquals(nearest, index.findNearest(x, y, z), "Nearest segment");
+			assertEquals(-1, index.findNearest(x, y, z, nearestDist * 0.99), "No segment within maximum distance");
+			assertArrayEquals(toArray(within), index.findWithinDistance(x, y, z, 8.0), "Segments within distance");
+
+			// Segments overlapping a box
+			double[] min = { x - 6, y - 3, z - 9 };
+			double[] max = { x + 6, y + 3, z + 9 };
+			List<Integer> inBox = new ArrayList<Integer>();
+			for (int i = 0; i < count; i++) {
+				boolean overlaps = true;
+				for (int a = 0; a < 3; a++) {
+					double low = Math.min(coords[i * 6 + a], coords[i * 6 + 3 + a]);
+					double high = Math.max(coords[i * 6 + a], coords[i * 6 + 3 + a]);
+					overlaps &= (low <= max[a] && high >= min[a]);
+				}
+				if (overlaps) {
+					inBox.add(i);
+				}
+			}
+			assertArrayEquals(toArray(inBox), index.findInBox(min, max), "Segments in box");
+
+			// Segments crossing a plane through the point
+			double[] normal = { random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5 };
+			double offset = normal[0] * x + normal[1] * y + normal[2] * z;
+			List<Integer> crossing = new ArrayList<Integer>();
+			for (int i = 0; i < count; i++) {
+				double start = normal[0] * coords[i * 6] + normal[1] * coords[i * 6 + 1]
+						+ normal[2] * coords[i * 6 + 2] - offset;
+				double end = normal[0] * coords[i * 6 + 3] + normal[1] * coords[i * 6 + 4]
+						+ normal[2] * coords[i * 6 + 5] - offset;
+				if (Math.min(start, end) <= 0 && Math.max(start, end) >= 0) {
+					crossing.add(i);
+				}
+			}
+			assertArrayEquals(toArray(crossing), index.findCrossingPlane(normal, offset), "Segments crossing plane");
+
+			// Segments near a line through the point, checked by sampling points along each segment
+			double[] point = { x, y, z };
+			double[] direction = { 0.0, 1.0, 1.0 };
+			int[] nearLine = index.findNearLine(point, direction, 2.0);
+			for (int i : nearLine) {
+				double closest = Double.MAX_VALUE;
+				for (int step = 0; step <= 1000; step++) {
+					double t = step / 1000.0;
+					double dx = coords[i * 6] + t * (coords[i * 6 + 3] - coords[i * 6]) - x;
+					double dy = coords[i * 6 + 1] + t * (coords[i * 6 + 4] - coords[i * 6 + 1]) - y;
+					double dz = coords[i * 6 + 2] + t * (coords[i * 6 + 5] - coords[i * 6 + 2]) - z;
+					double along = (dy + dz) / Math.sqrt(2.0);
+					closest = Math.min(closest, Math.sqrt(Math.max(0.0, dx * dx + dy * dy + dz * dz - along * along)));
+				}
+				assertTrue(closest <= 2.0 + 0.01, "Segment found is near line");
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.SpatialIndex#findInBox(double[], double[])}.
+	 * Finds points at exactly the same position, which is how the DXF importer matches labels to
+	 * polyline vertices.
+	 */
+	@Test
+	public void testFindPointsAtSamePosition() {
+		double[] coords = { 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 1.0, 2.0, 3.0, 1.0, 2.0, 3.01 };
+		SpatialIndex index = SpatialIndex.forPoints(coords, 4);
+		double[] point = { 1.0, 2.0, 3.0 };
+		assertArrayEquals(new int[] { 0, 2 }, index.findInBox(point, point), "Points at same position");
+		assertEquals(0, index.findNearest(1.0, 2.0, 3.0), "Lowest index of points at the same distance");
+		assertEquals(0, SpatialIndex.forPoints(new double[0], 0).findInBox(point, point).length, "Empty index");
+		assertEquals(-1, SpatialIndex.forPoints(new double[0], 0).findNearest(0, 0, 0), "Empty index");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.SpatialIndex#forStations(SurveyNetwork)} and
+	 * {@link footleg.cavesurvey.tools.SpatialIndex#forLegs(SurveyNetwork)}.
+	 */
+	@Test
+	public void testIndexOfSurveyNetwork() {
+		SurveySeries series = new SurveySeries("line");
+		for (int stn = 1; stn <= 100; stn++) {
+			series.addLeg(TestHelper.createTestLeg(stn, stn + 1, 5.0, 90.0, 0.0));
+		}
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(series);
+		SurveyNetwork network = SurveyNetwork.build(survey);
+		new NetworkAdjustment(new CmdLineLogger()).adjust(network);
+
+		// Stations are 5m apart heading east
+		SpatialIndex stations = SpatialIndex.forStations(network);
+		int stn50 = network.findStation("line.50");
+		double x = network.getX(stn50);
+		double y = network.getY(stn50);
+		double z = network.getZ(stn50);
+		assertEquals(stn50, stations.findNearest(x + 2.0, y + 1.0, z - 1.0), "Nearest station");
+		assertEquals(3, stations.findWithinDistance(x, y, z, 5.0).length, "Station and neighbours");
+
+		// Plane across the survey between stations 50 and 51 crosses one leg
+		SpatialIndex legs = SpatialIndex.forLegs(network);
+		int[] crossing = legs.findCrossingPlane(new double[] { 1.0, 0.0, 0.0 }, x + 2.5);
+		assertEquals(1, crossing.length, "One leg crosses plane");
+		int leg = crossing[0];
+		assertEquals("line.50", network.getStationName(network.getLegFrom(leg)));
+		assertEquals("line.51", network.getStationName(network.getLegTo(leg)));
+	}
+
+}
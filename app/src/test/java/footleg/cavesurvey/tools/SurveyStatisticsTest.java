@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2026 Paul Fretwell - https://github.com/Footleg/caveconverter
+ *
+ * This file is part of Cave Converter.
+ *
+ * Cave Converter is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cave Converter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cave Converter.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package footleg.cavesurvey.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Test;
+
+import footleg.cavesurvey.converter.CmdLineLogger;
+import footleg.cavesurvey.data.model.CaveSurvey;
+import footleg.cavesurvey.data.model.SurveyLeg;
+import footleg.cavesurvey.data.model.SurveySeries;
+import footleg.cavesurvey.data.model.SurveyStation;
+import footleg.cavesurvey.tools.SurveyStatistics.Totals;
+
+/**
+ * Unit test class for {@link footleg.cavesurvey.tools.SurveyStatistics}
+ *
+ * @author Footleg
+ * @version 2026.10.18 (ISO 8601 YYYY.MM.DD)
+ * @since 1.8 (The Java version used)
+ */
+public class SurveyStatisticsTest {
+
+	private Date date(int year, int month, int day) {
+		Calendar cal = Calendar.getInstance();
+		cal.clear();
+		cal.set(year, month - 1, day);
+		return cal.getTime();
+	}
+
+	/**
+	 * Creates a cave with a main series heading east then down a pitch, with a splay and a
+	 * duplicate leg, and a side series surveyed on a different date starting with a surface leg
+	 * and then climbing 3m
+	 */
+	private CaveSurvey buildSurvey() {
+		SurveySeries cave = new SurveySeries("cave");
+		SurveySeries main = new SurveySeries("main");
+		main.setSurveyDate(date(2020, 5, 1));
+		main.addLeg(TestHelper.createTestLeg(1, 2, 10.0, 90.0, 0.0));
+		main.addLeg(TestHelper.createTestLeg(2, 3, 10.0, 90.0, 0.0));
+		main.addLeg(TestHelper.createTestLeg(3, 4, 5.0, 0.0, -90.0));
+		main.addLeg(TestHelper.createSplayLeg(2, 2.0, 0.0, 0.0));
+		SurveyLeg duplicate = TestHelper.createTestLeg(4, 5, 4.0, 0.0, 0.0);
+		duplicate.setDuplicate(true);
+		main.addLeg(duplicate);
+
+		SurveySeries side = new SurveySeries("side");
+		side.setSurveyDate(date(2021, 6, 2));
+		SurveyLeg surface = TestHelper.createTestLeg(1, 2, 3.0, 0.0, 0.0);
+		surface.setSurface(true);
+		side.addLeg(surface);
+		side.addLeg(TestHelper.createTestLeg(2, 3, 6.0, 180.0, 30.0));
+
+		cave.addSeries(main);
+		cave.addSeries(side);
+		cave.addLink("main", new SurveyStation(2), "side", new SurveyStation(1));
+
+		CaveSurvey survey = new CaveSurvey(new CmdLineLogger());
+		survey.add(cave);
+		return survey;
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.tools.SurveyStatistics#calculate(CaveSurvey)}.
+	 * Checks the totals for the survey, each series and each date.
+	 */
+	@Test
+	public void testTotals() {
+		CaveSurvey survey = buildSurvey();
+		SurveyStatistics stats = SurveyStatistics.calculate(survey);
+		assertEquals(7, stats.getStationCount(), "Stations, counting equated stations once");
+		assertEquals(3, stats.getSeriesCount());
+
+		Totals total = stats.getSurveyTotals();
+		assertEquals(6, total.getLegCount());
+		assertEquals(1, total.getSplayCount());
+		assertEquals(1, total.getDuplicateCount());
+		assertEquals(1, total.getSurfaceCount());
+		assertEquals(31.0, total.getLength(), 1e-6, "Length excludes splays, duplicate and surface legs");
+		assertEquals(20.0 + 6.0 * Math.cos(Math.toRadians(30)), total.getHorizontalLength(), 1e-6);
+		assertEquals(8.0, total.getVerticalLength(), 1e-6);
+		assertEquals(4.0, total.getDuplicateLength(), 1e-6);
+		assertEquals(3.0, total.getSurfaceLength(), 1e-6);
+		assertEquals(20.0, total.getMax()[0] - total.getMin()[0], 1e-6, "East-west extent");
+		assertEquals(8.0, total.getDepthRange(), 1e-6, "Depth range from top of climb to bottom of pitch");
+
+		SurveySeries cave = survey.get(0);
+		SurveySeries main = cave.getInnerSeries(0);
+		SurveySeries side = cave.getInnerSeries(1);
+		Totals mainTotals = stats.getSeriesTotals(main);
+		assertEquals(4, mainTotals.getLegCount());
+		assertEquals(25.0, mainTotals.getLength(), 1e-6);
+		assertEquals(5.0, mainTotals.getDepthRange(), 1e-6);
+		Totals sideTotals = stats.getSeriesTotals(side);
+		assertEquals(2, sideTotals.getLegCount());
+		assertEquals(6.0, sideTotals.getLength(), 1e-6);
+		assertEquals(3.0, sideTotals.getDepthRange(), 1e-6);
+		Totals caveTotals = stats.getSeriesTotals(cave);
+		assertEquals(6, caveTotals.getLegCount(), "Series totals include inner series");
+		assertEquals(31.0, caveTotals.getLength(), 1e-6);
+		assertEquals(8.0, caveTotals.getDepthRange(), 1e-6);
+
+		assertEquals(2, stats.getDateTotals().size());
+		Iterator<Date> dates = stats.getDateTotals().keySet().iterator();
+		assertEquals(date(2020, 5, 1), dates.next(), "Dates in order");
+		assertEquals(25.0, stats.getDateTotals().get(date(2020, 5, 1)).getLength(), 1e-6);
+		assertEquals(6.0, stats.getDateTotals().get(date(2021, 6, 2)).getLength(), 1e-6);
+		assertEquals(0, stats.getUndatedTotals().getLegCount(), "No legs in series without a date");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.model.CaveSurvey#getStatistics()}.
+	 * Statistics are held by the survey until it is changed.
+	 */
+	@Test
+	public void testStatisticsCachedUntilSurveyChanged() {
+		CaveSurvey survey = buildSurvey();
+		SurveyStatistics stats = survey.getStatistics();
+		assertSame(stats, survey.getStatistics(), "Statistics are not calculated again");
+
+		SurveySeries extra = new SurveySeries("extra");
+		extra.addLeg(TestHelper.createTestLeg(1, 2, 7.0, 0.0, 0.0));
+		survey.add(extra);
+		SurveyStatistics changed = survey.getStatistics();
+		assertNotSame(stats, changed, "Statistics calculated again after survey changed");
+		assertEquals(38.0, changed.getSurveyTotals().getLength(), 1e-6);
+
+		extra.addLeg(TestHelper.createTestLeg(2, 3, 2.0, 0.0, 0.0));
+		survey.invalidateStatistics();
+		assertEquals(40.0, survey.getStatistics().getSurveyTotals().getLength(), 1e-6,
+				"Statistics calculated again after series changed directly");
+	}
+
+	/**
+	 * Test method for {@link footleg.cavesurvey.data.model.CaveSurvey#getCalculatedStatistics()}.
+	 * Only statistics which have already been calculated are returned.
+	 */
+	@Test
+	public void testCalculatedStatisticsNotCalculatedOnRequest() {
+		CaveSurvey survey = buildSurvey();
+		assertNull(survey.getCalculatedStatistics(), "Statistics not calculated until requested");
+		SurveyStatistics stats = survey.getStatistics();
+		assertSame(stats, survey.getCalculatedStatistics());
+
+		survey.invalidateStatistics();
+		assertNull(survey.getCalculatedStatistics(), "Statistics discarded when survey changed");
+	}
+
+}